@@ -0,0 +1,63 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.benchmark;
+
+import net.chaosserver.timelord.data.SyntheticDataGenerator;
+import net.chaosserver.timelord.data.TimelordData;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+
+/**
+ * A synthetic data set shared by the benchmarks, sized by the number of
+ * tasks and the years of history.  The data is built from a fixed seed so
+ * every run measures the same data.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkData {
+    /** The seed the data is built from. */
+    public static final long SEED = 20091231L;
+
+    /** The number of tasks. */
+    @Param({"50", "500"})
+    public int taskCount;
+
+    /** The years of history. */
+    @Param({"1", "5"})
+    public int years;
+
+    /** The data set. */
+    public TimelordData timelordData;
+
+    /**
+     * Builds the data set.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticDataGenerator generator = new SyntheticDataGenerator();
+        generator.setSeed(SEED);
+        generator.setTaskCount(taskCount);
+        generator.setYears(years);
+
+        timelordData = generator.generate();
+    }
+}
@@ -0,0 +1,148 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.benchmark;
+
+import net.chaosserver.timelord.data.TimelordData;
+import net.chaosserver.timelord.data.TimelordTask;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks the operations on the whole data set: adding and sorting the
+ * tasks, cleansing and cloning.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = TimelordBenchmarks.QUIET_LOGGING)
+public class DataBenchmark {
+    /** The task names of the data set in a shuffled order. */
+    protected List<String> shuffledNames;
+
+    /** The tasks of the data set in a shuffled order. */
+    protected List<TimelordTask> shuffledTasks;
+
+    /** A copy of the data set that the sort is run on. */
+    protected TimelordData sortData;
+
+    /**
+     * Shuffles the tasks of the data set.
+     *
+     * @param benchmarkData the data set
+     */
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkData benchmarkData) {
+        Random random = new Random(BenchmarkData.SEED);
+
+        sortData = benchmarkData.timelordData.clone();
+        shuffledTasks =
+            new ArrayList<TimelordTask>(sortData.getTaskCollection());
+        Collections.shuffle(shuffledTasks, random);
+
+        shuffledNames = new ArrayList<String>();
+        Iterator<TimelordTask> taskIterator = shuffledTasks.iterator();
+
+        while (taskIterator.hasNext()) {
+            shuffledNames.add(
+                ((TimelordTask) taskIterator.next()).getTaskName());
+        }
+    }
+
+    /**
+     * Puts the tasks back out of order before each sort.
+     */
+    @Setup(Level.Invocation)
+    public void unsort() {
+        sortData.setTaskCollection(
+            new ArrayList<TimelordTask>(shuffledTasks));
+    }
+
+    /**
+     * Adds every task name of the data set to empty data.
+     *
+     * @return the data built
+     */
+    @Benchmark
+    public TimelordData addTask() {
+        TimelordData timelordData = new TimelordData();
+        Iterator<String> nameIterator = shuffledNames.iterator();
+
+        while (nameIterator.hasNext()) {
+            timelordData.addTask((String) nameIterator.next());
+        }
+
+        return timelordData;
+    }
+
+    /**
+     * Sorts the tasks of the data set.
+     *
+     * @return the sorted data
+     */
+    @Benchmark
+    public TimelordData sortTaskCollection() {
+        sortData.sortTaskCollection();
+
+        return sortData;
+    }
+
+    /**
+     * Cleanses the data set.  After the first call there is nothing to
+     * fix, so this measures the check made at every startup.
+     *
+     * @param benchmarkData the data set
+     * @return the data set
+     */
+    @Benchmark
+    public TimelordData cleanse(BenchmarkData benchmarkData) {
+        benchmarkData.timelordData.cleanse();
+
+        return benchmarkData.timelordData;
+    }
+
+    /**
+     * Clones the data set.
+     *
+     * @param benchmarkData the data set
+     * @return the clone
+     */
+    @Benchmark
+    public TimelordData cloneData(BenchmarkData benchmarkData) {
+        return benchmarkData.timelordData.clone();
+    }
+}
@@ -0,0 +1,108 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.benchmark;
+
+import net.chaosserver.timelord.data.TimelordDayView;
+import net.chaosserver.timelord.util.EpochDay;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks the view of a single day used by the tabs, both building it
+ * and getting its totals.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = TimelordBenchmarks.QUIET_LOGGING)
+public class DayViewBenchmark {
+    /** The day viewed, the last work day at least a week back. */
+    protected EpochDay viewDay;
+
+    /** A view built once for the totals. */
+    protected TimelordDayView timelordDayView;
+
+    /**
+     * Builds the view used for the totals.
+     *
+     * @param benchmarkData the data set
+     */
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkData benchmarkData) {
+        viewDay = EpochDay.today().plusDays(-EpochDay.DAYS_IN_WEEK);
+
+        while (viewDay.getDayOfWeek() > 5) {
+            viewDay = viewDay.plusDays(-1);
+        }
+
+        timelordDayView =
+            new TimelordDayView(benchmarkData.timelordData, viewDay);
+    }
+
+    /**
+     * Removes the view from the listeners of the data set.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        timelordDayView.dispose();
+    }
+
+    /**
+     * Builds a view of the day and throws it away again.
+     *
+     * @param benchmarkData the data set
+     * @return the number of tasks in the view
+     */
+    @Benchmark
+    public int buildDayView(BenchmarkData benchmarkData) {
+        TimelordDayView dayView =
+            new TimelordDayView(benchmarkData.timelordData, viewDay);
+        int taskCount = dayView.getTaskCollection().size();
+        dayView.dispose();
+
+        return taskCount;
+    }
+
+    /**
+     * Gets the total time of the day with and without the tasks that
+     * aren't exportable.
+     *
+     * @return the sum of the totals
+     */
+    @Benchmark
+    public double getTotalTimeToday() {
+        return timelordDayView.getTotalTimeToday(true)
+            + timelordDayView.getTotalTimeToday(false);
+    }
+}
@@ -0,0 +1,177 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.benchmark;
+
+import net.chaosserver.timelord.data.ExcelDataReaderWriter;
+import net.chaosserver.timelord.data.TimelordData;
+import net.chaosserver.timelord.data.TimelordDataException;
+import net.chaosserver.timelord.data.XmlDataReaderWriter;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks reading and writing the XML data file and building the Excel
+ * export.  The files are kept in a temporary directory that stands in for
+ * the home directory while the benchmarks run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = TimelordBenchmarks.QUIET_LOGGING)
+public class PersistenceBenchmark {
+    /** The directory standing in for the home directory. */
+    protected File homeDirectory;
+
+    /** The home directory before the benchmarks started. */
+    protected String userHome;
+
+    /** The snapshot of the data set that is written out. */
+    protected TimelordData timelordDataSnapshot;
+
+    /** The XML reader/writer. */
+    protected XmlDataReaderWriter xmlDataReaderWriter;
+
+    /** The Excel reader/writer. */
+    protected WorkbookGenerator workbookGenerator;
+
+    /**
+     * Writes the data set to the temporary home directory.
+     *
+     * @param benchmarkData the data set
+     * @throws IOException indicates an error creating the directory
+     * @throws TimelordDataException indicates an error writing the data
+     */
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkData benchmarkData)
+            throws IOException, TimelordDataException {
+
+        homeDirectory = File.createTempFile("timelord", "");
+        homeDirectory.delete();
+        homeDirectory.mkdirs();
+
+        userHome = System.getProperty("user.home");
+        System.setProperty("user.home", homeDirectory.getPath());
+
+        timelordDataSnapshot = benchmarkData.timelordData.snapshot();
+        xmlDataReaderWriter = new XmlDataReaderWriter();
+        xmlDataReaderWriter.writeTimelordData(
+            timelordDataSnapshot,
+            xmlDataReaderWriter.getDefaultOutputFile());
+
+        workbookGenerator = new WorkbookGenerator();
+    }
+
+    /**
+     * Puts back the home directory and removes the temporary one.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setProperty("user.home", userHome);
+        delete(homeDirectory);
+    }
+
+    /**
+     * Deletes a file or a directory and everything in it.
+     *
+     * @param file the file to delete
+     */
+    protected void delete(File file) {
+        File[] children = file.listFiles();
+
+        if (children != null) {
+            for (int i = 0; i < children.length; i++) {
+                delete(children[i]);
+            }
+        }
+
+        file.delete();
+    }
+
+    /**
+     * Reads the XML data file.
+     *
+     * @return the data read
+     * @throws TimelordDataException indicates an error reading the data
+     */
+    @Benchmark
+    public TimelordData readXml() throws TimelordDataException {
+        return xmlDataReaderWriter.readTimelordData();
+    }
+
+    /**
+     * Writes the XML data file.  The contents are the same every time, so
+     * the backup is only written once.
+     *
+     * @return the file written
+     * @throws TimelordDataException indicates an error writing the data
+     */
+    @Benchmark
+    public File writeXml() throws TimelordDataException {
+        File outputFile = xmlDataReaderWriter.getDefaultOutputFile();
+        xmlDataReaderWriter.writeTimelordData(
+            timelordDataSnapshot, outputFile);
+
+        return outputFile;
+    }
+
+    /**
+     * Builds the Excel export of the data set without writing it.
+     *
+     * @return the workbook
+     */
+    @Benchmark
+    public HSSFWorkbook generateWorkbook() {
+        return workbookGenerator.generateWorkbook(timelordDataSnapshot);
+    }
+
+    /**
+     * Opens up the building of the workbook so it can be measured apart
+     * from writing the file.
+     */
+    protected static class WorkbookGenerator extends ExcelDataReaderWriter {
+        /**
+         * Builds the workbook for the data.
+         *
+         * @param timelordData the data to build a workbook for
+         * @return the workbook
+         */
+        public HSSFWorkbook generateWorkbook(TimelordData timelordData) {
+            return super.generateWorkbook(timelordData);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.benchmark;
+
+import net.chaosserver.timelord.data.SyntheticDataGenerator;
+import net.chaosserver.timelord.data.TimelordData;
+import net.chaosserver.timelord.data.TimelordTask;
+import net.chaosserver.timelord.data.TimelordTaskDay;
+import net.chaosserver.timelord.util.EpochDay;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks finding and adding the days of a task.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = TimelordBenchmarks.QUIET_LOGGING)
+public class TaskBenchmark {
+    /** The number of days looked up in each call. */
+    protected static final int LOOKUPS = 1000;
+
+    /** The task with the most days in the data set. */
+    protected TimelordTask busiestTask;
+
+    /** The days looked up, a mix of days with and without time. */
+    protected EpochDay[] lookupDays;
+
+    /** The days of the busiest task in a shuffled order. */
+    protected List<EpochDay> shuffledDays;
+
+    /**
+     * Picks the task and the days to use.
+     *
+     * @param benchmarkData the data set
+     */
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkData benchmarkData) {
+        TimelordData timelordData = benchmarkData.timelordData;
+        Iterator<TimelordTask> taskIterator =
+            timelordData.getTaskCollection().iterator();
+
+        while (taskIterator.hasNext()) {
+            TimelordTask timelordTask = (TimelordTask) taskIterator.next();
+
+            if ((busiestTask == null)
+                    || (timelordTask.getTaskDayList().size()
+                        > busiestTask.getTaskDayList().size())) {
+
+                busiestTask = timelordTask;
+            }
+        }
+
+        Random random = new Random(BenchmarkData.SEED);
+        int historyDays = benchmarkData.years
+            * SyntheticDataGenerator.DAYS_IN_YEAR;
+        EpochDay today = EpochDay.today();
+
+        lookupDays = new EpochDay[LOOKUPS];
+
+        for (int i = 0; i < lookupDays.length; i++) {
+            lookupDays[i] = today.plusDays(-random.nextInt(historyDays));
+        }
+
+        shuffledDays = new ArrayList<EpochDay>();
+        Iterator<TimelordTaskDay> dayIterator =
+            busiestTask.getTaskDayList().iterator();
+
+        while (dayIterator.hasNext()) {
+            shuffledDays.add(
+                new EpochDay(((TimelordTaskDay) dayIterator.next())
+                    .getEpochDay()));
+        }
+
+        Collections.shuffle(shuffledDays, random);
+    }
+
+    /**
+     * Looks up days of a task, without creating the missing ones.
+     *
+     * @return the number of days found
+     */
+    @Benchmark
+    public int getTaskDay() {
+        int found = 0;
+
+        for (int i = 0; i < lookupDays.length; i++) {
+            if (busiestTask.getTaskDay(lookupDays[i]) != null) {
+                found++;
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Builds up a task by adding its days in no particular order.
+     *
+     * @return the task built
+     */
+    @Benchmark
+    public TimelordTask addTaskDay() {
+        TimelordTask timelordTask = new TimelordTask("Benchmark");
+        Iterator<EpochDay> dayIterator = shuffledDays.iterator();
+
+        while (dayIterator.hasNext()) {
+            TimelordTaskDay timelordTaskDay =
+                new TimelordTaskDay((EpochDay) dayIterator.next());
+            timelordTaskDay.setHours(1d);
+            timelordTask.addTaskDay(timelordTaskDay);
+        }
+
+        return timelordTask;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Runs the benchmarks with the garbage collection profiler, so the results
+ * show the allocation rate and collections alongside the timings.  The
+ * usual JMH command line options can be given, and with no benchmarks
+ * named every benchmark in this package is run.
+ */
+public final class TimelordBenchmarks {
+    /**
+     * System property given to the forked benchmark JVMs to keep the
+     * logging of the application out of the results.
+     */
+    public static final String QUIET_LOGGING =
+        "-Dorg.apache.commons.logging.Log="
+        + "org.apache.commons.logging.impl.NoOpLog";
+
+    /**
+     * Hidden constructor since this only holds the main method.
+     */
+    private TimelordBenchmarks() { }
+
+    /**
+     * Runs the benchmarks.
+     *
+     * @param args JMH command line options
+     * @throws CommandLineOptionException indicates bad options
+     * @throws RunnerException indicates an error running the benchmarks
+     */
+    public static void main(String[] args)
+            throws CommandLineOptionException, RunnerException {
+
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        ChainedOptionsBuilder optionsBuilder =
+            new OptionsBuilder()
+                .parent(commandLineOptions)
+                .addProfiler(GCProfiler.class);
+
+        if (commandLineOptions.getIncludes().isEmpty()) {
+            optionsBuilder.include(
+                TimelordBenchmarks.class.getPackage().getName() + ".");
+        }
+
+        new Runner(optionsBuilder.build()).run();
+    }
+}
@@ -0,0 +1,714 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.data;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.zip.CRC32;
+
+
+/**
+ * ReaderWriter for a compact binary file.  The file is a short header
+ * followed by a series of blocks, each with its own checksum:
+ * <pre>
+ * header:  magic (int), version (short), flags (short)
+ * block:   type (byte), length (int), payload, CRC32 of payload (int)
+ * </pre>
+ * The blocks are, in order, the string table holding every task name,
+ * note and time zone id once, the settings, any number of task blocks and
+ * an empty end block.  Within a task block each task is its name, its
+ * flags and its days newest first, where the first day is written in full
+ * and every other day as the gap from the one before.  The minutes of
+ * each day are written as a whole number, which is already quantized to
+ * the time increment.  Numbers are written in a variable length encoding
+ * so the common small values take a single byte.
+ * <p>
+ * If there is no binary file yet the XML file of the XmlDataReaderWriter
+ * is read instead and written straight back out in binary, so the switch
+ * over happens once and the XML file is left alone.
+ */
+public class BinaryDataReaderWriter extends TimelordDataReaderWriter {
+    /** Logger. */
+    private static Log log = LogFactory.getLog(BinaryDataReaderWriter.class);
+
+    /** Default filename not including the extension. */
+    public static final String DEFAULT_FILENAME = "TimelordData";
+
+    /** Default extension used for the output file. */
+    public static final String DEFAULT_EXTENSION = ".tld";
+
+    /** Marks the start of the file, "TLRD". */
+    public static final int MAGIC = 0x544C5244;
+
+    /** The version of the format written. */
+    public static final short FORMAT_VERSION = 1;
+
+    /** Block type of the block marking the end of the file. */
+    protected static final byte BLOCK_END = 0;
+
+    /** Block type of the string table. */
+    protected static final byte BLOCK_STRINGS = 1;
+
+    /** Block type of the settings. */
+    protected static final byte BLOCK_SETTINGS = 2;
+
+    /** Block type of a block of tasks. */
+    protected static final byte BLOCK_TASKS = 3;
+
+    /** The most tasks written into one block. */
+    protected static final int TASKS_PER_BLOCK = 64;
+
+    /** Task flag for an exportable task. */
+    protected static final int FLAG_EXPORTABLE = 1;
+
+    /** Task flag for a hidden task. */
+    protected static final int FLAG_HIDDEN = 2;
+
+    /** The encoding of the strings in the string table. */
+    protected static final String STRING_ENCODING = "UTF-8";
+
+    /**
+     * Gets the file associated with the default location.
+     *
+     * @return the File for the default location
+     */
+    public File getDefaultOutputFile() {
+        File homeDirectory = new File(System.getProperty("user.home"));
+
+        return new File(homeDirectory, (DEFAULT_FILENAME + DEFAULT_EXTENSION));
+    }
+
+    /**
+     * Reads the timelordData using the default file name.  If there is
+     * no binary file the XML file is read and written out in binary.
+     *
+     * @return a timelordData object as read from file.
+     * @throws TimelordDataException indicates an error reading in the file
+     */
+    public TimelordData readTimelordData() throws TimelordDataException {
+        File datafile = getDefaultOutputFile();
+        TimelordData timelordData;
+
+        if (datafile.exists()) {
+            timelordData = readTimelordData(datafile);
+
+            if (log.isInfoEnabled()) {
+                log.info("Finished loading [" + datafile + "]");
+            }
+        } else {
+            XmlDataReaderWriter xmlDataReaderWriter =
+                new XmlDataReaderWriter();
+            File xmlFile = xmlDataReaderWriter.getDefaultOutputFile();
+
+            timelordData = xmlDataReaderWriter.readTimelordData();
+
+            if (xmlFile.exists()) {
+                if (log.isInfoEnabled()) {
+                    log.info(
+                            "Converting [" + xmlFile + "] to [" + datafile
+                            + "]");
+                }
+
+                writeTimelordData(timelordData.snapshot(), datafile);
+            }
+
+            unloadOlderDays(timelordData);
+        }
+
+        timelordData.setTimelordReaderWriter(this);
+
+        return timelordData;
+    }
+
+    /**
+     * Reads the timelordData from a binary file.
+     *
+     * @param datafile the file to read
+     * @return a timelordData object as read from file.
+     * @throws TimelordDataException indicates an error reading in the file
+     *         or that the file is damaged
+     */
+    public TimelordData readTimelordData(File datafile)
+            throws TimelordDataException {
+
+        try {
+            InputStream inputStream = new FileInputStream(datafile);
+            byte[] bytes;
+
+            try {
+                bytes = new byte[(int) datafile.length()];
+                new DataInputStream(inputStream).readFully(bytes);
+            } finally {
+                inputStream.close();
+            }
+
+            return decode(bytes);
+        } catch (IOException e) {
+            throw new TimelordDataException(
+                    "Failed to read [" + datafile + "]", e);
+        }
+    }
+
+    /**
+     * Writes out the timelordData object to the file given, and keeps a
+     * backup of it in the backup directory next to it.
+     *
+     * @param timelordData the data to write to file
+     * @param outputFile the file to output to
+     * @throws TimelordDataException indicates an error writing the
+     *         data out to file.
+     */
+    public void writeTimelordData(TimelordData timelordData,
+            File outputFile) throws TimelordDataException {
+
+        try {
+            byte[] bytes = encode(timelordData);
+            writeBytes(bytes, outputFile);
+            writeBackup(
+                new File(outputFile.getParentFile(), BACKUP_DIRECTORY),
+                outputFile.getName(),
+                bytes,
+                bytes.length,
+                false);
+        } catch (IOException e) {
+            throw new TimelordDataException("Failed to output", e);
+        }
+    }
+
+    /**
+     * Writes bytes out to a file, replacing it in one step.
+     *
+     * @param bytes the bytes to write
+     * @param file the file to write to
+     * @throws IOException indicates an error writing the file
+     */
+    protected void writeBytes(byte[] bytes, File file) throws IOException {
+        replaceFile(file, bytes, bytes.length, false);
+    }
+
+    /**
+     * Encodes the data into the binary format.
+     *
+     * @param timelordData the data to encode
+     * @return the encoded bytes
+     * @throws IOException indicates an error encoding
+     */
+    public byte[] encode(TimelordData timelordData) throws IOException {
+        List<TimelordTask> taskCollection = timelordData.getTaskCollection();
+        List<String> strings = new ArrayList<String>();
+        Map<String, Integer> stringIndex = new HashMap<String, Integer>();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        DataOutputStream dataOutput = new DataOutputStream(output);
+        dataOutput.writeInt(MAGIC);
+        dataOutput.writeShort(FORMAT_VERSION);
+        dataOutput.writeShort(0);
+
+        // The tasks are encoded first so the string table is complete,
+        // then written out after it.
+        List<byte[]> taskBlocks = new ArrayList<byte[]>();
+        ByteArrayOutputStream taskBlock = new ByteArrayOutputStream();
+        int blockTasks = 0;
+
+        for (int i = 0; i < taskCollection.size(); i++) {
+            if (blockTasks == 0) {
+                writeVarInt(taskBlock,
+                    Math.min(TASKS_PER_BLOCK, taskCollection.size() - i));
+            }
+
+            encodeTask(
+                (TimelordTask) taskCollection.get(i),
+                taskBlock,
+                strings,
+                stringIndex);
+
+            blockTasks++;
+
+            if (blockTasks == TASKS_PER_BLOCK) {
+                taskBlocks.add(taskBlock.toByteArray());
+                taskBlock.reset();
+                blockTasks = 0;
+            }
+        }
+
+        if (blockTasks > 0) {
+            taskBlocks.add(taskBlock.toByteArray());
+        }
+
+        ByteArrayOutputStream settingsBlock = new ByteArrayOutputStream();
+        new DataOutputStream(settingsBlock).writeDouble(
+            timelordData.getDayStartTime());
+        writeVarInt(settingsBlock, toStringRef(
+            (timelordData.getTimeZone() == null)
+                ? null : timelordData.getTimeZone().getID(),
+            strings,
+            stringIndex));
+
+        ByteArrayOutputStream stringsBlock = new ByteArrayOutputStream();
+        writeVarInt(stringsBlock, strings.size());
+
+        for (int i = 0; i < strings.size(); i++) {
+            byte[] stringBytes =
+                ((String) strings.get(i)).getBytes(STRING_ENCODING);
+            writeVarInt(stringsBlock, stringBytes.length);
+            stringsBlock.write(stringBytes);
+        }
+
+        writeBlock(dataOutput, BLOCK_STRINGS, stringsBlock.toByteArray());
+        writeBlock(dataOutput, BLOCK_SETTINGS, settingsBlock.toByteArray());
+
+        for (int i = 0; i < taskBlocks.size(); i++) {
+            writeBlock(dataOutput, BLOCK_TASKS, (byte[]) taskBlocks.get(i));
+        }
+
+        writeBlock(dataOutput, BLOCK_END, new byte[0]);
+        dataOutput.flush();
+
+        return output.toByteArray();
+    }
+
+    /**
+     * Encodes one task onto the end of a task block.
+     *
+     * @param timelordTask the task to encode
+     * @param output the block to write to
+     * @param strings the string table
+     * @param stringIndex the positions of the strings in the table
+     * @throws IOException indicates an error encoding
+     */
+    protected void encodeTask(TimelordTask timelordTask,
+            ByteArrayOutputStream output, List<String> strings,
+            Map<String, Integer> stringIndex) throws IOException {
+
+        TaskDayStore store = timelordTask.taskDayStore;
+
+        if ((store == null) || (timelordTask.unloadedDays != null)) {
+            store = timelordTask.snapshot().taskDayStore;
+        }
+
+        int flags = 0;
+
+        if (timelordTask.isExportable()) {
+            flags |= FLAG_EXPORTABLE;
+        }
+
+        if (timelordTask.isHidden()) {
+            flags |= FLAG_HIDDEN;
+        }
+
+        writeVarInt(output,
+            toStringRef(timelordTask.getTaskName(), strings, stringIndex));
+        writeVarInt(output, flags);
+        writeVarInt(output, store.size());
+
+        int previousDay = 0;
+
+        for (int i = 0; i < store.size(); i++) {
+            int epochDay = store.getEpochDay(i);
+
+            writeVarInt(output, toZigZag(previousDay - epochDay));
+            writeVarInt(output, toZigZag(store.getMinutes(i)));
+            writeVarInt(output,
+                toStringRef(store.getNote(epochDay), strings, stringIndex));
+
+            previousDay = epochDay;
+        }
+    }
+
+    /**
+     * Writes a block with its header and checksum.
+     *
+     * @param dataOutput the stream to write to
+     * @param type the type of the block
+     * @param payload the contents of the block
+     * @throws IOException indicates an error writing
+     */
+    protected void writeBlock(DataOutputStream dataOutput, byte type,
+            byte[] payload) throws IOException {
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        dataOutput.writeByte(type);
+        dataOutput.writeInt(payload.length);
+        dataOutput.write(payload);
+        dataOutput.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Decodes data from the binary format.
+     *
+     * @param bytes the encoded bytes
+     * @return the decoded data
+     * @throws TimelordDataException indicates the bytes are not a file this
+     *         version can read or are damaged
+     */
+    public TimelordData decode(byte[] bytes) throws TimelordDataException {
+        TimelordData timelordData = new TimelordData();
+        String[] strings = new String[0];
+        int firstLoadedDay = getFirstLoadedDay();
+        boolean isEnded = false;
+
+        try {
+            Cursor cursor = new Cursor(bytes, 0, bytes.length);
+
+            if (cursor.readInt() != MAGIC) {
+                throw new TimelordDataException("Not a Timelord data file");
+            }
+
+            int version = cursor.readShort();
+
+            if (version > FORMAT_VERSION) {
+                throw new TimelordDataException(
+                        "Unsupported file version [" + version + "]");
+            }
+
+            // The flags are reserved for later versions.
+            cursor.readShort();
+
+            while (!isEnded) {
+                byte type = cursor.readByte();
+                int length = cursor.readInt();
+                Cursor block = cursor.readBlock(length);
+
+                CRC32 crc = new CRC32();
+                crc.update(bytes, block.position, length);
+
+                if (cursor.readInt() != (int) crc.getValue()) {
+                    throw new TimelordDataException(
+                            "Checksum failed on block at ["
+                            + block.position + "]");
+                }
+
+                switch (type) {
+                case BLOCK_STRINGS:
+                    strings = decodeStrings(block);
+                    break;
+
+                case BLOCK_SETTINGS:
+                    timelordData.setDayStartTime(
+                        Double.longBitsToDouble(block.readLong()));
+
+                    String timeZoneId =
+                        fromStringRef(block.readVarInt(), strings);
+
+                    if (timeZoneId != null) {
+                        timelordData.setTimeZone(
+                            TimeZone.getTimeZone(timeZoneId));
+                    }
+
+                    break;
+
+                case BLOCK_TASKS:
+                    decodeTasks(block, strings, timelordData,
+                        firstLoadedDay);
+                    break;
+
+                case BLOCK_END:
+                    isEnded = true;
+                    break;
+
+                default:
+                    // Blocks added by later versions are skipped.
+                    if (log.isDebugEnabled()) {
+                        log.debug("Skipping block of type [" + type + "]");
+                    }
+                }
+            }
+        } catch (EOFException e) {
+            throw new TimelordDataException("File is truncated", e);
+        } catch (UnsupportedEncodingException e) {
+            throw new TimelordDataException("Failed to read strings", e);
+        }
+
+        return timelordData;
+    }
+
+    /**
+     * Decodes the string table.
+     *
+     * @param block the block holding the table
+     * @return the strings
+     * @throws EOFException if the block ends early
+     * @throws UnsupportedEncodingException if the encoding isn't supported
+     */
+    protected String[] decodeStrings(Cursor block)
+            throws EOFException, UnsupportedEncodingException {
+
+        String[] strings = new String[block.readVarInt()];
+
+        for (int i = 0; i < strings.length; i++) {
+            int length = block.readVarInt();
+            Cursor stringCursor = block.readBlock(length);
+
+            strings[i] = new String(
+                stringCursor.bytes,
+                stringCursor.position,
+                length,
+                STRING_ENCODING).intern();
+        }
+
+        return strings;
+    }
+
+    /**
+     * Decodes a block of tasks and adds them to the data.
+     *
+     * @param block the block holding the tasks
+     * @param strings the string table
+     * @param timelordData the data to add the tasks to
+     * @param firstLoadedDay the oldest day to load as days since the epoch
+     * @throws EOFException if the block ends early
+     */
+    protected void decodeTasks(Cursor block, String[] strings,
+            TimelordData timelordData, int firstLoadedDay)
+        throws EOFException {
+
+        int taskCount = block.readVarInt();
+
+        for (int i = 0; i < taskCount; i++) {
+            TimelordTask timelordTask =
+                new TimelordTask(fromStringRef(block.readVarInt(), strings));
+
+            int flags = block.readVarInt();
+            timelordTask.setExportable((flags & FLAG_EXPORTABLE) != 0);
+            timelordTask.setHidden((flags & FLAG_HIDDEN) != 0);
+
+            int dayCount = block.readVarInt();
+            TaskDayStore store = new TaskDayStore(dayCount);
+            int epochDay = 0;
+
+            for (int j = 0; j < dayCount; j++) {
+                epochDay -= fromZigZag(block.readVarInt());
+                int minutes = fromZigZag(block.readVarInt());
+                String note = fromStringRef(block.readVarInt(), strings);
+
+                store.insert(j, epochDay, minutes, note);
+            }
+
+            timelordTask.setDays(store, firstLoadedDay);
+            timelordData.taskCollection.add(timelordTask);
+        }
+    }
+
+    /**
+     * Gets the reference to a string in the string table, adding it to
+     * the table if it isn't there yet.
+     *
+     * @param string the string, which may be null
+     * @param strings the string table
+     * @param stringIndex the positions of the strings in the table
+     * @return zero for null, otherwise one more than the position in the
+     *         table
+     */
+    protected int toStringRef(String string, List<String> strings,
+            Map<String, Integer> stringIndex) {
+
+        if (string == null) {
+            return 0;
+        }
+
+        Integer index = (Integer) stringIndex.get(string);
+
+        if (index == null) {
+            index = Integer.valueOf(strings.size());
+            strings.add(string);
+            stringIndex.put(string, index);
+        }
+
+        return index.intValue() + 1;
+    }
+
+    /**
+     * Gets the string a reference points to.
+     *
+     * @param stringRef the reference
+     * @param strings the string table
+     * @return the string, or null for a reference of zero
+     */
+    protected String fromStringRef(int stringRef, String[] strings) {
+        return (stringRef == 0) ? null : strings[stringRef - 1];
+    }
+
+    /**
+     * Folds a signed number into an unsigned one so that small negative
+     * numbers stay small.
+     *
+     * @param value the signed number
+     * @return the folded number
+     */
+    protected static int toZigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    /**
+     * Unfolds a number folded by toZigZag.
+     *
+     * @param value the folded number
+     * @return the signed number
+     */
+    protected static int fromZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Writes an unsigned number seven bits at a time, lowest first, with
+     * the top bit of each byte set if more follow.
+     *
+     * @param output the stream to write to
+     * @param value the number to write
+     */
+    protected static void writeVarInt(ByteArrayOutputStream output,
+            int value) {
+
+        while ((value & ~0x7F) != 0) {
+            output.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        output.write(value);
+    }
+
+    /**
+     * Reads through a part of a byte array.  This is used in place of a
+     * DataInputStream so blocks can be handed around without copying.
+     */
+    protected static class Cursor {
+        /** The bytes being read. */
+        protected byte[] bytes;
+
+        /** The position of the next byte to read. */
+        protected int position;
+
+        /** The position just past the last byte that can be read. */
+        protected int limit;
+
+        /**
+         * Creates a cursor over part of a byte array.
+         *
+         * @param bytes the bytes to read
+         * @param position the first byte to read
+         * @param limit the position just past the last byte to read
+         */
+        public Cursor(byte[] bytes, int position, int limit) {
+            this.bytes = bytes;
+            this.position = position;
+            this.limit = limit;
+        }
+
+        /**
+         * Splits off the next bytes as a cursor of their own and moves past
+         * them.
+         *
+         * @param length the number of bytes
+         * @return a cursor over the bytes
+         * @throws EOFException if there aren't enough bytes left
+         */
+        public Cursor readBlock(int length) throws EOFException {
+            if ((length < 0) || (length > (limit - position))) {
+                throw new EOFException();
+            }
+
+            Cursor block = new Cursor(bytes, position, position + length);
+            position += length;
+
+            return block;
+        }
+
+        /**
+         * Reads one byte.
+         *
+         * @return the byte
+         * @throws EOFException if there are no bytes left
+         */
+        public byte readByte() throws EOFException {
+            if (position >= limit) {
+                throw new EOFException();
+            }
+
+            return bytes[position++];
+        }
+
+        /**
+         * Reads a big endian short.
+         *
+         * @return the short
+         * @throws EOFException if there aren't enough bytes left
+         */
+        public short readShort() throws EOFException {
+            return (short) (((readByte() & 0xFF) << 8) | (readByte() & 0xFF));
+        }
+
+        /**
+         * Reads a big endian int.
+         *
+         * @return the int
+         * @throws EOFException if there aren't enough bytes left
+         */
+        public int readInt() throws EOFException {
+            return ((readByte() & 0xFF) << 24) | ((readByte() & 0xFF) << 16)
+                | ((readByte() & 0xFF) << 8) | (readByte() & 0xFF);
+        }
+
+        /**
+         * Reads a big endian long.
+         *
+         * @return the long
+         * @throws EOFException if there aren't enough bytes left
+         */
+        public long readLong() throws EOFException {
+            return (((long) readInt()) << 32) | (readInt() & 0xFFFFFFFFL);
+        }
+
+        /**
+         * Reads a number written by writeVarInt.
+         *
+         * @return the number
+         * @throws EOFException if there aren't enough bytes left
+         */
+        public int readVarInt() throws EOFException {
+            int value = 0;
+            int shift = 0;
+            byte next;
+
+            do {
+                next = readByte();
+                value |= (next & 0x7F) << shift;
+                shift += 7;
+            } while ((next & 0x80) != 0);
+
+            return value;
+        }
+    }
+}
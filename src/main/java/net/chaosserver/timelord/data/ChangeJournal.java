@@ -0,0 +1,793 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.data;
+
+import net.chaosserver.timelord.util.EpochDay;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+
+/**
+ * An append only journal of the changes made to the data since it was last
+ * written out in full.  Each change is a small record holding the new
+ * value of a day, the flags of a task, a removed or renamed task or the
+ * settings, so records can be applied again without harm.
+ * <p>
+ * Changes are found by comparing a snapshot of the data against the one
+ * recorded last, which only has to look at the tasks whose snapshot is
+ * new.  Tasks are matched by name, or by the task they are a snapshot of
+ * when the name has changed, so a renamed task carries its days with it.
+ * All the records found are appended and synced to disk together, so one
+ * sync covers every change since the last call.  Once the data has been
+ * written out in full the journal is cleared.  At startup the records are
+ * replayed on top of the data read from the main file.
+ * <p>
+ * Each record is framed as its length, the record and a CRC32 of the
+ * record, so a record cut short by a crash is found and dropped.
+ * <p>
+ * The first record is a stamp of the main file the journal was started
+ * against.  If the main file has been written since, which happens when
+ * the application stops after replacing it but before clearing the
+ * journal, the records are older than the data and the journal is dropped
+ * rather than replayed.
+ */
+public class ChangeJournal {
+    /** Logger. */
+    private static Log log = LogFactory.getLog(ChangeJournal.class);
+
+    /** Extension added to the name of the main file for the journal. */
+    public static final String JOURNAL_EXTENSION = ".journal";
+
+    /** Record holding the settings. */
+    protected static final byte RECORD_SETTINGS = 1;
+
+    /** Record holding a task and its flags. */
+    protected static final byte RECORD_TASK = 2;
+
+    /** Record for a task that has been removed. */
+    protected static final byte RECORD_REMOVE_TASK = 3;
+
+    /** Record holding the minutes and note of one day of a task. */
+    protected static final byte RECORD_DAY = 4;
+
+    /** Record holding the stamp of the main file the journal applies to. */
+    protected static final byte RECORD_STAMP = 5;
+
+    /** Record for a task that has been renamed. */
+    protected static final byte RECORD_RENAME_TASK = 6;
+
+    /** The encoding of the strings in the records. */
+    protected static final String STRING_ENCODING = "UTF-8";
+
+    /** The journal file. */
+    protected File journalFile;
+
+    /** The stream records are appended to, or null if it isn't open. */
+    protected FileOutputStream journalStream;
+
+    /** The stamp of the main file the records apply on top of. */
+    protected long dataStamp;
+
+    /** The snapshot of the data as last recorded. */
+    protected TimelordData recordedData;
+
+    /** The task snapshots as last recorded, keyed by task name. */
+    protected Map<String, TimelordTask> recordedTasks =
+        new HashMap<String, TimelordTask>();
+
+    /**
+     * The task snapshots as last recorded, keyed by the task each is a
+     * snapshot of.
+     */
+    protected Map<TimelordTask, TimelordTask> recordedSources =
+        new HashMap<TimelordTask, TimelordTask>();
+
+    /**
+     * Creates a journal kept in the given file.
+     *
+     * @param journalFile the journal file
+     */
+    public ChangeJournal(File journalFile) {
+        this.journalFile = journalFile;
+    }
+
+    /**
+     * Gets the journal file used alongside a main data file.
+     *
+     * @param dataFile the main data file
+     * @return the journal file
+     */
+    public static File getJournalFile(File dataFile) {
+        return new File(dataFile.getPath() + JOURNAL_EXTENSION);
+    }
+
+    /**
+     * Appends records for everything that differs between a snapshot and
+     * the one recorded last, and syncs them to disk.
+     *
+     * @param timelordData a snapshot of the data
+     * @throws TimelordDataException indicates an error writing the journal
+     */
+    public synchronized void record(TimelordData timelordData)
+            throws TimelordDataException {
+
+        if (timelordData == recordedData) {
+            return;
+        }
+
+        try {
+            ByteArrayOutputStream buffer = diff(timelordData);
+
+            if (buffer.size() > 0) {
+                if (journalStream == null) {
+                    journalFile.getAbsoluteFile().getParentFile().mkdirs();
+                    journalStream = new FileOutputStream(journalFile, true);
+                }
+
+                if (journalFile.length() == 0) {
+                    ByteArrayOutputStream stampBuffer =
+                        new ByteArrayOutputStream();
+                    ByteArrayOutputStream recordBytes =
+                        new ByteArrayOutputStream();
+                    DataOutputStream record = new DataOutputStream(recordBytes);
+                    record.writeByte(RECORD_STAMP);
+                    record.writeLong(dataStamp);
+                    appendRecord(stampBuffer, recordBytes);
+                    stampBuffer.writeTo(journalStream);
+                }
+
+                buffer.writeTo(journalStream);
+                journalStream.flush();
+                journalStream.getFD().sync();
+
+                if (log.isDebugEnabled()) {
+                    log.debug(
+                            "Appended [" + buffer.size() + "] bytes to ["
+                            + journalFile + "]");
+                }
+            }
+        } catch (IOException e) {
+            throw new TimelordDataException("Failed to write journal", e);
+        }
+
+        remember(timelordData);
+    }
+
+    /**
+     * Applies everything that differs between two snapshots to other data
+     * directly, the same way the records would be replayed from a journal.
+     *
+     * @param fromData the snapshot the changes start from
+     * @param toData the snapshot the changes lead to
+     * @param timelordData the data to apply the changes to
+     * @throws TimelordDataException indicates an error applying the changes
+     */
+    public static void copyChanges(TimelordData fromData, TimelordData toData,
+            TimelordData timelordData) throws TimelordDataException {
+
+        ChangeJournal changeJournal = new ChangeJournal(null);
+        changeJournal.remember(fromData);
+
+        try {
+            byte[] bytes = changeJournal.diff(toData).toByteArray();
+            changeJournal.applyRecords(timelordData, bytes);
+        } catch (IOException e) {
+            throw new TimelordDataException("Failed to copy changes", e);
+        }
+    }
+
+    /**
+     * Builds the records for everything that differs between a snapshot
+     * and the one recorded last.
+     *
+     * @param timelordData a snapshot of the data
+     * @return the records, which may be empty
+     * @throws IOException indicates an error writing the records
+     */
+    protected ByteArrayOutputStream diff(TimelordData timelordData)
+            throws IOException {
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        if ((recordedData == null) || (recordedData.getDayStartTime()
+                != timelordData.getDayStartTime())) {
+
+            ByteArrayOutputStream recordBytes =
+                new ByteArrayOutputStream();
+            DataOutputStream record = new DataOutputStream(recordBytes);
+            record.writeByte(RECORD_SETTINGS);
+            record.writeDouble(timelordData.getDayStartTime());
+            appendRecord(buffer, recordBytes);
+        }
+
+        Set<String> taskNames = new HashSet<String>();
+        Iterator<TimelordTask> taskIterator =
+            timelordData.getTaskCollection().iterator();
+
+        while (taskIterator.hasNext()) {
+            taskNames.add(((TimelordTask) taskIterator.next())
+                .getTaskName());
+        }
+
+        // A task with a new name that was recorded under a name that is
+        // now gone has been renamed.
+        Map<TimelordTask, TimelordTask> renamedTasks =
+            new HashMap<TimelordTask, TimelordTask>();
+        Set<String> renamedNames = new HashSet<String>();
+        taskIterator = timelordData.getTaskCollection().iterator();
+
+        while (taskIterator.hasNext()) {
+            TimelordTask timelordTask = (TimelordTask) taskIterator.next();
+
+            if ((timelordTask.snapshotSource != null)
+                    && !recordedTasks.containsKey(
+                        timelordTask.getTaskName())) {
+
+                TimelordTask recordedTask = (TimelordTask)
+                    recordedSources.get(timelordTask.snapshotSource);
+
+                if ((recordedTask != null)
+                        && !taskNames.contains(recordedTask.getTaskName())
+                        && renamedNames.add(recordedTask.getTaskName())) {
+
+                    renamedTasks.put(timelordTask, recordedTask);
+                }
+            }
+        }
+
+        // Removals go first so a task renamed to a different case of
+        // the same name isn't removed after it is recorded.
+        Iterator<String> recordedNameIterator =
+            recordedTasks.keySet().iterator();
+
+        while (recordedNameIterator.hasNext()) {
+            String taskName = (String) recordedNameIterator.next();
+
+            if (!taskNames.contains(taskName)
+                    && !renamedNames.contains(taskName)) {
+
+                ByteArrayOutputStream recordBytes =
+                    new ByteArrayOutputStream();
+                DataOutputStream record = new DataOutputStream(recordBytes);
+                record.writeByte(RECORD_REMOVE_TASK);
+                writeString(record, taskName);
+                appendRecord(buffer, recordBytes);
+            }
+        }
+
+        taskIterator = timelordData.getTaskCollection().iterator();
+
+        while (taskIterator.hasNext()) {
+            TimelordTask timelordTask = (TimelordTask) taskIterator.next();
+            TimelordTask recordedTask = (TimelordTask) recordedTasks.get(
+                timelordTask.getTaskName());
+
+            if (recordedTask == null) {
+                recordedTask =
+                    (TimelordTask) renamedTasks.get(timelordTask);
+
+                if (recordedTask != null) {
+                    ByteArrayOutputStream recordBytes =
+                        new ByteArrayOutputStream();
+                    DataOutputStream record =
+                        new DataOutputStream(recordBytes);
+                    record.writeByte(RECORD_RENAME_TASK);
+                    writeString(record, recordedTask.getTaskName());
+                    writeString(record, timelordTask.getTaskName());
+                    appendRecord(buffer, recordBytes);
+                }
+            }
+
+            if (recordedTask != timelordTask) {
+                recordTask(buffer, recordedTask, timelordTask);
+            }
+        }
+
+        return buffer;
+    }
+
+    /**
+     * Adds the records for one task that has changed.
+     *
+     * @param buffer the records to add to
+     * @param recordedTask the task as last recorded, or null if it is new
+     * @param timelordTask the task as it is now
+     * @throws IOException indicates an error writing the records
+     */
+    protected void recordTask(ByteArrayOutputStream buffer,
+            TimelordTask recordedTask, TimelordTask timelordTask)
+        throws IOException {
+
+        String taskName = timelordTask.getTaskName();
+
+        if ((recordedTask == null)
+                || (recordedTask.isExportable() != timelordTask.isExportable())
+                || (recordedTask.isHidden() != timelordTask.isHidden())) {
+
+            ByteArrayOutputStream recordBytes =
+                new ByteArrayOutputStream();
+            DataOutputStream record = new DataOutputStream(recordBytes);
+            record.writeByte(RECORD_TASK);
+            writeString(record, taskName);
+            record.writeBoolean(timelordTask.isExportable());
+            record.writeBoolean(timelordTask.isHidden());
+            appendRecord(buffer, recordBytes);
+        }
+
+        TaskDayStore oldStore = getStore(recordedTask);
+        TaskDayStore newStore = getStore(timelordTask);
+        int oldSize = (oldStore == null) ? 0 : oldStore.size();
+        int newSize = newStore.size();
+        int oldIndex = 0;
+        int newIndex = 0;
+
+        // Both are newest first, so walk them together.
+        while ((oldIndex < oldSize) || (newIndex < newSize)) {
+            int oldDay = (oldIndex < oldSize)
+                ? oldStore.getEpochDay(oldIndex) : Integer.MIN_VALUE;
+            int newDay = (newIndex < newSize)
+                ? newStore.getEpochDay(newIndex) : Integer.MIN_VALUE;
+
+            if (oldDay > newDay) {
+                // The day is gone, so record it as empty.
+                recordDay(buffer, taskName, oldDay, 0, null);
+                oldIndex++;
+            } else if (newDay > oldDay) {
+                recordDay(buffer, taskName, newDay,
+                    newStore.getMinutes(newIndex), newStore.getNote(newDay));
+                newIndex++;
+            } else {
+                String oldNote = oldStore.getNote(oldDay);
+                String newNote = newStore.getNote(newDay);
+
+                if ((oldStore.getMinutes(oldIndex)
+                        != newStore.getMinutes(newIndex))
+                        || ((oldNote == null)
+                            ? (newNote != null) : !oldNote.equals(newNote))) {
+
+                    recordDay(buffer, taskName, newDay,
+                        newStore.getMinutes(newIndex), newNote);
+                }
+
+                oldIndex++;
+                newIndex++;
+            }
+        }
+    }
+
+    /**
+     * Adds the record for one day of a task.
+     *
+     * @param buffer the records to add to
+     * @param taskName the name of the task
+     * @param epochDay the day as days since the epoch
+     * @param minutes the minutes tracked on the day
+     * @param note the note for the day or null
+     * @throws IOException indicates an error writing the record
+     */
+    protected void recordDay(ByteArrayOutputStream buffer,
+            String taskName, int epochDay, int minutes, String note)
+        throws IOException {
+
+        ByteArrayOutputStream recordBytes =
+            new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(recordBytes);
+        record.writeByte(RECORD_DAY);
+        writeString(record, taskName);
+        record.writeInt(epochDay);
+        record.writeInt(minutes);
+        record.writeBoolean(note != null);
+
+        if (note != null) {
+            writeString(record, note);
+        }
+
+        appendRecord(buffer, recordBytes);
+    }
+
+    /**
+     * Adds a record to the end of the buffer with its length and checksum.
+     *
+     * @param buffer the records to add to
+     * @param recordBytes the record
+     * @throws IOException indicates an error writing the record
+     */
+    protected void appendRecord(ByteArrayOutputStream buffer,
+            ByteArrayOutputStream recordBytes) throws IOException {
+
+        byte[] bytes = recordBytes.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        DataOutputStream output = new DataOutputStream(buffer);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+        output.writeInt((int) crc.getValue());
+        output.flush();
+    }
+
+    /**
+     * Clears the journal after the data has been written out in full.
+     *
+     * @param timelordData the snapshot of the data that was written
+     * @param dataStamp the stamp of the main file as written
+     * @throws TimelordDataException indicates an error clearing the journal
+     */
+    public synchronized void reset(TimelordData timelordData, long dataStamp)
+            throws TimelordDataException {
+
+        try {
+            if (journalStream != null) {
+                journalStream.close();
+                journalStream = null;
+            }
+
+            if (journalFile.exists() && !journalFile.delete()) {
+                throw new TimelordDataException(
+                        "Failed to delete [" + journalFile + "]");
+            }
+        } catch (IOException e) {
+            throw new TimelordDataException("Failed to clear journal", e);
+        }
+
+        this.dataStamp = dataStamp;
+        remember(timelordData);
+    }
+
+    /**
+     * Applies the records in the journal to data that has just been read
+     * from the main file.  A damaged record ends the replay and is cut off
+     * the journal, along with anything after it, so new records follow the
+     * last good one.  A journal started against a different version of
+     * the main file is deleted without being replayed.
+     *
+     * @param timelordData the data to apply the records to
+     * @param dataStamp the stamp of the main file the data was read from
+     * @throws TimelordDataException indicates an error reading the journal
+     */
+    public synchronized void replay(TimelordData timelordData,
+            long dataStamp) throws TimelordDataException {
+
+        this.dataStamp = dataStamp;
+
+        if (journalFile.exists()) {
+            try {
+                byte[] bytes = new byte[(int) journalFile.length()];
+                InputStream inputStream = new FileInputStream(journalFile);
+
+                try {
+                    new DataInputStream(inputStream).readFully(bytes);
+                } finally {
+                    inputStream.close();
+                }
+
+                int position = 0;
+
+                if ((bytes.length > 0) && !isStamped(bytes, dataStamp)) {
+                    if (log.isWarnEnabled()) {
+                        log.warn(
+                                "Dropping [" + journalFile + "], it wasn't "
+                                + "started against this version of the "
+                                + "data");
+                    }
+                } else {
+                    position = applyRecords(timelordData, bytes);
+
+                    if (log.isInfoEnabled()) {
+                        log.info(
+                                "Replayed [" + position + "] bytes of "
+                                + "changes from [" + journalFile + "]");
+                    }
+
+                    if ((position < bytes.length) && log.isWarnEnabled()) {
+                        log.warn(
+                                "Dropping [" + (bytes.length - position)
+                                + "] damaged bytes from the end of ["
+                                + journalFile + "]");
+                    }
+                }
+
+                if (position < bytes.length) {
+                    RandomAccessFile randomAccessFile =
+                        new RandomAccessFile(journalFile, "rw");
+
+                    try {
+                        randomAccessFile.setLength(position);
+                    } finally {
+                        randomAccessFile.close();
+                    }
+                }
+            } catch (IOException e) {
+                throw new TimelordDataException("Failed to read journal", e);
+            }
+        }
+
+        remember(timelordData.snapshot());
+    }
+
+    /**
+     * Checks if the journal starts with a stamp record for the given
+     * version of the main file.
+     *
+     * @param bytes the journal
+     * @param dataStamp the stamp of the main file
+     * @return true if the journal was started against that version
+     */
+    protected boolean isStamped(byte[] bytes, long dataStamp) {
+        boolean isStamped = false;
+
+        if (bytes.length >= 17) {
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 4, 9);
+
+            isStamped = (readInt(bytes, 0) == 9)
+                && (bytes[4] == RECORD_STAMP)
+                && (readLong(bytes, 5) == dataStamp)
+                && (readInt(bytes, 13) == (int) crc.getValue());
+        }
+
+        return isStamped;
+    }
+
+    /**
+     * Applies the records in a buffer to the data, up to the first damaged
+     * one.
+     *
+     * @param timelordData the data to apply the records to
+     * @param bytes the records
+     * @return the length of the good records at the start of the buffer
+     * @throws IOException indicates an error reading a record
+     */
+    protected int applyRecords(TimelordData timelordData, byte[] bytes)
+            throws IOException {
+
+        int position = 0;
+
+        while (position + 8 <= bytes.length) {
+            int length = readInt(bytes, position);
+
+            if ((length <= 0) || (length > (bytes.length - position - 8))) {
+                break;
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(bytes, position + 4, length);
+
+            if (readInt(bytes, position + 4 + length)
+                    != (int) crc.getValue()) {
+                break;
+            }
+
+            apply(timelordData, new DataInputStream(
+                new ByteArrayInputStream(bytes, position + 4, length)));
+
+            position += length + 8;
+        }
+
+        return position;
+    }
+
+    /**
+     * Applies one record to the data.
+     *
+     * @param timelordData the data to apply the record to
+     * @param record the record
+     * @throws IOException indicates an error reading the record
+     */
+    protected void apply(TimelordData timelordData, DataInputStream record)
+            throws IOException {
+
+        byte type = record.readByte();
+
+        if (type == RECORD_SETTINGS) {
+            timelordData.setDayStartTime(record.readDouble());
+        } else if (type == RECORD_REMOVE_TASK) {
+            TimelordTask timelordTask =
+                timelordData.getTask(readString(record));
+
+            if (timelordTask != null) {
+                timelordData.removeTask(timelordTask);
+            }
+        } else if (type == RECORD_RENAME_TASK) {
+            TimelordTask timelordTask =
+                timelordData.getTask(readString(record));
+            String taskName = readString(record);
+
+            // Taken out and put back so the data finds it by the new name
+            // even before it is listening to its tasks, and so it merges
+            // with a task that already has the name.
+            if (timelordTask != null) {
+                timelordData.removeTask(timelordTask);
+                timelordTask.setTaskName(taskName);
+                timelordData.addTask(timelordTask);
+            }
+        } else if (type == RECORD_TASK) {
+            TimelordTask timelordTask =
+                findTask(timelordData, readString(record));
+
+            timelordTask.setExportable(record.readBoolean());
+            timelordTask.setHidden(record.readBoolean());
+        } else if (type == RECORD_STAMP) {
+            // Checked before the replay starts.
+            record.readLong();
+        } else if (type == RECORD_DAY) {
+            TimelordTask timelordTask =
+                findTask(timelordData, readString(record));
+            EpochDay day = new EpochDay(record.readInt());
+            int minutes = record.readInt();
+            String note = record.readBoolean() ? readString(record) : null;
+
+            TimelordTaskDay timelordTaskDay = timelordTask.getTaskDay(
+                day, (minutes != 0) || (note != null));
+
+            if (timelordTaskDay != null) {
+                timelordTaskDay.addMinutes(
+                    minutes - timelordTaskDay.getMinutes());
+
+                if ((note == null)
+                        ? (timelordTaskDay.getNote() != null)
+                        : !note.equals(timelordTaskDay.getNote())) {
+
+                    timelordTaskDay.setNote(note);
+                }
+            }
+        } else if (log.isWarnEnabled()) {
+            log.warn("Skipping journal record of type [" + type + "]");
+        }
+    }
+
+    /**
+     * Finds a task by name, adding it if there isn't one.
+     *
+     * @param timelordData the data to look in
+     * @param taskName the name of the task
+     * @return the task
+     */
+    protected TimelordTask findTask(TimelordData timelordData,
+            String taskName) {
+
+        TimelordTask timelordTask = timelordData.getTask(taskName);
+
+        if (timelordTask == null) {
+            timelordTask = new TimelordTask(taskName);
+            timelordData.addTask(timelordTask);
+        }
+
+        return timelordTask;
+    }
+
+    /**
+     * Records a snapshot as the state that is now on disk.
+     *
+     * @param timelordData the snapshot
+     */
+    protected void remember(TimelordData timelordData) {
+        recordedData = timelordData;
+        recordedTasks.clear();
+        recordedSources.clear();
+
+        Iterator<TimelordTask> taskIterator =
+            timelordData.getTaskCollection().iterator();
+
+        while (taskIterator.hasNext()) {
+            TimelordTask timelordTask = (TimelordTask) taskIterator.next();
+            recordedTasks.put(timelordTask.getTaskName(), timelordTask);
+
+            if (timelordTask.snapshotSource != null) {
+                recordedSources.put(timelordTask.snapshotSource, timelordTask);
+            }
+        }
+    }
+
+    /**
+     * Gets the days of a task snapshot.
+     *
+     * @param taskSnapshot the snapshot, or null
+     * @return the days, or null if there is no snapshot
+     */
+    protected TaskDayStore getStore(TimelordTask taskSnapshot) {
+        TaskDayStore store = null;
+
+        if (taskSnapshot != null) {
+            store = taskSnapshot.taskDayStore;
+
+            if ((store == null) || (taskSnapshot.unloadedDays != null)) {
+                store = taskSnapshot.snapshot().taskDayStore;
+            }
+        }
+
+        return store;
+    }
+
+    /**
+     * Writes a string as its length and its UTF-8 bytes.
+     *
+     * @param output the stream to write to
+     * @param string the string
+     * @throws IOException indicates an error writing
+     */
+    protected static void writeString(DataOutputStream output, String string)
+            throws IOException {
+
+        byte[] bytes = string.getBytes(STRING_ENCODING);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Reads a string written by writeString.
+     *
+     * @param input the stream to read from
+     * @return the string
+     * @throws IOException indicates an error reading
+     */
+    protected static String readString(DataInputStream input)
+            throws IOException {
+
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+
+        return new String(bytes, STRING_ENCODING);
+    }
+
+    /**
+     * Reads a big endian int out of a byte array.
+     *
+     * @param bytes the bytes
+     * @param position the position of the first byte
+     * @return the int
+     */
+    protected static int readInt(byte[] bytes, int position) {
+        return ((bytes[position] & 0xFF) << 24)
+            | ((bytes[position + 1] & 0xFF) << 16)
+            | ((bytes[position + 2] & 0xFF) << 8)
+            | (bytes[position + 3] & 0xFF);
+    }
+
+    /**
+     * Reads a big endian long from a buffer.
+     *
+     * @param bytes the buffer
+     * @param position where the long starts
+     * @return the long
+     */
+    protected static long readLong(byte[] bytes, int position) {
+        return (((long) readInt(bytes, position)) << 32)
+            | (readInt(bytes, position + 4) & 0xFFFFFFFFL);
+    }
+}
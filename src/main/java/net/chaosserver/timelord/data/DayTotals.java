@@ -0,0 +1,90 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.data;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Running totals of the minutes tracked on each day across all tasks.  Two
+ * totals are kept for each day, one for the exportable tasks only and one
+ * for every task.  Days with nothing tracked are not held at all.
+ * <p>
+ * Changes are guarded by the owning TimelordData.  The totals are held in a
+ * concurrent map so that an optimistic read racing with a change can't
+ * break, it can only see a value that the owner then throws away.
+ */
+public class DayTotals {
+    /** Position of the exportable total in the totals for a day. */
+    private static final int EXPORTABLE = 0;
+
+    /** Position of the total for all tasks in the totals for a day. */
+    private static final int ALL = 1;
+
+    /** The totals for each day keyed by epoch day. */
+    protected Map<Integer, int[]> totals =
+        new ConcurrentHashMap<Integer, int[]>();
+
+    /**
+     * Adds minutes to the totals of a day.  The minutes may be negative to
+     * take time away.
+     *
+     * @param epochDay the day as days since the epoch
+     * @param exportableMinutes the minutes to add to the exportable total
+     * @param allMinutes the minutes to add to the total for all tasks
+     */
+    public void add(int epochDay, int exportableMinutes, int allMinutes) {
+        if ((exportableMinutes != 0) || (allMinutes != 0)) {
+            Integer key = Integer.valueOf(epochDay);
+            int[] dayTotal = (int[]) totals.get(key);
+
+            if (dayTotal == null) {
+                dayTotal = new int[2];
+                totals.put(key, dayTotal);
+            }
+
+            dayTotal[EXPORTABLE] += exportableMinutes;
+            dayTotal[ALL] += allMinutes;
+
+            if ((dayTotal[EXPORTABLE] == 0) && (dayTotal[ALL] == 0)) {
+                totals.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Gets the total minutes tracked on a day.
+     *
+     * @param epochDay the day as days since the epoch
+     * @param includeNonExportable flag if the non-exportable time should
+     *        be included
+     * @return the total minutes for the day
+     */
+    public int getMinutes(int epochDay, boolean includeNonExportable) {
+        int[] dayTotal = (int[]) totals.get(Integer.valueOf(epochDay));
+
+        if (dayTotal == null) {
+            return 0;
+        } else if (includeNonExportable) {
+            return dayTotal[ALL];
+        } else {
+            return dayTotal[EXPORTABLE];
+        }
+    }
+}
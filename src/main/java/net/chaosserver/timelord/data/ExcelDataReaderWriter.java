@@ -33,6 +33,7 @@ import java.util.Map;
 import java.util.TreeMap;
 import javax.swing.filechooser.FileFilter;
 
+import net.chaosserver.timelord.util.EpochDay;
 import net.chaosserver.timelord.util.OsUtil;
 
 import org.apache.commons.logging.Log;
@@ -321,15 +322,15 @@ public class ExcelDataReaderWriter extends TimelordDataReaderWriter {
             Map<String, List<String>> sheetToNotes,
             Map<String, HSSFCellStyle> styleMap) {
 
-        // This holds the most recent date in the entire data file.
-        // This date starts out as null, and any time a task if found
-        // with a more recent date it replaces this value.
-        Date mostRecentDate = null;
+        // This holds the most recent day in the entire data file.
+        // This day starts out as null, and any time a task if found
+        // with a more recent day it replaces this value.
+        EpochDay mostRecentDay = null;
 
-        // This holds the oldest date in the entire data file.
-        // This date starts out null and any time a task is found
-        // with an older date it is replaced with this one.
-        Date oldestDate = null;
+        // This holds the oldest day in the entire data file.
+        // This day starts out null and any time a task is found
+        // with an older day it is replaced with this one.
+        EpochDay oldestDay = null;
 
         List<TimelordTask> taskCollection = timelordData.getTaskCollection();
         Iterator<TimelordTask> taskIterator = taskCollection.iterator();
@@ -349,90 +350,60 @@ public class ExcelDataReaderWriter extends TimelordDataReaderWriter {
                 if (!taskDayList.isEmpty()) {
 
                     // Since the days associated with this task aren't empty,
-                    // pull out the first task.  This is the most recent day
-                    // that has time tracked to it.
-                    TimelordTaskDay firstDay
-                        = (TimelordTaskDay) taskDayList.get(0);
-
-                    // If the first date in this task is more recent than the
-                    // most recent temporary date, replace it with this one.
-                    if (mostRecentDate == null
-                            || mostRecentDate.before(firstDay.getDate())) {
-
-                        if (logger.isTraceEnabled()) {
-                            logger.trace("Updating mostRecentDate from ["
-                                    + mostRecentDate
-                                    + "] to ["
-                                    + firstDay.getDate()
-                                    + "]");
-                        }
-                        mostRecentDate = firstDay.getDate();
+                    // pull out the first and last days.  The list is sorted
+                    // so these are the most recent and oldest days, but
+                    // both are checked against both ends as a double check.
+                    EpochDay firstDay = ((TimelordTaskDay)
+                        taskDayList.get(0)).getDay();
+                    EpochDay lastDay = ((TimelordTaskDay)
+                        taskDayList.get(taskDayList.size() - 1)).getDay();
+
+                    if (mostRecentDay == null
+                            || mostRecentDay.isBefore(firstDay)) {
+                        mostRecentDay = firstDay;
                     }
-
-                    // Just as a double check see if the earliest date is
-                    // the oldest and do the replacement.
-                    if (oldestDate == null
-                            || oldestDate.after(firstDay.getDate())) {
-
-                        if (logger.isTraceEnabled()) {
-                            logger.trace("Updating oldestDate from ["
-                                    + oldestDate
-                                    + "] to ["
-                                    + firstDay.getDate()
-                                    + "]");
-                        }
-                        oldestDate = firstDay.getDate();
+                    if (mostRecentDay.isBefore(lastDay)) {
+                        mostRecentDay = lastDay;
                     }
 
-                    // Grab the very last item in the list.  This should
-                    // be the oldest date associated with the task.
-                    TimelordTaskDay lastDay = (TimelordTaskDay)
-                        taskDayList.get(taskDayList.size() - 1);
-
-                    if (mostRecentDate == null
-                            || mostRecentDate.before(lastDay.getDate())) {
-
-                        if (logger.isTraceEnabled()) {
-                            logger.trace("Updating mostRecentDate from ["
-                                    + mostRecentDate
-                                    + "] to ["
-                                    + lastDay.getDate()
-                                    + "]");
-                        }
-                        mostRecentDate = lastDay.getDate();
+                    if (oldestDay == null
+                            || oldestDay.isAfter(firstDay)) {
+                        oldestDay = firstDay;
                     }
-                    if (oldestDate == null
-                            || oldestDate.after(lastDay.getDate())) {
-
-                        if (logger.isTraceEnabled()) {
-                            logger.trace("Updating oldestDate from ["
-                                    + oldestDate
-                                    + "] to ["
-                                    + lastDay.getDate()
-                                    + "]");
-                        }
-                        oldestDate = lastDay.getDate();
+                    if (oldestDay.isAfter(lastDay)) {
+                        oldestDay = lastDay;
+                    }
+
+                    if (logger.isTraceEnabled()) {
+                        logger.trace("Range is now ["
+                                + oldestDay
+                                + "] to ["
+                                + mostRecentDay
+                                + "]");
                     }
                 }
             }
         }
         if (logger.isDebugEnabled()) {
-            logger.debug("Found the oldestDate ["
-                    + oldestDate
-                    + "] to the mostRecentDate ["
-                    + mostRecentDate
+            logger.debug("Found the oldestDay ["
+                    + oldestDay
+                    + "] to the mostRecentDay ["
+                    + mostRecentDay
                     + "]");
         }
 
-        Calendar createSheetsCalendar = Calendar.getInstance();
-        createSheetsCalendar.setTime(mostRecentDate);
+        if (mostRecentDay == null) {
+            return;
+        }
+
+        // Start at the week of the most recent day in the system and roll
+        // back a week at a time creating the sheets until all the days
+        // have been covered.
+        EpochDay weekStart = mostRecentDay.getWeekStart();
+        EpochDay oldestWeekStart = oldestDay.getWeekStart();
 
-        // Start at the most recent date in the system and roll back
-        // the dates creating the sheets until all the dates have been
-        // covered.
-        while (createSheetsCalendar.getTime().after(oldestDate)) {
-            Date weekStartDate =
-                convertToWeekStart(createSheetsCalendar.getTime());
+        while (!weekStart.isBefore(oldestWeekStart)) {
+            Date weekStartDate = weekStart.toDate();
 
             String sheetName = sheetNameFormat.format(weekStartDate);
             HSSFSheet sheet = workbook.getSheet(sheetName);
@@ -446,7 +417,7 @@ public class ExcelDataReaderWriter extends TimelordDataReaderWriter {
                 sheetToNotes.put(sheetName, new ArrayList<String>());
                 createHeaderRows(sheet, weekStartDate, styleMap);
             }
-            createSheetsCalendar.add(Calendar.DAY_OF_YEAR, -1);
+            weekStart = weekStart.plusDays(-EpochDay.DAYS_IN_WEEK);
         }
     }
 
@@ -469,6 +440,10 @@ public class ExcelDataReaderWriter extends TimelordDataReaderWriter {
         // Start on row number two.  The first row contains the header data.
         int rowNum = 2;
 
+        // Sheet names by the epoch day of the start of the week, so the
+        // date only needs to be built and formatted once per week.
+        Map<Integer, String> weekSheetNames = new HashMap<Integer, String>();
+
         List<TimelordTask> taskCollection = timelordData.getTaskCollection();
         Iterator<TimelordTask> taskIterator = taskCollection.iterator();
         while (taskIterator.hasNext()) {
@@ -492,23 +467,30 @@ public class ExcelDataReaderWriter extends TimelordDataReaderWriter {
                     TimelordTaskDay timelordTaskDay =
                         (TimelordTaskDay) taskDayIterator.next();
 
-                    Date timelordDate = timelordTaskDay.getDate();
+                    EpochDay timelordDay = timelordTaskDay.getDay();
                     double hours = timelordTaskDay.getHours();
 
                     if (logger.isDebugEnabled()) {
                         logger.debug("Processing task named ["
                             + timelordTask.getTaskName()
                             + "] for date ["
-                            + timelordDate
+                            + timelordDay
                             + "] with hours ["
                             + hours
                             + "]");
                     }
 
                     if(hours > 0) {
-                        Date weekStartDate = convertToWeekStart(timelordDate);
+                        Integer weekStart = Integer.valueOf(
+                            timelordDay.getWeekStart().intValue());
                         String sheetName =
-                            sheetNameFormat.format(weekStartDate);
+                            (String) weekSheetNames.get(weekStart);
+
+                        if (sheetName == null) {
+                            sheetName = sheetNameFormat.format(
+                                timelordDay.getWeekStart().toDate());
+                            weekSheetNames.put(weekStart, sheetName);
+                        }
 
                         HSSFSheet sheet = workbook.getSheet(sheetName);
                         if (sheet == null) {
@@ -635,13 +617,8 @@ public class ExcelDataReaderWriter extends TimelordDataReaderWriter {
             TimelordTaskDay timelordTaskDay, List<String> noteList,
             Map<String, HSSFCellStyle> styleMap) {
 
-        Calendar calendarDay = Calendar.getInstance();
-        calendarDay.setTime(timelordTaskDay.getDate());
         // Monday is (1) in day of week and (1) in rownum.
-        int dayOfWeek = calendarDay.get(Calendar.DAY_OF_WEEK) - 1;
-        if(dayOfWeek == 0) {
-            dayOfWeek = 7;
-        }
+        int dayOfWeek = timelordTaskDay.getDay().getDayOfWeek();
 
         double hours = timelordTaskDay.getHours();
         HSSFCell cell = row.createCell((short) (dayOfWeek));
@@ -769,25 +746,7 @@ public class ExcelDataReaderWriter extends TimelordDataReaderWriter {
      * @return 12:00am on Monday the week of the input
      */
     protected Date convertToWeekStart(Date inputDate) {
-        Calendar weekStartCalendar = Calendar.getInstance();
-        weekStartCalendar.setTime(inputDate);
-        weekStartCalendar.set(Calendar.DAY_OF_WEEK, Calendar.MONDAY);
-        weekStartCalendar.set(Calendar.HOUR_OF_DAY, 0);
-        weekStartCalendar.set(Calendar.MINUTE, 0);
-        weekStartCalendar.set(Calendar.SECOND, 0);
-        weekStartCalendar.set(Calendar.MILLISECOND, 0);
-
-        // Since the day of week has changed from Monday it no
-        // longer matches Java's natural interpretation.  So if
-        // the date is a Monday, than it's important to roll back
-        // the week start by a week
-        Calendar inputCalendar = Calendar.getInstance();
-        inputCalendar.setTime(inputDate);
-        if(inputCalendar.get(Calendar.DAY_OF_WEEK) == Calendar.SUNDAY) {
-            weekStartCalendar.add(Calendar.WEEK_OF_YEAR, -1);
-        }
-
-        return weekStartCalendar.getTime();
+        return EpochDay.valueOf(inputDate).getWeekStart().toDate();
     }
 
     /**
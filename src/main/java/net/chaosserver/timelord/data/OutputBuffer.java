@@ -0,0 +1,49 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.data;
+
+import java.io.ByteArrayOutputStream;
+
+
+/**
+ * An in memory buffer that data is encoded into before it is written out.
+ * Unlike its parent class it hands out the buffer itself rather than a
+ * copy, so the encoded data can be written to more than one file without
+ * copying it, and the buffer can be reset and reused for the next write.
+ */
+public class OutputBuffer extends ByteArrayOutputStream {
+    /** The size the buffer starts at. */
+    public static final int INITIAL_SIZE = 65536;
+
+    /**
+     * Creates an empty buffer.
+     */
+    public OutputBuffer() {
+        super(INITIAL_SIZE);
+    }
+
+    /**
+     * Gets the buffer holding the data.  Only the first size() bytes are
+     * valid, and the buffer is only good until the next write or reset.
+     *
+     * @return the buffer holding the data
+     */
+    public synchronized byte[] getBuffer() {
+        return this.buf;
+    }
+}
@@ -0,0 +1,601 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.data;
+
+import net.chaosserver.timelord.util.DateUtil;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.beans.XMLDecoder;
+import java.beans.XMLEncoder;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeSet;
+
+
+/**
+ * ReaderWriter that splits the data into one file per year, so a save only
+ * rewrites the years that have changed since the last save.  The files are
+ * kept together in a directory in the user's home directory:
+ * <ul>
+ * <li>The manifest holds the settings and every task with its flags but
+ * none of its days.  It is the final word on which tasks exist.</li>
+ * <li>Each segment holds the tasks with time in one year, with only the
+ * days of that year.  A year with no time has no segment.</li>
+ * </ul>
+ * Every file is written with the XMLEncoder the same as the single file of
+ * the XmlDataReaderWriter.  If there is no manifest yet the single file is
+ * read instead, and the first save splits it up.
+ */
+public class SegmentedDataReaderWriter extends TimelordDataReaderWriter {
+    /** Logger. */
+    private static Log log =
+        LogFactory.getLog(SegmentedDataReaderWriter.class);
+
+    /** Name of the directory in the user's home that holds the files. */
+    public static final String DEFAULT_DIRECTORY = "TimelordData";
+
+    /** Name of the manifest file. */
+    public static final String MANIFEST_FILENAME = "manifest.xml";
+
+    /** Extension of the segment files, which are named by year. */
+    public static final String SEGMENT_EXTENSION = ".xml";
+
+    /** The directory last written to, or null if nothing has been. */
+    protected File writtenDirectory;
+
+    /**
+     * The task snapshots as they were last written or read, keyed by task
+     * name.  Comparing against these tells which years have changed.
+     */
+    protected Map<String, TimelordTask> writtenTasks =
+        new HashMap<String, TimelordTask>();
+
+    /** The day start time as it was last written. */
+    protected double writtenDayStartTime;
+
+    /** The time zone as it was last written. */
+    protected TimeZone writtenTimeZone;
+
+    /** The year held in the year cache. */
+    protected int cachedYear;
+
+    /** The first day of the cached year as days since the epoch. */
+    protected int cachedYearStart = 1;
+
+    /** The first day after the cached year as days since the epoch. */
+    protected int cachedYearEnd = 0;
+
+    /** The buffer each file is encoded into before it is written out. */
+    protected OutputBuffer outputBuffer;
+
+    /**
+     * Gets the file associated with the default location, which is the
+     * manifest.  The segments are written alongside it.
+     *
+     * @return the File for the default location
+     */
+    public File getDefaultOutputFile() {
+        File homeDirectory = new File(System.getProperty("user.home"));
+        File dataDirectory = new File(homeDirectory, DEFAULT_DIRECTORY);
+
+        return new File(dataDirectory, MANIFEST_FILENAME);
+    }
+
+    /**
+     * Reads the timelordData from the manifest and segments in the default
+     * location.  If there is no manifest the single file written by the
+     * XmlDataReaderWriter is read instead.
+     *
+     * @return a timelordData object as read from file.
+     * @throws TimelordDataException indicates an error reading in the file
+     */
+    public synchronized TimelordData readTimelordData()
+            throws TimelordDataException {
+
+        File manifestFile = getDefaultOutputFile();
+        TimelordData timelordData;
+
+        if (manifestFile.exists()) {
+            timelordData = (TimelordData) readXml(manifestFile);
+
+            File[] segmentFiles = findSegmentFiles(
+                manifestFile.getParentFile());
+            Map<String, List<TimelordTaskDay>> taskDayLists =
+                new HashMap<String, List<TimelordTaskDay>>();
+
+            // Newest year first so the days are already in order.
+            for (int i = segmentFiles.length - 1; i >= 0; i--) {
+                TimelordData segmentData =
+                    (TimelordData) readXml(segmentFiles[i]);
+
+                Iterator<TimelordTask> segmentTaskIterator =
+                    segmentData.getTaskCollection().iterator();
+
+                while (segmentTaskIterator.hasNext()) {
+                    TimelordTask segmentTask =
+                        (TimelordTask) segmentTaskIterator.next();
+
+                    List<TimelordTaskDay> taskDayList =
+                        taskDayLists.get(segmentTask.getTaskName());
+
+                    if (taskDayList == null) {
+                        taskDayList = new ArrayList<TimelordTaskDay>();
+                        taskDayLists.put(
+                            segmentTask.getTaskName(), taskDayList);
+                    }
+
+                    taskDayList.addAll(segmentTask.getTaskDayList());
+                }
+            }
+
+            Iterator<Map.Entry<String, List<TimelordTaskDay>>> entryIterator =
+                taskDayLists.entrySet().iterator();
+
+            while (entryIterator.hasNext()) {
+                Map.Entry<String, List<TimelordTaskDay>> entry =
+                    entryIterator.next();
+
+                TimelordTask timelordTask =
+                    timelordData.getTask((String) entry.getKey());
+
+                if (timelordTask == null) {
+                    if (log.isWarnEnabled()) {
+                        log.warn(
+                                "Task [" + entry.getKey() + "] has days but "
+                                + "isn't in the manifest, adding it.");
+                    }
+
+                    timelordTask = new TimelordTask((String) entry.getKey());
+                    timelordData.addTask(timelordTask);
+                }
+
+                timelordTask.setTaskDayList(entry.getValue());
+            }
+
+            if (log.isInfoEnabled()) {
+                log.info(
+                        "Finished loading [" + manifestFile + "] and ["
+                        + segmentFiles.length + "] segments");
+            }
+
+            rememberWritten(manifestFile.getParentFile(),
+                timelordData.snapshot());
+        } else {
+            if (log.isInfoEnabled()) {
+                log.info(
+                        "Failed to find [" + manifestFile + "], reading "
+                        + "the single data file instead.");
+            }
+
+            timelordData = new XmlDataReaderWriter().readTimelordData();
+        }
+
+        timelordData.setTimelordReaderWriter(this);
+        unloadOlderDays(timelordData);
+
+        return timelordData;
+    }
+
+    /**
+     * Writes out the years that have changed since the last write, along
+     * with the manifest if any task or setting has changed.  Writing to a
+     * different directory than last time writes everything.  Each file
+     * written is also backed up, gzipped and named by a hash of its
+     * contents, in the backup directory next to it, where the old backups
+     * are thinned out to the recent ones and one for each day.
+     *
+     * @param timelordData the data to write, which should be a snapshot
+     * @param outputFile the manifest file to write, with the segments
+     *        written alongside it
+     * @throws TimelordDataException indicates an error writing the
+     *         data out to file.
+     */
+    public synchronized void writeTimelordData(TimelordData timelordData,
+            File outputFile) throws TimelordDataException {
+
+        File directory = outputFile.getParentFile();
+
+        if (!directory.equals(writtenDirectory)) {
+            writtenTasks.clear();
+            writtenTimeZone = null;
+        }
+
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new TimelordDataException(
+                    "Failed to create [" + directory + "]");
+        }
+
+        Set<Integer> changedYears = new TreeSet<Integer>();
+        boolean isManifestChanged = !directory.equals(writtenDirectory)
+            || (timelordData.getDayStartTime() != writtenDayStartTime)
+            || (timelordData.getTimeZone() != writtenTimeZone);
+
+        Map<String, TimelordTask> removedTasks =
+            new HashMap<String, TimelordTask>(writtenTasks);
+
+        Iterator<TimelordTask> taskIterator =
+            timelordData.getTaskCollection().iterator();
+
+        while (taskIterator.hasNext()) {
+            TimelordTask timelordTask = (TimelordTask) taskIterator.next();
+            TimelordTask writtenTask =
+                removedTasks.remove(timelordTask.getTaskName());
+
+            if (writtenTask != timelordTask) {
+                addChangedYears(
+                    snapshotStore(writtenTask),
+                    snapshotStore(timelordTask),
+                    changedYears);
+
+                if ((writtenTask == null)
+                        || (writtenTask.isExportable()
+                            != timelordTask.isExportable())
+                        || (writtenTask.isHidden()
+                            != timelordTask.isHidden())) {
+
+                    isManifestChanged = true;
+                }
+            }
+        }
+
+        // Anything left over has been removed or renamed.
+        Iterator<TimelordTask> removedIterator =
+            removedTasks.values().iterator();
+
+        while (removedIterator.hasNext()) {
+            TimelordTask removedTask = (TimelordTask) removedIterator.next();
+            addChangedYears(snapshotStore(removedTask), null, changedYears);
+            isManifestChanged = true;
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug(
+                    "Writing segments " + changedYears + " to ["
+                    + directory + "], manifest changed ["
+                    + isManifestChanged + "]");
+        }
+
+        Iterator<Integer> yearIterator = changedYears.iterator();
+
+        while (yearIterator.hasNext()) {
+            int year = ((Integer) yearIterator.next()).intValue();
+            writeSegment(timelordData, directory, year);
+        }
+
+        if (isManifestChanged) {
+            writeFile(createManifest(timelordData), outputFile);
+        }
+
+        rememberWritten(directory, timelordData);
+    }
+
+    /**
+     * Records the tasks and settings that are now on disk.
+     *
+     * @param directory the directory the data is in
+     * @param timelordData a snapshot of the data as written
+     */
+    protected void rememberWritten(File directory, TimelordData timelordData) {
+        writtenDirectory = directory;
+        writtenDayStartTime = timelordData.getDayStartTime();
+        writtenTimeZone = timelordData.getTimeZone();
+        writtenTasks.clear();
+
+        Iterator<TimelordTask> taskIterator =
+            timelordData.getTaskCollection().iterator();
+
+        while (taskIterator.hasNext()) {
+            TimelordTask timelordTask = (TimelordTask) taskIterator.next();
+            writtenTasks.put(timelordTask.getTaskName(), timelordTask);
+        }
+    }
+
+    /**
+     * Gets the store of days of a task snapshot.
+     *
+     * @param taskSnapshot the snapshot, or null
+     * @return the days of the snapshot, or null if there is no snapshot
+     */
+    protected TaskDayStore snapshotStore(TimelordTask taskSnapshot) {
+        TaskDayStore store = null;
+
+        if (taskSnapshot != null) {
+            store = taskSnapshot.taskDayStore;
+
+            if ((store == null) || (taskSnapshot.unloadedDays != null)) {
+                store = taskSnapshot.snapshot().taskDayStore;
+            }
+        }
+
+        return store;
+    }
+
+    /**
+     * Compares the days of two versions of a task and adds the year of
+     * every day that differs.  Both stores are newest first, so they are
+     * walked together in one pass.
+     *
+     * @param oldStore the days as last written, or null for none
+     * @param newStore the days as they are now, or null for none
+     * @param changedYears the set to add the changed years to
+     */
+    protected void addChangedYears(TaskDayStore oldStore,
+            TaskDayStore newStore, Set<Integer> changedYears) {
+
+        int oldSize = (oldStore == null) ? 0 : oldStore.size();
+        int newSize = (newStore == null) ? 0 : newStore.size();
+        int oldIndex = 0;
+        int newIndex = 0;
+
+        while ((oldIndex < oldSize) || (newIndex < newSize)) {
+            int oldDay = (oldIndex < oldSize)
+                ? oldStore.getEpochDay(oldIndex) : Integer.MIN_VALUE;
+            int newDay = (newIndex < newSize)
+                ? newStore.getEpochDay(newIndex) : Integer.MIN_VALUE;
+
+            if (oldDay > newDay) {
+                changedYears.add(Integer.valueOf(getYear(oldDay)));
+                oldIndex++;
+            } else if (newDay > oldDay) {
+                changedYears.add(Integer.valueOf(getYear(newDay)));
+                newIndex++;
+            } else {
+                String oldNote = oldStore.getNote(oldDay);
+                String newNote = newStore.getNote(newDay);
+
+                if ((oldStore.getMinutes(oldIndex)
+                        != newStore.getMinutes(newIndex))
+                        || ((oldNote == null)
+                            ? (newNote != null) : !oldNote.equals(newNote))) {
+
+                    changedYears.add(Integer.valueOf(getYear(newDay)));
+                }
+
+                oldIndex++;
+                newIndex++;
+            }
+        }
+    }
+
+    /**
+     * Gets the year that a day falls in.  The bounds of the last year
+     * looked up are kept, since days are looked up in order.
+     *
+     * @param epochDay the day as days since the epoch
+     * @return the year
+     */
+    protected int getYear(int epochDay) {
+        if ((epochDay < cachedYearStart) || (epochDay >= cachedYearEnd)) {
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTime(DateUtil.fromEpochDay(epochDay));
+            cachedYear = calendar.get(Calendar.YEAR);
+
+            calendar.set(Calendar.DAY_OF_YEAR, 1);
+            cachedYearStart = DateUtil.toEpochDay(calendar.getTime());
+
+            calendar.add(Calendar.YEAR, 1);
+            cachedYearEnd = DateUtil.toEpochDay(calendar.getTime());
+        }
+
+        return cachedYear;
+    }
+
+    /**
+     * Writes the segment for one year, or deletes it if nothing is tracked
+     * in the year any more.
+     *
+     * @param timelordData the data to write
+     * @param directory the directory holding the segments
+     * @param year the year to write
+     * @throws TimelordDataException indicates an error writing the segment
+     */
+    protected void writeSegment(TimelordData timelordData, File directory,
+            int year) throws TimelordDataException {
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, Calendar.JANUARY, 1);
+        int firstDay = DateUtil.toEpochDay(calendar.getTime());
+        calendar.add(Calendar.YEAR, 1);
+        int lastDay = DateUtil.toEpochDay(calendar.getTime()) - 1;
+
+        TimelordData segmentData = new TimelordData();
+        segmentData.setDayStartTime(timelordData.getDayStartTime());
+        segmentData.setTimeZone(timelordData.getTimeZone());
+
+        Iterator<TimelordTask> taskIterator =
+            timelordData.getTaskCollection().iterator();
+
+        while (taskIterator.hasNext()) {
+            TimelordTask timelordTask = (TimelordTask) taskIterator.next();
+            TimelordTask segmentTask =
+                timelordTask.copyRange(firstDay, lastDay);
+
+            if (segmentTask.getDayCount() > 0) {
+                segmentData.taskCollection.add(segmentTask);
+            }
+        }
+
+        File segmentFile = new File(directory, year + SEGMENT_EXTENSION);
+
+        if (segmentData.taskCollection.isEmpty()) {
+            if (segmentFile.exists() && !segmentFile.delete()) {
+                throw new TimelordDataException(
+                        "Failed to delete [" + segmentFile + "]");
+            }
+        } else {
+            writeFile(segmentData, segmentFile);
+        }
+    }
+
+    /**
+     * Creates the manifest, which is a copy of the data with every task but
+     * none of the days.
+     *
+     * @param timelordData the data to create the manifest for
+     * @return the manifest
+     */
+    protected TimelordData createManifest(TimelordData timelordData) {
+        TimelordData manifest = new TimelordData();
+        manifest.setDayStartTime(timelordData.getDayStartTime());
+        manifest.setTimeZone(timelordData.getTimeZone());
+
+        Iterator<TimelordTask> taskIterator =
+            timelordData.getTaskCollection().iterator();
+
+        while (taskIterator.hasNext()) {
+            TimelordTask timelordTask = (TimelordTask) taskIterator.next();
+            TimelordTask manifestTask =
+                new TimelordTask(timelordTask.getTaskName());
+            manifestTask.setExportable(timelordTask.isExportable());
+            manifestTask.setHidden(timelordTask.isHidden());
+            manifest.taskCollection.add(manifestTask);
+        }
+
+        return manifest;
+    }
+
+    /**
+     * Gets a stamp of the manifest and every segment next to it, since a
+     * write that only changes segments leaves the manifest as it was.
+     *
+     * @return the stamp
+     */
+    public long getOutputStamp() {
+        File manifestFile = getDefaultOutputFile();
+        File[] segmentFiles = findSegmentFiles(manifestFile.getParentFile());
+        long stamp = getFileStamp(manifestFile);
+
+        for (int i = 0; i < segmentFiles.length; i++) {
+            stamp = (stamp * 31) + getFileStamp(segmentFiles[i]);
+        }
+
+        return stamp;
+    }
+
+    /**
+     * Finds the segment files in a directory, oldest year first.
+     *
+     * @param directory the directory to look in
+     * @return the segment files
+     */
+    protected File[] findSegmentFiles(File directory) {
+        List<File> segmentFiles = new ArrayList<File>();
+        File[] files = directory.listFiles();
+
+        if (files != null) {
+            Arrays.sort(files);
+
+            for (int i = 0; i < files.length; i++) {
+                String name = files[i].getName();
+
+                if (name.matches("[0-9]{4}\\" + SEGMENT_EXTENSION)) {
+                    segmentFiles.add(files[i]);
+                }
+            }
+        }
+
+        return (File[]) segmentFiles.toArray(new File[segmentFiles.size()]);
+    }
+
+    /**
+     * Reads one object from an XML file.
+     *
+     * @param file the file to read
+     * @return the object read
+     * @throws TimelordDataException indicates an error reading the file
+     */
+    protected Object readXml(File file) throws TimelordDataException {
+        try {
+            XMLDecoder xmlDecoder = new XMLDecoder(
+                new BufferedInputStream(new FileInputStream(file)));
+            Object result = xmlDecoder.readObject();
+            xmlDecoder.close();
+
+            return result;
+        } catch (FileNotFoundException e) {
+            throw new TimelordDataException("Failed to read", e);
+        }
+    }
+
+    /**
+     * Writes an object to an XML file and keeps a backup of it.  The object
+     * is encoded once into memory and the file and backup are both written
+     * from that buffer.
+     *
+     * @param object the object to write
+     * @param file the file to write to
+     * @throws TimelordDataException indicates an error writing the file
+     */
+    protected void writeFile(Object object, File file)
+            throws TimelordDataException {
+
+        if (outputBuffer == null) {
+            outputBuffer = new OutputBuffer();
+        } else {
+            outputBuffer.reset();
+        }
+
+        writeXml(object, outputBuffer);
+
+        try {
+            replaceFile(
+                file,
+                outputBuffer.getBuffer(),
+                outputBuffer.size(),
+                false);
+            writeBackup(
+                new File(file.getParentFile(), BACKUP_DIRECTORY),
+                file.getName(),
+                outputBuffer.getBuffer(),
+                outputBuffer.size(),
+                true);
+        } catch (IOException e) {
+            throw new TimelordDataException("Failed to output", e);
+        }
+    }
+
+    /**
+     * Writes one object as XML and closes the stream.
+     *
+     * @param object the object to write
+     * @param outputStream the stream to write to
+     */
+    protected void writeXml(Object object, OutputStream outputStream) {
+        XMLEncoder xmlEncoder = new XMLEncoder(outputStream);
+        xmlEncoder.writeObject(object);
+        xmlEncoder.close();
+    }
+}
@@ -0,0 +1,221 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.data;
+
+import net.chaosserver.timelord.util.EpochDay;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+
+/**
+ * A small file kept next to the main data file holding just enough to show
+ * the tab for today while the main file is still being read: every task
+ * with its flags and the days of the current week.  It is written each
+ * time the main file is written, in the binary format, so reading it back
+ * takes a few milliseconds however large the main file has grown.
+ * <p>
+ * The summary starts with the version of the summary layout and the
+ * output stamp of the main data it was written alongside.  If the main
+ * data has changed since, or there is a change journal with changes the
+ * summary doesn't have, the summary is ignored.
+ * <p>
+ * Changes made to the data read from the summary are found by comparing
+ * it against a snapshot taken when it was read, and applied on top of the
+ * full data once that has been read.  Until then they are only held in
+ * memory, so they are lost if the application stops while still loading.
+ */
+public class StartupSummary {
+    /** Logger. */
+    private static Log log = LogFactory.getLog(StartupSummary.class);
+
+    /** Extension added to the name of the main file for the summary. */
+    public static final String SUMMARY_EXTENSION = ".summary";
+
+    /** Version of the summary layout, changed whenever it changes. */
+    public static final int SUMMARY_VERSION = 2;
+
+    /** The reader/writer of the main data the summary is kept for. */
+    protected TimelordDataReaderWriter timelordDataReaderWriter;
+
+    /** The main data file the summary is kept for. */
+    protected File dataFile;
+
+    /** The summary file. */
+    protected File summaryFile;
+
+    /** The reader/writer used to encode the summary. */
+    protected BinaryDataReaderWriter binaryDataReaderWriter =
+        new BinaryDataReaderWriter();
+
+    /**
+     * A snapshot of the data as read from the summary, or null if the
+     * summary hasn't been read.
+     */
+    protected TimelordData summarySnapshot;
+
+    /**
+     * Creates a summary kept alongside the main data at the default
+     * location of a reader/writer.
+     *
+     * @param timelordDataReaderWriter the reader/writer of the main data
+     */
+    public StartupSummary(TimelordDataReaderWriter timelordDataReaderWriter) {
+        this.timelordDataReaderWriter = timelordDataReaderWriter;
+        this.dataFile = timelordDataReaderWriter.getDefaultOutputFile();
+        this.summaryFile = getSummaryFile(dataFile);
+    }
+
+    /**
+     * Gets the summary file used alongside a main data file.
+     *
+     * @param dataFile the main data file
+     * @return the summary file
+     */
+    public static File getSummaryFile(File dataFile) {
+        return new File(dataFile.getPath() + SUMMARY_EXTENSION);
+    }
+
+    /**
+     * Writes the summary of a snapshot that has just been written to the
+     * main file.  A failure only means the next startup waits for the main
+     * file, so it is logged rather than thrown.
+     *
+     * @param timelordDataSnapshot the snapshot written to the main file
+     */
+    public void write(TimelordData timelordDataSnapshot) {
+        TimelordData weekSnapshot = timelordDataSnapshot.copyRange(
+            EpochDay.today().getWeekStart().intValue(), Integer.MAX_VALUE);
+
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            DataOutputStream dataOutput = new DataOutputStream(buffer);
+
+            dataOutput.writeInt(SUMMARY_VERSION);
+            dataOutput.writeLong(timelordDataReaderWriter.getOutputStamp());
+            dataOutput.write(binaryDataReaderWriter.encode(weekSnapshot));
+            dataOutput.flush();
+
+            binaryDataReaderWriter.replaceFile(
+                summaryFile, buffer.toByteArray(), buffer.size(), false);
+        } catch (IOException e) {
+            if (log.isWarnEnabled()) {
+                log.warn("Failed to write [" + summaryFile + "]", e);
+            }
+
+            summaryFile.delete();
+        }
+    }
+
+    /**
+     * Reads the summary if it matches the main file.  A snapshot of the
+     * data read is kept so the changes made to it can be reconciled with
+     * the full data later.
+     *
+     * @return the data in the summary, or null if there is no summary or
+     *         it is out of date
+     */
+    public TimelordData read() {
+        TimelordData timelordData = null;
+        File journalFile = ChangeJournal.getJournalFile(dataFile);
+
+        if (!summaryFile.exists() || !dataFile.exists()) {
+            if (log.isDebugEnabled()) {
+                log.debug("No summary for [" + dataFile + "]");
+            }
+        } else if (journalFile.length() > 0) {
+            if (log.isDebugEnabled()) {
+                log.debug("Ignoring [" + summaryFile + "], there are "
+                    + "journaled changes.");
+            }
+        } else {
+            try {
+                byte[] bytes = new byte[(int) summaryFile.length()];
+                InputStream inputStream = new FileInputStream(summaryFile);
+
+                try {
+                    new DataInputStream(inputStream).readFully(bytes);
+                } finally {
+                    inputStream.close();
+                }
+
+                BinaryDataReaderWriter.Cursor cursor =
+                    new BinaryDataReaderWriter.Cursor(bytes, 0, bytes.length);
+
+                if ((cursor.readInt() == SUMMARY_VERSION)
+                        && (cursor.readLong()
+                            == timelordDataReaderWriter.getOutputStamp())) {
+
+                    byte[] summaryBytes =
+                        new byte[bytes.length - cursor.position];
+                    System.arraycopy(bytes, cursor.position,
+                        summaryBytes, 0, summaryBytes.length);
+
+                    timelordData =
+                        binaryDataReaderWriter.decode(summaryBytes);
+                    summarySnapshot = timelordData.snapshot();
+                } else if (log.isDebugEnabled()) {
+                    log.debug("Ignoring [" + summaryFile
+                        + "], it is out of date.");
+                }
+            } catch (IOException e) {
+                if (log.isWarnEnabled()) {
+                    log.warn("Failed to read [" + summaryFile + "]", e);
+                }
+
+                timelordData = null;
+            } catch (TimelordDataException e) {
+                if (log.isWarnEnabled()) {
+                    log.warn("Failed to read [" + summaryFile + "]", e);
+                }
+
+                timelordData = null;
+            }
+        }
+
+        return timelordData;
+    }
+
+    /**
+     * Applies the changes made to the data read from the summary to the
+     * full data once it has been read.  Both must be left alone by other
+     * threads while this runs.
+     *
+     * @param summaryData the data read from the summary
+     * @param timelordData the full data
+     * @throws TimelordDataException indicates an error applying the
+     *         changes
+     */
+    public void reconcile(TimelordData summaryData,
+            TimelordData timelordData) throws TimelordDataException {
+
+        if (summarySnapshot != null) {
+            ChangeJournal.copyChanges(
+                summarySnapshot, summaryData.snapshot(), timelordData);
+            summarySnapshot = null;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.data;
+
+import net.chaosserver.timelord.util.DateUtil;
+
+import java.util.Date;
+
+
+/**
+ * A lightweight TimelordTaskDay that holds no data of its own.  Reads and
+ * writes go straight through to the TaskDayStore of the owning task, so
+ * these are only created when something actually asks for a day.  If the
+ * task stops using the store the view is detached, and from then on it is
+ * a plain day holding a copy of what was in the store.
+ */
+@SuppressWarnings("serial")
+public class StoredTaskDay extends TimelordTaskDay {
+    /**
+     * The task whose store handed out this view.  Unlike timelordTask this
+     * is kept once the view is detached, so it can always be locked on.
+     */
+    protected transient TimelordTask storeOwner;
+
+    /**
+     * Creates a view of a day in the store of a task.
+     *
+     * @param timelordTask the task that owns the store
+     * @param epochDay the day this view represents
+     */
+    protected StoredTaskDay(TimelordTask timelordTask, int epochDay) {
+        this.timelordTask = timelordTask;
+        this.storeOwner = timelordTask;
+        this.epochDay = epochDay;
+    }
+
+    /**
+     * Getter for the date.  The Date object is only built the first time
+     * it is asked for.
+     *
+     * @return the date
+     */
+    public Date getDate() {
+        synchronized (storeOwner) {
+            if (this.date == null) {
+                this.date = DateUtil.fromEpochDay(this.epochDay);
+            }
+
+            return this.date;
+        }
+    }
+
+    /**
+     * Moves the day to another date.  The hours and note are moved to the
+     * new day in the store, and are added to the day already there if the
+     * task has one.
+     *
+     * @param date the date this object represents
+     */
+    public void setDate(Date date) {
+        Date oldDate;
+        Date newDate;
+
+        synchronized (storeOwner) {
+            oldDate = getDate();
+
+            if (timelordTask == null) {
+                this.date = date;
+
+                if (date != null) {
+                    this.epochDay = DateUtil.toEpochDay(date);
+                }
+            } else if (date == null) {
+                throw new IllegalArgumentException(
+                    "A stored task day must have a date");
+            } else {
+                timelordTask.moveStoredDay(this, DateUtil.toEpochDay(date));
+                this.date = null;
+            }
+
+            newDate = getDate();
+        }
+
+        firePropertyChange("date", oldDate, newDate);
+    }
+
+    /**
+     * Gets the note from the store.
+     *
+     * @return the note for the day or null
+     */
+    public String getNote() {
+        synchronized (storeOwner) {
+            if (timelordTask == null) {
+                return this.note;
+            }
+
+            return timelordTask.taskDayStore.getNote(this.epochDay);
+        }
+    }
+
+    /**
+     * Sets the note in the store.
+     *
+     * @param note the note value
+     */
+    public void setNote(String note) {
+        String oldNote;
+
+        synchronized (storeOwner) {
+            if (timelordTask == null) {
+                oldNote = this.note;
+                this.note = note;
+            } else {
+                oldNote = timelordTask.taskDayStore.getNote(this.epochDay);
+                timelordTask.storeIndexOf(this);
+                timelordTask.taskDayStore.setNote(this.epochDay, note);
+            }
+        }
+
+        markTaskChanged();
+
+        firePropertyChange("note", oldNote, note);
+    }
+
+    /**
+     * Gets the number of minutes from the store.
+     *
+     * @return number of minutes
+     */
+    public int getMinutes() {
+        synchronized (storeOwner) {
+            if (timelordTask == null) {
+                return this.minutes;
+            }
+
+            TaskDayStore taskDayStore = timelordTask.taskDayStore;
+            int index = taskDayStore.indexOf(this.epochDay);
+
+            if (index >= 0) {
+                return taskDayStore.getMinutes(index);
+            } else {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Stores a new number of minutes for the day in the store.
+     *
+     * @param newMinutes the new number of minutes
+     * @return the number of minutes before the change
+     */
+    protected int putMinutes(int newMinutes) {
+        synchronized (storeOwner) {
+            if (timelordTask == null) {
+                return super.putMinutes(newMinutes);
+            }
+
+            TaskDayStore taskDayStore = timelordTask.taskDayStore;
+            int index = timelordTask.storeIndexOf(this);
+            int oldMinutes = taskDayStore.getMinutes(index);
+            taskDayStore.setMinutes(index, newMinutes);
+
+            return oldMinutes;
+        }
+    }
+
+    /**
+     * Copies the day out of the store into this object and disconnects it
+     * from the task.  Called by the task, while holding its lock, when it
+     * stops using the store.
+     */
+    protected void detach() {
+        if (timelordTask != null) {
+            this.minutes = getMinutes();
+            this.note = getNote();
+            getDate();
+            this.timelordTask = null;
+        }
+    }
+
+    /**
+     * Creates a plain TimelordTaskDay holding a copy of this day.
+     *
+     * @return a copy of the object
+     */
+    public TimelordTaskDay clone() {
+        TimelordTaskDay timelordTaskDayClone = new TimelordTaskDay();
+        timelordTaskDayClone.date = getDate();
+        timelordTaskDayClone.epochDay = this.epochDay;
+        timelordTaskDayClone.minutes = getMinutes();
+        timelordTaskDayClone.note = getNote();
+
+        return timelordTaskDayClone;
+    }
+}
@@ -0,0 +1,574 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.data;
+
+import net.chaosserver.timelord.util.DateUtil;
+import net.chaosserver.timelord.util.EpochDay;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.text.ParseException;
+import java.util.Date;
+import java.util.Random;
+
+
+/**
+ * Generates large synthetic data for load testing and benchmarks.  The
+ * number of tasks, the years of history, the share of hidden and
+ * exportable tasks, how often a task has time and notes and how the hours
+ * are spread are all properties.  The data only depends on the properties,
+ * so the same seed and end date always give the same data.
+ * <p>
+ * Each task has time on a share of the work days in the history.  The
+ * hours of a day follow a normal distribution around the average, rounded
+ * to the smallest time increment.
+ * <p>
+ * The data can be written with any TimelordDataReaderWriter, named by its
+ * class or by the start of the name of one in this package, such as
+ * <code>Xml</code>, <code>Binary</code>, <code>Segmented</code> or
+ * <code>Excel</code>.  From the command line:
+ * <pre>
+ * java net.chaosserver.timelord.data.SyntheticDataGenerator Xml \
+ *     TimelordData.xml taskCount=2000 years=10 seed=42
+ * </pre>
+ */
+public class SyntheticDataGenerator {
+    /** Days in a year of history. */
+    public static final int DAYS_IN_YEAR = 365;
+
+    /** The most hours a day can have. */
+    public static final double MAXIMUM_HOURS = 24d;
+
+    /** The ISO day of week of the last work day in a week. */
+    protected static final int LAST_WORK_DAY = 5;
+
+    /** The projects the task names are made from. */
+    protected static final String[] PROJECTS = {
+        "Billing", "Search", "Mobile", "Reporting", "Payments", "Identity",
+        "Storage", "Messaging", "Analytics", "Platform"
+    };
+
+    /** The activities the task names are made from. */
+    protected static final String[] ACTIVITIES = {
+        "Development", "Design", "Testing", "Support", "Meetings",
+        "Planning", "Documentation", "Review"
+    };
+
+    /** The words the notes are made from. */
+    protected static final String[] NOTE_WORDS = {
+        "fixed", "reviewed", "call", "with", "the", "team", "about",
+        "release", "build", "customer", "issue", "follow", "up", "on",
+        "estimate", "deploy"
+    };
+
+    /** The most words in a note. */
+    protected static final int NOTE_LENGTH = 12;
+
+    /** The seed of the random numbers. */
+    protected long seed = 1L;
+
+    /** The number of tasks. */
+    protected int taskCount = 50;
+
+    /** The years of history. */
+    protected int years = 1;
+
+    /** The last day of the history, or null for today. */
+    protected Date endDate;
+
+    /** Chance of a task being hidden, in percent. */
+    protected int hiddenPercent = 10;
+
+    /** Chance of a task being exportable, in percent. */
+    protected int exportablePercent = 80;
+
+    /** Chance of a task having time on a work day, in percent. */
+    protected int activePercent = 30;
+
+    /** Chance of a day with time having a note, in percent. */
+    protected int notePercent = 5;
+
+    /** The average hours of a day with time. */
+    protected double averageHours = 2d;
+
+    /** The standard deviation of the hours of a day with time. */
+    protected double hoursDeviation = 1d;
+
+    /**
+     * Sets the seed of the random numbers.
+     *
+     * @param seed the seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Gets the seed of the random numbers.
+     *
+     * @return the seed
+     */
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * Sets the number of tasks.
+     *
+     * @param taskCount the number of tasks
+     */
+    public void setTaskCount(int taskCount) {
+        this.taskCount = taskCount;
+    }
+
+    /**
+     * Gets the number of tasks.
+     *
+     * @return the number of tasks
+     */
+    public int getTaskCount() {
+        return this.taskCount;
+    }
+
+    /**
+     * Sets the years of history.
+     *
+     * @param years the years of history
+     */
+    public void setYears(int years) {
+        this.years = years;
+    }
+
+    /**
+     * Gets the years of history.
+     *
+     * @return the years of history
+     */
+    public int getYears() {
+        return this.years;
+    }
+
+    /**
+     * Sets the last day of the history.
+     *
+     * @param endDate the last day, or null for today
+     */
+    public void setEndDate(Date endDate) {
+        this.endDate = endDate;
+    }
+
+    /**
+     * Gets the last day of the history.
+     *
+     * @return the last day, or null for today
+     */
+    public Date getEndDate() {
+        return this.endDate;
+    }
+
+    /**
+     * Sets the chance of a task being hidden.
+     *
+     * @param hiddenPercent the chance in percent
+     */
+    public void setHiddenPercent(int hiddenPercent) {
+        this.hiddenPercent = hiddenPercent;
+    }
+
+    /**
+     * Gets the chance of a task being hidden.
+     *
+     * @return the chance in percent
+     */
+    public int getHiddenPercent() {
+        return this.hiddenPercent;
+    }
+
+    /**
+     * Sets the chance of a task being exportable.
+     *
+     * @param exportablePercent the chance in percent
+     */
+    public void setExportablePercent(int exportablePercent) {
+        this.exportablePercent = exportablePercent;
+    }
+
+    /**
+     * Gets the chance of a task being exportable.
+     *
+     * @return the chance in percent
+     */
+    public int getExportablePercent() {
+        return this.exportablePercent;
+    }
+
+    /**
+     * Sets the chance of a task having time on a work day.
+     *
+     * @param activePercent the chance in percent
+     */
+    public void setActivePercent(int activePercent) {
+        this.activePercent = activePercent;
+    }
+
+    /**
+     * Gets the chance of a task having time on a work day.
+     *
+     * @return the chance in percent
+     */
+    public int getActivePercent() {
+        return this.activePercent;
+    }
+
+    /**
+     * Sets the chance of a day with time having a note.
+     *
+     * @param notePercent the chance in percent
+     */
+    public void setNotePercent(int notePercent) {
+        this.notePercent = notePercent;
+    }
+
+    /**
+     * Gets the chance of a day with time having a note.
+     *
+     * @return the chance in percent
+     */
+    public int getNotePercent() {
+        return this.notePercent;
+    }
+
+    /**
+     * Sets the average hours of a day with time.
+     *
+     * @param averageHours the average hours
+     */
+    public void setAverageHours(double averageHours) {
+        this.averageHours = averageHours;
+    }
+
+    /**
+     * Gets the average hours of a day with time.
+     *
+     * @return the average hours
+     */
+    public double getAverageHours() {
+        return this.averageHours;
+    }
+
+    /**
+     * Sets the standard deviation of the hours of a day with time.
+     *
+     * @param hoursDeviation the standard deviation in hours
+     */
+    public void setHoursDeviation(double hoursDeviation) {
+        this.hoursDeviation = hoursDeviation;
+    }
+
+    /**
+     * Gets the standard deviation of the hours of a day with time.
+     *
+     * @return the standard deviation in hours
+     */
+    public double getHoursDeviation() {
+        return this.hoursDeviation;
+    }
+
+    /**
+     * Generates the data.
+     *
+     * @return the data
+     */
+    public TimelordData generate() {
+        Random random = new Random(getSeed());
+        TimelordData timelordData = new TimelordData();
+        EpochDay lastDay = (getEndDate() == null)
+            ? EpochDay.today() : EpochDay.valueOf(getEndDate());
+        int historyDays = getYears() * DAYS_IN_YEAR;
+
+        for (int i = 0; i < getTaskCount(); i++) {
+            TimelordTask timelordTask = new TimelordTask(getTaskName(i));
+
+            timelordTask.setHidden(random.nextInt(100) < getHiddenPercent());
+            timelordTask.setExportable(
+                random.nextInt(100) < getExportablePercent());
+
+            // Newest first so each day goes on the end of the list.
+            for (int dayOffset = 0; dayOffset < historyDays; dayOffset++) {
+                EpochDay day = lastDay.plusDays(-dayOffset);
+
+                if ((day.getDayOfWeek() <= LAST_WORK_DAY)
+                        && (random.nextInt(100) < getActivePercent())) {
+
+                    TimelordTaskDay timelordTaskDay =
+                        new TimelordTaskDay(day);
+                    timelordTaskDay.setHours(nextHours(random));
+
+                    if (random.nextInt(100) < getNotePercent()) {
+                        timelordTaskDay.setNote(nextNote(random));
+                    }
+
+                    timelordTask.addTaskDay(timelordTaskDay);
+                }
+            }
+
+            timelordData.addTask(timelordTask);
+        }
+
+        timelordData.resetTaskListeners();
+
+        return timelordData;
+    }
+
+    /**
+     * Generates the data and writes it out.  Backups aren't kept of the
+     * file, so generating data never pushes real backups out.  The
+     * directory of the file is created if needed.
+     *
+     * @param timelordDataReaderWriter the reader/writer of the format
+     * @param outputFile the file to write to
+     * @return the data written
+     * @throws TimelordDataException indicates an error writing the data
+     */
+    public TimelordData write(
+            TimelordDataReaderWriter timelordDataReaderWriter,
+            File outputFile) throws TimelordDataException {
+
+        TimelordData timelordData = generate();
+        File outputDirectory = outputFile.getAbsoluteFile().getParentFile();
+
+        if (outputDirectory != null) {
+            outputDirectory.mkdirs();
+        }
+
+        timelordDataReaderWriter.setKeepingBackups(false);
+        timelordDataReaderWriter.writeTimelordData(
+            timelordData.snapshot(), outputFile);
+
+        return timelordData;
+    }
+
+    /**
+     * Gets the name of a task.  The names are made from a project and an
+     * activity, with a number added once every pair has been used.
+     *
+     * @param taskIndex the index of the task
+     * @return the task name
+     */
+    protected String getTaskName(int taskIndex) {
+        int pairCount = PROJECTS.length * ACTIVITIES.length;
+        StringBuffer sb = new StringBuffer();
+
+        sb.append(PROJECTS[taskIndex % PROJECTS.length]);
+        sb.append(" ");
+        sb.append(ACTIVITIES[(taskIndex / PROJECTS.length)
+            % ACTIVITIES.length]);
+
+        if (taskIndex >= pairCount) {
+            sb.append(" ");
+            sb.append((taskIndex / pairCount) + 1);
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Picks the hours of a day with time.
+     *
+     * @param random the random numbers
+     * @return the hours
+     */
+    protected double nextHours(Random random) {
+        double increment = DateUtil.DEFAULT_SMALL_TIME_INCREMENT_HOUR;
+        double hours = getAverageHours()
+            + (random.nextGaussian() * getHoursDeviation());
+
+        hours = Math.round(hours / increment) * increment;
+
+        return Math.min(Math.max(hours, increment), MAXIMUM_HOURS);
+    }
+
+    /**
+     * Picks the note of a day.
+     *
+     * @param random the random numbers
+     * @return the note
+     */
+    protected String nextNote(Random random) {
+        int wordCount = random.nextInt(NOTE_LENGTH) + 1;
+        StringBuffer sb = new StringBuffer();
+
+        for (int i = 0; i < wordCount; i++) {
+            if (i > 0) {
+                sb.append(" ");
+            }
+
+            sb.append(NOTE_WORDS[random.nextInt(NOTE_WORDS.length)]);
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Gets a reader/writer by the name of its class, or by the start of the
+     * name of one in this package.
+     *
+     * @param name the class name, or a short name such as "Xml"
+     * @return the reader/writer
+     * @throws TimelordDataException indicates there is no such reader/writer
+     */
+    public static TimelordDataReaderWriter getReaderWriter(String name)
+            throws TimelordDataException {
+
+        String className = name;
+
+        if (name.indexOf('.') < 0) {
+            className = SyntheticDataGenerator.class.getPackage().getName()
+                + "." + name + "DataReaderWriter";
+        }
+
+        try {
+            return (TimelordDataReaderWriter)
+                Class.forName(className).newInstance();
+        } catch (ClassNotFoundException e) {
+            throw new TimelordDataException(
+                    "No reader/writer named [" + name + "]", e);
+        } catch (InstantiationException e) {
+            throw new TimelordDataException(
+                    "Failed to create [" + className + "]", e);
+        } catch (IllegalAccessException e) {
+            throw new TimelordDataException(
+                    "Failed to create [" + className + "]", e);
+        } catch (ClassCastException e) {
+            throw new TimelordDataException(
+                    "[" + className + "] is not a reader/writer", e);
+        }
+    }
+
+    /**
+     * Sets a property from its name and its value as text.  Dates are
+     * given in the basic date format.
+     *
+     * @param name the property name
+     * @param value the value as text
+     * @throws TimelordDataException indicates there is no such property or
+     *         the value doesn't fit it
+     */
+    public void setProperty(String name, String value)
+            throws TimelordDataException {
+
+        try {
+            BeanInfo beanInfo = Introspector.getBeanInfo(getClass());
+            PropertyDescriptor[] propertyDescriptors =
+                beanInfo.getPropertyDescriptors();
+            PropertyDescriptor propertyDescriptor = null;
+
+            for (int i = 0; i < propertyDescriptors.length; i++) {
+                if (name.equals(propertyDescriptors[i].getName())
+                        && (propertyDescriptors[i].getWriteMethod()
+                            != null)) {
+
+                    propertyDescriptor = propertyDescriptors[i];
+                }
+            }
+
+            if (propertyDescriptor == null) {
+                throw new TimelordDataException(
+                        "No property named [" + name + "]");
+            }
+
+            Class<?> type = propertyDescriptor.getPropertyType();
+            Object typedValue;
+
+            if (Integer.TYPE.equals(type)) {
+                typedValue = Integer.valueOf(value);
+            } else if (Long.TYPE.equals(type)) {
+                typedValue = Long.valueOf(value);
+            } else if (Double.TYPE.equals(type)) {
+                typedValue = Double.valueOf(value);
+            } else if (Date.class.equals(type)) {
+                synchronized (DateUtil.BASIC_DATE_FORMAT) {
+                    typedValue = DateUtil.BASIC_DATE_FORMAT.parse(value);
+                }
+            } else {
+                typedValue = value;
+            }
+
+            propertyDescriptor.getWriteMethod().invoke(
+                this, new Object[] {typedValue});
+        } catch (NumberFormatException e) {
+            throw new TimelordDataException(
+                    "Bad value [" + value + "] for [" + name + "]", e);
+        } catch (ParseException e) {
+            throw new TimelordDataException(
+                    "Bad value [" + value + "] for [" + name + "]", e);
+        } catch (IntrospectionException e) {
+            throw new TimelordDataException(
+                    "Failed to set [" + name + "]", e);
+        } catch (IllegalAccessException e) {
+            throw new TimelordDataException(
+                    "Failed to set [" + name + "]", e);
+        } catch (InvocationTargetException e) {
+            throw new TimelordDataException(
+                    "Failed to set [" + name + "]", e);
+        }
+    }
+
+    /**
+     * Generates data and writes it out.  The arguments are the reader/writer,
+     * the file to write and any number of property=value pairs.
+     *
+     * @param args the command line arguments
+     * @throws TimelordDataException indicates bad arguments or an error
+     *         writing the data
+     */
+    public static void main(String[] args) throws TimelordDataException {
+        if (args.length < 2) {
+            System.err.println(
+                "Usage: SyntheticDataGenerator <readerWriter> <outputFile> "
+                + "[property=value ...]");
+            System.err.println(
+                "Properties: seed, taskCount, years, endDate (MM-dd-yyyy), "
+                + "hiddenPercent, exportablePercent, activePercent, "
+                + "notePercent, averageHours, hoursDeviation");
+            System.exit(1);
+        }
+
+        SyntheticDataGenerator generator = new SyntheticDataGenerator();
+
+        for (int i = 2; i < args.length; i++) {
+            int separator = args[i].indexOf('=');
+
+            if (separator < 0) {
+                throw new TimelordDataException(
+                        "Expected property=value but got [" + args[i] + "]");
+            }
+
+            generator.setProperty(
+                args[i].substring(0, separator),
+                args[i].substring(separator + 1));
+        }
+
+        generator.write(getReaderWriter(args[0]), new File(args[1]));
+    }
+}
@@ -0,0 +1,431 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.data;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+
+/**
+ * Columnar storage for the days of a single task.  Rather than holding a
+ * TimelordTaskDay object per day, the dates are held as an array of epoch
+ * days and the hours as an array of whole minutes, with the notes in a side
+ * table since most days do not have one.  The arrays are kept in the same
+ * newest first order as the task day list.
+ * <p>
+ * TimelordTaskDay objects are only created on demand as StoredTaskDay views
+ * over a single day.  The views are cached weakly so that anything holding
+ * on to one, such as a listener, always sees the same object.
+ * <p>
+ * A store can share its arrays and notes with a snapshot of the task.  The
+ * arrays are then copied by whichever store is written to first, so taking
+ * a snapshot never copies anything up front.
+ * <p>
+ * This class is not synchronized, it relies on the owning TimelordTask.
+ */
+public class TaskDayStore {
+    /** Initial number of days the arrays are sized for. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** The days held by the store as days since the epoch, newest first. */
+    protected int[] epochDays;
+
+    /** The number of minutes tracked for each day in epochDays. */
+    protected int[] minutes;
+
+    /** The number of days in use at the front of the arrays. */
+    protected int size;
+
+    /** Notes for the days that have them, keyed by epoch day. */
+    protected Map<Integer, String> notes;
+
+    /** Views that have been handed out, keyed by epoch day. */
+    protected Map<Integer, WeakReference<StoredTaskDay>> views;
+
+    /**
+     * Flag that the arrays and notes are shared with another store and
+     * have to be copied before they are changed.
+     */
+    protected boolean shared;
+
+    /** Creates an empty store. */
+    public TaskDayStore() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Creates an empty store with room for the given number of days.
+     *
+     * @param capacity the number of days to size the arrays for
+     */
+    public TaskDayStore(int capacity) {
+        epochDays = new int[Math.max(capacity, 1)];
+        minutes = new int[epochDays.length];
+        notes = new HashMap<Integer, String>();
+        views = new HashMap<Integer, WeakReference<StoredTaskDay>>();
+    }
+
+    /**
+     * Gets the number of days in the store.
+     *
+     * @return the number of days
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the epoch day held at a position in the store.
+     *
+     * @param index the position
+     * @return the day at the position
+     */
+    public int getEpochDay(int index) {
+        return epochDays[index];
+    }
+
+    /**
+     * Gets the minutes tracked at a position in the store.
+     *
+     * @param index the position
+     * @return the minutes at the position
+     */
+    public int getMinutes(int index) {
+        return minutes[index];
+    }
+
+    /**
+     * Sets the minutes tracked at a position in the store.
+     *
+     * @param index the position
+     * @param value the new number of minutes
+     */
+    public void setMinutes(int index, int value) {
+        ensureExclusive();
+        minutes[index] = value;
+    }
+
+    /**
+     * Gets the note for a day.
+     *
+     * @param epochDay the day
+     * @return the note or null if there is none
+     */
+    public String getNote(int epochDay) {
+        return (String) notes.get(Integer.valueOf(epochDay));
+    }
+
+    /**
+     * Sets the note for a day.
+     *
+     * @param epochDay the day
+     * @param note the note, or null to remove it
+     */
+    public void setNote(int epochDay, String note) {
+        ensureExclusive();
+
+        if (note == null) {
+            notes.remove(Integer.valueOf(epochDay));
+        } else {
+            notes.put(Integer.valueOf(epochDay), note);
+        }
+    }
+
+    /**
+     * Finds the position of a day using a binary search over the newest
+     * first ordering.
+     *
+     * @param epochDay the day to find
+     * @return the index of the day if it is present, otherwise
+     *         (-(insertion point) - 1)
+     */
+    public int indexOf(int epochDay) {
+        int low = 0;
+        int high = size - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midDay = epochDays[mid];
+
+            if (midDay > epochDay) {
+                low = mid + 1;
+            } else if (midDay < epochDay) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+
+        return -(low + 1);
+    }
+
+    /**
+     * Inserts a day into the store.  The caller is responsible for picking
+     * a position that keeps the store in order.
+     *
+     * @param index the position to insert at
+     * @param epochDay the day to insert
+     * @param value the minutes tracked for the day
+     * @param note the note for the day or null
+     */
+    public void insert(int index, int epochDay, int value, String note) {
+        ensureExclusive();
+
+        if (size == epochDays.length) {
+            int[] newEpochDays = new int[size * 2];
+            int[] newMinutes = new int[size * 2];
+            System.arraycopy(epochDays, 0, newEpochDays, 0, size);
+            System.arraycopy(minutes, 0, newMinutes, 0, size);
+            epochDays = newEpochDays;
+            minutes = newMinutes;
+        }
+
+        System.arraycopy(epochDays, index, epochDays, index + 1, size - index);
+        System.arraycopy(minutes, index, minutes, index + 1, size - index);
+        epochDays[index] = epochDay;
+        minutes[index] = value;
+        size++;
+
+        setNote(epochDay, note);
+    }
+
+    /**
+     * Copies the day at one position over the day at another.  Used along
+     * with truncate to compact the store in a single pass.
+     *
+     * @param from the position to copy from
+     * @param to the position to copy to
+     */
+    public void move(int from, int to) {
+        if (from != to) {
+            ensureExclusive();
+            epochDays[to] = epochDays[from];
+            minutes[to] = minutes[from];
+        }
+    }
+
+    /**
+     * Drops every day from the given position onwards.
+     *
+     * @param newSize the number of days to keep
+     */
+    public void truncate(int newSize) {
+        if (newSize < size) {
+            size = newSize;
+            pruneSideTables();
+        }
+    }
+
+    /**
+     * Removes the days in a range of positions.
+     *
+     * @param fromIndex the first position to remove
+     * @param toIndex the position after the last to remove
+     */
+    public void removeRange(int fromIndex, int toIndex) {
+        if (fromIndex < toIndex) {
+            ensureExclusive();
+            System.arraycopy(epochDays, toIndex, epochDays, fromIndex,
+                size - toIndex);
+            System.arraycopy(minutes, toIndex, minutes, fromIndex,
+                size - toIndex);
+            size -= toIndex - fromIndex;
+            pruneSideTables();
+        }
+    }
+
+    /**
+     * Gets the view for a day, creating it if needed.  The same view is
+     * returned for as long as something else holds a reference to it.
+     *
+     * @param task the task that owns this store
+     * @param epochDay the day to get the view for
+     * @return the view of the day
+     */
+    public StoredTaskDay getView(TimelordTask task, int epochDay) {
+        Integer key = Integer.valueOf(epochDay);
+        WeakReference<StoredTaskDay> viewReference =
+            (WeakReference<StoredTaskDay>) views.get(key);
+        StoredTaskDay view = null;
+
+        if (viewReference != null) {
+            view = (StoredTaskDay) viewReference.get();
+        }
+
+        if (view == null) {
+            view = new StoredTaskDay(task, epochDay);
+            views.put(key, new WeakReference<StoredTaskDay>(view));
+        }
+
+        return view;
+    }
+
+    /**
+     * Puts a view back into the cache after its day has been put back into
+     * the store, so the view handed out earlier is still the one found for
+     * the day.
+     *
+     * @param view the view to cache
+     */
+    public void putView(StoredTaskDay view) {
+        views.put(Integer.valueOf(view.getEpochDay()),
+            new WeakReference<StoredTaskDay>(view));
+    }
+
+    /**
+     * Detaches every view that has been handed out, turning each into a
+     * plain day holding a copy of its day.  Used when the task stops using
+     * this store.
+     */
+    public void detachViews() {
+        Iterator<WeakReference<StoredTaskDay>> viewIterator =
+            views.values().iterator();
+
+        while (viewIterator.hasNext()) {
+            StoredTaskDay view =
+                (StoredTaskDay) viewIterator.next().get();
+
+            if (view != null) {
+                view.detach();
+            }
+        }
+
+        views.clear();
+    }
+
+    /**
+     * Removes notes and views for days that are no longer in the store.
+     */
+    protected void pruneSideTables() {
+        if (!notes.isEmpty() || !views.isEmpty()) {
+            Map<Integer, String> keptNotes = new HashMap<Integer, String>();
+            Map<Integer, WeakReference<StoredTaskDay>> keptViews =
+                new HashMap<Integer, WeakReference<StoredTaskDay>>();
+
+            for (int i = 0; i < size; i++) {
+                Integer key = Integer.valueOf(epochDays[i]);
+                String note = (String) notes.get(key);
+                WeakReference<StoredTaskDay> viewReference =
+                    (WeakReference<StoredTaskDay>) views.get(key);
+
+                if (note != null) {
+                    keptNotes.put(key, note);
+                }
+
+                if ((viewReference != null) && (viewReference.get() != null)) {
+                    keptViews.put(key, viewReference);
+                }
+            }
+
+            notes = keptNotes;
+            views = keptViews;
+        }
+    }
+
+    /**
+     * Creates a store holding the same days that shares the arrays and
+     * notes of this one.  Neither store sees changes made to the other,
+     * since the first change to either copies the shared data.  Views are
+     * not shared, so each store only hands out views of its own task.
+     *
+     * @return a store sharing the data of this store
+     */
+    public TaskDayStore share() {
+        TaskDayStore sharedStore = new TaskDayStore(0);
+        sharedStore.epochDays = epochDays;
+        sharedStore.minutes = minutes;
+        sharedStore.size = size;
+        sharedStore.notes = notes;
+        sharedStore.shared = true;
+        this.shared = true;
+
+        return sharedStore;
+    }
+
+    /**
+     * Copies the arrays and notes if they are shared with another store, so
+     * they can be changed.
+     */
+    protected void ensureExclusive() {
+        if (shared) {
+            int[] newEpochDays = new int[Math.max(epochDays.length, 1)];
+            int[] newMinutes = new int[newEpochDays.length];
+            System.arraycopy(epochDays, 0, newEpochDays, 0, size);
+            System.arraycopy(minutes, 0, newMinutes, 0, size);
+            epochDays = newEpochDays;
+            minutes = newMinutes;
+            notes = new HashMap<Integer, String>(notes);
+            shared = false;
+        }
+    }
+
+    /**
+     * Creates a copy of the days in the store that fall within a range.
+     *
+     * @param firstDay the first day to copy as days since the epoch
+     * @param lastDay the last day to copy as days since the epoch
+     * @return a new store holding only the days in the range
+     */
+    public TaskDayStore copyRange(int firstDay, int lastDay) {
+        int fromIndex = indexOf(lastDay);
+
+        if (fromIndex < 0) {
+            fromIndex = -(fromIndex + 1);
+        }
+
+        int toIndex = fromIndex;
+
+        while ((toIndex < size) && (epochDays[toIndex] >= firstDay)) {
+            toIndex++;
+        }
+
+        TaskDayStore storeCopy = new TaskDayStore(toIndex - fromIndex);
+        System.arraycopy(epochDays, fromIndex, storeCopy.epochDays, 0,
+            toIndex - fromIndex);
+        System.arraycopy(minutes, fromIndex, storeCopy.minutes, 0,
+            toIndex - fromIndex);
+        storeCopy.size = toIndex - fromIndex;
+
+        for (int i = fromIndex; i < toIndex; i++) {
+            String note = getNote(epochDays[i]);
+
+            if (note != null) {
+                storeCopy.notes.put(Integer.valueOf(epochDays[i]), note);
+            }
+        }
+
+        return storeCopy;
+    }
+
+    /**
+     * Creates a copy of the store that shares nothing with this one.
+     *
+     * @return a copy of the store
+     */
+    public TaskDayStore copy() {
+        TaskDayStore storeCopy = new TaskDayStore(size);
+        System.arraycopy(epochDays, 0, storeCopy.epochDays, 0, size);
+        System.arraycopy(minutes, 0, storeCopy.minutes, 0, size);
+        storeCopy.size = size;
+        storeCopy.notes.putAll(notes);
+
+        return storeCopy;
+    }
+}
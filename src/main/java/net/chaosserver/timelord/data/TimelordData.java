@@ -17,6 +17,8 @@ along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
 */
 package net.chaosserver.timelord.data;
 
+import net.chaosserver.timelord.util.DateUtil;
+import net.chaosserver.timelord.util.EpochDay;
 import net.chaosserver.timelord.util.PropertyChangeSupport;
 
 import org.apache.commons.logging.Log;
@@ -32,15 +34,46 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * This is the data object used to hold data for Timelord. It is a JavaBean
  * meant to be serialized through the XML encoder/decoder and stores all
  * information for a users particular time throughout history.
+ * <p>
+ * The data is shared by the event thread, the autosave thread and the
+ * annoyance thread, so access follows these rules:
+ * <ul>
+ * <li>The task collection and the day totals are guarded by a read/write
+ * lock.  Anything that adds, removes or reorders tasks, or changes the day
+ * totals, holds the write lock.  Anything that walks the task collection
+ * from a background thread holds the read lock.  The task name index is
+ * guarded by the same lock and is only built or changed under the write
+ * lock.</li>
+ * <li>The days of a task are guarded by the task itself, see
+ * TimelordTask.</li>
+ * <li>Locks are always taken in the order task day, data, task, so a task
+ * never calls into the data while holding its own lock other than to mark
+ * the day totals stale, which takes no lock.</li>
+ * <li>The day totals are read optimistically.  A sequence number is bumped
+ * before and after each change, and a reader only falls back to taking the
+ * lock if the number moved while it was reading.</li>
+ * <li>Writers and exporters work from a snapshot rather than the live
+ * objects.</li>
+ * </ul>
+ * The event thread may still walk getTaskCollection directly, since it is
+ * the only thread that changes it.
  *
  * @author Jordan Reed
  */
@@ -62,8 +95,100 @@ public class TimelordData implements Serializable,
     protected TimelordDataReaderWriter timelordReaderWriter =
         new XmlDataReaderWriter();
 
-    /** Holds the list of TimelordTasks objects of this data. */
-    protected LinkedList<TimelordTask> taskCollection;
+    /**
+     * Holds the list of TimelordTasks objects of this data.  The list is
+     * kept in task name order so new tasks can be put in place with a
+     * binary search.
+     */
+    protected ArrayList<TimelordTask> taskCollection;
+
+    /**
+     * Index of the tasks keyed by the upper case task name, so tasks can be
+     * found by name without walking the task collection.
+     */
+    protected transient Map<String, TimelordTask> taskNameIndex;
+
+    /**
+     * The size of the task collection when the index was last built.  The
+     * XMLDecoder adds tasks directly onto the collection, so a mismatch
+     * means the index needs to be rebuilt.
+     */
+    protected transient int taskNameIndexSize = -1;
+
+    /** Guards the task collection and the day totals. */
+    protected transient ReentrantReadWriteLock lock =
+        new ReentrantReadWriteLock();
+
+    /**
+     * Running totals of the minutes tracked on each day, kept up to date as
+     * the minutes of the task days change.  This is null until the totals
+     * are first asked for.
+     */
+    protected transient volatile DayTotals dayTotals;
+
+    /**
+     * Sequence number for optimistic reads of the day totals.  It is odd
+     * while the totals are being changed.
+     */
+    protected transient volatile int dayTotalsSequence;
+
+    /**
+     * The size of the task collection when the day totals were last built,
+     * which catches tasks added directly onto the collection by the
+     * XMLDecoder.
+     */
+    protected transient int dayTotalsSize = -1;
+
+    /**
+     * Flag that days have been removed or replaced in one of the tasks and
+     * the day totals need to be built again.  This is set without taking
+     * the lock on the data, since it is set by tasks holding their own lock.
+     */
+    protected transient volatile boolean dayTotalsStale;
+
+    /** The last snapshot taken of the data, or null if there isn't one. */
+    protected transient TimelordData lastSnapshot;
+
+    /**
+     * For a snapshot this is the version of the data it was taken from.
+     * For the live data it is the version given to the last snapshot.
+     * The version only goes up when a snapshot differs from the one before.
+     */
+    protected transient long snapshotVersion;
+
+    /** Lock held while writing a file, so two writes don't overlap. */
+    protected transient Object outputLock = new Object();
+
+    /**
+     * Lock held while putting together a snapshot, since each snapshot is
+     * compared against the last one.
+     */
+    protected transient Object snapshotLock = new Object();
+
+    /**
+     * The journal the changes are recorded to between writes, or null if
+     * changes are only saved by writing.
+     */
+    protected transient ChangeJournal changeJournal;
+
+    /**
+     * The summary written alongside the main file for a quick startup, or
+     * null if there is none.
+     */
+    protected transient StartupSummary startupSummary;
+
+    /**
+     * Count of the changes made to the data, its tasks and their days.
+     * It only ever goes up, so comparing it with the count at the last
+     * write tells if there is anything to save.
+     */
+    protected transient AtomicLong modificationCount = new AtomicLong();
+
+    /** The modification count when the data was last written out. */
+    protected transient volatile long writtenModificationCount = -1;
+
+    /** The modification count when the changes were last journaled. */
+    protected transient volatile long journaledModificationCount = -1;
 
     /** The start time preference. */
     protected double dayStartTime = DEFAULT_DAY_START_TIME;
@@ -75,7 +200,7 @@ public class TimelordData implements Serializable,
      * Default constructor for an empty piece of data.
      */
     public TimelordData() {
-        taskCollection = new LinkedList<TimelordTask>();
+        taskCollection = new ArrayList<TimelordTask>();
         resetTaskListeners();
     }
 
@@ -90,18 +215,283 @@ public class TimelordData implements Serializable,
     }
 
     /**
-     * Writes out this object using the default Reader/Writer.
+     * Sets the journal to record changes to between writes.
+     *
+     * @param changeJournal the journal, or null for none
+     */
+    public void setChangeJournal(ChangeJournal changeJournal) {
+        this.changeJournal = changeJournal;
+    }
+
+    /**
+     * Checks if changes are being recorded to a journal.
+     *
+     * @return if there is a change journal
+     */
+    public boolean isJournaling() {
+        return this.changeJournal != null;
+    }
+
+    /**
+     * Sets the summary to write alongside the main file each time it is
+     * written.
+     *
+     * @param startupSummary the summary, or null for none
+     */
+    public void setStartupSummary(StartupSummary startupSummary) {
+        this.startupSummary = startupSummary;
+    }
+
+    /**
+     * Gets the count of changes made to the data.  The count goes up with
+     * every change, so a caller can tell that something changed since it
+     * last looked without comparing any of the data.
+     *
+     * @return the count of changes made to the data
+     */
+    public long getModificationCount() {
+        return this.modificationCount.get();
+    }
+
+    /**
+     * Checks if the data has changed since it was last written out.  Data
+     * that has never been written out counts as changed.
+     *
+     * @return if there are changes that haven't been written
+     */
+    public boolean isModified() {
+        return getModificationCount() != this.writtenModificationCount;
+    }
+
+    /**
+     * Records that the data matches what is on disk, so it only counts as
+     * modified once it changes.  This is meant to be called right after the
+     * data has been read, before anything such as the cleanup changes it.
+     */
+    public void markUnmodified() {
+        this.writtenModificationCount = getModificationCount();
+    }
+
+    /**
+     * Records that the data, one of its tasks or one of their days has
+     * changed.
+     */
+    protected void markModified() {
+        this.modificationCount.incrementAndGet();
+    }
+
+    /**
+     * Records the changes made since the last write or journal call to the
+     * change journal.  Nothing is done if there is no journal or nothing
+     * has changed since.
+     *
+     * @throws TimelordDataException if there is an error writing the
+     *         journal
+     */
+    public void journal() throws TimelordDataException {
+        ChangeJournal currentChangeJournal = this.changeJournal;
+        long currentModificationCount = getModificationCount();
+
+        if ((currentChangeJournal != null)
+                && (currentModificationCount != journaledModificationCount)
+                && (currentModificationCount != writtenModificationCount)) {
+
+            currentChangeJournal.record(snapshot());
+            journaledModificationCount = currentModificationCount;
+        }
+    }
+
+    /**
+     * Writes out this object using the default Reader/Writer.  What is
+     * written is a snapshot, so the data can carry on changing while the
+     * file is written.  Once written the change journal is cleared and the
+     * startup summary is brought up to date.
+     * <p>
+     * The snapshot is taken while holding the output lock, so writes land
+     * on disk in the order their snapshots were taken.  The modification
+     * count is read before the snapshot, so a change made while writing
+     * still leaves the data marked as modified.
      *
      * @throws TimelordDataException if there is an error writing the data.
      */
-    public synchronized void write() throws TimelordDataException {
+    public void write() throws TimelordDataException {
         if (log.isTraceEnabled()) {
             log.trace("Writing file using default writer.");
         }
 
-        timelordReaderWriter.writeTimelordData(
-            this,
-            timelordReaderWriter.getDefaultOutputFile());
+        synchronized (outputLock) {
+            long currentModificationCount = getModificationCount();
+            TimelordData timelordDataSnapshot = snapshot();
+
+            timelordReaderWriter.writeTimelordData(
+                timelordDataSnapshot,
+                timelordReaderWriter.getDefaultOutputFile());
+
+            if (changeJournal != null) {
+                changeJournal.reset(
+                    timelordDataSnapshot,
+                    timelordReaderWriter.getOutputStamp());
+            }
+
+            if (startupSummary != null) {
+                startupSummary.write(timelordDataSnapshot);
+            }
+
+            writtenModificationCount = currentModificationCount;
+        }
+    }
+
+    /**
+     * Writes out this object using the default Reader/Writer, but only if
+     * it has changed since it was last written.
+     *
+     * @return if the data was written
+     * @throws TimelordDataException if there is an error writing the data.
+     */
+    public boolean writeIfModified() throws TimelordDataException {
+        boolean isWritten = false;
+
+        if (isModified()) {
+            write();
+            isWritten = true;
+        } else if (log.isTraceEnabled()) {
+            log.trace("Skipping write, nothing has changed.");
+        }
+
+        return isWritten;
+    }
+
+    /**
+     * Gets a point in time copy of the data for writing out or exporting.
+     * Each task is copied with its days sharing storage with the live task,
+     * and a task that hasn't changed since the last snapshot is reused
+     * as is.  If nothing has changed at all the last snapshot is returned
+     * again, so comparing versions tells if there is anything new.
+     * <p>
+     * A snapshot should be treated as read only.
+     *
+     * @return a snapshot of the data
+     */
+    public TimelordData snapshot() {
+        lock.readLock().lock();
+
+        try {
+            synchronized (snapshotLock) {
+                return buildSnapshot();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Puts together a snapshot of the data.  The caller holds the read lock
+     * and the snapshot lock.
+     *
+     * @return a snapshot of the data
+     */
+    protected TimelordData buildSnapshot() {
+        ArrayList<TimelordTask> snapshotTasks =
+            new ArrayList<TimelordTask>(taskCollection.size());
+
+        boolean isUnchanged = (lastSnapshot != null)
+            && (lastSnapshot.taskCollection.size() == taskCollection.size())
+            && (lastSnapshot.dayStartTime == this.dayStartTime)
+            && (lastSnapshot.timeZone == this.timeZone);
+
+        Iterator<TimelordTask> taskCollectionIterator =
+            taskCollection.iterator();
+
+        while (taskCollectionIterator.hasNext()) {
+            TimelordTask taskSnapshot =
+                ((TimelordTask) taskCollectionIterator.next()).snapshot();
+
+            if (isUnchanged && (lastSnapshot.taskCollection.get(
+                    snapshotTasks.size()) != taskSnapshot)) {
+
+                isUnchanged = false;
+            }
+
+            snapshotTasks.add(taskSnapshot);
+        }
+
+        if (!isUnchanged) {
+            TimelordData timelordDataSnapshot = new TimelordData();
+            timelordDataSnapshot.taskCollection = snapshotTasks;
+            timelordDataSnapshot.timelordReaderWriter =
+                this.timelordReaderWriter;
+            timelordDataSnapshot.dayStartTime = this.dayStartTime;
+            timelordDataSnapshot.timeZone = this.timeZone;
+            timelordDataSnapshot.snapshotVersion = ++this.snapshotVersion;
+
+            lastSnapshot = timelordDataSnapshot;
+        }
+
+        return lastSnapshot;
+    }
+
+    /**
+     * Gets a snapshot of the data holding only the days within a range.
+     *
+     * @param startDate the first day to keep, or null to keep everything
+     *        up to the end date
+     * @param endDate the last day to keep, or null to keep everything from
+     *        the start date
+     * @return a snapshot of the data in the range
+     */
+    public TimelordData snapshot(Date startDate, Date endDate) {
+        TimelordData timelordDataSnapshot = snapshot();
+
+        if ((startDate != null) || (endDate != null)) {
+            int firstDay = (startDate == null)
+                ? Integer.MIN_VALUE : DateUtil.toEpochDay(startDate);
+            int lastDay = (endDate == null)
+                ? Integer.MAX_VALUE : DateUtil.toEpochDay(endDate);
+
+            timelordDataSnapshot =
+                timelordDataSnapshot.copyRange(firstDay, lastDay);
+        }
+
+        return timelordDataSnapshot;
+    }
+
+    /**
+     * Copies a snapshot keeping only the days within a range.  This must
+     * only be called on a snapshot.
+     *
+     * @param firstDay the first day to keep as days since the epoch
+     * @param lastDay the last day to keep as days since the epoch
+     * @return a snapshot of the data in the range
+     */
+    protected TimelordData copyRange(int firstDay, int lastDay) {
+        TimelordData rangeSnapshot = new TimelordData();
+        rangeSnapshot.timelordReaderWriter = timelordReaderWriter;
+        rangeSnapshot.dayStartTime = dayStartTime;
+        rangeSnapshot.timeZone = timeZone;
+        rangeSnapshot.snapshotVersion = snapshotVersion;
+
+        Iterator<TimelordTask> taskCollectionIterator =
+            taskCollection.iterator();
+
+        while (taskCollectionIterator.hasNext()) {
+            TimelordTask timelordTask =
+                (TimelordTask) taskCollectionIterator.next();
+
+            rangeSnapshot.taskCollection.add(
+                timelordTask.copyRange(firstDay, lastDay));
+        }
+
+        return rangeSnapshot;
+    }
+
+    /**
+     * Gets the version of a snapshot.  Two snapshots with the same version
+     * hold the same data.
+     *
+     * @return the snapshot version
+     */
+    public long getSnapshotVersion() {
+        return this.snapshotVersion;
     }
 
     /**
@@ -129,17 +519,19 @@ public class TimelordData implements Serializable,
      * @param taskCollection a collection of TimeTrackTaskDays
      */
     public void setTaskCollection(List<TimelordTask> taskCollection) {
-        if (taskCollection instanceof LinkedList) {
-            this.taskCollection = (LinkedList<TimelordTask>) taskCollection;
+        if (taskCollection instanceof ArrayList) {
+            this.taskCollection = (ArrayList<TimelordTask>) taskCollection;
         } else {
-            this.taskCollection = new LinkedList<TimelordTask>(taskCollection);
+            this.taskCollection = new ArrayList<TimelordTask>(taskCollection);
         }
 
+        markModified();
         propertyChangeSupport.firePropertyChange(
             "taskCollection",
             null,
             this.taskCollection);
         resetTaskListeners();
+        invalidateDayTotals();
     }
 
     /**
@@ -184,6 +576,7 @@ public class TimelordData implements Serializable,
     public void setDayStartTime(double dayStartTime) {
         double oldDayStartTime = this.dayStartTime;
         this.dayStartTime = dayStartTime;
+        markModified();
         propertyChangeSupport.firePropertyChange(
             "dayStartTime",
             new Double(oldDayStartTime),
@@ -206,15 +599,23 @@ public class TimelordData implements Serializable,
      */
     public void setTimeZone(TimeZone timeZone) {
         this.timeZone = timeZone;
+        markModified();
     }
 
     /**
      * Sorts the task collection using the default comparator. This causes the
-     * task list to be sorted alphabetically.
+     * task list to be sorted alphabetically.  The collection is kept in order
+     * as tasks are added and renamed, so this is only needed when the user
+     * explicitly asks for it.
      */
     public void sortTaskCollection() {
-        List<TimelordTask> taskCollection = getTaskCollection();
-        Collections.sort(taskCollection, new TaskNameComparator());
+        lock.writeLock().lock();
+
+        try {
+            Collections.sort(taskCollection, new TaskNameComparator());
+        } finally {
+            lock.writeLock().unlock();
+        }
 
         if (log.isDebugEnabled()) {
             log.debug("Firing [taskCollection] property change event");
@@ -227,29 +628,304 @@ public class TimelordData implements Serializable,
     }
 
     /**
-     * Create a new task with the given name and add it to the list.
+     * Create a new task with the given name and add it to the list.  If a
+     * task with the name already exists it is used instead, and is unhidden
+     * and given a day for today so it shows up just like a new task would.
      *
      * @param taskName the name of the task to create and add
      * @return instance of the task that has been added to the data object
      */
     public TimelordTask addTask(String taskName) {
-        // TODO: check if a task of this name exists
-        TimelordTask timelordTask = new TimelordTask(taskName);
-        timelordTask.addToday();
-        addTask(timelordTask);
+        TimelordTask timelordTask = getTask(taskName);
+
+        if (timelordTask != null) {
+            if (log.isInfoEnabled()) {
+                log.info(
+                        "Task named [" + taskName + "] already exists, "
+                        + "using the existing task.");
+            }
+
+            if (timelordTask.isHidden()) {
+                timelordTask.setHidden(false);
+            }
+
+            timelordTask.addToday();
+        } else {
+            timelordTask = new TimelordTask(taskName);
+            timelordTask.addToday();
+            addTask(timelordTask);
+        }
 
         return timelordTask;
     }
 
     /**
-     * Adds a task to the list.
+     * Adds a task to the list.  If a task with the same name is already in
+     * the list, the days of the new task are merged into the existing task
+     * instead of adding a duplicate.
      *
      * @param timelordTask the task to add.
      */
     public void addTask(TimelordTask timelordTask) {
-        taskCollection.add(timelordTask);
-        resetTaskListeners();
-        sortTaskCollection(); // fires a change
+        TimelordTask existingTask;
+
+        // The lookup and the insert share the write lock, so two threads
+        // adding the same name can't both insert it.
+        lock.writeLock().lock();
+
+        try {
+            existingTask = findTask(timelordTask.getTaskName());
+
+            if (existingTask == null) {
+                insertTask(timelordTask);
+                taskNameIndex.put(toIndexKey(timelordTask.getTaskName()),
+                    timelordTask);
+                taskNameIndexSize = taskCollection.size();
+
+                addTaskListeners(timelordTask);
+                markModified();
+
+                if (dayTotals != null) {
+                    beginDayTotalsChange();
+                    timelordTask.addToDayTotals(
+                        dayTotals,
+                        timelordTask.isExportable() ? 1 : 0,
+                        1);
+                    dayTotalsSize = taskCollection.size();
+                    endDayTotalsChange();
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (existingTask == null) {
+            propertyChangeSupport.firePropertyChange(
+                "taskCollection",
+                null,
+                this.taskCollection);
+        } else if (existingTask == timelordTask) {
+            if (log.isWarnEnabled()) {
+                log.warn(
+                        "Task [" + timelordTask.getTaskName()
+                        + "] is already in the list.");
+            }
+        } else {
+            mergeTask(existingTask, timelordTask);
+        }
+    }
+
+    /**
+     * Inserts a task into the task collection at the position that keeps
+     * the collection in task name order.
+     *
+     * @param timelordTask the task to insert
+     */
+    protected void insertTask(TimelordTask timelordTask) {
+        int index = Collections.binarySearch(
+            taskCollection,
+            timelordTask,
+            new TaskNameComparator());
+
+        if (index < 0) {
+            index = -(index + 1);
+        }
+
+        taskCollection.add(index, timelordTask);
+    }
+
+    /**
+     * Sorts the task collection only if it is found to be out of order,
+     * which can happen with a data file written by hand or by an older
+     * version.
+     */
+    protected void ensureTaskCollectionSorted() {
+        TaskNameComparator taskNameComparator = new TaskNameComparator();
+
+        lock.writeLock().lock();
+
+        try {
+            sortIfNeeded(taskNameComparator);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Sorts the task collection if any pair of tasks is out of order.  The
+     * caller holds the write lock.
+     *
+     * @param taskNameComparator the comparator for the order
+     */
+    protected void sortIfNeeded(TaskNameComparator taskNameComparator) {
+        for (int i = 1; i < taskCollection.size(); i++) {
+            if (taskNameComparator.compare(
+                    taskCollection.get(i - 1), taskCollection.get(i)) > 0) {
+
+                if (log.isInfoEnabled()) {
+                    log.info("Task collection is out of order, sorting.");
+                }
+
+                Collections.sort(taskCollection, taskNameComparator);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Finds the task with the given name.  The match ignores case in the
+     * same way as the sorting of the task collection.
+     *
+     * @param taskName the name of the task to find
+     * @return the task or null if no task has the name
+     */
+    public TimelordTask getTask(String taskName) {
+        TimelordTask timelordTask = null;
+        boolean isIndexed;
+
+        lock.readLock().lock();
+
+        try {
+            isIndexed = isTaskNameIndexCurrent();
+
+            if (isIndexed && (taskName != null)) {
+                timelordTask =
+                    (TimelordTask) taskNameIndex.get(toIndexKey(taskName));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // The index is only rebuilt under the write lock.
+        if (!isIndexed) {
+            lock.writeLock().lock();
+
+            try {
+                timelordTask = findTask(taskName);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        return timelordTask;
+    }
+
+    /**
+     * Finds the task with the given name, rebuilding the task name index
+     * first if it is out of date.  The caller holds the write lock.
+     *
+     * @param taskName the name of the task to find
+     * @return the task or null if no task has the name
+     */
+    protected TimelordTask findTask(String taskName) {
+        TimelordTask timelordTask = null;
+
+        if (!isTaskNameIndexCurrent()) {
+            rebuildTaskNameIndex();
+        }
+
+        if (taskName != null) {
+            timelordTask =
+                (TimelordTask) taskNameIndex.get(toIndexKey(taskName));
+        }
+
+        return timelordTask;
+    }
+
+    /**
+     * Checks if the task name index has been built for the task collection
+     * as it is.  The caller holds the read or the write lock.
+     *
+     * @return if the index is current
+     */
+    protected boolean isTaskNameIndexCurrent() {
+        return (taskNameIndex != null)
+            && (taskNameIndexSize == taskCollection.size());
+    }
+
+    /**
+     * Rebuilds the task name index from the task collection.  If the
+     * collection holds more than one task with the same name the first one
+     * is indexed and the duplicate is logged.  The caller holds the write
+     * lock.
+     */
+    protected void rebuildTaskNameIndex() {
+        Map<String, TimelordTask> newTaskNameIndex =
+            new HashMap<String, TimelordTask>();
+
+        Iterator<TimelordTask> taskCollectionIterator =
+            taskCollection.iterator();
+
+        while (taskCollectionIterator.hasNext()) {
+            TimelordTask timelordTask =
+                (TimelordTask) taskCollectionIterator.next();
+            String key = toIndexKey(timelordTask.getTaskName());
+
+            if (newTaskNameIndex.containsKey(key)) {
+                if (log.isWarnEnabled()) {
+                    log.warn(
+                            "Found duplicate task named ["
+                            + timelordTask.getTaskName() + "]");
+                }
+            } else {
+                newTaskNameIndex.put(key, timelordTask);
+            }
+        }
+
+        taskNameIndex = newTaskNameIndex;
+        taskNameIndexSize = taskCollection.size();
+    }
+
+    /**
+     * Converts a task name into the key used for the task name index.
+     *
+     * @param taskName the task name
+     * @return the key for the index
+     */
+    protected String toIndexKey(String taskName) {
+        if (taskName == null) {
+            return "";
+        } else {
+            return taskName.toUpperCase();
+        }
+    }
+
+    /**
+     * Merges the days of a task into another task with the same name.
+     * Hours on the same day are added together and notes are only copied
+     * where the existing task doesn't have one.
+     *
+     * @param existingTask the task already in the collection
+     * @param timelordTask the task to merge in
+     */
+    protected void mergeTask(TimelordTask existingTask,
+            TimelordTask timelordTask) {
+
+        if (log.isInfoEnabled()) {
+            log.info(
+                    "Merging duplicate task named ["
+                    + timelordTask.getTaskName() + "]");
+        }
+
+        Iterator<TimelordTaskDay> taskDayIterator =
+            timelordTask.getTaskDayList().iterator();
+
+        while (taskDayIterator.hasNext()) {
+            TimelordTaskDay timelordTaskDay =
+                (TimelordTaskDay) taskDayIterator.next();
+
+            if (timelordTaskDay.getDate() != null) {
+                TimelordTaskDay existingTaskDay =
+                    existingTask.getTaskDay(timelordTaskDay.getDate(), true);
+
+                existingTaskDay.addMinutes(timelordTaskDay.getMinutes());
+
+                if ((existingTaskDay.getNote() == null)
+                        && (timelordTaskDay.getNote() != null)) {
+                    existingTaskDay.setNote(timelordTaskDay.getNote());
+                }
+            }
+        }
     }
 
     /**
@@ -281,9 +957,42 @@ public class TimelordData implements Serializable,
      */
     public boolean removeTask(TimelordTask timelordTask) {
         timelordTask.removePropertyChangeListener("hidden", this);
+        timelordTask.removePropertyChangeListener("taskName", this);
+
+        boolean isRemoved;
+
+        lock.writeLock().lock();
+
+        try {
+            isRemoved = taskCollection.remove(timelordTask);
+
+            if (isRemoved) {
+                String key = toIndexKey(timelordTask.getTaskName());
+
+                if ((taskNameIndex != null)
+                        && (taskNameIndex.get(key) == timelordTask)) {
+                    taskNameIndex.remove(key);
+                }
+
+                taskNameIndexSize = taskCollection.size();
+
+                if (dayTotals != null) {
+                    beginDayTotalsChange();
+                    timelordTask.addToDayTotals(
+                        dayTotals,
+                        timelordTask.isExportable() ? -1 : 0,
+                        -1);
+                    dayTotalsSize = taskCollection.size();
+                    endDayTotalsChange();
+                }
+
+                timelordTask.timelordData = null;
+                markModified();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
 
-        boolean isRemoved = taskCollection.remove(timelordTask);
-        resetTaskListeners();
         propertyChangeSupport.firePropertyChange(
             "taskCollection",
             null,
@@ -311,8 +1020,15 @@ public class TimelordData implements Serializable,
             TimelordTask timelordTask =
                 (TimelordTask) taskCollectionIterator.next();
 
-            timelordTask.removePropertyChangeListener("hidden", this);
-            timelordTask.addPropertyChangeListener("hidden", this);
+            addTaskListeners(timelordTask);
+        }
+
+        lock.writeLock().lock();
+
+        try {
+            rebuildTaskNameIndex();
+        } finally {
+            lock.writeLock().unlock();
         }
 
         if (log.isTraceEnabled()) {
@@ -320,6 +1036,289 @@ public class TimelordData implements Serializable,
         }
     }
 
+    /**
+     * Adds this object as a listener to the properties of a single task that
+     * it tracks, removing any previous registration first.
+     *
+     * @param timelordTask the task to listen to
+     */
+    protected void addTaskListeners(TimelordTask timelordTask) {
+        timelordTask.timelordData = this;
+        timelordTask.removePropertyChangeListener("hidden", this);
+        timelordTask.addPropertyChangeListener("hidden", this);
+        timelordTask.removePropertyChangeListener("taskName", this);
+        timelordTask.addPropertyChangeListener("taskName", this);
+    }
+
+    /**
+     * Gets the total minutes tracked on a day across all tasks.  This is read
+     * from the running day totals rather than by walking the tasks.
+     *
+     * @param day the day to get the total for
+     * @param includeNonExportable flag if the non-exportable time should
+     *        be included
+     * @return the total minutes tracked on the day
+     */
+    public int getDayMinutes(EpochDay day, boolean includeNonExportable) {
+        DayTotals currentDayTotals = dayTotals;
+        int sequence = dayTotalsSequence;
+
+        if ((currentDayTotals != null) && ((sequence & 1) == 0)
+                && !dayTotalsStale
+                && (dayTotalsSize == taskCollection.size())) {
+
+            int minutes = currentDayTotals.getMinutes(
+                day.intValue(), includeNonExportable);
+
+            if (sequence == dayTotalsSequence) {
+                return minutes;
+            }
+        }
+
+        // Something changed while reading, or the totals need building.
+        lock.writeLock().lock();
+
+        try {
+            return getDayTotals().getMinutes(
+                day.intValue(), includeNonExportable);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the total hours tracked on a day across all tasks.
+     *
+     * @param day the day to get the total for
+     * @param includeNonExportable flag if the non-exportable time should
+     *        be included
+     * @return the total hours tracked on the day
+     */
+    public double getDayTotal(EpochDay day, boolean includeNonExportable) {
+        return DateUtil.minutesToHours(
+            getDayMinutes(day, includeNonExportable));
+    }
+
+    /**
+     * Adds up the minutes tracked on each day of a range.  Each task is read
+     * in a single pass over its days in the range, and nothing is created,
+     * changed or listened to, so this is safe to use for reports over long
+     * stretches of history.
+     *
+     * @param startDay the first day of the range
+     * @param endDay the last day of the range
+     * @param filter picks the tasks to include, or null to include all
+     * @return the minutes for each day, where index zero is the start day
+     */
+    public int[] sumMinutesByDay(EpochDay startDay, EpochDay endDay,
+            TimelordTaskFilter filter) {
+
+        int dayCount = Math.max(endDay.intValue() - startDay.intValue() + 1, 0);
+        int[] totals = new int[dayCount];
+
+        lock.readLock().lock();
+
+        try {
+            for (int i = 0; i < taskCollection.size(); i++) {
+                TimelordTask timelordTask =
+                    (TimelordTask) taskCollection.get(i);
+
+                if ((filter == null) || filter.accept(timelordTask)) {
+                    timelordTask.addMinutesByDay(startDay.intValue(), totals);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return totals;
+    }
+
+    /**
+     * Adds up the hours tracked on each day of a range.
+     *
+     * @param startDay the first day of the range
+     * @param endDay the last day of the range
+     * @param filter picks the tasks to include, or null to include all
+     * @return the hours for each day, where index zero is the start day
+     */
+    public double[] sumHoursByDay(EpochDay startDay, EpochDay endDay,
+            TimelordTaskFilter filter) {
+
+        int[] dayMinutes = sumMinutesByDay(startDay, endDay, filter);
+        double[] dayHours = new double[dayMinutes.length];
+
+        for (int i = 0; i < dayMinutes.length; i++) {
+            dayHours[i] = DateUtil.minutesToHours(dayMinutes[i]);
+        }
+
+        return dayHours;
+    }
+
+    /**
+     * Adds up the hours tracked in each week of a range.  Weeks start on
+     * Monday, and only the days between the start and end day are counted
+     * in the first and last week.
+     *
+     * @param startDay the first day of the range
+     * @param endDay the last day of the range
+     * @param filter picks the tasks to include, or null to include all
+     * @return the hours for each week, where index zero is the week holding
+     *         the start day
+     */
+    public double[] sumHoursByWeek(EpochDay startDay, EpochDay endDay,
+            TimelordTaskFilter filter) {
+
+        int[] dayMinutes = sumMinutesByDay(startDay, endDay, filter);
+        int firstWeekOffset =
+            startDay.intValue() - startDay.getWeekStart().intValue();
+        int weekCount = (dayMinutes.length == 0) ? 0
+            : ((firstWeekOffset + dayMinutes.length - 1)
+                / EpochDay.DAYS_IN_WEEK) + 1;
+
+        int[] weekMinutes = new int[weekCount];
+
+        for (int i = 0; i < dayMinutes.length; i++) {
+            weekMinutes[(firstWeekOffset + i) / EpochDay.DAYS_IN_WEEK] +=
+                dayMinutes[i];
+        }
+
+        double[] weekHours = new double[weekCount];
+
+        for (int i = 0; i < weekCount; i++) {
+            weekHours[i] = DateUtil.minutesToHours(weekMinutes[i]);
+        }
+
+        return weekHours;
+    }
+
+    /**
+     * Gets the day totals, building them first if they haven't been built
+     * yet or no longer match the tasks.  The caller holds the write lock.
+     *
+     * @return the day totals
+     */
+    protected DayTotals getDayTotals() {
+        if ((dayTotals == null) || dayTotalsStale
+                || (dayTotalsSize != taskCollection.size())) {
+
+            rebuildDayTotals();
+        }
+
+        return dayTotals;
+    }
+
+    /**
+     * Builds the day totals from scratch by adding up every day of every
+     * task.  This also makes sure every task and day knows where to report
+     * changes to.  The caller holds the write lock.
+     */
+    protected void rebuildDayTotals() {
+        if (log.isDebugEnabled()) {
+            log.debug("Rebuilding the day totals.");
+        }
+
+        // Cleared first so anything removed while this runs triggers
+        // another rebuild.
+        dayTotalsStale = false;
+
+        DayTotals newDayTotals = new DayTotals();
+
+        for (int i = 0; i < taskCollection.size(); i++) {
+            TimelordTask timelordTask = (TimelordTask) taskCollection.get(i);
+            timelordTask.timelordData = this;
+            timelordTask.addToDayTotals(
+                newDayTotals,
+                timelordTask.isExportable() ? 1 : 0,
+                1);
+        }
+
+        beginDayTotalsChange();
+        dayTotals = newDayTotals;
+        dayTotalsSize = taskCollection.size();
+        endDayTotalsChange();
+    }
+
+    /**
+     * Called by a task when the minutes of one of its days have changed.
+     * The caller holds the write lock.
+     *
+     * @param epochDay the day that changed
+     * @param exportableMinutes the change to the exportable total
+     * @param allMinutes the change to the total of all tasks
+     */
+    protected void dayMinutesChanged(int epochDay,
+            int exportableMinutes, int allMinutes) {
+
+        if (dayTotals != null) {
+            beginDayTotalsChange();
+            dayTotals.add(epochDay, exportableMinutes, allMinutes);
+            endDayTotalsChange();
+        }
+    }
+
+    /**
+     * Called by a task when its exportable flag has changed, to move its
+     * time in or out of the exportable totals.
+     *
+     * @param timelordTask the task that changed
+     */
+    protected void taskExportableChanged(TimelordTask timelordTask) {
+        lock.writeLock().lock();
+
+        try {
+            if (dayTotals != null) {
+                beginDayTotalsChange();
+                timelordTask.addToDayTotals(
+                    dayTotals,
+                    timelordTask.isExportable() ? 1 : -1,
+                    0);
+                endDayTotalsChange();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marks the start of a change to the day totals, so optimistic readers
+     * know to retry.  The caller holds the write lock.
+     */
+    protected void beginDayTotalsChange() {
+        dayTotalsSequence++;
+    }
+
+    /**
+     * Marks the end of a change to the day totals.  The caller holds the
+     * write lock.
+     */
+    protected void endDayTotalsChange() {
+        dayTotalsSequence++;
+    }
+
+    /**
+     * Takes the write lock, for a task day that is about to change its
+     * minutes along with the day totals.
+     */
+    protected void lockForChange() {
+        lock.writeLock().lock();
+    }
+
+    /**
+     * Releases the write lock taken by lockForChange.
+     */
+    protected void unlockForChange() {
+        lock.writeLock().unlock();
+    }
+
+    /**
+     * Marks the day totals as needing to be built again the next time they
+     * are asked for.
+     */
+    protected void invalidateDayTotals() {
+        dayTotalsStale = true;
+    }
+
     /**
      * Removes all the time tracking data that is outside the range
      * provided.
@@ -348,9 +1347,127 @@ public class TimelordData implements Serializable,
      * <ul>
      * <li>Sort tasking in descending days</li>
      * <li>Removing any task days that have zero hours.
+     * <li>Removing any task days in the future.
      * </ul>
+     * Each task is cleaned in a single sweep over its days, and the tasks
+     * are split up between one thread per processor.  If the threads fail
+     * or this thread is interrupted while waiting on them, they are
+     * cancelled and waited out before the tasks are cleansed again on this
+     * thread, and the interrupt is passed on afterwards.
      */
     public void cleanse() {
+        long startTime = System.currentTimeMillis();
+        List<TimelordTask> taskCollection = getTaskCollection();
+        int today = EpochDay.today().intValue();
+        int threads = Math.min(
+            Runtime.getRuntime().availableProcessors(),
+            taskCollection.size());
+
+        if (threads > 1) {
+            ExecutorService executorService =
+                Executors.newFixedThreadPool(threads);
+            List<Future<?>> futures = new ArrayList<Future<?>>(threads);
+            boolean isCleansed = false;
+            boolean isInterrupted = false;
+
+            try {
+                for (int i = 0; i < threads; i++) {
+                    futures.add(executorService.submit(new CleanseRange(
+                        taskCollection.subList(
+                            i * taskCollection.size() / threads,
+                            (i + 1) * taskCollection.size() / threads),
+                        today)));
+                }
+
+                for (int i = 0; i < futures.size(); i++) {
+                    ((Future<?>) futures.get(i)).get();
+                }
+
+                isCleansed = true;
+            } catch (ExecutionException e) {
+                if (log.isErrorEnabled()) {
+                    log.error("Failed to cleanse in parallel, "
+                            + "cleansing on this thread instead.", e);
+                }
+            } catch (InterruptedException e) {
+                if (log.isWarnEnabled()) {
+                    log.warn("Interrupted cleansing in parallel, "
+                            + "cleansing on this thread instead.");
+                }
+
+                isInterrupted = true;
+            } finally {
+                if (!isCleansed) {
+                    for (int i = 0; i < futures.size(); i++) {
+                        ((Future<?>) futures.get(i)).cancel(true);
+                    }
+                }
+
+                executorService.shutdown();
+            }
+
+            if (!isCleansed) {
+                // Let any range already underway finish before going over
+                // the same tasks again.
+                boolean isTerminated = false;
+
+                while (!isTerminated) {
+                    try {
+                        isTerminated = executorService.awaitTermination(
+                            1, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        isInterrupted = true;
+                    }
+                }
+
+                new CleanseRange(taskCollection, today).run();
+            }
+
+            if (isInterrupted) {
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            new CleanseRange(taskCollection, today).run();
+        }
+
+        ensureTaskCollectionSorted();
+
+        if (log.isInfoEnabled()) {
+            log.info("Cleansed [" + taskCollection.size() + "] tasks in ["
+                    + (System.currentTimeMillis() - startTime) + "ms] on ["
+                    + Math.max(threads, 1) + "] threads");
+        }
+    }
+
+    /**
+     * Unloads the days of every task that are older than a given day.  The
+     * unloaded days are held compactly and turned back into task days only
+     * when something asks a task for one of them, while the day totals,
+     * range sums and snapshots carry on including them.  This is meant to
+     * be called once right after the data has been read, so the cleanup and
+     * everything after it only has to deal with the recent days.
+     *
+     * @param firstDay the oldest day to keep loaded
+     */
+    public void unloadDaysBefore(EpochDay firstDay) {
+        Collection<TimelordTask> taskCollection = getTaskCollection();
+        Iterator<TimelordTask> taskCollectionIterator =
+            taskCollection.iterator();
+
+        while (taskCollectionIterator.hasNext()) {
+            TimelordTask timelordTask =
+                (TimelordTask) taskCollectionIterator.next();
+
+            timelordTask.unloadDaysBefore(firstDay.intValue());
+        }
+    }
+
+    /**
+     * Switches every task over to holding its days in a columnar store.
+     * This trades the per day objects for primitive arrays and is meant to
+     * be called once after the data has been loaded and cleansed.
+     */
+    public void useColumnarStore() {
         Collection<TimelordTask> taskCollection = getTaskCollection();
         Iterator<TimelordTask> taskCollectionIterator =
             taskCollection.iterator();
@@ -359,10 +1476,7 @@ public class TimelordData implements Serializable,
             TimelordTask timelordTask =
                 (TimelordTask) taskCollectionIterator.next();
 
-            timelordTask.sort();
-            timelordTask.removeEmpty();
-            timelordTask.removeFuture();
-            timelordTask.correctTimeZone();
+            timelordTask.useColumnarStore();
         }
     }
 
@@ -408,6 +1522,51 @@ public class TimelordData implements Serializable,
                 "taskCollection",
                 null,
                 this.taskCollection);
+        } else if ("taskName".equals(evt.getPropertyName())) {
+            TimelordTask timelordTask = (TimelordTask) evt.getSource();
+            String oldKey = toIndexKey((String) evt.getOldValue());
+            String newKey = toIndexKey((String) evt.getNewValue());
+            boolean isMoved;
+
+            lock.writeLock().lock();
+
+            try {
+                if (taskNameIndex != null) {
+                    if (taskNameIndex.get(oldKey) == timelordTask) {
+                        taskNameIndex.remove(oldKey);
+                    }
+
+                    TimelordTask existingTask =
+                        (TimelordTask) taskNameIndex.get(newKey);
+
+                    if ((existingTask != null)
+                            && (existingTask != timelordTask)) {
+                        if (log.isWarnEnabled()) {
+                            log.warn(
+                                    "Task renamed to duplicate name ["
+                                    + evt.getNewValue() + "]");
+                        }
+                    } else {
+                        taskNameIndex.put(newKey, timelordTask);
+                    }
+                }
+
+                // Move just the renamed task to its new place in the order.
+                isMoved = taskCollection.remove(timelordTask);
+
+                if (isMoved) {
+                    insertTask(timelordTask);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            if (isMoved) {
+                propertyChangeSupport.firePropertyChange(
+                    "taskCollection",
+                    null,
+                    this.taskCollection);
+            }
         }
     }
 
@@ -435,8 +1594,8 @@ public class TimelordData implements Serializable,
         timelordDataClone.timeZone = this.timeZone;
 
         // Do an element by element copy of the task collection
-        LinkedList<TimelordTask> taskCollectionClone =
-            new LinkedList<TimelordTask>();
+        ArrayList<TimelordTask> taskCollectionClone =
+            new ArrayList<TimelordTask>(this.taskCollection.size());
 
         Iterator<TimelordTask> timelordTaskIterator =
             this.taskCollection.iterator();
@@ -446,10 +1605,38 @@ public class TimelordData implements Serializable,
         }
 
         timelordDataClone.taskCollection = taskCollectionClone;
+        timelordDataClone.taskNameIndex = null;
+        timelordDataClone.taskNameIndexSize = -1;
+        timelordDataClone.dayTotals = null;
+        timelordDataClone.dayTotalsSize = -1;
+        timelordDataClone.lastSnapshot = null;
+        timelordDataClone.changeJournal = null;
+        timelordDataClone.startupSummary = null;
+        timelordDataClone.modificationCount = new AtomicLong();
+        timelordDataClone.writtenModificationCount = -1;
+        timelordDataClone.journaledModificationCount = -1;
+        timelordDataClone.lock = new ReentrantReadWriteLock();
+        timelordDataClone.outputLock = new Object();
+        timelordDataClone.snapshotLock = new Object();
 
         return timelordDataClone;
     }
 
+    /**
+     * Filter that only accepts the tasks marked as exportable.
+     */
+    public static class ExportableTaskFilter implements TimelordTaskFilter {
+        /**
+         * Checks if the task is exportable.
+         *
+         * @param timelordTask the task to check
+         * @return if the task is exportable
+         */
+        public boolean accept(TimelordTask timelordTask) {
+            return timelordTask.isExportable();
+        }
+    }
+
     /**
      * This is a basic comparator to allow sorting of TimeTrackTask objects
      * based on the task name.
@@ -463,10 +1650,44 @@ public class TimelordData implements Serializable,
          * @return the result of task1name.compareTo(task2name)
          */
         public int compare(TimelordTask o1, TimelordTask o2) {
-            String task1name = ((TimelordTask) o1).getTaskName();
-            String task2name = ((TimelordTask) o2).getTaskName();
+            String task1key = ((TimelordTask) o1).getTaskNameKey();
+            String task2key = ((TimelordTask) o2).getTaskNameKey();
+
+            return task1key.compareTo(task2key);
+        }
+    }
+
+    /**
+     * Cleanses a range of the tasks, so the tasks can be split between
+     * threads.
+     */
+    protected static class CleanseRange implements Runnable {
+        /** The tasks to cleanse. */
+        protected List<TimelordTask> tasks;
+
+        /** The current day as days since the epoch. */
+        protected int today;
+
+        /**
+         * Creates the range.
+         *
+         * @param tasks the tasks to cleanse
+         * @param today the current day as days since the epoch
+         */
+        public CleanseRange(List<TimelordTask> tasks, int today) {
+            this.tasks = tasks;
+            this.today = today;
+        }
 
-            return task1name.toUpperCase().compareTo(task2name.toUpperCase());
+        /**
+         * Cleanses each of the tasks.
+         */
+        public void run() {
+            Iterator<TimelordTask> taskIterator = tasks.iterator();
+
+            while (taskIterator.hasNext()) {
+                ((TimelordTask) taskIterator.next()).cleanse(today);
+            }
         }
     }
 }
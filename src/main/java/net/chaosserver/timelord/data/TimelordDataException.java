@@ -27,6 +27,15 @@ package net.chaosserver.timelord.data;
  */
 @SuppressWarnings("serial")
 public class TimelordDataException extends Exception {
+    /**
+     * Constructor.
+     *
+     * @param s descrition of error
+     */
+    public TimelordDataException(String s) {
+        super(s);
+    }
+
     /**
      * Constructor.
      *
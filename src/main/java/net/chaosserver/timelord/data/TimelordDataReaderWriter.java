@@ -17,7 +17,22 @@ along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
 */
 package net.chaosserver.timelord.data;
 
+import net.chaosserver.timelord.util.DateUtil;
+import net.chaosserver.timelord.util.EpochDay;
+
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
 import javax.swing.filechooser.FileFilter;
 
 import org.apache.commons.logging.Log;
@@ -30,6 +45,370 @@ public abstract class TimelordDataReaderWriter {
     /** The logger. */
     private static Log logger = LogFactory.getLog(ExcelDataReaderWriter.class);
 
+    /** Extension added to a file while it is being written. */
+    public static final String TEMP_EXTENSION = ".tmp";
+
+    /** Name of the directory backups are kept in. */
+    public static final String BACKUP_DIRECTORY = "TimelordBackups";
+
+    /** Extension added to backups that are compressed. */
+    public static final String COMPRESSED_EXTENSION = ".gzip";
+
+    /** The default number of recent backups kept of each file. */
+    public static final int DEFAULT_BACKUP_RETENTION = 50;
+
+    /**
+     * The default number of days a daily backup is kept for.  Zero keeps
+     * the daily backups for good.
+     */
+    public static final int DEFAULT_DAILY_BACKUP_DAYS = 0;
+
+    /** Length of the content hash in a backup name. */
+    private static final int HASH_LENGTH = 40;
+
+    /**
+     * The number of weeks of recent days to load when reading, counting the
+     * current week.  Older days are only loaded when asked for.  Zero loads
+     * everything.
+     */
+    protected int loadedWeeks = 0;
+
+    /**
+     * The number of recent backups kept of each file, newest first.  Zero
+     * keeps every backup.
+     */
+    protected int backupRetention = DEFAULT_BACKUP_RETENTION;
+
+    /**
+     * The number of days the newest backup of each day is kept for beyond
+     * the recent backups.  Zero keeps them for good.
+     */
+    protected int dailyBackupDays = DEFAULT_DAILY_BACKUP_DAYS;
+
+    /** Flag if backups are kept of the files written. */
+    protected boolean keepingBackups = true;
+
+    /**
+     * Sets the number of weeks of recent days to load when reading.
+     *
+     * @param loadedWeeks the number of weeks to load, or zero to load
+     *        everything
+     */
+    public void setLoadedWeeks(int loadedWeeks) {
+        this.loadedWeeks = loadedWeeks;
+    }
+
+    /**
+     * Gets the number of weeks of recent days to load when reading.
+     *
+     * @return the number of weeks to load, or zero to load everything
+     */
+    public int getLoadedWeeks() {
+        return this.loadedWeeks;
+    }
+
+    /**
+     * Sets the number of recent backups kept of each file.
+     *
+     * @param backupRetention the number of backups to keep, or zero to
+     *        keep every backup
+     */
+    public void setBackupRetention(int backupRetention) {
+        this.backupRetention = backupRetention;
+    }
+
+    /**
+     * Gets the number of recent backups kept of each file.
+     *
+     * @return the number of backups to keep, or zero to keep every backup
+     */
+    public int getBackupRetention() {
+        return this.backupRetention;
+    }
+
+    /**
+     * Sets the number of days the newest backup of each day is kept for.
+     *
+     * @param dailyBackupDays the number of days, or zero to keep the daily
+     *        backups for good
+     */
+    public void setDailyBackupDays(int dailyBackupDays) {
+        this.dailyBackupDays = dailyBackupDays;
+    }
+
+    /**
+     * Gets the number of days the newest backup of each day is kept for.
+     *
+     * @return the number of days, or zero to keep the daily backups for
+     *         good
+     */
+    public int getDailyBackupDays() {
+        return this.dailyBackupDays;
+    }
+
+    /**
+     * Sets if backups are kept of the files written.
+     *
+     * @param keepingBackups if backups should be kept
+     */
+    public void setKeepingBackups(boolean keepingBackups) {
+        this.keepingBackups = keepingBackups;
+    }
+
+    /**
+     * Checks if backups are kept of the files written.
+     *
+     * @return if backups are kept
+     */
+    public boolean isKeepingBackups() {
+        return this.keepingBackups;
+    }
+
+    /**
+     * Unloads the days of freshly read data that fall before the weeks
+     * that should be loaded.  Readers call this right after reading.
+     *
+     * @param timelordData the data that has just been read
+     */
+    protected void unloadOlderDays(TimelordData timelordData) {
+        if (getLoadedWeeks() > 0) {
+            timelordData.unloadDaysBefore(
+                new EpochDay(getFirstLoadedDay()));
+        }
+    }
+
+    /**
+     * Gets the oldest day that should be loaded when reading.
+     *
+     * @return the first day of the loaded weeks as days since the epoch,
+     *         or the smallest int if everything should be loaded
+     */
+    protected int getFirstLoadedDay() {
+        if (getLoadedWeeks() > 0) {
+            return EpochDay.today().getWeekStart().plusDays(
+                -EpochDay.DAYS_IN_WEEK * (getLoadedWeeks() - 1)).intValue();
+        } else {
+            return Integer.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Replaces a file with the given bytes.  The bytes are written to a
+     * temporary file next to it which is synced to disk and then renamed
+     * over the file, so a crash part way through leaves either the old
+     * file or the new one and never a half written one.
+     * <p>
+     * Where the platform can't rename over an existing file the old file
+     * is deleted first, which leaves a short window without the file but
+     * still never a half written one.
+     *
+     * @param file the file to replace
+     * @param bytes the buffer holding the new contents
+     * @param length the number of bytes from the buffer to write
+     * @param isCompressed if the contents should be gzipped
+     * @throws IOException indicates an error writing the file
+     */
+    protected void replaceFile(File file, byte[] bytes, int length,
+            boolean isCompressed) throws IOException {
+
+        File tempFile = new File(
+            file.getParentFile(),
+            file.getName() + TEMP_EXTENSION);
+
+        FileOutputStream fileOutputStream = new FileOutputStream(tempFile);
+
+        try {
+            if (isCompressed) {
+                GZIPOutputStream zipOutputStream =
+                    new GZIPOutputStream(fileOutputStream);
+
+                zipOutputStream.write(bytes, 0, length);
+                zipOutputStream.finish();
+            } else {
+                fileOutputStream.write(bytes, 0, length);
+            }
+
+            fileOutputStream.flush();
+            fileOutputStream.getFD().sync();
+        } finally {
+            fileOutputStream.close();
+        }
+
+        if (!tempFile.renameTo(file)) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Couldn't rename over [" + file
+                    + "], deleting it first.");
+            }
+
+            file.delete();
+
+            if (!tempFile.renameTo(file)) {
+                throw new IOException(
+                    "Failed to rename [" + tempFile + "] to [" + file + "]");
+            }
+        }
+    }
+
+    /**
+     * Keeps a backup of the contents of a file.  Backups are named by the
+     * file name and a hash of the contents, so saving the same contents
+     * again doesn't write anything and just marks the existing backup as
+     * the newest.  Once a new backup is written the old backups of the file
+     * are thinned out, see removeOldBackups.  Nothing is done if backups
+     * aren't being kept.
+     *
+     * @param backupDirectory the directory to keep the backup in
+     * @param fileName the name of the file being backed up
+     * @param bytes the buffer holding the contents
+     * @param length the number of bytes from the buffer in the contents
+     * @param isCompressed if the backup should be gzipped
+     * @return the backup file, or null if backups aren't being kept
+     * @throws IOException indicates an error writing the backup
+     */
+    protected File writeBackup(File backupDirectory, String fileName,
+            byte[] bytes, int length, boolean isCompressed)
+        throws IOException {
+
+        File backupFile = null;
+
+        if (isKeepingBackups()) {
+            backupFile = new File(
+                backupDirectory,
+                fileName + "." + hash(bytes, length)
+                + (isCompressed ? COMPRESSED_EXTENSION : ""));
+
+            if (backupFile.exists()) {
+                if (logger.isTraceEnabled()) {
+                    logger.trace(
+                        "Backup [" + backupFile + "] already exists.");
+                }
+
+                backupFile.setLastModified(System.currentTimeMillis());
+            } else {
+                backupDirectory.mkdirs();
+                replaceFile(backupFile, bytes, length, isCompressed);
+                removeOldBackups(backupDirectory, fileName);
+            }
+        }
+
+        return backupFile;
+    }
+
+    /**
+     * Thins out the old backups of a file.  The newest backups up to the
+     * retention are kept, and beyond those the newest backup of each day
+     * is kept for the daily backup days, or for good if that is zero.
+     * Everything else is deleted, so a file damaged a while ago can still
+     * be recovered from the day before however often it is saved.
+     *
+     * @param backupDirectory the directory the backups are kept in
+     * @param fileName the name of the file the backups are of
+     */
+    protected void removeOldBackups(File backupDirectory, String fileName) {
+        File[] files = backupDirectory.listFiles();
+
+        if ((getBackupRetention() > 0) && (files != null)) {
+            String prefix = fileName + ".";
+            List<File> backupFiles = new ArrayList<File>();
+
+            for (int i = 0; i < files.length; i++) {
+                String name = files[i].getName();
+
+                if (name.startsWith(prefix)
+                        && !name.endsWith(TEMP_EXTENSION)
+                        && isHash(name.substring(prefix.length()))) {
+
+                    backupFiles.add(files[i]);
+                }
+            }
+
+            Collections.sort(backupFiles, new Comparator<File>() {
+                public int compare(File file, File otherFile) {
+                    long difference =
+                        otherFile.lastModified() - file.lastModified();
+
+                    return (difference < 0) ? -1 : ((difference > 0) ? 1 : 0);
+                }
+            });
+
+            int firstDailyDay = (getDailyBackupDays() > 0)
+                ? EpochDay.today().plusDays(
+                    1 - getDailyBackupDays()).intValue()
+                : Integer.MIN_VALUE;
+            Set<Integer> keptDays = new HashSet<Integer>();
+
+            for (int i = 0; i < backupFiles.size(); i++) {
+                File backupFile = (File) backupFiles.get(i);
+                int backupDay = DateUtil.toEpochDay(
+                    new Date(backupFile.lastModified()));
+                boolean isNewestOfDay =
+                    keptDays.add(Integer.valueOf(backupDay));
+
+                if ((i >= getBackupRetention())
+                        && (!isNewestOfDay || (backupDay < firstDailyDay))) {
+
+                    if (logger.isDebugEnabled()) {
+                        logger.debug(
+                            "Removing old backup [" + backupFile + "]");
+                    }
+
+                    backupFile.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if the end of a backup name is a content hash, with or without
+     * the compressed extension.
+     *
+     * @param suffix the backup name after the file name
+     * @return if the suffix is a content hash
+     */
+    private static boolean isHash(String suffix) {
+        boolean result = (suffix.length() == HASH_LENGTH)
+            || (suffix.length()
+                == HASH_LENGTH + COMPRESSED_EXTENSION.length()
+                && suffix.endsWith(COMPRESSED_EXTENSION));
+
+        for (int i = 0; result && (i < HASH_LENGTH); i++) {
+            result = Character.digit(suffix.charAt(i), 16) >= 0;
+        }
+
+        return result;
+    }
+
+    /**
+     * Works out the hash of some contents as hex.
+     *
+     * @param bytes the buffer holding the contents
+     * @param length the number of bytes from the buffer in the contents
+     * @return the SHA-1 hash of the contents as hex
+     * @throws IOException if the hash isn't available
+     */
+    private static String hash(byte[] bytes, int length) throws IOException {
+        MessageDigest messageDigest;
+
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            IOException ioException = new IOException("No SHA-1 available");
+            ioException.initCause(e);
+            throw ioException;
+        }
+
+        messageDigest.update(bytes, 0, length);
+        byte[] digest = messageDigest.digest();
+        StringBuffer hex = new StringBuffer(HASH_LENGTH);
+
+        for (int i = 0; i < digest.length; i++) {
+            hex.append(Character.forDigit((digest[i] >> 4) & 0xf, 16));
+            hex.append(Character.forDigit(digest[i] & 0xf, 16));
+        }
+
+        return hex.toString();
+    }
+
     /**
      * Reads the timelordData from a default location or location specified
      * by calling concrete setters.
@@ -59,6 +438,28 @@ public abstract class TimelordDataReaderWriter {
      */
     public abstract File getDefaultOutputFile();
 
+    /**
+     * Gets a stamp of the data at the default location as it is on disk
+     * now, made from the lengths and modification times of its files.  It
+     * changes whenever the data is written there, so a file kept alongside
+     * can tell which version of the data it was written against.
+     *
+     * @return the stamp, which is 0 if nothing has been written
+     */
+    public long getOutputStamp() {
+        return getFileStamp(getDefaultOutputFile());
+    }
+
+    /**
+     * Gets a stamp of one file made from its length and modification time.
+     *
+     * @param file the file
+     * @return the stamp, which is 0 if the file doesn't exist
+     */
+    protected static long getFileStamp(File file) {
+        return (file.length() * 31) + file.lastModified();
+    }
+
      /**
       * Returns the basic file filter that allows everything.
       *
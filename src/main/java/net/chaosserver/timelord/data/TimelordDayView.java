@@ -17,7 +17,9 @@ along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
 */
 package net.chaosserver.timelord.data;
 
+import net.chaosserver.timelord.util.Clock;
 import net.chaosserver.timelord.util.DateUtil;
+import net.chaosserver.timelord.util.EpochDay;
 import net.chaosserver.timelord.util.PropertyChangeSupport;
 
 import org.apache.commons.logging.Log;
@@ -50,8 +52,8 @@ public class TimelordDayView implements PropertyChangeListener {
     /** The main data object being shown. */
     protected TimelordData timelordData;
 
-    /** The date this view represents. */
-    protected Date viewDate;
+    /** The day this view represents. */
+    protected EpochDay viewDay;
 
     /** List of all the tasks. */
     protected List<TimelordTask> viewTaskList;
@@ -66,11 +68,30 @@ public class TimelordDayView implements PropertyChangeListener {
      * @param viewDate the date being viewed.
      */
     public TimelordDayView(TimelordData timelordData, Date viewDate) {
+        this(timelordData, EpochDay.valueOf(viewDate));
+    }
+
+    /**
+     * Constructs a new view for the given day.
+     *
+     * @param timelordData the main data file.
+     * @param viewDay the day being viewed.
+     */
+    public TimelordDayView(TimelordData timelordData, EpochDay viewDay) {
         setTimelordData(timelordData);
-        this.viewDate = DateUtil.trunc(viewDate);
+        this.viewDay = viewDay;
         buildTaskCollection();
     }
 
+    /**
+     * Gets the day this view represents.
+     *
+     * @return the day being viewed
+     */
+    public EpochDay getViewDay() {
+        return this.viewDay;
+    }
+
     /**
      * Setter for the timelordData object.
      *
@@ -135,7 +156,7 @@ public class TimelordDayView implements PropertyChangeListener {
                 (TimelordTask) taskCollectionIterator.next();
 
             TimelordTaskDay taskDay =
-                timelordTask.getTaskDay(viewDate, true);
+                timelordTask.getTaskDay(viewDay, true);
 
             taskDay.addPropertyChangeListener(this);
             taskDayListeners.add(taskDay);
@@ -175,52 +196,8 @@ public class TimelordDayView implements PropertyChangeListener {
      * @return the total amount of hours that has been tracked today.
      */
     public double getTotalTimeToday(boolean includeNonExportable) {
-        if (log.isTraceEnabled()) {
-            log.trace("Calculating total time for today.");
-        }
-
-        double totalTimeToday = 0;
-
-        if (log.isTraceEnabled()) {
-            log.trace("viewTaskList has size of [" + viewTaskList.size() + "]");
-        }
-
-        Iterator<TimelordTask> viewTaskListIterator = viewTaskList.iterator();
-
-        while (viewTaskListIterator.hasNext()) {
-            TimelordTask timelordTask =
-                (TimelordTask) viewTaskListIterator.next();
-
-            log.trace(
-                    "[" + timelordTask.getTaskName() + "] checking "
-                    + "for date of [" + viewDate + "]");
-
-            if(includeNonExportable || timelordTask.isExportable()) {
-                TimelordTaskDay taskDay = timelordTask.getTaskDay(viewDate);
-
-                if (taskDay != null) {
-                    double todayTime = taskDay.getHours();
-                    totalTimeToday += todayTime;
-
-                    if (log.isTraceEnabled()) {
-                        log.trace(
-                                "[" + timelordTask.getTaskName()
-                                + "] has ["
-                                + todayTime
-                                + "] hours for today.  Total time = ["
-                                + totalTimeToday
-                                + "]");
-                    }
-                }
-            } else {
-                if (log.isTraceEnabled()) {
-                    log.trace(
-                            "[" + timelordTask.getTaskName()
-                            + "] skipped non exportable task.");
-                }
-
-            }
-        }
+        double totalTimeToday =
+            getTimelordData().getDayTotal(viewDay, includeNonExportable);
 
         if (log.isDebugEnabled()) {
             log.debug("Total time = [" + totalTimeToday + "]");
@@ -248,7 +225,7 @@ public class TimelordDayView implements PropertyChangeListener {
                     + "]");
         }
 
-        Calendar today = Calendar.getInstance();
+        Calendar today = Clock.getInstance().getCalendar();
         DateUtil.trunc(today);
 
         today.add(Calendar.MINUTE, (int) minutesSoFar);
@@ -264,30 +241,12 @@ public class TimelordDayView implements PropertyChangeListener {
      * @return the amount of time that is not yet tracked.
      */
     public double getUntrackedTime() {
-        Date today = DateUtil.trunc(new Date());
+        EpochDay today = EpochDay.today();
 
-        double hourOfDay =
-            Calendar.getInstance().get(Calendar.HOUR_OF_DAY)
-            + (Calendar.getInstance().get(Calendar.MINUTE)
-            / DateUtil.MINUTE_IN_HOUR);
+        double hourOfDay = Clock.getInstance().getHourOfDay();
 
         double dayStartTime = getTimelordData().getDayStartTime();
-        double totalTimeToday = 0;
-
-        Iterator<TimelordTask> viewTaskListIterator =
-            getTaskCollection().iterator();
-
-        while (viewTaskListIterator.hasNext()) {
-            TimelordTask timelordTask =
-                (TimelordTask) viewTaskListIterator.next();
-
-            TimelordTaskDay taskDay = timelordTask.getTaskDay(today);
-
-            if (taskDay != null) {
-                double todayTime = taskDay.getHours();
-                totalTimeToday += todayTime;
-            }
-        }
+        double totalTimeToday = getTimelordData().getDayTotal(today, true);
 
         double untrackedTimeLeftToday =
             hourOfDay - dayStartTime - totalTimeToday;
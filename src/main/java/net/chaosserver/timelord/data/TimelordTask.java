@@ -18,6 +18,7 @@ along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
 package net.chaosserver.timelord.data;
 
 import net.chaosserver.timelord.util.DateUtil;
+import net.chaosserver.timelord.util.EpochDay;
 import net.chaosserver.timelord.util.PropertyChangeSupport;
 
 import org.apache.commons.logging.Log;
@@ -25,12 +26,11 @@ import org.apache.commons.logging.LogFactory;
 
 import java.beans.PropertyChangeListener;
 
-import java.util.Calendar;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 
 
@@ -39,13 +39,23 @@ import java.util.List;
  * are individual task days to indicate data for a day. For synchronization
  * purposes, anything that modifies the taskDayList property should be
  * synchronized on the object itself.
+ * <p>
+ * The task days are held in a random access list that is kept sorted by
+ * epoch day with the most recent day first, so finding the day for a date
+ * or the place to insert a new one is a binary search rather than a walk
+ * of the full history.
+ * <p>
+ * A task can optionally be switched over to a columnar TaskDayStore with
+ * useColumnarStore.  After that the days are held as primitive arrays and
+ * TimelordTaskDay objects are only created as views when they are asked
+ * for, which saves a large amount of memory on long histories.
  */
 public class TimelordTask implements Cloneable {
     /** Logger. */
     private static Log log = LogFactory.getLog(TimelordTask.class);
 
     /** Max Listeners. */
-    private static final int MAX_LISTENERS = 3;
+    private static final int MAX_LISTENERS = 4;
 
     /** Property Change Support. */
     protected PropertyChangeSupport propertyChangeSupport =
@@ -54,6 +64,13 @@ public class TimelordTask implements Cloneable {
     /** The name of the task. */
     protected String taskName;
 
+    /**
+     * The key the task is sorted by, which is the upper case task name.
+     * It is worked out once when the name is set rather than on every
+     * comparison.
+     */
+    protected String taskNameKey = "";
+
     /** Flags if the task is exportable. */
     protected boolean exportable = true;
 
@@ -61,11 +78,63 @@ public class TimelordTask implements Cloneable {
     protected boolean hidden = false;
 
     /** List of task days associated for this task. */
-    protected LinkedList<TimelordTaskDay> taskDayList;
+    protected ArrayList<TimelordTaskDay> taskDayList;
+
+    /**
+     * The size of the taskDayList the last time it was known to be in
+     * order. The XMLDecoder appends directly onto the list returned by
+     * getTaskDayList, so when the size no longer matches the order is
+     * checked again before a binary search is trusted.
+     */
+    protected int sortedSize;
+
+    /**
+     * The columnar store for the task days, or null when the days are held
+     * in the taskDayList.
+     */
+    protected TaskDayStore taskDayStore;
+
+    /**
+     * Days older than any day of the task that haven't been turned into
+     * task days yet, newest first.  The store is never changed once it is
+     * set, so it can be shared with clones, and the days still waiting to
+     * be loaded run from unloadedStart to the end.  This is null once every
+     * day has been loaded.
+     */
+    protected transient TaskDayStore unloadedDays;
+
+    /** Position in the unloaded days of the newest day not yet loaded. */
+    protected transient int unloadedStart;
+
+    /**
+     * The data object holding this task, which keeps the day totals up to
+     * date as the minutes of the days change.  This is null for a task that
+     * hasn't been added to the data.
+     */
+    protected TimelordData timelordData;
+
+    /**
+     * Counts the changes made to the task or any of its days, so a
+     * snapshot can tell if it is still current.
+     */
+    protected volatile int version;
+
+    /** The last snapshot taken of this task, or null if there isn't one. */
+    protected TimelordTask snapshot;
+
+    /** The version of the task when the last snapshot was taken. */
+    protected int snapshotVersion;
+
+    /**
+     * The task this is a snapshot of, or null if it isn't a snapshot.  This
+     * lets a task be followed from one snapshot to the next when it has
+     * been renamed.
+     */
+    protected transient TimelordTask snapshotSource;
 
     /** Default constructor. */
     public TimelordTask() {
-        taskDayList = new LinkedList<TimelordTaskDay>();
+        taskDayList = new ArrayList<TimelordTaskDay>();
 
         if (log.isDebugEnabled()) {
             log.debug("Created a new TimelordTask");
@@ -94,6 +163,8 @@ public class TimelordTask implements Cloneable {
     public void setTaskName(String taskName) {
         String oldTaskName = this.taskName;
         this.taskName = taskName;
+        this.taskNameKey = (taskName == null) ? "" : taskName.toUpperCase();
+        markChanged();
         propertyChangeSupport.firePropertyChange(
             "taskName",
             oldTaskName,
@@ -109,6 +180,15 @@ public class TimelordTask implements Cloneable {
         return this.taskName;
     }
 
+    /**
+     * Gets the key used to sort tasks by name.
+     *
+     * @return the upper case task name
+     */
+    protected String getTaskNameKey() {
+        return this.taskNameKey;
+    }
+
     /**
      * Sets the exportable flag.
      *
@@ -117,6 +197,14 @@ public class TimelordTask implements Cloneable {
     public void setExportable(boolean exportable) {
         boolean oldExportable = this.exportable;
         this.exportable = exportable;
+        markChanged();
+
+        TimelordData owner = this.timelordData;
+
+        if ((owner != null) && (oldExportable != exportable)) {
+            owner.taskExportableChanged(this);
+        }
+
         propertyChangeSupport.firePropertyChange(
             "exportable",
             oldExportable,
@@ -140,6 +228,7 @@ public class TimelordTask implements Cloneable {
      */
     public void setHidden(boolean hidden) {
         this.hidden = hidden;
+        markChanged();
         propertyChangeSupport.firePropertyChange(
             "hidden",
             !this.hidden,
@@ -161,11 +250,20 @@ public class TimelordTask implements Cloneable {
      * @param taskDayList the new task day list
      */
     public synchronized void setTaskDayList(List<TimelordTaskDay> taskDayList) {
-        if (taskDayList instanceof LinkedList) {
-            this.taskDayList = (LinkedList<TimelordTaskDay>) taskDayList;
+        detachStore();
+        this.unloadedDays = null;
+
+        if (taskDayList instanceof ArrayList) {
+            this.taskDayList = (ArrayList<TimelordTaskDay>) taskDayList;
         } else {
-            this.taskDayList = new LinkedList<TimelordTaskDay>(taskDayList);
+            this.taskDayList = new ArrayList<TimelordTaskDay>(taskDayList);
         }
+
+        // Force the order to be verified on the next lookup.
+        this.sortedSize = -1;
+
+        markChanged();
+        invalidateDayTotals();
     }
 
     /**
@@ -173,12 +271,73 @@ public class TimelordTask implements Cloneable {
      * objects. Only one object per day should be in the list and it is sorted
      * so that the most recent item comes at the start of the list.
      * This method is meant for serialization and no direct manipulations of the
-     * list should be made.
+     * list should be made.  When the task is using a columnar store the list
+     * is a detached copy of the days.  Any days that haven't been loaded
+     * yet are loaded first.
      *
      * @return the task day list
      */
-    public List<TimelordTaskDay> getTaskDayList() {
-        return this.taskDayList;
+    public synchronized List<TimelordTaskDay> getTaskDayList() {
+        loadDays(Integer.MIN_VALUE);
+
+        if (taskDayStore != null) {
+            ArrayList<TimelordTaskDay> taskDayListCopy =
+                new ArrayList<TimelordTaskDay>(taskDayStore.size());
+
+            for (int i = 0; i < taskDayStore.size(); i++) {
+                TimelordTaskDay timelordTaskDay = new TimelordTaskDay();
+                timelordTaskDay.setDate(
+                    DateUtil.fromEpochDay(taskDayStore.getEpochDay(i)));
+                timelordTaskDay.addMinutes(taskDayStore.getMinutes(i));
+                timelordTaskDay.setNote(
+                    taskDayStore.getNote(taskDayStore.getEpochDay(i)));
+                taskDayListCopy.add(timelordTaskDay);
+            }
+
+            return taskDayListCopy;
+        } else {
+            return this.taskDayList;
+        }
+    }
+
+    /**
+     * Checks if the task is holding its days in a columnar store.
+     *
+     * @return if the columnar store is in use
+     */
+    public synchronized boolean isColumnar() {
+        return taskDayStore != null;
+    }
+
+    /**
+     * Moves the days of this task out of the task day list and into a
+     * columnar store.  Any TimelordTaskDay objects previously handed out
+     * are no longer connected to the task after this call.
+     */
+    public synchronized void useColumnarStore() {
+        if (taskDayStore == null) {
+            ensureSorted();
+
+            TaskDayStore newTaskDayStore =
+                new TaskDayStore(taskDayList.size());
+
+            for (int i = 0; i < taskDayList.size(); i++) {
+                TimelordTaskDay timelordTaskDay =
+                    (TimelordTaskDay) taskDayList.get(i);
+
+                if (timelordTaskDay.getDate() != null) {
+                    newTaskDayStore.insert(
+                        newTaskDayStore.size(),
+                        timelordTaskDay.getEpochDay(),
+                        timelordTaskDay.getMinutes(),
+                        timelordTaskDay.getNote());
+                }
+            }
+
+            taskDayStore = newTaskDayStore;
+            taskDayList = new ArrayList<TimelordTaskDay>();
+            sortedSize = 0;
+        }
     }
 
     /**
@@ -186,33 +345,32 @@ public class TimelordTask implements Cloneable {
      *
      * @return if there is a task for today
      */
-    public boolean isTodayPresent() {
+    public synchronized boolean isTodayPresent() {
         boolean todayPresent = false;
-        List<TimelordTaskDay> taskList = getTaskDayList();
+        ensureSorted();
 
-        if ((taskList != null) && !taskList.isEmpty()) {
-            Date todayDate = DateUtil.trunc(new Date());
+        if (getDayCount() > 0) {
+            int today = EpochDay.today().intValue();
 
-            TimelordTaskDay taskDay = (TimelordTaskDay) taskList.get(0);
-            Date taskDayDate = taskDay.getDate();
-
-            if (taskDayDate != null) {
+            if ((taskDayStore == null)
+                    && (((TimelordTaskDay) taskDayList.get(0)).getDate()
+                        == null)) {
+                if (log.isWarnEnabled()) {
+                    log.warn("Empty date field.  Removing taskDay.");
+                    taskDayList.remove(0);
+                    sortedSize = taskDayList.size();
+                }
+            } else {
                 if (log.isTraceEnabled()) {
                     log.trace(
-                            "Testing taskDayDate [" + this.getTaskName()
-                            + "] [" + taskDayDate.getTime()
-                            + "] against today [" + todayDate.getTime() + "]");
+                            "Testing taskDay [" + this.getTaskName()
+                            + "] [" + getEpochDayAt(0)
+                            + "] against today [" + today + "]");
                 }
 
-                if (taskDayDate.equals(todayDate)
-                        || taskDayDate.after(todayDate)) {
+                if (getEpochDayAt(0) >= today) {
                     todayPresent = true;
                 }
-            } else {
-                if (log.isWarnEnabled()) {
-                    log.warn("Empty date field.  Removing taskDay.");
-                    taskList.remove(taskDay);
-                }
             }
         }
 
@@ -226,18 +384,9 @@ public class TimelordTask implements Cloneable {
      */
     public synchronized TimelordTaskDay addToday() {
         if (!isTodayPresent()) {
-            TimelordTaskDay timelordTaskDay = new TimelordTaskDay();
-
-            Date todayDate = DateUtil.trunc(new Date());
-
-            timelordTaskDay.setDate(todayDate);
-            timelordTaskDay.setHours(0);
-
-            addTaskDay(timelordTaskDay);
-
-            return timelordTaskDay;
+            return getTaskDay(EpochDay.today(), true);
         } else {
-            return (TimelordTaskDay) taskDayList.getFirst();
+            return getTaskDayAt(0);
         }
     }
 
@@ -248,18 +397,7 @@ public class TimelordTask implements Cloneable {
      * @return the newly added task day
      */
     public synchronized TimelordTaskDay add(Date date) {
-        Date addDate = DateUtil.trunc(date);
-        TimelordTaskDay timelordTaskDay = getTaskDay(addDate);
-
-        if (timelordTaskDay == null) {
-            timelordTaskDay = new TimelordTaskDay();
-            timelordTaskDay.setDate(addDate);
-            timelordTaskDay.setHours(0);
-
-            addTaskDay(timelordTaskDay);
-        }
-
-        return timelordTaskDay;
+        return getTaskDay(EpochDay.valueOf(date), true);
     }
 
     /**
@@ -267,10 +405,8 @@ public class TimelordTask implements Cloneable {
      *
      * @return the task day for the current date
      */
-    public TimelordTaskDay getToday() {
-        addToday();
-
-        return (TimelordTaskDay) taskDayList.getFirst();
+    public synchronized TimelordTaskDay getToday() {
+        return addToday();
     }
 
     /**
@@ -294,47 +430,56 @@ public class TimelordTask implements Cloneable {
      * @return the TaskDate for the day, or a null if create is false
      *         and no object currently exists
      */
-    public synchronized TimelordTaskDay getTaskDay(Date dateToFind,
+    public TimelordTaskDay getTaskDay(Date dateToFind, boolean create) {
+        return getTaskDay(EpochDay.valueOf(dateToFind), create);
+    }
+
+    /**
+     * Gets the task day for a particular day and returns null if there is no
+     * taskDay for that day.
+     *
+     * @param dayToFind the day to find a taskDay for
+     * @return the taskDay for the day given or a null
+     */
+    public TimelordTaskDay getTaskDay(EpochDay dayToFind) {
+        return getTaskDay(dayToFind, false);
+    }
+
+    /**
+     * Gets the TaskDay object for the day to find.  If the create
+     * flag is true, than a new object will be created if there is no
+     * existing one.  If the day is older than the days loaded so far, the
+     * days back to it are loaded first.
+     *
+     * @param dayToFind the day to retrieve the task date object for.
+     * @param create should the object be created if one doesn't exist
+     * @return the TaskDate for the day, or a null if create is false
+     *         and no object currently exists
+     */
+    public synchronized TimelordTaskDay getTaskDay(EpochDay dayToFind,
         boolean create) {
         if (log.isDebugEnabled()) {
             log.debug(
-                    "Searching [" + getTaskName() + "] for date of ["
-                    + dateToFind + "]");
+                    "Searching [" + getTaskName() + "] for day of ["
+                    + dayToFind + "]");
         }
 
-        TimelordTaskDay timelordTaskDay = null;
-
-        Iterator<TimelordTaskDay> taskDayListIterator =
-            getTaskDayList().iterator();
-
-        while ((timelordTaskDay == null) && taskDayListIterator.hasNext()) {
-            TimelordTaskDay tempTimelordTaskDay =
-                (TimelordTaskDay) taskDayListIterator.next();
-
-            if (log.isDebugEnabled()) {
-                log.debug(
-                        "Testing tempTimelordTaskDay.getDate ["
-                        + tempTimelordTaskDay.getDate()
-                        + "] againt dateToFind of [" + dateToFind + "]");
-            }
+        loadDays(dayToFind.intValue());
 
-            if (dateToFind.equals(tempTimelordTaskDay.getDate())) {
-                timelordTaskDay = tempTimelordTaskDay;
-            } else if (dateToFind.after(tempTimelordTaskDay.getDate())) {
-                // If the date to find is after the date we want, then we are
-                // DONE.
-                break;
-            }
-        }
+        TimelordTaskDay timelordTaskDay = null;
+        int index = indexOfDay(dayToFind.intValue());
 
-        if ((timelordTaskDay == null) && create) {
+        if (index >= 0) {
+            timelordTaskDay = getTaskDayAt(index);
+        } else if (create) {
             if (log.isDebugEnabled()) {
                 log.debug(
-                        "Creating new TimelordTaskDay for [" + dateToFind
+                        "Creating new TimelordTaskDay for [" + dayToFind
                         + "]");
             }
 
-            timelordTaskDay = add(dateToFind);
+            timelordTaskDay = new TimelordTaskDay(dayToFind);
+            timelordTaskDay = insertTaskDay(-(index + 1), timelordTaskDay);
         }
 
         return timelordTaskDay;
@@ -342,135 +487,953 @@ public class TimelordTask implements Cloneable {
 
     /**
      * Adds a new task day object into the proper location in the list.
+     * When the task is using a columnar store the values are copied into
+     * the store and the view of the stored day is returned instead.
      *
      * @param timelordTaskDay the day to add
+     * @return the task day as held by the task
      */
-    public synchronized void addTaskDay(TimelordTaskDay timelordTaskDay) {
-        Date newTaskDate = timelordTaskDay.getDate();
-        boolean added = false;
+    public synchronized TimelordTaskDay addTaskDay(
+            TimelordTaskDay timelordTaskDay) {
 
-        for (int i = 0; i < taskDayList.size(); i++) {
-            TimelordTaskDay tempTimelordTaskDay =
-                (TimelordTaskDay) taskDayList.get(i);
+        loadDays(timelordTaskDay.getEpochDay());
 
-            if (newTaskDate.after(tempTimelordTaskDay.getDate())) {
-                taskDayList.add(i, timelordTaskDay);
-                added = true;
+        int index = indexOfDay(timelordTaskDay.getEpochDay());
 
-                break;
-            }
+        if (index < 0) {
+            index = -(index + 1);
         }
 
-        if (!added) {
-            taskDayList.addLast(timelordTaskDay);
+        return insertTaskDay(index, timelordTaskDay);
+    }
+
+    /**
+     * Inserts a task day at a position that is already known to keep the
+     * list in order and notifies the listeners.
+     *
+     * @param index the position in the list to insert at
+     * @param timelordTaskDay the day to insert
+     * @return the task day as held by the task
+     */
+    protected TimelordTaskDay insertTaskDay(int index,
+            TimelordTaskDay timelordTaskDay) {
+
+        if (taskDayStore != null) {
+            taskDayStore.insert(
+                index,
+                timelordTaskDay.getEpochDay(),
+                timelordTaskDay.getMinutes(),
+                timelordTaskDay.getNote());
+
+            timelordTaskDay =
+                taskDayStore.getView(this, timelordTaskDay.getEpochDay());
+        } else {
+            taskDayList.add(index, timelordTaskDay);
+            sortedSize = taskDayList.size();
+            timelordTaskDay.timelordTask = this;
         }
 
+        if (timelordTaskDay.getMinutes() != 0) {
+            invalidateDayTotals();
+        }
+
+        markChanged();
+
         propertyChangeSupport.firePropertyChange("taskDayList", null,
             taskDayList);
+
+        return timelordTaskDay;
+    }
+
+    /**
+     * Finds the position in the columnar store of the day behind a view,
+     * putting the day back into the store with no hours if it has been
+     * removed by one of the cleanup methods since the view was handed out.
+     *
+     * @param storedTaskDay the view to find
+     * @return the index of the day in the store
+     */
+    protected int storeIndexOf(StoredTaskDay storedTaskDay) {
+        int index = taskDayStore.indexOf(storedTaskDay.getEpochDay());
+
+        if (index < 0) {
+            index = -(index + 1);
+            taskDayStore.insert(index, storedTaskDay.getEpochDay(), 0, null);
+            taskDayStore.putView(storedTaskDay);
+            markChanged();
+        }
+
+        return index;
+    }
+
+    /**
+     * Moves the day behind a view to another day in the columnar store.
+     * If the store already holds the other day the hours of the view are
+     * added to it, and its note is kept unless it has none.
+     *
+     * @param storedTaskDay the view to move
+     * @param newEpochDay the day to move it to as days since the epoch
+     */
+    protected void moveStoredDay(StoredTaskDay storedTaskDay,
+            int newEpochDay) {
+
+        int oldEpochDay = storedTaskDay.getEpochDay();
+
+        if (oldEpochDay != newEpochDay) {
+            int oldIndex = taskDayStore.indexOf(oldEpochDay);
+            int movedMinutes = 0;
+            String movedNote = null;
+
+            if (oldIndex >= 0) {
+                movedMinutes = taskDayStore.getMinutes(oldIndex);
+                movedNote = taskDayStore.getNote(oldEpochDay);
+                taskDayStore.removeRange(oldIndex, oldIndex + 1);
+            }
+
+            int newIndex = taskDayStore.indexOf(newEpochDay);
+
+            if (newIndex >= 0) {
+                taskDayStore.setMinutes(
+                    newIndex, taskDayStore.getMinutes(newIndex) + movedMinutes);
+
+                if (taskDayStore.getNote(newEpochDay) == null) {
+                    taskDayStore.setNote(newEpochDay, movedNote);
+                }
+            } else {
+                taskDayStore.insert(
+                    -(newIndex + 1), newEpochDay, movedMinutes, movedNote);
+            }
+
+            storedTaskDay.epochDay = newEpochDay;
+            taskDayStore.putView(storedTaskDay);
+
+            if (movedMinutes != 0) {
+                invalidateDayTotals();
+            }
+
+            markChanged();
+        }
+    }
+
+    /**
+     * Stops using the columnar store.  Views of the store that are still
+     * held elsewhere are turned into plain days that are no longer part of
+     * the task, the same as the days of a list that has been replaced.
+     */
+    protected void detachStore() {
+        if (taskDayStore != null) {
+            taskDayStore.detachViews();
+            taskDayStore = null;
+        }
+    }
+
+    /**
+     * Gets the number of days held by the task.
+     *
+     * @return the number of days
+     */
+    protected int getDayCount() {
+        if (taskDayStore != null) {
+            return taskDayStore.size();
+        } else {
+            return taskDayList.size();
+        }
+    }
+
+    /**
+     * Gets the epoch day at a position in the days of the task.
+     *
+     * @param index the position
+     * @return the day as days since the epoch
+     */
+    protected int getEpochDayAt(int index) {
+        if (taskDayStore != null) {
+            return taskDayStore.getEpochDay(index);
+        } else {
+            return ((TimelordTaskDay) taskDayList.get(index)).getEpochDay();
+        }
+    }
+
+    /**
+     * Gets the minutes tracked at a position in the days of the task.
+     *
+     * @param index the position
+     * @return the minutes for the day
+     */
+    protected int getMinutesAt(int index) {
+        if (taskDayStore != null) {
+            return taskDayStore.getMinutes(index);
+        } else {
+            return ((TimelordTaskDay) taskDayList.get(index)).getMinutes();
+        }
+    }
+
+    /**
+     * Gets the task day at a position in the days of the task.
+     *
+     * @param index the position
+     * @return the task day, which is a view when using the columnar store
+     */
+    protected TimelordTaskDay getTaskDayAt(int index) {
+        if (taskDayStore != null) {
+            return taskDayStore.getView(this, taskDayStore.getEpochDay(index));
+        } else {
+            return (TimelordTaskDay) taskDayList.get(index);
+        }
+    }
+
+    /**
+     * Copies the day at one position over another while compacting.
+     *
+     * @param from the position to copy from
+     * @param to the position to copy to
+     */
+    protected void moveDay(int from, int to) {
+        if (taskDayStore != null) {
+            taskDayStore.move(from, to);
+        } else {
+            taskDayList.set(to, taskDayList.get(from));
+        }
+    }
+
+    /**
+     * Finds the position of the day in the task day list using a binary
+     * search over the newest first ordering.
+     *
+     * @param epochDay the day to find as days since the epoch
+     * @return the index of the day if it is present, otherwise
+     *         (-(insertion point) - 1) in the same way as
+     *         Collections.binarySearch
+     */
+    protected int indexOfDay(int epochDay) {
+        if (taskDayStore != null) {
+            return taskDayStore.indexOf(epochDay);
+        }
+
+        ensureSorted();
+
+        int low = 0;
+        int high = taskDayList.size() - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midDay = ((TimelordTaskDay) taskDayList.get(mid)).getEpochDay();
+
+            if (midDay > epochDay) {
+                low = mid + 1;
+            } else if (midDay < epochDay) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+
+        return -(low + 1);
+    }
+
+    /**
+     * Makes sure the task day list is in newest first order.  This is a no-op
+     * unless the list has been changed outside of this class, which is what
+     * the XMLDecoder does while reading a file.
+     */
+    protected void ensureSorted() {
+        if ((taskDayStore == null) && (sortedSize != taskDayList.size())) {
+            for (int i = 1; i < taskDayList.size(); i++) {
+                if (((TimelordTaskDay) taskDayList.get(i - 1)).getEpochDay()
+                        < ((TimelordTaskDay) taskDayList.get(i))
+                            .getEpochDay()) {
+
+                    Collections.sort(taskDayList, new DateTaskComparator());
+                    break;
+                }
+            }
+
+            sortedSize = taskDayList.size();
+        }
     }
 
     /**
      * Sorts the task list so that newest is always first.
      */
     public synchronized void sort() {
-        Collections.sort(getTaskDayList(), new DateTaskComparator());
+        // The columnar store is always kept in order.
+        Collections.sort(taskDayList, new DateTaskComparator());
+        sortedSize = taskDayList.size();
+        markChanged();
 
         if (log.isTraceEnabled()) {
             log.trace(
                     "First element of [" + this.getTaskName() + "] is ["
-                    + taskDayList.getFirst());
+                    + (taskDayList.isEmpty() ? null : taskDayList.get(0)));
         }
     }
 
     /**
      * One of the cleanup methods to find any TaskDay that has zero hours and
-     * remove it from the list.
+     * remove it from the list.  The most recent day is always kept.
      */
     public synchronized void removeEmpty() {
-        for (int i = 0; i < taskDayList.size(); i++) {
-            TimelordTaskDay tempTimelordTaskDay =
-                (TimelordTaskDay) taskDayList.get(i);
+        ensureSorted();
+
+        int kept = 0;
+        int dayCount = getDayCount();
 
-            if ((i != 0) && (tempTimelordTaskDay.getHours() == 0)) {
+        for (int i = 0; i < dayCount; i++) {
+            if ((i != 0) && (getMinutesAt(i) == 0)) {
                 if (log.isDebugEnabled()) {
                     log.debug(
                             "Found a TaskDay with zero hours.  Removing ["
-                            + tempTimelordTaskDay + "]");
+                            + getEpochDayAt(i) + "]");
                 }
-
-                taskDayList.remove(i);
-                i--;
+            } else {
+                moveDay(i, kept++);
             }
         }
+
+        truncateTaskDayList(kept);
     }
 
     /**
      * One of the cleanup methods to find any TaskDay that has zero hours int
      * the future remove it from the list.
      */
-    public void removeFuture() {
-        for (int i = 0; i < taskDayList.size(); i++) {
-            TimelordTaskDay tempTimelordTaskDay =
-                (TimelordTaskDay) taskDayList.get(i);
+    public synchronized void removeFuture() {
+        ensureSorted();
+
+        // Future days all sort to the front of the list, so only the
+        // leading run needs to be looked at.
+        int today = EpochDay.today().intValue();
+        int futureCount = 0;
+
+        while (futureCount < getDayCount()
+                && getEpochDayAt(futureCount) > today) {
+
+            if (log.isWarnEnabled()) {
+                log.warn(
+                        "Found a TaskDay that is in the future.  ["
+                        + getTaskName() + "] ["
+                        + getTaskDayAt(futureCount) + "]");
+            }
 
-            if(tempTimelordTaskDay.getDate().after(
-                    DateUtil.trunc(new Date()))) {
+            futureCount++;
+        }
+
+        if (futureCount > 0) {
+            if (taskDayStore != null) {
+                taskDayStore.removeRange(0, futureCount);
+            } else {
+                taskDayList.subList(0, futureCount).clear();
+                sortedSize = taskDayList.size();
+            }
 
+            markChanged();
+            invalidateDayTotals();
+        }
+    }
+
+    /**
+     * Cleans up the days of the task in one sweep.  The days are put newest
+     * first if they aren't already, the days in the future are dropped, as
+     * are the days with zero hours other than the most recent one, and any
+     * day that isn't set at midnight is warned about.  This does the work
+     * of sort, removeEmpty, removeFuture and correctTimeZone together, and
+     * only marks the task as changed if something was moved or removed.
+     *
+     * @param today the current day as days since the epoch
+     */
+    protected synchronized void cleanse(int today) {
+        boolean isReordered = false;
+
+        if ((taskDayStore == null) && (sortedSize != taskDayList.size())) {
+            // The columnar store is always kept in order.
+            for (int i = 1; !isReordered && (i < taskDayList.size()); i++) {
+                isReordered =
+                    ((TimelordTaskDay) taskDayList.get(i - 1)).getEpochDay()
+                    < ((TimelordTaskDay) taskDayList.get(i)).getEpochDay();
+            }
+
+            ensureSorted();
+        }
+
+        int kept = 0;
+        int dayCount = getDayCount();
+
+        for (int i = 0; i < dayCount; i++) {
+            if (getEpochDayAt(i) > today) {
                 if (log.isWarnEnabled()) {
                     log.warn(
                             "Found a TaskDay that is in the future.  ["
-                            + getTaskName() + "] [" + tempTimelordTaskDay
-                            + "]");
+                            + getTaskName() + "] ["
+                            + getTaskDayAt(i) + "]");
+                }
+            } else if ((i != 0) && (getMinutesAt(i) == 0)) {
+                if (log.isDebugEnabled()) {
+                    log.debug(
+                            "Found a TaskDay with zero hours.  Removing ["
+                            + getEpochDayAt(i) + "]");
+                }
+            } else {
+                if (taskDayStore == null) {
+                    Date date =
+                        ((TimelordTaskDay) taskDayList.get(i)).getDate();
+
+                    if ((date != null) && !DateUtil.isMidnight(date)
+                            && log.isWarnEnabled()) {
+
+                        log.warn(
+                                "Found a TaskDay that is not set a midnight.  ["
+                                + getTaskName() + "] [" + taskDayList.get(i)
+                                + "]");
+                    }
                 }
 
-                taskDayList.remove(i);
-                i--;
+                moveDay(i, kept++);
             }
         }
+
+        if (kept < dayCount) {
+            truncateTaskDayList(kept);
+        } else if (isReordered) {
+            markChanged();
+        }
     }
 
     /**
      * Removes all task day items in the list that is before
      * the start date.
      *
-     * @param startDate the date to remove items before
-     * @param endDate the date to remove items after
+     * @param startDate the date to remove items before, or null to keep
+     *        everything up to the end date
+     * @param endDate the date to remove items after, or null to keep
+     *        everything from the start date
      */
     public void removeTrackingOutsideRange(Date startDate, Date endDate) {
-        for (int i = 0; i < taskDayList.size(); i++) {
-            TimelordTaskDay tempTimelordTaskDay =
-                (TimelordTaskDay) taskDayList.get(i);
+        removeTrackingOutsideRange(
+            (startDate == null) ? null : EpochDay.valueOf(startDate),
+            (endDate == null) ? null : EpochDay.valueOf(endDate));
+    }
+
+    /**
+     * Removes all task day items in the list that are outside of the
+     * range of days.
+     *
+     * @param startDay the day to remove items before, or null to keep
+     *        everything up to the end day
+     * @param endDay the day to remove items after, or null to keep
+     *        everything from the start day
+     */
+    public synchronized void removeTrackingOutsideRange(EpochDay startDay,
+            EpochDay endDay) {
+
+        loadDays(Integer.MIN_VALUE);
+        ensureSorted();
+
+        int firstDay = Integer.MIN_VALUE;
+        int lastDay = Integer.MAX_VALUE;
+
+        if (startDay != null) {
+            firstDay = startDay.intValue();
+        }
+
+        if (endDay != null) {
+            lastDay = endDay.intValue();
+        }
+
+        int kept = 0;
+        int dayCount = getDayCount();
+
+        for (int i = 0; i < dayCount; i++) {
+            int epochDay = getEpochDayAt(i);
+
+            if (epochDay >= firstDay && epochDay <= lastDay) {
+                moveDay(i, kept++);
+            }
+        }
+
+        truncateTaskDayList(kept);
+    }
+
+    /**
+     * Drops everything in the task day list from the given size onwards.
+     * Used by the cleanup methods that compact the list in place rather than
+     * removing elements one at a time.
+     *
+     * @param newSize the number of entries to keep
+     */
+    protected void truncateTaskDayList(int newSize) {
+        if (newSize < getDayCount()) {
+            markChanged();
+            invalidateDayTotals();
+        }
+
+        if (taskDayStore != null) {
+            taskDayStore.truncate(newSize);
+            return;
+        }
+
+        if (newSize < taskDayList.size()) {
+            taskDayList.subList(newSize, taskDayList.size()).clear();
+        }
+
+        // Callers verify the order before compacting and removing entries
+        // never breaks it.
+        sortedSize = taskDayList.size();
+    }
+
+    /**
+     * Moves the days older than a given day out of the task day list and
+     * into a compact store, where they wait until something asks for them.
+     * The newest day is always kept loaded.  Days with no time are dropped
+     * on the way, the same as removeEmpty would.
+     * <p>
+     * The unloaded days still count towards the day totals and range sums,
+     * and are still part of every snapshot, so nothing outside of this
+     * class can tell they aren't loaded.
+     *
+     * @param firstDay the oldest day to keep loaded as days since the epoch
+     */
+    protected synchronized void unloadDaysBefore(int firstDay) {
+        ensureSorted();
+
+        // Every day newer than the one before the first day stays loaded.
+        int keep = indexOfDay(firstDay - 1);
+
+        if (keep < 0) {
+            keep = -(keep + 1);
+        }
+
+        keep = Math.max(keep, 1);
+
+        int dayCount = getDayCount();
+
+        if (keep < dayCount) {
+            int unloadedCount = 0;
+
+            if (unloadedDays != null) {
+                unloadedCount = unloadedDays.size() - unloadedStart;
+            }
+
+            TaskDayStore newUnloadedDays =
+                new TaskDayStore(dayCount - keep + unloadedCount);
+
+            for (int i = keep; i < dayCount; i++) {
+                int minutes = getMinutesAt(i);
+                String note;
+
+                if (taskDayStore != null) {
+                    note = taskDayStore.getNote(taskDayStore.getEpochDay(i));
+                } else {
+                    TimelordTaskDay timelordTaskDay =
+                        (TimelordTaskDay) taskDayList.get(i);
+
+                    if (timelordTaskDay.getDate() == null) {
+                        continue;
+                    }
+
+                    note = timelordTaskDay.getNote();
+                }
+
+                if (minutes != 0) {
+                    newUnloadedDays.insert(
+                        newUnloadedDays.size(),
+                        getEpochDayAt(i),
+                        minutes,
+                        note);
+                }
+            }
+
+            appendUnloadedDays(newUnloadedDays);
+            truncateTaskDayList(keep);
+
+            if (newUnloadedDays.size() > 0) {
+                unloadedDays = newUnloadedDays;
+            } else {
+                unloadedDays = null;
+            }
+
+            unloadedStart = 0;
+
+            if (log.isDebugEnabled()) {
+                log.debug(
+                        "Unloaded [" + newUnloadedDays.size() + "] days of ["
+                        + getTaskName() + "]");
+            }
+        }
+    }
+
+    /**
+     * Replaces the days of the task with the days held in a store, which
+     * is used by readers that decode straight into a store.  Only the days
+     * from the first loaded day on are turned into task days, and the rest
+     * wait until they are asked for.  The newest day is always loaded.
+     * The store is taken over by the task and must not be changed after.
+     *
+     * @param store the days of the task, newest first
+     * @param firstLoadedDay the oldest day to load as days since the epoch
+     */
+    protected synchronized void setDays(TaskDayStore store,
+            int firstLoadedDay) {
+
+        detachStore();
+        taskDayList = new ArrayList<TimelordTaskDay>(store.size());
+        sortedSize = 0;
+        unloadedDays = (store.size() > 0) ? store : null;
+        unloadedStart = 0;
+
+        if (unloadedDays != null) {
+            loadDays(Math.min(firstLoadedDay, unloadedDays.getEpochDay(0)));
+        }
+
+        markChanged();
+        invalidateDayTotals();
+    }
+
+    /**
+     * Turns the unloaded days back into task days as far back as a given
+     * day.  They go on the end of the task day list since they are older
+     * than every day already there.  Their minutes are already part of the
+     * day totals, so nothing needs to be reported.
+     *
+     * @param firstDay the oldest day that needs to be loaded as days since
+     *        the epoch
+     */
+    protected synchronized void loadDays(int firstDay) {
+        if (unloadedDays == null) {
+            return;
+        }
+
+        int loadEnd = unloadedStart;
+
+        while ((loadEnd < unloadedDays.size())
+                && (unloadedDays.getEpochDay(loadEnd) >= firstDay)) {
+
+            loadEnd++;
+        }
+
+        for (int i = unloadedStart; i < loadEnd; i++) {
+            int epochDay = unloadedDays.getEpochDay(i);
+
+            if (taskDayStore != null) {
+                taskDayStore.insert(
+                    taskDayStore.size(),
+                    epochDay,
+                    unloadedDays.getMinutes(i),
+                    unloadedDays.getNote(epochDay));
+            } else {
+                boolean isSorted = (sortedSize == taskDayList.size());
+
+                // Filled in before the day is claimed so nothing is
+                // reported for the minutes.
+                TimelordTaskDay timelordTaskDay =
+                    new TimelordTaskDay(new EpochDay(epochDay));
+                timelordTaskDay.addMinutes(unloadedDays.getMinutes(i));
+                timelordTaskDay.setNote(unloadedDays.getNote(epochDay));
+                timelordTaskDay.timelordTask = this;
+                taskDayList.add(timelordTaskDay);
+
+                if (isSorted) {
+                    sortedSize = taskDayList.size();
+                }
+            }
+        }
+
+        if (log.isDebugEnabled() && (loadEnd > unloadedStart)) {
+            log.debug(
+                    "Loaded [" + (loadEnd - unloadedStart) + "] days of ["
+                    + getTaskName() + "]");
+        }
 
-            if(tempTimelordTaskDay.getDate().before(
-                    DateUtil.trunc(startDate))) {
+        unloadedStart = loadEnd;
 
-                taskDayList.remove(i);
-                i--;
-            } else if(tempTimelordTaskDay.getDate().after(
-                    DateUtil.trunc(endDate))) {
+        if (unloadedStart == unloadedDays.size()) {
+            unloadedDays = null;
+            unloadedStart = 0;
+        }
+    }
+
+    /**
+     * Checks if the task has days that haven't been loaded yet.
+     *
+     * @return if there are unloaded days
+     */
+    public synchronized boolean hasUnloadedDays() {
+        return unloadedDays != null;
+    }
+
+    /**
+     * Copies the days that haven't been loaded yet onto the end of a store.
+     *
+     * @param store the store to add to
+     */
+    protected void appendUnloadedDays(TaskDayStore store) {
+        if (unloadedDays != null) {
+            for (int i = unloadedStart; i < unloadedDays.size(); i++) {
+                int epochDay = unloadedDays.getEpochDay(i);
+
+                store.insert(
+                    store.size(),
+                    epochDay,
+                    unloadedDays.getMinutes(i),
+                    unloadedDays.getNote(epochDay));
+            }
+        }
+    }
+
+    /**
+     * Adds the minutes of every day of this task into a set of day totals.
+     * The signs control which totals the minutes go into, so the same
+     * method is used to add a task, take it away again, or move it in or out
+     * of the exportable total.  Any day that doesn't yet know it is held by
+     * this task, such as one added by the XMLDecoder, is claimed as well.
+     * Days that haven't been loaded are counted too.
+     *
+     * @param dayTotals the totals to add to
+     * @param exportableSign multiplier for the exportable total
+     * @param allSign multiplier for the total of all tasks
+     */
+    protected synchronized void addToDayTotals(DayTotals dayTotals,
+            int exportableSign, int allSign) {
+
+        int dayCount = getDayCount();
+
+        for (int i = 0; i < dayCount; i++) {
+            if (taskDayStore == null) {
+                ((TimelordTaskDay) taskDayList.get(i)).timelordTask = this;
+            }
+
+            int minutes = getMinutesAt(i);
+            dayTotals.add(
+                getEpochDayAt(i),
+                minutes * exportableSign,
+                minutes * allSign);
+        }
+
+        if (unloadedDays != null) {
+            for (int i = unloadedStart; i < unloadedDays.size(); i++) {
+                int minutes = unloadedDays.getMinutes(i);
+                dayTotals.add(
+                    unloadedDays.getEpochDay(i),
+                    minutes * exportableSign,
+                    minutes * allSign);
+            }
+        }
+    }
+
+    /**
+     * Adds the minutes of the days of this task that fall within a range
+     * into an array of totals, one entry per day of the range.  The start
+     * of the range is found with a binary search and the days are then read
+     * in a single pass, so nothing is created or changed.  Days that
+     * haven't been loaded are read straight from where they wait.
+     *
+     * @param firstDay the first day of the range as days since the epoch
+     * @param totals the totals to add to, where index zero is the first day
+     *        and the length of the array sets the end of the range
+     */
+    protected synchronized void addMinutesByDay(int firstDay, int[] totals) {
+        int lastDay = firstDay + totals.length - 1;
+        int index = indexOfDay(lastDay);
+
+        if (index < 0) {
+            index = -(index + 1);
+        }
+
+        int dayCount = getDayCount();
+
+        // Newest first, so walk forward until the days drop off the start.
+        while (index < dayCount) {
+            int epochDay = getEpochDayAt(index);
+
+            if (epochDay < firstDay) {
+                break;
+            }
+
+            totals[epochDay - firstDay] += getMinutesAt(index);
+            index++;
+        }
+
+        if ((index == dayCount) && (unloadedDays != null)) {
+            index = unloadedDays.indexOf(lastDay);
+
+            if (index < 0) {
+                index = -(index + 1);
+            }
+
+            index = Math.max(index, unloadedStart);
+
+            while (index < unloadedDays.size()) {
+                int epochDay = unloadedDays.getEpochDay(index);
+
+                if (epochDay < firstDay) {
+                    break;
+                }
+
+                totals[epochDay - firstDay] += unloadedDays.getMinutes(index);
+                index++;
+            }
+        }
+    }
+
+    /**
+     * Called by a day of this task when its minutes have changed, while
+     * holding the lock on the data.  The change is only passed on if the
+     * day is still part of this task, since a day that has been removed by
+     * one of the cleanup methods no longer counts towards the totals.
+     *
+     * @param timelordTaskDay the day that changed
+     * @param minutesDelta the change in the minutes
+     */
+    protected void taskDayMinutesChanged(TimelordTaskDay timelordTaskDay,
+            int minutesDelta) {
 
-                taskDayList.remove(i);
-                i--;
+        TimelordData owner = this.timelordData;
+
+        if (owner != null) {
+            boolean isHeld;
+
+            synchronized (this) {
+                int index = indexOfDay(timelordTaskDay.getEpochDay());
+                isHeld = (index >= 0)
+                    && (getTaskDayAt(index) == timelordTaskDay);
+            }
+
+            if (isHeld) {
+                owner.dayMinutesChanged(
+                    timelordTaskDay.getEpochDay(),
+                    isExportable() ? minutesDelta : 0,
+                    minutesDelta);
             }
         }
     }
 
+    /**
+     * Tells the data holding this task that its day totals need to be
+     * worked out again.  This is used when days are removed or replaced
+     * wholesale, which happens rarely enough that it isn't worth tracking
+     * each day.
+     */
+    protected void invalidateDayTotals() {
+        TimelordData owner = this.timelordData;
+
+        if (owner != null) {
+            owner.invalidateDayTotals();
+        }
+    }
+
+    /**
+     * Records that the task or one of its days has changed, and tells the
+     * data holding this task that it has unsaved changes.
+     */
+    protected void markChanged() {
+        version++;
+
+        TimelordData owner = this.timelordData;
+
+        if (owner != null) {
+            owner.markModified();
+        }
+    }
+
+    /**
+     * Gets a point in time copy of this task for writing out.  The days are
+     * held in a columnar store, which shares its arrays with the store of
+     * this task when it has one, so nothing is copied until one side or the
+     * other changes.  The snapshot is kept and handed out again until this
+     * task changes.
+     * <p>
+     * A snapshot should be treated as read only.  If it is changed anyway
+     * it is simply not handed out again.
+     *
+     * @return a snapshot of the task
+     */
+    protected synchronized TimelordTask snapshot() {
+        if ((snapshot != null) && (snapshotVersion == version)
+                && (snapshot.version == 0)) {
+
+            return snapshot;
+        }
+
+        // Read the version before anything is copied, so a day that
+        // changes while this runs forces a new snapshot next time.
+        int currentVersion = version;
+
+        TimelordTask taskSnapshot = new TimelordTask();
+        taskSnapshot.taskName = this.taskName;
+        taskSnapshot.taskNameKey = this.taskNameKey;
+        taskSnapshot.exportable = this.exportable;
+        taskSnapshot.hidden = this.hidden;
+        taskSnapshot.snapshotSource = this;
+
+        if (taskDayStore != null) {
+            taskSnapshot.taskDayStore = taskDayStore.share();
+        } else {
+            ensureSorted();
+
+            TaskDayStore snapshotStore = new TaskDayStore(taskDayList.size());
+
+            for (int i = 0; i < taskDayList.size(); i++) {
+                TimelordTaskDay timelordTaskDay =
+                    (TimelordTaskDay) taskDayList.get(i);
+
+                // Claim the day so its changes are counted in the version.
+                timelordTaskDay.timelordTask = this;
+
+                if (timelordTaskDay.getDate() != null) {
+                    snapshotStore.insert(
+                        snapshotStore.size(),
+                        timelordTaskDay.getEpochDay(),
+                        timelordTaskDay.getMinutes(),
+                        timelordTaskDay.getNote());
+                }
+            }
+
+            taskSnapshot.taskDayStore = snapshotStore;
+        }
+
+        appendUnloadedDays(taskSnapshot.taskDayStore);
+
+        snapshot = taskSnapshot;
+        snapshotVersion = currentVersion;
+
+        return taskSnapshot;
+    }
+
+    /**
+     * Creates a copy of this task holding only the days within a range.
+     *
+     * @param firstDay the first day to keep as days since the epoch
+     * @param lastDay the last day to keep as days since the epoch
+     * @return a new task with the days in the range
+     */
+    protected synchronized TimelordTask copyRange(int firstDay, int lastDay) {
+        TimelordTask taskCopy = new TimelordTask();
+        taskCopy.taskName = this.taskName;
+        taskCopy.taskNameKey = this.taskNameKey;
+        taskCopy.exportable = this.exportable;
+        taskCopy.hidden = this.hidden;
+
+        TaskDayStore sourceStore = taskDayStore;
+
+        if ((sourceStore == null) || (unloadedDays != null)) {
+            sourceStore = snapshot().taskDayStore;
+        }
+
+        taskCopy.taskDayStore = sourceStore.copyRange(firstDay, lastDay);
+
+        return taskCopy;
+    }
+
     /**
      * One of the cleanup methods to handle if the time zone is incorrect.
      */
     public synchronized void correctTimeZone() {
+        // The columnar store only holds whole days so there is nothing
+        // that can be off midnight.
         for (int i = 0; i < taskDayList.size(); i++) {
             TimelordTaskDay tempTimelordTaskDay =
                 (TimelordTaskDay) taskDayList.get(i);
 
-            Calendar calendarDate = Calendar.getInstance();
-
-            calendarDate.setTime(tempTimelordTaskDay.getDate());
-
-            if ((calendarDate.get(Calendar.HOUR_OF_DAY) != 0)
-                    || (calendarDate.get(Calendar.MINUTE) != 0)
-                    || (calendarDate.get(Calendar.SECOND) != 0)
-                    || (calendarDate.get(Calendar.MILLISECOND) != 0)) {
+            if (!DateUtil.isMidnight(tempTimelordTaskDay.getDate())) {
                 if (log.isWarnEnabled()) {
                     log.warn(
                             "Found a TaskDay that is not set a midnight.  ["
@@ -522,19 +1485,32 @@ public class TimelordTask implements Cloneable {
         TimelordTask timelordTaskClone = new TimelordTask();
 
         timelordTaskClone.taskName = this.taskName;
+        timelordTaskClone.taskNameKey = this.taskNameKey;
         timelordTaskClone.exportable = this.exportable;
         timelordTaskClone.hidden = this.hidden;
 
-        LinkedList<TimelordTaskDay> taskDayListClone =
-            new LinkedList<TimelordTaskDay>();
+        ArrayList<TimelordTaskDay> taskDayListClone =
+            new ArrayList<TimelordTaskDay>(this.taskDayList.size());
 
         Iterator<TimelordTaskDay> timelordTaskDayIterator =
             this.taskDayList.iterator();
         while(timelordTaskDayIterator.hasNext()) {
-            taskDayListClone.add(timelordTaskDayIterator.next().clone());
+            TimelordTaskDay timelordTaskDayClone =
+                timelordTaskDayIterator.next().clone();
+            timelordTaskDayClone.timelordTask = timelordTaskClone;
+            taskDayListClone.add(timelordTaskDayClone);
         }
 
         timelordTaskClone.taskDayList = taskDayListClone;
+        timelordTaskClone.sortedSize = this.sortedSize;
+
+        if (this.taskDayStore != null) {
+            timelordTaskClone.taskDayStore = this.taskDayStore.copy();
+        }
+
+        timelordTaskClone.unloadedDays = this.unloadedDays;
+        timelordTaskClone.unloadedStart = this.unloadedStart;
+
         return timelordTaskClone;
     }
 
@@ -559,10 +1535,10 @@ public class TimelordTask implements Cloneable {
          * @return if o1's date is less than o2's
          */
         public int compare(TimelordTaskDay o1, TimelordTaskDay o2) {
-            TimelordTaskDay t1 = (TimelordTaskDay) o1;
-            TimelordTaskDay t2 = (TimelordTaskDay) o2;
+            int day1 = o1.getEpochDay();
+            int day2 = o2.getEpochDay();
 
-            return t2.getDate().compareTo(t1.getDate());
+            return (day2 < day1) ? -1 : ((day2 == day1) ? 0 : 1);
         }
     }
 }
@@ -17,6 +17,8 @@ along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
 */
 package net.chaosserver.timelord.data;
 
+import net.chaosserver.timelord.util.DateUtil;
+import net.chaosserver.timelord.util.EpochDay;
 import net.chaosserver.timelord.util.PropertyChangeSupport;
 
 import org.apache.commons.logging.Log;
@@ -42,9 +44,11 @@ public class TimelordTaskDay implements Serializable, Cloneable {
     /** Max Listeners for Object. */
     private static final int MAX_LISTENERS = 4;
 
-    /** Property change support for this class. */
-    protected PropertyChangeSupport propertyChangeSupport =
-        new PropertyChangeSupport(this, MAX_LISTENERS);
+    /**
+     * Property change support for this class.  Most days never have a
+     * listener, so this is only created when the first one is added.
+     */
+    protected PropertyChangeSupport propertyChangeSupport;
 
     /**
      * The date that this object is holding time for.  This date should always
@@ -54,20 +58,45 @@ public class TimelordTaskDay implements Serializable, Cloneable {
     protected Date date;
 
     /**
-     * Number of hours that have been tracked for this date.
+     * The date converted to days since the epoch.  This is kept in step
+     * with the date so the owning task can order and search its days
+     * without comparing Date objects.
+     */
+    protected int epochDay;
+
+    /**
+     * Number of minutes that have been tracked for this date.  Time is held
+     * as whole minutes so that adding up days doesn't drift the way it does
+     * with floating point hours.
      */
-    protected double hours;
+    protected int minutes;
 
     /**
      * A simple note associated with the hours tracked for this day.
      */
     protected String note;
 
+    /**
+     * The task holding this day.  Changes to the minutes are reported to the
+     * task so the day totals of the data can be kept up to date.  This is
+     * null for a day that hasn't been put into a task.
+     */
+    protected transient TimelordTask timelordTask;
+
     /**
      * Default constructor.
      */
     public TimelordTaskDay() { }
 
+    /**
+     * Creates an empty task day for the given day.
+     * @param day the day this object represents
+     */
+    public TimelordTaskDay(EpochDay day) {
+        this.date = day.toDate();
+        this.epochDay = day.intValue();
+    }
+
     /**
      * Getter for the date.
      * @return the date
@@ -83,13 +112,35 @@ public class TimelordTaskDay implements Serializable, Cloneable {
     public void setDate(Date date) {
         Date oldDate = this.date;
         this.date = date;
-        propertyChangeSupport.firePropertyChange("date", oldDate, this.date);
+
+        if (date != null) {
+            this.epochDay = DateUtil.toEpochDay(date);
+        }
+
+        markTaskChanged();
+        firePropertyChange("date", oldDate, this.date);
 
         if (log.isTraceEnabled()) {
             log.trace("Firing property change [hours]");
         }
     }
 
+    /**
+     * Gets the date of this object as the number of days since the epoch.
+     * @return the epoch day of the date
+     */
+    public int getEpochDay() {
+        return this.epochDay;
+    }
+
+    /**
+     * Gets the day of this object.
+     * @return the day
+     */
+    public EpochDay getDay() {
+        return new EpochDay(getEpochDay());
+    }
+
     /**
      * Sets a text string note associated with this day's time.
      * @param note the note value
@@ -97,7 +148,8 @@ public class TimelordTaskDay implements Serializable, Cloneable {
     public void setNote(String note) {
         String oldNote = this.note;
         this.note = note;
-        propertyChangeSupport.firePropertyChange("note", oldNote, this.note);
+        markTaskChanged();
+        firePropertyChange("note", oldNote, this.note);
     }
 
     /**
@@ -113,25 +165,16 @@ public class TimelordTaskDay implements Serializable, Cloneable {
      * @return number of hours
      */
     public double getHours() {
-        return this.hours;
+        return DateUtil.minutesToHours(getMinutes());
     }
 
     /**
-     * Sets the number of hours associated with this day.
+     * Sets the number of hours associated with this day.  The hours are
+     * rounded to the nearest minute.
      * @param hours new value for hours.
      */
     public void setHours(double hours) {
-        double oldHours = this.hours;
-        this.hours = hours;
-
-        propertyChangeSupport.firePropertyChange(
-            "hours",
-            new Double(oldHours),
-            new Double(this.hours));
-
-        if (log.isTraceEnabled()) {
-            log.trace("Firing property change [hours]");
-        }
+        changeMinutes(DateUtil.hoursToMinutes(hours));
     }
 
     /**
@@ -139,7 +182,127 @@ public class TimelordTaskDay implements Serializable, Cloneable {
      * @param hours the amount of hours to add
      */
     public synchronized void addHours(double hours) {
-        setHours(getHours() + hours);
+        addMinutes(DateUtil.hoursToMinutes(hours));
+    }
+
+    /**
+     * Gets the number of minutes associated with this day.
+     * @return number of minutes
+     */
+    public int getMinutes() {
+        return this.minutes;
+    }
+
+    /**
+     * Adds more minutes to the current amount of time.
+     * @param minutes the number of minutes to add
+     */
+    public synchronized void addMinutes(int minutes) {
+        changeMinutes(getMinutes() + minutes);
+    }
+
+    /**
+     * Changes the number of minutes tracked and notifies any listeners of
+     * the hours property.  Nothing is allocated unless the value changes
+     * and someone is listening.
+     * @param newMinutes the new number of minutes
+     */
+    protected void changeMinutes(int newMinutes) {
+        TimelordData timelordData = null;
+        int oldMinutes;
+
+        if (timelordTask != null) {
+            timelordData = timelordTask.timelordData;
+        }
+
+        if (timelordData != null) {
+            // The day totals are rebuilt while holding the write lock on the
+            // data, so the change and the update of the totals happen
+            // together.
+            timelordData.lockForChange();
+
+            try {
+                oldMinutes = putMinutes(newMinutes);
+
+                if (oldMinutes != newMinutes) {
+                    timelordTask.taskDayMinutesChanged(
+                        this, newMinutes - oldMinutes);
+                }
+            } finally {
+                timelordData.unlockForChange();
+            }
+        } else {
+            oldMinutes = putMinutes(newMinutes);
+        }
+
+        if (oldMinutes != newMinutes) {
+            markTaskChanged();
+        }
+
+        if ((oldMinutes != newMinutes) && (propertyChangeSupport != null)
+                && propertyChangeSupport.hasListeners("hours")) {
+
+            if (log.isTraceEnabled()) {
+                log.trace("Firing property change [hours]");
+            }
+
+            propertyChangeSupport.firePropertyChange(
+                "hours",
+                Double.valueOf(DateUtil.minutesToHours(oldMinutes)),
+                Double.valueOf(DateUtil.minutesToHours(newMinutes)));
+        }
+    }
+
+    /**
+     * Stores a new number of minutes for the day.
+     * @param newMinutes the new number of minutes
+     * @return the number of minutes before the change
+     */
+    protected int putMinutes(int newMinutes) {
+        int oldMinutes = this.minutes;
+        this.minutes = newMinutes;
+
+        return oldMinutes;
+    }
+
+    /**
+     * Tells the task holding this day that it has changed, so any snapshot
+     * of the task is no longer current.
+     */
+    protected void markTaskChanged() {
+        if (timelordTask != null) {
+            timelordTask.markChanged();
+        }
+    }
+
+    /**
+     * Fires a property change if anything is listening.
+     * @param propertyName the property that changed
+     * @param oldValue the old value
+     * @param newValue the new value
+     */
+    protected void firePropertyChange(String propertyName, Object oldValue,
+        Object newValue) {
+
+        if (propertyChangeSupport != null) {
+            propertyChangeSupport.firePropertyChange(
+                propertyName,
+                oldValue,
+                newValue);
+        }
+    }
+
+    /**
+     * Gets the property change support, creating it on first use.
+     * @return the property change support for this object
+     */
+    protected synchronized PropertyChangeSupport getPropertyChangeSupport() {
+        if (propertyChangeSupport == null) {
+            propertyChangeSupport =
+                new PropertyChangeSupport(this, MAX_LISTENERS);
+        }
+
+        return propertyChangeSupport;
     }
 
     /**
@@ -147,7 +310,7 @@ public class TimelordTaskDay implements Serializable, Cloneable {
      * @param listener the listener to add
      */
     public void addPropertyChangeListener(PropertyChangeListener listener) {
-        propertyChangeSupport.addPropertyChangeListener(listener);
+        getPropertyChangeSupport().addPropertyChangeListener(listener);
     }
 
     /**
@@ -157,6 +320,8 @@ public class TimelordTaskDay implements Serializable, Cloneable {
      */
     public void addPropertyChangeListener(String propertyName,
         PropertyChangeListener listener) {
+        PropertyChangeSupport propertyChangeSupport =
+            getPropertyChangeSupport();
         propertyChangeSupport.addPropertyChangeListener(propertyName, listener);
 
         if (log.isDebugEnabled()) {
@@ -188,7 +353,9 @@ public class TimelordTaskDay implements Serializable, Cloneable {
      * @param listener the listener to remove
      */
     public void removePropertyChangeListener(PropertyChangeListener listener) {
-        propertyChangeSupport.removePropertyChangeListener(listener);
+        if (propertyChangeSupport != null) {
+            propertyChangeSupport.removePropertyChangeListener(listener);
+        }
     }
 
     /**
@@ -199,8 +366,10 @@ public class TimelordTaskDay implements Serializable, Cloneable {
      */
     public void removePropertyChangeListener(String propertyName,
         PropertyChangeListener listener) {
-        propertyChangeSupport.removePropertyChangeListener(propertyName,
-            listener);
+        if (propertyChangeSupport != null) {
+            propertyChangeSupport.removePropertyChangeListener(propertyName,
+                listener);
+        }
     }
 
     /**
@@ -211,7 +380,8 @@ public class TimelordTaskDay implements Serializable, Cloneable {
     public TimelordTaskDay clone() {
         TimelordTaskDay timelordTaskDayClone = new TimelordTaskDay();
         timelordTaskDayClone.date = this.date;
-        timelordTaskDayClone.hours = this.hours;
+        timelordTaskDayClone.epochDay = this.epochDay;
+        timelordTaskDayClone.minutes = this.minutes;
         timelordTaskDayClone.note = this.note;
 
         return timelordTaskDayClone;
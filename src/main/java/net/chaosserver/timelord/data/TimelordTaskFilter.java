@@ -0,0 +1,33 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.data;
+
+
+/**
+ * Picks which tasks are included when adding up time across the tasks of
+ * a TimelordData.
+ */
+public interface TimelordTaskFilter {
+    /**
+     * Checks if a task should be included.
+     *
+     * @param timelordTask the task to check
+     * @return if the time of the task should be counted
+     */
+    boolean accept(TimelordTask timelordTask);
+}
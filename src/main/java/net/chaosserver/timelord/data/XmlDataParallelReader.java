@@ -0,0 +1,418 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.data;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UnsupportedEncodingException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/**
+ * Reads the XML written by the XmlDataReaderWriter on several threads.
+ * The tasks in the file don't depend on each other, so the file is split
+ * at the task boundaries into batches of tasks which are each wrapped up
+ * as a small document of their own and read by an XmlDataStreamReader on
+ * a thread pool.  The rest of the file, with the settings of the data, is
+ * read as one more document.  The tasks are then put together in the
+ * order they were in the file.
+ * <p>
+ * The XMLEncoder gives the flags of some tasks ids and refers back to them
+ * from later tasks, so the readers keep those aside and they are worked
+ * out one batch after another once everything is read.
+ * <p>
+ * If the file can't be split the whole of it is read by one streaming
+ * reader instead.
+ */
+public class XmlDataParallelReader {
+    /** Logger. */
+    private static Log log = LogFactory.getLog(XmlDataParallelReader.class);
+
+    /** The encoding the XMLEncoder writes. */
+    protected static final String ENCODING = "UTF-8";
+
+    /** The depth in the document of the task elements. */
+    protected static final int TASK_DEPTH = 5;
+
+    /** The start of a task element. */
+    protected static final byte[] TASK_START = toBytes(
+        "<object class=\"net.chaosserver.timelord.data.TimelordTask\"");
+
+    /** The declaration of the encoding that is expected in the file. */
+    protected static final byte[] ENCODING_DECLARATION =
+        toBytes("encoding=\"" + ENCODING + "\"");
+
+    /** What is expected between two tasks once whitespace is left out. */
+    protected static final byte[] TASK_SEPARATOR =
+        toBytes("</void><voidmethod=\"add\">");
+
+    /** The start of the document a batch of tasks is wrapped in. */
+    protected static final byte[] BATCH_PREFIX = toBytes(
+        "<?xml version=\"1.0\" encoding=\"" + ENCODING + "\"?>"
+        + "<java><object class=\"net.chaosserver.timelord.data.TimelordData\">"
+        + "<void property=\"taskCollection\"><void method=\"add\">");
+
+    /** The end of the document a batch of tasks is wrapped in. */
+    protected static final byte[] BATCH_SUFFIX =
+        toBytes("</void></void></object></java>");
+
+    /** The number of batches made for each thread. */
+    protected static final int BATCHES_PER_THREAD = 4;
+
+    /** The oldest day to load as days since the epoch. */
+    protected int firstLoadedDay;
+
+    /** The number of threads to read with. */
+    protected int threads;
+
+    /**
+     * Creates a reader.
+     *
+     * @param firstLoadedDay the oldest day to load as days since the epoch,
+     *        older days are kept unloaded in the tasks
+     * @param threads the number of threads to read with
+     */
+    public XmlDataParallelReader(int firstLoadedDay, int threads) {
+        this.firstLoadedDay = firstLoadedDay;
+        this.threads = threads;
+    }
+
+    /**
+     * Reads the data from the contents of a file.
+     *
+     * @param bytes the contents of the file
+     * @return the data read, or null if the file holds something the
+     *         streaming reader doesn't understand
+     * @throws IOException indicates an error reading
+     */
+    public TimelordData read(byte[] bytes) throws IOException {
+        List<int[]> tasks = findTasks(bytes);
+
+        if ((tasks == null) || tasks.isEmpty()) {
+            if (log.isDebugEnabled()) {
+                log.debug("Couldn't split the file, reading it whole.");
+            }
+
+            return new XmlDataStreamReader(firstLoadedDay).read(
+                new ByteArrayInputStream(bytes));
+        }
+
+        int batchCount = Math.min(tasks.size(), threads * BATCHES_PER_THREAD);
+        int firstTaskStart = ((int[]) tasks.get(0))[0];
+        int lastTaskEnd = ((int[]) tasks.get(tasks.size() - 1))[1];
+
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+
+        try {
+            Future<XmlDataStreamReader> dataFuture = executorService.submit(
+                new ReadTask(
+                    new SequenceInputStream(
+                        new ByteArrayInputStream(bytes, 0, firstTaskStart),
+                        new ByteArrayInputStream(
+                            bytes,
+                            lastTaskEnd,
+                            bytes.length - lastTaskEnd)),
+                    false));
+
+            List<Future<XmlDataStreamReader>> batchFutures =
+                new ArrayList<Future<XmlDataStreamReader>>(batchCount);
+
+            for (int i = 0; i < batchCount; i++) {
+                int start = ((int[]) tasks.get(
+                    i * tasks.size() / batchCount))[0];
+                int end = ((int[]) tasks.get(
+                    ((i + 1) * tasks.size() / batchCount) - 1))[1];
+
+                batchFutures.add(executorService.submit(
+                    new ReadTask(toBatch(bytes, start, end), true)));
+            }
+
+            TimelordData timelordData = dataFuture.get().timelordData;
+            Map<String, Boolean> values = new HashMap<String, Boolean>();
+
+            for (int i = 0; (timelordData != null) && (i < batchCount); i++) {
+                XmlDataStreamReader batchReader =
+                    (XmlDataStreamReader) batchFutures.get(i).get();
+
+                if ((batchReader.timelordData == null)
+                        || !batchReader.resolveReferences(values)) {
+                    timelordData = null;
+                } else {
+                    timelordData.taskCollection.addAll(
+                        batchReader.timelordData.taskCollection);
+                }
+            }
+
+            return timelordData;
+        } catch (InterruptedException e) {
+            IOException ioException = new IOException("Interrupted reading");
+            ioException.initCause(e);
+            throw ioException;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+
+            IOException ioException = new IOException("Failed reading");
+            ioException.initCause(e.getCause());
+            throw ioException;
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * Finds where each task is in the contents of a file.  This only looks
+     * at the tags to keep track of the depth, which is enough for what the
+     * XMLEncoder writes since it escapes any brackets in text.
+     *
+     * @param bytes the contents of the file
+     * @return the start and end of each task, or null if the file isn't
+     *         laid out as expected
+     */
+    protected List<int[]> findTasks(byte[] bytes) {
+        List<int[]> tasks = new ArrayList<int[]>();
+        int depth = 0;
+        int taskStart = -1;
+        int position = 0;
+        boolean hasEncoding = false;
+
+        while (position < bytes.length) {
+            if (bytes[position] != '<') {
+                position++;
+                continue;
+            }
+
+            int tagEnd = indexOf(bytes, (byte) '>', position);
+
+            if ((tagEnd < 0) || (position + 1 >= bytes.length)) {
+                return null;
+            }
+
+            byte next = bytes[position + 1];
+
+            if (next == '?') {
+                hasEncoding = hasEncoding
+                    || (indexOf(bytes, ENCODING_DECLARATION, position, tagEnd)
+                        >= 0);
+            } else if (next == '!') {
+                return null;
+            } else if (next == '/') {
+                if ((depth == TASK_DEPTH) && (taskStart >= 0)) {
+                    if (!tasks.isEmpty() && !isSeparator(bytes,
+                            ((int[]) tasks.get(tasks.size() - 1))[1],
+                            taskStart)) {
+                        return null;
+                    }
+
+                    tasks.add(new int[] {taskStart, tagEnd + 1});
+                    taskStart = -1;
+                }
+
+                depth--;
+            } else if (bytes[tagEnd - 1] != '/') {
+                depth++;
+
+                if ((depth == TASK_DEPTH)
+                        && startsWith(bytes, TASK_START, position)) {
+                    taskStart = position;
+                }
+            }
+
+            position = tagEnd + 1;
+        }
+
+        return hasEncoding ? tasks : null;
+    }
+
+    /**
+     * Wraps a batch of tasks up as a document of its own.
+     *
+     * @param bytes the contents of the file
+     * @param start the start of the first task in the batch
+     * @param end the end of the last task in the batch
+     * @return a stream of the document
+     */
+    protected InputStream toBatch(byte[] bytes, int start, int end) {
+        return new SequenceInputStream(
+            new SequenceInputStream(
+                new ByteArrayInputStream(BATCH_PREFIX),
+                new ByteArrayInputStream(bytes, start, end - start)),
+            new ByteArrayInputStream(BATCH_SUFFIX));
+    }
+
+    /**
+     * Checks that what is between two tasks is only the end of one call
+     * to add and the start of the next.
+     *
+     * @param bytes the contents of the file
+     * @param start the end of the earlier task
+     * @param end the start of the later task
+     * @return if there is only the separator between the tasks
+     */
+    protected boolean isSeparator(byte[] bytes, int start, int end) {
+        int matched = 0;
+
+        for (int i = start; i < end; i++) {
+            byte b = bytes[i];
+
+            if ((b != ' ') && (b != '\n') && (b != '\r') && (b != '\t')) {
+                if ((matched >= TASK_SEPARATOR.length)
+                        || (b != TASK_SEPARATOR[matched])) {
+                    return false;
+                }
+
+                matched++;
+            }
+        }
+
+        return matched == TASK_SEPARATOR.length;
+    }
+
+    /**
+     * Checks if some bytes start with the given bytes.
+     *
+     * @param bytes the bytes to look in
+     * @param prefix the bytes to look for
+     * @param position where to look
+     * @return if the prefix is at the position
+     */
+    protected static boolean startsWith(byte[] bytes, byte[] prefix,
+            int position) {
+
+        if (position + prefix.length > bytes.length) {
+            return false;
+        }
+
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[position + i] != prefix[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Finds a byte.
+     *
+     * @param bytes the bytes to look in
+     * @param b the byte to look for
+     * @param from where to start looking
+     * @return the position of the byte, or -1 if it isn't found
+     */
+    protected static int indexOf(byte[] bytes, byte b, int from) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Finds some bytes within a range.
+     *
+     * @param bytes the bytes to look in
+     * @param target the bytes to look for
+     * @param from where to start looking
+     * @param to where to stop looking
+     * @return the position of the bytes, or -1 if they aren't found
+     */
+    protected static int indexOf(byte[] bytes, byte[] target, int from,
+            int to) {
+
+        for (int i = from; i + target.length <= to; i++) {
+            if (startsWith(bytes, target, i)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Gets the bytes of a string in the encoding of the file.
+     *
+     * @param string the string
+     * @return the bytes of the string
+     */
+    private static byte[] toBytes(String string) {
+        try {
+            return string.getBytes(ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(ENCODING + " not supported");
+        }
+    }
+
+    /**
+     * Reads one document with a streaming reader.
+     */
+    protected class ReadTask implements Callable<XmlDataStreamReader> {
+        /** The document to read. */
+        protected InputStream inputStream;
+
+        /** If the references in the document should be kept aside. */
+        protected boolean deferringReferences;
+
+        /**
+         * Creates the task.
+         *
+         * @param inputStream the document to read
+         * @param deferringReferences if the references in the document
+         *        should be kept aside
+         */
+        public ReadTask(InputStream inputStream,
+                boolean deferringReferences) {
+
+            this.inputStream = inputStream;
+            this.deferringReferences = deferringReferences;
+        }
+
+        /**
+         * Reads the document.
+         *
+         * @return the reader, holding the data read or null if the
+         *         document wasn't understood
+         * @throws IOException indicates an error reading
+         */
+        public XmlDataStreamReader call() throws IOException {
+            XmlDataStreamReader reader =
+                new XmlDataStreamReader(firstLoadedDay);
+            reader.setDeferringReferences(deferringReferences);
+            reader.timelordData = reader.read(inputStream);
+
+            return reader;
+        }
+    }
+}
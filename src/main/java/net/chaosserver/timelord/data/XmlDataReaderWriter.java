@@ -24,25 +24,19 @@ import java.beans.XMLDecoder;
 import java.beans.XMLEncoder;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Writer;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-
-import java.util.Calendar;
-import java.util.zip.GZIPOutputStream;
-
 
 /**
  * The main ReaderWriter that uses the XMLEncoder/XMLDecoder to write the data
@@ -62,10 +56,41 @@ public class XmlDataReaderWriter extends TimelordDataReaderWriter
     public static final String DEFAULT_EXTENSION = ".xml";
 
     /**
-     * The format for the start of the week used to generate the backup files
-     * during writing.
+     * Files smaller than this are always read on one thread, since they
+     * read quickly enough that splitting them up doesn't pay.
+     */
+    public static final int PARALLEL_THRESHOLD = 1048576;
+
+    /**
+     * The buffer the data is encoded into before it is written out.  It is
+     * kept between writes so it doesn't have to grow again each time.
+     */
+    protected OutputBuffer outputBuffer;
+
+    /**
+     * The number of threads used to read the file.  With more than one the
+     * file is split up by task and the parts are read in parallel.
      */
-    protected DateFormat startWeekFormat = new SimpleDateFormat("MM-dd-yyyy");
+    protected int loaderThreads = 1;
+
+    /**
+     * Sets the number of threads used to read the file.
+     *
+     * @param loaderThreads the number of threads, one to read the file
+     *        on the calling thread
+     */
+    public void setLoaderThreads(int loaderThreads) {
+        this.loaderThreads = loaderThreads;
+    }
+
+    /**
+     * Gets the number of threads used to read the file.
+     *
+     * @return the number of threads
+     */
+    public int getLoaderThreads() {
+        return this.loaderThreads;
+    }
 
     /**
      * Gets the file associated with the default location.
@@ -126,12 +151,24 @@ public class XmlDataReaderWriter extends TimelordDataReaderWriter
 
         if (datafile.exists()) {
             try {
-                FileInputStream fileInputStream =
-                    new FileInputStream(datafile);
-                BufferedInputStream bufferedInputStream =
-                    new BufferedInputStream(fileInputStream);
-                XMLDecoder xmlDecoder = new XMLDecoder(bufferedInputStream);
-                timelordData = (TimelordData) xmlDecoder.readObject();
+                timelordData = streamTimelordData(datafile);
+
+                if (timelordData == null) {
+                    if (log.isInfoEnabled()) {
+                        log.info("Falling back to the XMLDecoder for ["
+                                + datafile + "]");
+                    }
+
+                    FileInputStream fileInputStream =
+                        new FileInputStream(datafile);
+                    BufferedInputStream bufferedInputStream =
+                        new BufferedInputStream(fileInputStream);
+                    XMLDecoder xmlDecoder =
+                        new XMLDecoder(bufferedInputStream);
+                    timelordData = (TimelordData) xmlDecoder.readObject();
+                    unloadOlderDays(timelordData);
+                }
+
                 timelordData.setTimelordReaderWriter(this);
 
                 if (log.isInfoEnabled()) {
@@ -140,6 +177,8 @@ public class XmlDataReaderWriter extends TimelordDataReaderWriter
                 }
             } catch (FileNotFoundException e) {
                 throw new TimelordDataException("Failed to read", e);
+            } catch (IOException e) {
+                throw new TimelordDataException("Failed to read", e);
             }
         } else {
             if (log.isInfoEnabled()) {
@@ -152,6 +191,48 @@ public class XmlDataReaderWriter extends TimelordDataReaderWriter
         return timelordData;
     }
 
+    /**
+     * Reads a data file with the streaming reader, which skips the
+     * reflection of the XMLDecoder.  A large file is read in parallel if
+     * there is more than one loader thread.
+     *
+     * @param datafile the file to read
+     * @return the data read, or null if the file holds something the
+     *         streaming reader doesn't understand
+     * @throws IOException indicates an error reading the file
+     */
+    protected TimelordData streamTimelordData(File datafile)
+            throws IOException {
+
+        if ((getLoaderThreads() > 1)
+                && (datafile.length() >= PARALLEL_THRESHOLD)) {
+
+            DataInputStream dataInputStream =
+                new DataInputStream(new FileInputStream(datafile));
+            byte[] bytes = new byte[(int) datafile.length()];
+
+            try {
+                dataInputStream.readFully(bytes);
+            } finally {
+                dataInputStream.close();
+            }
+
+            return new XmlDataParallelReader(
+                getFirstLoadedDay(),
+                getLoaderThreads()).read(bytes);
+        }
+
+        InputStream inputStream =
+            new BufferedInputStream(new FileInputStream(datafile));
+
+        try {
+            return new XmlDataStreamReader(getFirstLoadedDay()).read(
+                inputStream);
+        } finally {
+            inputStream.close();
+        }
+    }
+
     /**
      * Converts and old XML file from the "TimeTracker" application into
      * the new version with "Timelord" data.
@@ -197,45 +278,43 @@ public class XmlDataReaderWriter extends TimelordDataReaderWriter
 
     /**
      * Writes out the timelordData object to the default filename in the
-     * user's home directory. Also generates a backup version of the file.
+     * user's home directory. Also keeps a backup of the contents in the
+     * backup directory there.  The data is encoded once into memory and that
+     * one buffer is used for both the file and the backup, each of which is
+     * replaced in one step so a crash can't leave it half written.
      *
      * @param timelordData the data to write to file
      * @param outputFile the file to output to
      * @throws TimelordDataException indicates an error writing the
      *         data out to file.
      */
-    public void writeTimelordData(TimelordData timelordData,
+    public synchronized void writeTimelordData(TimelordData timelordData,
         File outputFile) throws TimelordDataException {
-        Calendar yesterday = Calendar.getInstance();
-        yesterday.add(Calendar.DAY_OF_YEAR, -1);
-
         File homeDirectory = new File(System.getProperty("user.home"));
 
-        try {
-            FileOutputStream fileOutputStream =
-                new FileOutputStream(outputFile);
-            BufferedOutputStream bufferedOutputStream =
-                new BufferedOutputStream(fileOutputStream);
+        if (outputBuffer == null) {
+            outputBuffer = new OutputBuffer();
+        } else {
+            outputBuffer.reset();
+        }
 
-            XMLEncoder xmlEncoder = new XMLEncoder(bufferedOutputStream);
+        try {
+            XMLEncoder xmlEncoder = new XMLEncoder(outputBuffer);
             xmlEncoder.writeObject(timelordData);
             xmlEncoder.close();
 
-            File backupFile =
-                new File(
-                        homeDirectory,
-                        (DEFAULT_FILENAME + "."
-                        + startWeekFormat.format(yesterday.getTime())
-                        + DEFAULT_EXTENSION
-                        + ".gzip"));
-            fileOutputStream = new FileOutputStream(backupFile);
-            bufferedOutputStream = new BufferedOutputStream(fileOutputStream);
-            GZIPOutputStream zipOutputStream =
-                new GZIPOutputStream(bufferedOutputStream);
-
-            xmlEncoder = new XMLEncoder(zipOutputStream);
-            xmlEncoder.writeObject(timelordData);
-            xmlEncoder.close();
+            replaceFile(
+                outputFile,
+                outputBuffer.getBuffer(),
+                outputBuffer.size(),
+                false);
+
+            writeBackup(
+                new File(homeDirectory, BACKUP_DIRECTORY),
+                DEFAULT_FILENAME + DEFAULT_EXTENSION,
+                outputBuffer.getBuffer(),
+                outputBuffer.size(),
+                true);
         } catch (FileNotFoundException e) {
             throw new TimelordDataException("Failed to output", e);
         } catch (IOException e) {
@@ -0,0 +1,550 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.data;
+
+import net.chaosserver.timelord.util.DateUtil;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+
+/**
+ * Reads the XML written by the XmlDataReaderWriter without going through
+ * the XMLDecoder.  The elements are streamed straight into the model, so
+ * there is no reflection or bean introspection and no intermediate object
+ * graph, and the days of each task go straight into a task day store the
+ * way the BinaryDataReaderWriter loads them.
+ * <p>
+ * Only the exact layout the XMLEncoder produces for the data is
+ * understood, including the references it makes back to the flags of
+ * earlier tasks, with the days of each task newest first as they are after
+ * a cleanse.  Anything else, such as a property this reader doesn't know
+ * or days out of order, makes the read give up and return null so the
+ * caller can fall back to the XMLDecoder.
+ */
+public class XmlDataStreamReader extends DefaultHandler {
+    /** Logger. */
+    private static Log log = LogFactory.getLog(XmlDataStreamReader.class);
+
+    /** Signature of the root element. */
+    protected static final String ROOT = "java";
+
+    /** Signature of the data element. */
+    protected static final String DATA =
+        "object:net.chaosserver.timelord.data.TimelordData";
+
+    /** Signature of a task element. */
+    protected static final String TASK =
+        "object:net.chaosserver.timelord.data.TimelordTask";
+
+    /** Signature of a task day element. */
+    protected static final String DAY =
+        "object:net.chaosserver.timelord.data.TimelordTaskDay";
+
+    /** Signature of the date element of a task day. */
+    protected static final String DATE = "object:java.util.Date";
+
+    /**
+     * The elements that are understood, each as the signature of the
+     * parent and the signature of the element.  Method calls are told
+     * apart by the property they are called on.
+     */
+    protected static final Set<String> KNOWN_ELEMENTS = new HashSet<String>();
+
+    static {
+        String[][] knownElements = {
+            {null, ROOT},
+            {ROOT, DATA},
+            {DATA, "property:dayStartTime"},
+            {"property:dayStartTime", "double"},
+            {DATA, "property:taskCollection"},
+            {"property:taskCollection", "property:taskCollection.method:add"},
+            {"property:taskCollection.method:add", TASK},
+            {TASK, "property:exportable"},
+            {"property:exportable", "boolean"},
+            {"property:exportable", "idref"},
+            {TASK, "property:hidden"},
+            {"property:hidden", "boolean"},
+            {"property:hidden", "idref"},
+            {TASK, "getter:isExportable"},
+            {TASK, "getter:isHidden"},
+            {TASK, "property:taskName"},
+            {"property:taskName", "string"},
+            {TASK, "property:taskDayList"},
+            {"property:taskDayList", "property:taskDayList.method:add"},
+            {"property:taskDayList.method:add", DAY},
+            {DAY, "property:date"},
+            {"property:date", DATE},
+            {DATE, "long"},
+            {DAY, "property:hours"},
+            {"property:hours", "double"},
+            {DAY, "property:note"},
+            {"property:note", "string"}
+        };
+
+        for (int i = 0; i < knownElements.length; i++) {
+            KNOWN_ELEMENTS.add(knownElements[i][0] + ">" + knownElements[i][1]);
+        }
+    }
+
+    /** The oldest day to load as days since the epoch. */
+    protected int firstLoadedDay;
+
+    /** The signatures of the elements currently open. */
+    protected List<String> openElements = new ArrayList<String>();
+
+    /** The text of the value element being read, or null if not in one. */
+    protected StringBuffer text;
+
+    /**
+     * The values the XMLEncoder has given ids so it can refer back to them.
+     * It does this for the flags of the tasks, since all true and false
+     * values are the same two objects.
+     */
+    protected Map<String, Boolean> identifiedValues =
+        new HashMap<String, Boolean>();
+
+    /**
+     * If the ids and references to them are kept aside rather than being
+     * worked out while reading.  This is used when reading part of a file,
+     * since the ids may be given in another part.
+     */
+    protected boolean deferringReferences;
+
+    /** The ids and references kept aside, in the order they were read. */
+    protected List<Reference> references = new ArrayList<Reference>();
+
+    /** The data being read. */
+    protected TimelordData timelordData;
+
+    /** The name of the task being read. */
+    protected String taskName;
+
+    /** The exportable flag of the task being read, or null if not given. */
+    protected Boolean taskExportable;
+
+    /** The hidden flag of the task being read, or null if not given. */
+    protected Boolean taskHidden;
+
+    /** The days of the task being read. */
+    protected TaskDayStore taskDays;
+
+    /** The day being read as days since the epoch, or null if not given. */
+    protected Integer dayEpochDay;
+
+    /** The minutes of the day being read. */
+    protected int dayMinutes;
+
+    /** The note of the day being read. */
+    protected String dayNote;
+
+    /**
+     * Creates a reader.
+     *
+     * @param firstLoadedDay the oldest day to load as days since the epoch,
+     *        older days are kept unloaded in the tasks
+     */
+    public XmlDataStreamReader(int firstLoadedDay) {
+        this.firstLoadedDay = firstLoadedDay;
+    }
+
+    /**
+     * Sets if the ids the XMLEncoder gives the flags of the tasks, and the
+     * references to them, are kept aside to be worked out later by a call
+     * to resolveReferences.
+     *
+     * @param deferringReferences if the references should be kept aside
+     */
+    public void setDeferringReferences(boolean deferringReferences) {
+        this.deferringReferences = deferringReferences;
+    }
+
+    /**
+     * Checks if the ids and references to them are kept aside.
+     *
+     * @return if the references are kept aside
+     */
+    public boolean isDeferringReferences() {
+        return this.deferringReferences;
+    }
+
+    /**
+     * Works out the ids and references that were kept aside, in the order
+     * they were read.  The values are shared between the readers of the
+     * parts of a file, which are resolved in the order of the parts.
+     *
+     * @param values the values of the ids given so far, which the ids
+     *        given by this part are added to
+     * @return false if a reference is to an id that hasn't been given
+     */
+    public boolean resolveReferences(Map<String, Boolean> values) {
+        Iterator<Reference> referenceIterator = references.iterator();
+
+        while (referenceIterator.hasNext()) {
+            Reference reference = (Reference) referenceIterator.next();
+            TimelordTask timelordTask = (TimelordTask)
+                timelordData.taskCollection.get(reference.taskIndex);
+
+            if ("getter:isExportable".equals(reference.signature)) {
+                values.put(
+                    reference.id,
+                    Boolean.valueOf(timelordTask.isExportable()));
+            } else if ("getter:isHidden".equals(reference.signature)) {
+                values.put(
+                    reference.id,
+                    Boolean.valueOf(timelordTask.isHidden()));
+            } else {
+                Boolean value = (Boolean) values.get(reference.id);
+
+                if (value == null) {
+                    return false;
+                } else if ("property:exportable".equals(
+                        reference.signature)) {
+                    timelordTask.setExportable(value.booleanValue());
+                } else {
+                    timelordTask.setHidden(value.booleanValue());
+                }
+            }
+        }
+
+        references.clear();
+
+        return true;
+    }
+
+    /**
+     * Reads the data from a stream.  A reader is only meant to be used for
+     * one read.
+     *
+     * @param inputStream the stream to read, which is left open
+     * @return the data read, or null if the stream holds something this
+     *         reader doesn't understand
+     * @throws IOException indicates an error reading the stream
+     */
+    public TimelordData read(InputStream inputStream) throws IOException {
+        TimelordData result;
+
+        try {
+            SAXParserFactory.newInstance().newSAXParser().parse(
+                inputStream,
+                this);
+
+            result = this.timelordData;
+        } catch (ParserConfigurationException e) {
+            if (log.isWarnEnabled()) {
+                log.warn("No XML parser available", e);
+            }
+
+            result = null;
+        } catch (SAXException e) {
+            if (log.isInfoEnabled()) {
+                log.info("Content not understood: " + e.getMessage());
+            }
+
+            result = null;
+        }
+
+        return result;
+    }
+
+    /**
+     * Checks the element is one that is understood and starts reading it.
+     *
+     * @param uri the namespace of the element
+     * @param localName the local name of the element
+     * @param qName the name of the element
+     * @param attributes the attributes of the element
+     * @throws SAXException if the element isn't understood
+     */
+    public void startElement(String uri, String localName, String qName,
+            Attributes attributes) throws SAXException {
+
+        String signature = toSignature(qName, attributes);
+        String parent = openElements.isEmpty()
+            ? null
+            : (String) openElements.get(openElements.size() - 1);
+
+        if (signature.startsWith("method:")) {
+            signature = parent + "." + signature;
+        }
+
+        if (!KNOWN_ELEMENTS.contains(parent + ">" + signature)) {
+            throw new SAXException(
+                "Unknown element [" + signature + "] in [" + parent + "]");
+        }
+
+        openElements.add(signature);
+
+        if (DATA.equals(signature)) {
+            timelordData = new TimelordData();
+        } else if (TASK.equals(signature)) {
+            taskName = null;
+            taskExportable = null;
+            taskHidden = null;
+            taskDays = new TaskDayStore();
+        } else if (DAY.equals(signature)) {
+            dayEpochDay = null;
+            dayMinutes = 0;
+            dayNote = null;
+        } else if (deferringReferences
+                && (signature.startsWith("getter:")
+                    || "idref".equals(signature))) {
+
+            references.add(new Reference(
+                timelordData.taskCollection.size(),
+                "idref".equals(signature) ? parent : signature,
+                "idref".equals(signature)
+                    ? attributes.getValue("idref")
+                    : attributes.getValue("id")));
+        } else if ("getter:isExportable".equals(signature)) {
+            identifiedValues.put(
+                attributes.getValue("id"),
+                Boolean.valueOf((taskExportable == null)
+                    || taskExportable.booleanValue()));
+        } else if ("getter:isHidden".equals(signature)) {
+            identifiedValues.put(
+                attributes.getValue("id"),
+                Boolean.valueOf((taskHidden != null)
+                    && taskHidden.booleanValue()));
+        } else if ("idref".equals(signature)) {
+            Boolean value =
+                (Boolean) identifiedValues.get(attributes.getValue("idref"));
+
+            if (value == null) {
+                throw new SAXException(
+                    "Unknown reference [" + attributes.getValue("idref")
+                    + "]");
+            }
+
+            endValue(parent, value.toString());
+        } else if (!ROOT.equals(signature) && (signature.indexOf(':') < 0)) {
+            text = new StringBuffer();
+        }
+    }
+
+    /**
+     * Collects the text of a value element.
+     *
+     * @param ch the characters
+     * @param start the start of the text in the characters
+     * @param length the length of the text
+     */
+    public void characters(char[] ch, int start, int length) {
+        if (text != null) {
+            text.append(ch, start, length);
+        }
+    }
+
+    /**
+     * Finishes reading an element, putting what was read into the model.
+     *
+     * @param uri the namespace of the element
+     * @param localName the local name of the element
+     * @param qName the name of the element
+     * @throws SAXException if the content of the element isn't understood
+     */
+    public void endElement(String uri, String localName, String qName)
+            throws SAXException {
+
+        String signature =
+            (String) openElements.remove(openElements.size() - 1);
+        String parent = openElements.isEmpty()
+            ? null
+            : (String) openElements.get(openElements.size() - 1);
+
+        try {
+            if (text != null) {
+                endValue(parent, text.toString());
+                text = null;
+            } else if (DAY.equals(signature)) {
+                endDay();
+            } else if (TASK.equals(signature)) {
+                endTask();
+            }
+        } catch (NumberFormatException e) {
+            throw new SAXException("Bad number in [" + parent + "]", e);
+        }
+    }
+
+    /**
+     * Puts a value into the model.
+     *
+     * @param property the signature of the element holding the value
+     * @param value the text of the value
+     */
+    protected void endValue(String property, String value) {
+        if ("property:dayStartTime".equals(property)) {
+            timelordData.setDayStartTime(Double.parseDouble(value));
+        } else if ("property:exportable".equals(property)) {
+            taskExportable = Boolean.valueOf(value);
+        } else if ("property:hidden".equals(property)) {
+            taskHidden = Boolean.valueOf(value);
+        } else if ("property:taskName".equals(property)) {
+            taskName = value.intern();
+        } else if (DATE.equals(property)) {
+            dayEpochDay = Integer.valueOf(
+                DateUtil.toEpochDay(new Date(Long.parseLong(value))));
+        } else if ("property:hours".equals(property)) {
+            dayMinutes = DateUtil.hoursToMinutes(Double.parseDouble(value));
+        } else if ("property:note".equals(property)) {
+            dayNote = value;
+        }
+    }
+
+    /**
+     * Adds the day that has been read to the days of the task.
+     *
+     * @throws SAXException if the day has no date or is out of order
+     */
+    protected void endDay() throws SAXException {
+        if (dayEpochDay == null) {
+            throw new SAXException("Task day without a date");
+        }
+
+        int epochDay = dayEpochDay.intValue();
+        int size = taskDays.size();
+
+        if ((size > 0) && (taskDays.getEpochDay(size - 1) <= epochDay)) {
+            throw new SAXException("Task days not newest first");
+        }
+
+        taskDays.insert(size, epochDay, dayMinutes, dayNote);
+    }
+
+    /**
+     * Adds the task that has been read to the data.
+     */
+    protected void endTask() {
+        TimelordTask timelordTask;
+
+        if (taskName != null) {
+            timelordTask = new TimelordTask(taskName);
+        } else {
+            timelordTask = new TimelordTask();
+        }
+
+        if (taskExportable != null) {
+            timelordTask.setExportable(taskExportable.booleanValue());
+        }
+
+        if (taskHidden != null) {
+            timelordTask.setHidden(taskHidden.booleanValue());
+        }
+
+        timelordTask.setDays(taskDays, firstLoadedDay);
+        timelordData.taskCollection.add(timelordTask);
+        taskDays = null;
+    }
+
+    /**
+     * Works out the signature of an element, which is its name along with
+     * the class, property or method it names.
+     *
+     * @param qName the name of the element
+     * @param attributes the attributes of the element
+     * @return the signature of the element
+     * @throws SAXException if the element has attributes that aren't
+     *         understood
+     */
+    protected String toSignature(String qName, Attributes attributes)
+            throws SAXException {
+
+        String signature = qName;
+        int known = 0;
+
+        if ("object".equals(qName) && (attributes.getValue("class") != null)) {
+            signature = qName + ":" + attributes.getValue("class");
+            known = (attributes.getValue("id") != null) ? 2 : 1;
+        } else if ("object".equals(qName)
+                && (attributes.getValue("idref") != null)) {
+            signature = "idref";
+            known = 1;
+        } else if ("void".equals(qName)) {
+            if ((attributes.getValue("id") != null)
+                    && (attributes.getValue("method") != null)) {
+                signature = "getter:" + attributes.getValue("method");
+                known = 2;
+            } else if (attributes.getValue("property") != null) {
+                signature = "property:" + attributes.getValue("property");
+                known = 1;
+            } else if (attributes.getValue("method") != null) {
+                signature = "method:" + attributes.getValue("method");
+                known = 1;
+            }
+        } else if (ROOT.equals(qName)) {
+            known = attributes.getLength();
+        }
+
+        if (attributes.getLength() != known) {
+            throw new SAXException(
+                "Unknown attributes on [" + signature + "]");
+        }
+
+        return signature;
+    }
+
+    /**
+     * An id given to a flag of a task, or a reference back to one, that has
+     * been kept aside.
+     */
+    protected static class Reference {
+        /** The position in the data of the task. */
+        protected int taskIndex;
+
+        /**
+         * The signature of the getter giving the id, or of the property
+         * the reference is for.
+         */
+        protected String signature;
+
+        /** The id given or referred to. */
+        protected String id;
+
+        /**
+         * Creates a reference.
+         *
+         * @param taskIndex the position in the data of the task
+         * @param signature the signature of the getter or property
+         * @param id the id given or referred to
+         */
+        public Reference(int taskIndex, String signature, String id) {
+            this.taskIndex = taskIndex;
+            this.signature = signature;
+            this.id = id;
+        }
+    }
+}
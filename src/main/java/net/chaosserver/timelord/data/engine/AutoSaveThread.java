@@ -36,12 +36,37 @@ public class AutoSaveThread extends Thread {
     /** Sleep Time. */
     public static final int SLEEP_TIME = 300000;
 
+    /**
+     * Time between checks for changes.  If the data keeps a change journal
+     * the changes are flushed to it on each check.
+     */
+    public static final int CHECK_TIME = 2000;
+
+    /**
+     * Time the data has to go without changes before it is saved.  This
+     * lets a burst of edits be saved once, shortly after the last of them,
+     * instead of on every click.
+     */
+    public static final int DEBOUNCE_TIME = 10000;
+
     /** The data to be saved. */
     protected TimelordData timelordData;
 
     /** If set to true, will stop the thread on the next loop. */
     protected boolean stop = false;
 
+    /** The modification count of the data at the last check. */
+    protected long lastModificationCount;
+
+    /** The time the modification count was last seen to change. */
+    protected long lastModificationTime;
+
+    /**
+     * The time the data was first seen modified since it was last saved,
+     * or -1 if it wasn't modified.
+     */
+    protected long modifiedSinceTime = -1;
+
     /**
      * Constructs a new version of the thread.
      *
@@ -90,7 +115,13 @@ public class AutoSaveThread extends Thread {
     }
 
     /**
-     * The main loop wakes ever few minutes and saves the file.
+     * The main loop wakes every few seconds to check if the data has
+     * changed, and does nothing if it hasn't.  Changed data is saved once
+     * it has gone DEBOUNCE_TIME without further changes, or once it has
+     * been waiting SLEEP_TIME if the changes keep coming.  If the data keeps
+     * a change journal the changes are flushed to the journal on every
+     * check instead, and the data is written out in full only after
+     * SLEEP_TIME, which folds the journal back into the main file.
      * To stop the thread set the stop flag and trigger an interrupt
      * or wait patiently.
      */
@@ -99,25 +130,14 @@ public class AutoSaveThread extends Thread {
             log.info("Starting up the AutoSaveThread");
         }
 
+        lastModificationCount = getTimelordData().getModificationCount();
+        lastModificationTime = System.currentTimeMillis();
+        modifiedSinceTime = -1;
+
         while (!isStop()) {
             try {
-                Thread.sleep(SLEEP_TIME);
-
-                if (log.isTraceEnabled()) {
-                    log.trace("AutoSave File");
-                }
-
-                try {
-                    getTimelordData().write();
-                } catch (Exception e) {
-                    if (log.isFatalEnabled()) {
-                        log.fatal("Couldn't autosave", e);
-                    }
-                }
-
-                if (log.isTraceEnabled()) {
-                    log.trace("AutoSave File Complete");
-                }
+                Thread.sleep(CHECK_TIME);
+                check(System.currentTimeMillis());
             } catch (InterruptedException e) {
                 if (log.isTraceEnabled()) {
                     log.trace("Interrupted the AutoSaveThread");
@@ -133,8 +153,78 @@ public class AutoSaveThread extends Thread {
             log.trace("Shutdown Save File");
         }
 
+        save();
+
+        if (log.isTraceEnabled()) {
+            log.trace("Shutdown Save File Complete");
+        }
+    }
+
+    /**
+     * Checks the data for changes and journals or saves them if it is
+     * time to.
+     *
+     * @param currentTime the time of the check
+     */
+    protected void check(long currentTime) {
+        TimelordData currentTimelordData = getTimelordData();
+        long modificationCount = currentTimelordData.getModificationCount();
+
+        if (modificationCount != lastModificationCount) {
+            lastModificationCount = modificationCount;
+            lastModificationTime = currentTime;
+        }
+
+        if (!currentTimelordData.isModified()) {
+            modifiedSinceTime = -1;
+        } else {
+            if (modifiedSinceTime < 0) {
+                modifiedSinceTime = currentTime;
+            }
+
+            boolean isOverdue =
+                (currentTime - modifiedSinceTime) >= SLEEP_TIME;
+
+            if (currentTimelordData.isJournaling()) {
+                journal();
+
+                if (isOverdue) {
+                    save();
+                    modifiedSinceTime = -1;
+                }
+            } else if (isOverdue
+                    || ((currentTime - lastModificationTime)
+                        >= DEBOUNCE_TIME)) {
+
+                save();
+                modifiedSinceTime = -1;
+            }
+        }
+    }
+
+    /**
+     * Flushes the changes to the change journal of the data.
+     */
+    protected void journal() {
+        try {
+            getTimelordData().journal();
+        } catch (Exception e) {
+            if (log.isFatalEnabled()) {
+                log.fatal("Couldn't journal changes", e);
+            }
+        }
+    }
+
+    /**
+     * Writes out the data if it has changed since it was last written.
+     */
+    protected void save() {
+        if (log.isTraceEnabled()) {
+            log.trace("AutoSave File");
+        }
+
         try {
-            getTimelordData().write();
+            getTimelordData().writeIfModified();
         } catch (Exception e) {
             if (log.isFatalEnabled()) {
                 log.fatal("Couldn't autosave", e);
@@ -142,7 +232,7 @@ public class AutoSaveThread extends Thread {
         }
 
         if (log.isTraceEnabled()) {
-            log.trace("Shutdown Save File Complete");
+            log.trace("AutoSave File Complete");
         }
     }
 }
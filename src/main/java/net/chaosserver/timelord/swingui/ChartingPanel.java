@@ -18,9 +18,11 @@ along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
 package net.chaosserver.timelord.swingui;
 
 import java.awt.Dimension;
-import java.util.Calendar;
+import java.util.concurrent.Executor;
 
+import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -32,8 +34,7 @@ import org.jfree.data.category.CategoryDataset;
 import org.jfree.data.category.DefaultCategoryDataset;
 
 import net.chaosserver.timelord.data.TimelordData;
-import net.chaosserver.timelord.data.TimelordDayView;
-import net.chaosserver.timelord.util.DateUtil;
+import net.chaosserver.timelord.util.EpochDay;
 
 /**
  * The Charting Panel is used just to give some eye candy for the
@@ -58,20 +59,40 @@ public class ChartingPanel extends JPanel {
     /** Hold the data object that is being charted. */
     protected TimelordData timelordData;
 
+    /** The label shown until the chart is ready. */
+    protected JLabel loadingLabel;
+
     /**
-     * Creates the charting panel.
+     * Creates the charting panel.  The panel starts out with a loading
+     * label, and the dataset is summed up using the executor given, after
+     * which the chart is put in place of the label.
      *
      * @param timelordData the data object to be charted.
+     * @param executor runs the work of summing up the dataset
      */
-    public ChartingPanel(TimelordData timelordData) {
+    public ChartingPanel(TimelordData timelordData, Executor executor) {
         this.timelordData = timelordData;
 
-        CategoryDataset dataset = createDataset();
+        loadingLabel = new JLabel("Loading...");
+        add(loadingLabel);
+
+        executor.execute(new ChartLoader());
+    }
+
+    /**
+     * Puts the chart of a dataset in place of the loading label.
+     *
+     * @param dataset the dataset to be charted
+     */
+    protected void showChart(CategoryDataset dataset) {
         JFreeChart chart = createChart(dataset);
         ChartPanel chartPanel = new ChartPanel(chart, false);
         chartPanel.setPreferredSize(new Dimension(CHART_WIDTH, CHART_HEIGHT));
-        add(chartPanel);
 
+        remove(loadingLabel);
+        add(chartPanel);
+        revalidate();
+        repaint();
     }
 
     /**
@@ -103,19 +124,17 @@ public class ChartingPanel extends JPanel {
     private CategoryDataset createDataset() {
         DefaultCategoryDataset dataset = new DefaultCategoryDataset();
 
-        Calendar calendar = Calendar.getInstance();
-        DateUtil.trunc(calendar);
-        calendar.add(Calendar.DATE, -FIRST_DATE);
+        EpochDay day = EpochDay.today().plusDays(-FIRST_DATE);
+        double[] dayHours = timelordData.sumHoursByDay(
+            day,
+            day.plusDays(FIRST_DATE - 1),
+            new TimelordData.ExportableTaskFilter());
 
         String series1 = "Total Hours";
         for(int i = 0; i < FIRST_DATE; i++) {
-            if(Calendar.SATURDAY != calendar.get(Calendar.DAY_OF_WEEK)
-                    && Calendar.SUNDAY != calendar.get(Calendar.DAY_OF_WEEK)) {
-
-                TimelordDayView timelordDayView =
-                    new TimelordDayView(timelordData, calendar.getTime());
-
-                double totalTime = timelordDayView.getTotalTimeToday(false);
+            // Skip Saturday and Sunday
+            if(day.getDayOfWeek() < 6) {
+                double totalTime = dayHours[i];
 
                 if(log.isTraceEnabled()) {
                     log.trace("Creating Value of totalTime ["
@@ -123,19 +142,44 @@ public class ChartingPanel extends JPanel {
                             + "], series1 = "
                             + series1
                             + " category ["
-                            + calendar.getTime()
+                            + day
                             + "]");
                 }
-                dataset.addValue(totalTime, series1, calendar.getTime());
-
-
-                timelordDayView.dispose();
+                dataset.addValue(totalTime, series1, day.toDate());
             }
-            calendar.add(Calendar.DATE, 1);
+            day = day.plusDays(1);
         }
 
         return dataset;
     }
 
+    /**
+     * Loads the chart.  It is first run in the background to sum up the
+     * dataset, and then hands itself to the event thread to show it.
+     */
+    protected class ChartLoader implements Runnable {
+        /** The dataset once it has been summed up. */
+        protected CategoryDataset dataset;
+
+        /**
+         * Sums up the dataset when run in the background, or shows the
+         * chart when run on the event thread.
+         */
+        public void run() {
+            if (dataset == null) {
+                long startTime = System.currentTimeMillis();
+                dataset = createDataset();
+
+                if (log.isInfoEnabled()) {
+                    log.info("Summed up the chart dataset in ["
+                            + (System.currentTimeMillis() - startTime)
+                            + "ms]");
+                }
 
+                SwingUtilities.invokeLater(this);
+            } else {
+                showChart(dataset);
+            }
+        }
+    }
 }
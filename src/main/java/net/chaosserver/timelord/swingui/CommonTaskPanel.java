@@ -46,6 +46,7 @@ import net.chaosserver.timelord.data.TimelordData;
 import net.chaosserver.timelord.data.TimelordDayView;
 import net.chaosserver.timelord.data.TimelordTask;
 import net.chaosserver.timelord.data.TimelordTaskDay;
+import net.chaosserver.timelord.util.Clock;
 import net.chaosserver.timelord.util.DateUtil;
 
 import org.apache.commons.logging.Log;
@@ -268,7 +269,7 @@ public class CommonTaskPanel extends JPanel implements ActionListener,
     public boolean isToday() {
         boolean result = false;
 
-        Date todayDate = DateUtil.trunc(new Date());
+        Date todayDate = Clock.getInstance().getTodayStart();
 
         if (todayDate.equals(getDateDisplayed())) {
             result = true;
@@ -684,9 +685,19 @@ public class CommonTaskPanel extends JPanel implements ActionListener,
                     timelordTask.getTaskName());
 
             if (newName != null) {
-                if (taskDayPanel != null) {
+                TimelordTask existingTask =
+                    getTimelordData().getTask(newName);
+
+                if ((existingTask != null) && (existingTask != timelordTask)) {
+                    JOptionPane.showMessageDialog(
+                        this,
+                        "A task named [" + existingTask.getTaskName()
+                        + "] already exists.",
+                        "Rename Task",
+                        JOptionPane.WARNING_MESSAGE);
+                } else if (taskDayPanel != null) {
+                    // The data moves the task to its new place in the order.
                     timelordTask.setTaskName(newName);
-                    getTimelordData().sortTaskCollection();
                 }
             }
         } else if (CommonTaskPopupMenu.ACTION_EXPORT.equals(
@@ -80,9 +80,19 @@ public class PreviousDayPanel extends JPanel implements ActionListener {
         pickDayButton.addActionListener(this);
         add(pickDayButton, BorderLayout.NORTH);
 
+        setDisplayDate(getDefaultDisplayDate());
+    }
+
+    /**
+     * Gets the date a new panel displays, which is the day before today.
+     *
+     * @return the start of yesterday
+     */
+    public static Date getDefaultDisplayDate() {
         Calendar calendarDay = Calendar.getInstance();
         calendarDay.add(Calendar.DAY_OF_WEEK, -1);
-        setDisplayDate(DateUtil.trunc(calendarDay.getTime()));
+
+        return DateUtil.trunc(calendarDay.getTime());
     }
 
     /**
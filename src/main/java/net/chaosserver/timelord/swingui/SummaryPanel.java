@@ -18,6 +18,7 @@ along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
 package net.chaosserver.timelord.swingui;
 
 import net.chaosserver.timelord.data.TimelordDayView;
+import net.chaosserver.timelord.util.Clock;
 import net.chaosserver.timelord.util.DateUtil;
 
 import org.apache.commons.logging.Log;
@@ -235,7 +236,7 @@ public class SummaryPanel extends JPanel {
     public boolean isToday() {
         boolean result = false;
 
-        Date todayDate = DateUtil.trunc(new Date());
+        Date todayDate = Clock.getInstance().getTodayStart();
 
         if (log.isTraceEnabled()) {
             log.trace(
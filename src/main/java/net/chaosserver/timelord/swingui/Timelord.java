@@ -29,8 +29,8 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
 import java.net.URL;
-import java.util.Date;
 import java.util.Properties;
 import java.util.ResourceBundle;
 import java.util.prefs.Preferences;
@@ -40,7 +40,9 @@ import javax.swing.ImageIcon;
 import javax.swing.JDialog;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
+import javax.swing.JLabel;
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -48,13 +50,17 @@ import javax.xml.parsers.ParserConfigurationException;
 
 import net.chaosserver.timelord.data.TimelordData;
 import net.chaosserver.timelord.data.TimelordDataException;
+import net.chaosserver.timelord.data.BinaryDataReaderWriter;
+import net.chaosserver.timelord.data.ChangeJournal;
+import net.chaosserver.timelord.data.SegmentedDataReaderWriter;
+import net.chaosserver.timelord.data.StartupSummary;
 import net.chaosserver.timelord.data.TimelordDataReaderWriter;
-import net.chaosserver.timelord.data.TimelordDayView;
 import net.chaosserver.timelord.data.XmlDataReaderWriter;
 import net.chaosserver.timelord.data.engine.AutoSaveThread;
 import net.chaosserver.timelord.swingui.data.TimelordDataReaderWriterUI;
 import net.chaosserver.timelord.swingui.engine.BringToFrontThread;
-import net.chaosserver.timelord.util.DateUtil;
+import net.chaosserver.timelord.util.Clock;
+import net.chaosserver.timelord.util.EpochDay;
 import net.chaosserver.timelord.util.OsUtil;
 
 import org.apache.commons.logging.Log;
@@ -114,6 +120,61 @@ public class Timelord {
     /** Constant for preference for default time increment. */
     public static final String TIME_INCREMENT = "TIME_INCREMENT";
 
+    /**
+     * Constant for preference to hold the task days in the columnar store
+     * to reduce memory use on large data files.
+     */
+    public static final String COLUMNAR_STORE = "COLUMNAR_STORE";
+
+    /**
+     * Constant for preference for the number of weeks of recent days to
+     * load at startup, with older days loaded when they are asked for.
+     * Zero loads everything.
+     */
+    public static final String LOADED_WEEKS = "LOADED_WEEKS";
+
+    /**
+     * Constant for preference to store the data as one file per year, so
+     * saves only rewrite the years that changed.
+     */
+    public static final String SEGMENTED_STORE = "SEGMENTED_STORE";
+
+    /**
+     * Constant for preference to store the data in the compact binary
+     * file instead of XML.
+     */
+    public static final String BINARY_STORE = "BINARY_STORE";
+
+    /**
+     * Constant for preference to record changes to a journal every few
+     * seconds between the full saves.
+     */
+    public static final String CHANGE_JOURNAL = "CHANGE_JOURNAL";
+
+    /**
+     * Constant for preference to store the number of recent backups kept
+     * of each data file.  Zero keeps every backup.
+     */
+    public static final String BACKUP_RETENTION = "BACKUP_RETENTION";
+
+    /**
+     * Constant for preference to store the number of days the newest
+     * backup of each day is kept for.  Zero keeps them for good.
+     */
+    public static final String DAILY_BACKUP_DAYS = "DAILY_BACKUP_DAYS";
+
+    /**
+     * Constant for preference to read a large XML data file on one thread
+     * per processor.
+     */
+    public static final String PARALLEL_LOAD = "PARALLEL_LOAD";
+
+    /**
+     * Constant for preference to keep a summary of the current week next
+     * to the data file and show the tab for today from it at startup.
+     */
+    public static final String STARTUP_SUMMARY = "STARTUP_SUMMARY";
+
     /** Holds the application frame. */
     protected JFrame applicationFrame;
 
@@ -123,6 +184,15 @@ public class Timelord {
     /** Holds the main tabbed pane visual component. */
     protected TimelordTabbedPane timelordTabbedPane;
 
+    /**
+     * The tab for today shown from the startup summary while the data is
+     * read, or null if it isn't shown.
+     */
+    protected CommonTaskPanel startupTaskPanel;
+
+    /** The menu applied to the application frame. */
+    protected TimelordMenu timelordMenu;
+
     /** The engine that brings the main window to the front. */
     protected BringToFrontThread bringToFrontThread;
 
@@ -255,7 +325,7 @@ public class Timelord {
 
             if (result == JFileChooser.APPROVE_OPTION) {
                 timelordDataRW.writeTimelordData(
-                    getTimelordData(),
+                    getTimelordData().snapshot(),
                     outputFile
                 );
             }
@@ -341,19 +411,38 @@ public class Timelord {
 
     /**
      * Gets the common task panel (the one for the current date) from the
-     * container.
+     * container.  While the data is read this is the panel shown from the
+     * startup summary, if there is one.
      *
-     * @return the common task panel
+     * @return the common task panel, or null if none is shown yet
      */
     protected CommonTaskPanel getCommonTaskPanel() {
-        return timelordTabbedPane.getCommonTaskPanel();
+        CommonTaskPanel commonTaskPanel = startupTaskPanel;
+
+        if (timelordTabbedPane != null) {
+            commonTaskPanel = timelordTabbedPane.getCommonTaskPanel();
+        }
+
+        return commonTaskPanel;
+    }
+
+    /**
+     * Checks if the tabs for the data have been shown, after which
+     * everything on the menu can be used.
+     *
+     * @return true if the tabs for the data are shown
+     */
+    protected boolean isDataShown() {
+        return timelordTabbedPane != null;
     }
 
     /**
      * Resets the common task panel (the one for the current date).
      */
     protected void buildCommonTaskPanel() {
-        timelordTabbedPane.buildCommonTaskPanel();
+        if (timelordTabbedPane != null) {
+            timelordTabbedPane.buildCommonTaskPanel();
+        }
     }
 
     /**
@@ -505,9 +594,36 @@ public class Timelord {
     }
 
     /**
-     * Starts up the timelord application and displays the frame.
+     * Logs how long a phase of the startup took.
+     *
+     * @param phase the name of the phase
+     * @param phaseStart when the phase started
+     * @return the current time, which is when the next phase starts
+     */
+    protected long logPhase(String phase, long phaseStart) {
+        long currentTime = System.currentTimeMillis();
+
+        if (log.isInfoEnabled()) {
+            log.info("Startup phase [" + phase + "] took ["
+                    + (currentTime - phaseStart) + "ms]");
+        }
+
+        return currentTime;
+    }
+
+    /**
+     * Starts up the timelord application and displays the frame.  The
+     * startup is staged so the user sees something quickly: the frame is
+     * shown with a loading label first, which is replaced by the tab for
+     * today built from the startup summary if there is one.  Then the data
+     * is read and the full tabs are put in its place, bringing over any
+     * change made from the summary meanwhile.  The other tabs are only
+     * built when they are first selected.  Each phase is timed in the log.
      */
     public void start() {
+        long startTime = System.currentTimeMillis();
+        long phaseStart = startTime;
+
         applicationFrame = new JFrame("Timelord");
 
         // Get the pretty application icon
@@ -533,8 +649,9 @@ public class Timelord {
         }
 
         if (!isAlreadyRunning() && !isUpgradeRequested()) {
-            TimelordMenu menu = new TimelordMenu(this);
-            applicationFrame.setJMenuBar(menu);
+            timelordMenu = new TimelordMenu(this);
+            timelordMenu.updateEnabledItems();
+            applicationFrame.setJMenuBar(timelordMenu);
             applicationFrame.addWindowListener(new WindowCloser());
 
             if(OsUtil.isMac()) {
@@ -559,33 +676,120 @@ public class Timelord {
 
             }
 
-            TimelordDataReaderWriter timelordDataRW =
-                new XmlDataReaderWriter();
+            Preferences preferences =
+                Preferences.userNodeForPackage(this.getClass());
+
+            JLabel loadingLabel = new JLabel("Loading...", JLabel.CENTER);
+            applicationFrame.getContentPane().add(loadingLabel);
+            applicationFrame.setSize(loadLastFrameSize());
+            applicationFrame.setLocation(loadLastFrameLocation());
+            applicationFrame.setVisible(true);
+            phaseStart = logPhase("show frame", phaseStart);
+
+            TimelordDataReaderWriter timelordDataRW;
+
+            if (preferences.getBoolean(BINARY_STORE, false)) {
+                timelordDataRW = new BinaryDataReaderWriter();
+            } else if (preferences.getBoolean(SEGMENTED_STORE, false)) {
+                timelordDataRW = new SegmentedDataReaderWriter();
+            } else {
+                XmlDataReaderWriter xmlDataReaderWriter =
+                    new XmlDataReaderWriter();
+
+                if (preferences.getBoolean(PARALLEL_LOAD, false)) {
+                    xmlDataReaderWriter.setLoaderThreads(
+                        Runtime.getRuntime().availableProcessors());
+                }
+
+                timelordDataRW = xmlDataReaderWriter;
+            }
+
+            timelordDataRW.setLoadedWeeks(
+                preferences.getInt(LOADED_WEEKS, 0));
+            timelordDataRW.setBackupRetention(
+                preferences.getInt(
+                    BACKUP_RETENTION,
+                    TimelordDataReaderWriter.DEFAULT_BACKUP_RETENTION));
+            timelordDataRW.setDailyBackupDays(
+                preferences.getInt(
+                    DAILY_BACKUP_DAYS,
+                    TimelordDataReaderWriter.DEFAULT_DAILY_BACKUP_DAYS));
+
+            StartupSummary startupSummary = null;
+            TimelordData summaryTimelordData = null;
+            Component startupComponent = loadingLabel;
+
+            if (preferences.getBoolean(STARTUP_SUMMARY, true)) {
+                startupSummary = new StartupSummary(timelordDataRW);
+                summaryTimelordData = startupSummary.read();
+
+                if (summaryTimelordData != null) {
+                    summaryTimelordData.resetTaskListeners();
+                    startupTaskPanel = new CommonTaskPanel(
+                        summaryTimelordData,
+                        Clock.getInstance().getTodayStart(),
+                        null);
+                    startupComponent = startupTaskPanel;
+                    timelordMenu.updateEnabledItems();
+
+                    applicationFrame.getContentPane().remove(loadingLabel);
+                    applicationFrame.getContentPane().add(startupComponent);
+                    applicationFrame.validate();
+                    applicationFrame.repaint();
+                    phaseStart = logPhase("show summary", phaseStart);
+                }
+            }
 
             try {
                 TimelordData inputTimelordData =
                     timelordDataRW.readTimelordData();
+                inputTimelordData.markUnmodified();
+                phaseStart = logPhase("read data", phaseStart);
+
+                if (preferences.getBoolean(CHANGE_JOURNAL, true)) {
+                    ChangeJournal changeJournal = new ChangeJournal(
+                        ChangeJournal.getJournalFile(
+                            timelordDataRW.getDefaultOutputFile()));
+                    changeJournal.replay(
+                        inputTimelordData, timelordDataRW.getOutputStamp());
+                    inputTimelordData.setChangeJournal(changeJournal);
+                    phaseStart = logPhase("replay journal", phaseStart);
+                }
+
                 inputTimelordData.cleanse();
+                phaseStart = logPhase("cleanse", phaseStart);
+
+                if (preferences.getBoolean(COLUMNAR_STORE, false)) {
+                    inputTimelordData.useColumnarStore();
+                    phaseStart = logPhase("columnar store", phaseStart);
+                }
+
                 inputTimelordData.resetTaskListeners();
+                inputTimelordData.setStartupSummary(startupSummary);
                 setTimelordData(inputTimelordData);
-                menu.setTimelordData(getTimelordData());
+                timelordMenu.setTimelordData(getTimelordData());
 
-                applicationFrame.setSize(loadLastFrameSize());
-                timelordTabbedPane =
-                    new TimelordTabbedPane(getTimelordData());
-                applicationFrame.getContentPane().add(timelordTabbedPane);
+                try {
+                    SwingUtilities.invokeAndWait(new ShowDataTask(
+                        startupComponent,
+                        startupSummary,
+                        summaryTimelordData));
+                } catch (InterruptedException e) {
+                    throw new TimelordDataException(
+                            "Interrupted showing the data", e);
+                } catch (InvocationTargetException e) {
+                    throw new TimelordDataException(
+                            "Failed to show the data", e);
+                }
 
-                applicationFrame.setLocation(loadLastFrameLocation());
-                applicationFrame.setVisible(true);
+                logPhase("build today tab", phaseStart);
+                logPhase("startup", startTime);
 
                 // If there is no data for Today, let the user set the
                 // start time.
-                TimelordDayView timelordDayView =
-                    new TimelordDayView(inputTimelordData,
-                            DateUtil.trunc(new Date()));
-
-                if(timelordDayView.getTotalTimeToday(true) == 0) {
-                    menu.timelord.changeStartTime(true);
+                if(inputTimelordData.getDayMinutes(
+                        EpochDay.today(), true) == 0) {
+                    changeStartTime(true);
                 }
 
                 bringToFrontThread = new BringToFrontThread(
@@ -598,15 +802,22 @@ public class Timelord {
             } catch (TimelordDataException e) {
                 String shutdown = "Shutdown";
                 Object[] options = { shutdown };
+                File dataFile = timelordDataRW.getDefaultOutputFile();
+                File backupDirectory = new File(
+                    dataFile.getParentFile(),
+                    TimelordDataReaderWriter.BACKUP_DIRECTORY);
 
                 JOptionPane.showOptionDialog(
                         null,
                         "There was an unrecoverable error trying to load "
                         + "the file.\nTimelord was probably shutdown "
                         + "in the middle of the last write.\nThere "
-                        + "should be a lot of backup files inside the "
-                        + "defaut location.\nCopy one of the backups "
-                        + "over the most recent, restart, and keep your "
+                        + "should be a lot of backup files inside\n"
+                        + backupDirectory + "\nwith one for each day.  "
+                        + "Copy one of the backups over\n" + dataFile
+                        + "\n(gunzip it first if it ends in "
+                        + TimelordDataReaderWriter.COMPRESSED_EXTENSION
+                        + "), restart, and keep your "
                         + "fingers crossed.\n" + e,
                         "Timelord Data File Corrupted",
                         JOptionPane.DEFAULT_OPTION,
@@ -624,7 +835,10 @@ public class Timelord {
     }
 
     /**
-     * The stop method cleans up the application and exits.
+     * The stop method cleans up the application and exits.  The window is
+     * hidden right away and the final save is left to the AutoSaveThread,
+     * with a separate thread waiting for it to finish before exiting, so
+     * the caller isn't held up by the save.
      */
     public void stop() {
         if (bringToFrontThread != null) {
@@ -632,31 +846,21 @@ public class Timelord {
             bringToFrontThread.interrupt();
         }
 
+        saveFrameLocation();
+        saveFrameSize();
+
+        if (applicationFrame != null) {
+            applicationFrame.setVisible(false);
+        }
+
         if (autoSaveThread != null) {
             autoSaveThread.setStop(true);
             autoSaveThread.interrupt();
 
-            if (log.isTraceEnabled()) {
-                log.trace("Waiting for the AutoSaveThread to terminate.");
-            }
-
-            try {
-                autoSaveThread.join();
-
-                if (log.isTraceEnabled()) {
-                    log.trace("AutoSaveThread has terminated.");
-                }
-            } catch (InterruptedException e) {
-                if (log.isWarnEnabled()) {
-                    log.warn("AutoSaveThread was interrupted.", e);
-                }
-            }
+            new ShutdownThread().start();
+        } else {
+            System.exit(0);
         }
-
-        saveFrameLocation();
-        saveFrameSize();
-
-        System.exit(0);
     }
 
     /**
@@ -664,7 +868,9 @@ public class Timelord {
      */
     public void showTodayTab() {
         // Since the Today Tab is always tab zero, set this to tab zero.
-        timelordTabbedPane.setSelectedIndex(0);
+        if (timelordTabbedPane != null) {
+            timelordTabbedPane.setSelectedIndex(0);
+        }
 
         // TODO: If the today tab is not today, notify the user.
     }
@@ -673,6 +879,10 @@ public class Timelord {
      * Switches to the next tab
      */
     public void showNextTab() {
+        if (timelordTabbedPane == null) {
+            return;
+        }
+
         int nextSelectedTab = (timelordTabbedPane.getSelectedIndex() + 1) % timelordTabbedPane.getTabCount();
         if(nextSelectedTab < 0) {
             nextSelectedTab = 0;
@@ -684,6 +894,10 @@ public class Timelord {
      * Switches to the previous tab
      */
     public void showPreviousTab() {
+        if (timelordTabbedPane == null) {
+            return;
+        }
+
         int nextSelectedTab = (timelordTabbedPane.getSelectedIndex() - 1) % timelordTabbedPane.getTabCount();
         timelordTabbedPane.setSelectedIndex(nextSelectedTab);
     }
@@ -692,7 +906,12 @@ public class Timelord {
      * Sets the keyboard focus on the find filter of the current tab.
      */
     public void showFindTask() {
-        Component selectedComponent = timelordTabbedPane.getSelectedComponent();
+        Component selectedComponent = startupTaskPanel;
+
+        if (timelordTabbedPane != null) {
+            selectedComponent = timelordTabbedPane.getSelectedComponent();
+        }
+
         if(selectedComponent instanceof CommonTaskPanel) {
             ((CommonTaskPanel) selectedComponent).showFindTask();
         } else if (selectedComponent instanceof PreviousDayPanel) {
@@ -846,6 +1065,100 @@ public class Timelord {
         timelord.start();
     }
 
+    /**
+     * Waits for the AutoSaveThread to finish its final save and then exits.
+     */
+    protected class ShutdownThread extends Thread {
+        /**
+         * Creates the thread.
+         */
+        public ShutdownThread() {
+            super("TimelordShutdownThread");
+        }
+
+        /**
+         * Waits for the AutoSaveThread and exits.
+         */
+        public void run() {
+            if (log.isTraceEnabled()) {
+                log.trace("Waiting for the AutoSaveThread to terminate.");
+            }
+
+            try {
+                autoSaveThread.join();
+
+                if (log.isTraceEnabled()) {
+                    log.trace("AutoSaveThread has terminated.");
+                }
+            } catch (InterruptedException e) {
+                if (log.isWarnEnabled()) {
+                    log.warn("AutoSaveThread was interrupted.", e);
+                }
+            }
+
+            System.exit(0);
+        }
+    }
+
+    /**
+     * Puts the tabs for the data that has been read in place of whatever
+     * was shown while it was read.  If the tab for today was shown from
+     * the startup summary the changes made there are brought over first.
+     * This runs on the event thread so nothing can be changed in between.
+     */
+    protected class ShowDataTask implements Runnable {
+        /** The component shown while the data was read. */
+        protected Component startupComponent;
+
+        /** The startup summary, or null if there is none. */
+        protected StartupSummary startupSummary;
+
+        /** The data read from the summary, or null if it wasn't used. */
+        protected TimelordData summaryTimelordData;
+
+        /**
+         * Creates the task.
+         *
+         * @param startupComponent the component shown while the data was
+         *        read
+         * @param startupSummary the startup summary, or null
+         * @param summaryTimelordData the data read from the summary, or null
+         */
+        public ShowDataTask(Component startupComponent,
+                StartupSummary startupSummary,
+                TimelordData summaryTimelordData) {
+
+            this.startupComponent = startupComponent;
+            this.startupSummary = startupSummary;
+            this.summaryTimelordData = summaryTimelordData;
+        }
+
+        /**
+         * Brings over the changes and swaps in the tabs.
+         */
+        public void run() {
+            if (summaryTimelordData != null) {
+                try {
+                    startupSummary.reconcile(
+                        summaryTimelordData, getTimelordData());
+                } catch (TimelordDataException e) {
+                    if (log.isErrorEnabled()) {
+                        log.error("Failed to bring over the changes made "
+                            + "while loading", e);
+                    }
+                }
+            }
+
+            timelordTabbedPane = new TimelordTabbedPane(getTimelordData());
+            startupTaskPanel = null;
+            applicationFrame.getContentPane().remove(startupComponent);
+            applicationFrame.getContentPane().add(timelordTabbedPane);
+            applicationFrame.validate();
+            applicationFrame.repaint();
+            timelordMenu.updateEnabledItems();
+        }
+    }
+
     /**
      * Basic adapter that listens for window close events and stops the
      * application.
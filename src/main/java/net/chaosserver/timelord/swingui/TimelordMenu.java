@@ -33,6 +33,9 @@ import java.awt.event.KeyEvent;
 import java.io.IOException;
 
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.ResourceBundle;
 
 import javax.help.CSH;
@@ -160,6 +163,15 @@ public class TimelordMenu extends JMenuBar implements ActionListener {
     /** The checkbox item for no Annoyance Mode. */
     protected JCheckBoxMenuItem annoyanceNoneCheckbox;
 
+    /**
+     * The items that need the tabs for the data to be shown before they
+     * can be used.
+     */
+    protected List<JMenuItem> dataMenuItems = new ArrayList<JMenuItem>();
+
+    /** The task menu, which needs a tab for today to act on. */
+    protected JMenu taskMenu;
+
     /** The timelord data this menu affects. */
     protected TimelordData timelordData;
 
@@ -225,6 +237,7 @@ public class TimelordMenu extends JMenuBar implements ActionListener {
         exportMenu.add(menuItem);
 
         fileMenu.add(exportMenu);
+        dataMenuItems.add(exportMenu);
 
         if(!OsUtil.isMac()) {
             fileMenu.addSeparator();
@@ -276,6 +289,7 @@ public class TimelordMenu extends JMenuBar implements ActionListener {
         menuItem.setActionCommand(ACTION_REFRESH_VIEW);
         menuItem.addActionListener(this);
         viewMenu.add(menuItem);
+        dataMenuItems.add(menuItem);
 
         viewMenu.addSeparator();
 
@@ -283,6 +297,7 @@ public class TimelordMenu extends JMenuBar implements ActionListener {
         menuItem.setActionCommand(ACTION_CHANGE_START);
         menuItem.addActionListener(this);
         viewMenu.add(menuItem);
+        dataMenuItems.add(menuItem);
 
         menuItem = new JMenuItem("Change Annoy Time");
         // currently disabled experimental functionality
@@ -301,6 +316,7 @@ public class TimelordMenu extends JMenuBar implements ActionListener {
         menuItem.setActionCommand(ACTION_PREVIOUS_TAB);
         menuItem.addActionListener(this);
         viewMenu.add(menuItem);
+        dataMenuItems.add(menuItem);
 
         menuItem = new JMenuItem("Select Next Tab", KeyEvent.VK_BRACERIGHT);
         menuItem.setAccelerator(
@@ -310,6 +326,7 @@ public class TimelordMenu extends JMenuBar implements ActionListener {
         menuItem.setActionCommand(ACTION_NEXT_TAB);
         menuItem.addActionListener(this);
         viewMenu.add(menuItem);
+        dataMenuItems.add(menuItem);
 
 
         return viewMenu;
@@ -322,7 +339,7 @@ public class TimelordMenu extends JMenuBar implements ActionListener {
      */
     protected JMenu createTaskMenu() {
         JMenuItem menuItem;
-        JMenu taskMenu = new JMenu("Task");
+        taskMenu = new JMenu("Task");
         taskMenu.setMnemonic(KeyEvent.VK_T);
         this.add(taskMenu);
 
@@ -451,6 +468,22 @@ public class TimelordMenu extends JMenuBar implements ActionListener {
         return this.timelordData;
     }
 
+    /**
+     * Enables only the items that have something to act on.  While the
+     * data is read the task menu acts on the tab for today shown from the
+     * startup summary, if there is one, and the rest waits for the tabs.
+     */
+    public void updateEnabledItems() {
+        boolean dataShown = timelord.isDataShown();
+        Iterator<JMenuItem> menuItemIterator = dataMenuItems.iterator();
+
+        while (menuItemIterator.hasNext()) {
+            ((JMenuItem) menuItemIterator.next()).setEnabled(dataShown);
+        }
+
+        taskMenu.setEnabled(timelord.getCommonTaskPanel() != null);
+    }
+
     /**
      * Update the checked state of the annoyance mode menu based on the
      * current settings of the data object.
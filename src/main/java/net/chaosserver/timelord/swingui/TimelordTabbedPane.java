@@ -18,25 +18,48 @@ along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
 package net.chaosserver.timelord.swingui;
 
 import net.chaosserver.timelord.data.TimelordData;
+import net.chaosserver.timelord.util.Clock;
 import net.chaosserver.timelord.util.DateUtil;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 
 import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
+import javax.swing.JLabel;
 import javax.swing.JTabbedPane;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
 
 /**
  * The tabbed pane is a basic two tab pane to show the current day and a
  * selection for to edit or view a pervious day.
+ * <p>
+ * Only the tab for the current day is built up front.  The other tabs
+ * start out as placeholders and are built the first time they are
+ * selected, with the slow work done by a background thread.
  *
  * @author Jordan
  */
 @SuppressWarnings("serial")
 public class TimelordTabbedPane extends JTabbedPane
-    implements PropertyChangeListener {
+    implements PropertyChangeListener, ChangeListener {
+
+    /** Logger. */
+    private static Log log = LogFactory.getLog(TimelordTabbedPane.class);
+
+    /** Position of the previous day tab. */
+    public static final int PREVIOUS_DAY_TAB = 1;
+
+    /** Position of the charting tab. */
+    public static final int CHARTING_TAB = 2;
 
     /** Holds the common task panel. */
     protected CommonTaskPanel commonTaskPanel;
@@ -53,6 +76,9 @@ public class TimelordTabbedPane extends JTabbedPane
     /** Holds the date being shown in the common task panel. */
     protected Date dateOfToday;
 
+    /** Runs the slow work of building the tabs in the background. */
+    protected ExecutorService backgroundExecutor;
+
     /**
      * Constructs the new pane.
      *
@@ -61,7 +87,7 @@ public class TimelordTabbedPane extends JTabbedPane
     public TimelordTabbedPane(TimelordData timelordData) {
         this.timelordData = timelordData;
 
-        this.dateOfToday = DateUtil.trunc(new Date());
+        this.dateOfToday = Clock.getInstance().getTodayStart();
 
         CommonTaskPanel taskPanel =
             new CommonTaskPanel(timelordData, dateOfToday, null);
@@ -71,17 +97,59 @@ public class TimelordTabbedPane extends JTabbedPane
         add(DateUtil.DATE_FORMAT.format(
             taskPanel.getDateDisplayed()), taskPanel);
 
+        add(
+            DateUtil.DATE_FORMAT.format(
+                PreviousDayPanel.getDefaultDisplayDate()),
+            new JLabel("Loading...", JLabel.CENTER)
+        );
+
+        add("Eye Candy", new JLabel("Loading...", JLabel.CENTER));
+
+        backgroundExecutor =
+            Executors.newSingleThreadExecutor(new BackgroundThreadFactory());
+
+        addChangeListener(this);
+    }
+
+    /**
+     * Builds the previous day panel in place of its placeholder.
+     */
+    protected void buildPreviousDayPanel() {
+        long startTime = System.currentTimeMillis();
+
         previousDayPanel = new PreviousDayPanel(timelordData);
         previousDayPanel.addPropertyChangeListener(this);
+        setComponentAt(PREVIOUS_DAY_TAB, previousDayPanel);
 
-        add(
-            DateUtil.DATE_FORMAT.format(previousDayPanel.getDisplayDate()),
-            previousDayPanel
-        );
+        if (log.isInfoEnabled()) {
+            log.info("Built the previous day tab in ["
+                    + (System.currentTimeMillis() - startTime) + "ms]");
+        }
+    }
 
+    /**
+     * Builds the charting panel in place of its placeholder.  The panel
+     * finishes loading the chart in the background.
+     */
+    protected void buildChartingPanel() {
         // Add the Charting Panel Magic
-        chartingPanel = new ChartingPanel(timelordData);
-        add("Eye Candy", chartingPanel);
+        chartingPanel = new ChartingPanel(timelordData, backgroundExecutor);
+        setComponentAt(CHARTING_TAB, chartingPanel);
+    }
+
+    /**
+     * Builds a tab the first time it is selected.
+     *
+     * @param evt the change event
+     */
+    public void stateChanged(ChangeEvent evt) {
+        if ((getSelectedIndex() == PREVIOUS_DAY_TAB)
+                && (previousDayPanel == null)) {
+            buildPreviousDayPanel();
+        } else if ((getSelectedIndex() == CHARTING_TAB)
+                && (chartingPanel == null)) {
+            buildChartingPanel();
+        }
     }
 
     /**
@@ -105,7 +173,7 @@ public class TimelordTabbedPane extends JTabbedPane
         }
 
 
-        this.dateOfToday = DateUtil.trunc(new Date());
+        this.dateOfToday = Clock.getInstance().getTodayStart();
         // timelordTabbedPane.setCo
         CommonTaskPanel taskPanel =
             new CommonTaskPanel(timelordData, dateOfToday, null);
@@ -136,9 +204,29 @@ public class TimelordTabbedPane extends JTabbedPane
      */
     public void propertyChange(PropertyChangeEvent evt) {
         if ("displayDate".equals(evt.getPropertyName())) {
-            setTitleAt(1,
+            setTitleAt(PREVIOUS_DAY_TAB,
                 DateUtil.DATE_FORMAT.format(previousDayPanel.getDisplayDate())
             );
         }
     }
+
+    /**
+     * Creates the background threads, which are daemons so they never hold
+     * up shutting down.
+     */
+    protected static class BackgroundThreadFactory implements ThreadFactory {
+        /**
+         * Creates a background thread.
+         *
+         * @param runnable what the thread runs
+         * @return the new thread
+         */
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "TimelordBackgroundThread");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+
+            return thread;
+        }
+    }
 }
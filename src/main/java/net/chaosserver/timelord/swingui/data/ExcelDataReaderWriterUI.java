@@ -119,15 +119,10 @@ public class ExcelDataReaderWriterUI extends ExcelDataReaderWriter
         throws TimelordDataException {
 
         if(!cancelled) {
-            TimelordData timelordDataClone =
-                (TimelordData) timelordData.clone();
+            TimelordData timelordDataSnapshot =
+                timelordData.snapshot(startDate, endDate);
 
-            if(startDate != null || endDate != null) {
-                timelordDataClone.removeTrackingOutsideRange(
-                        startDate, endDate);
-            }
-
-            super.writeTimelordData(timelordDataClone, outputFile);
+            super.writeTimelordData(timelordDataSnapshot, outputFile);
         }
     }
 
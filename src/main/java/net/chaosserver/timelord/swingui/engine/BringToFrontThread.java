@@ -17,10 +17,10 @@ along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
 */
 package net.chaosserver.timelord.swingui.engine;
 
-import net.chaosserver.timelord.data.TimelordTask;
-import net.chaosserver.timelord.data.TimelordTaskDay;
 import net.chaosserver.timelord.swingui.Timelord;
+import net.chaosserver.timelord.util.Clock;
 import net.chaosserver.timelord.util.DateUtil;
+import net.chaosserver.timelord.util.EpochDay;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -30,11 +30,6 @@ import java.awt.Frame;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 
-import java.util.Calendar;
-import java.util.Collection;
-import java.util.Date;
-import java.util.Iterator;
-
 import javax.swing.JFrame;
 
 
@@ -62,7 +57,7 @@ public class BringToFrontThread extends Thread {
     protected JFrame frame;
 
     /** Holds the last time the window was brought to the front. */
-    protected long lastAnnoy = System.currentTimeMillis();
+    protected long lastAnnoy = Clock.getInstance().currentTimeMillis();
 
     /** If set to true, will stop the thread on the next loop. */
     protected boolean stop = false;
@@ -168,7 +163,7 @@ public class BringToFrontThread extends Thread {
                 }
             } else if (Timelord.ANNOYANCE_DOUG.equals(annoymode)) {
                 double timeSinceLastAnnoy =
-                    System.currentTimeMillis() - lastAnnoy;
+                    Clock.getInstance().currentTimeMillis() - lastAnnoy;
 
                 if (log.isTraceEnabled()) {
                     log.trace(
@@ -205,34 +200,15 @@ public class BringToFrontThread extends Thread {
      * @return the amount of time that is not yet tracked.
      */
     public double getUntrackedTimeLeftToday() {
-        Date today = DateUtil.trunc(new Date());
+        EpochDay today = EpochDay.today();
 
-        double hourOfDay =
-            Calendar.getInstance().get(Calendar.HOUR_OF_DAY)
-            + (Calendar.getInstance().get(
-                Calendar.MINUTE) / DateUtil.MINUTE_IN_HOUR);
+        double hourOfDay = Clock.getInstance().getHourOfDay();
 
         double dayStartTime =
             getTimelord().getTimelordData().getDayStartTime();
 
-        double totalTimeToday = 0;
-
-        Collection<TimelordTask> taskCollection =
-            getTimelord().getTimelordData().getTaskCollection();
-
-        Iterator<TimelordTask> viewTaskListIterator = taskCollection.iterator();
-
-        while (viewTaskListIterator.hasNext()) {
-            TimelordTask timelordTask =
-                (TimelordTask) viewTaskListIterator.next();
-
-            TimelordTaskDay taskDay = timelordTask.getTaskDay(today);
-
-            if (taskDay != null) {
-                double todayTime = taskDay.getHours();
-                totalTimeToday += todayTime;
-            }
-        }
+        double totalTimeToday =
+            getTimelord().getTimelordData().getDayTotal(today, true);
 
         double untrackedTimeLeftToday =
             hourOfDay - dayStartTime - totalTimeToday;
@@ -253,7 +229,7 @@ public class BringToFrontThread extends Thread {
      * front.
      */
     protected void annoy() {
-        lastAnnoy = System.currentTimeMillis();
+        lastAnnoy = Clock.getInstance().currentTimeMillis();
         getFrame().setExtendedState(Frame.NORMAL);
         getFrame().toFront();
         getTimelord().showTodayTab();
@@ -0,0 +1,170 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.util;
+
+import java.util.Calendar;
+import java.util.Date;
+
+
+/**
+ * The source of the current time for the data and engine classes.  The
+ * clock keeps the current day and the times of the midnights on either side
+ * of it, so asking what today is only needs a comparison against the cached
+ * boundaries until the day rolls over.
+ * <p>
+ * The clock in use can be replaced with setInstance, and subclasses can
+ * override currentTimeMillis to drive time by hand.
+ */
+public class Clock {
+    /** Number of milliseconds in one hour. */
+    private static final double MILLIS_IN_HOUR = 3600000d;
+
+    /** The clock in use. */
+    private static Clock instance = new Clock();
+
+    /** The current day, or null if it hasn't been worked out yet. */
+    protected EpochDay today;
+
+    /** The time of midnight at the start of today. */
+    protected long todayStart;
+
+    /** The time of midnight at the end of today. */
+    protected long tomorrowStart;
+
+    /**
+     * Gets the clock in use.
+     *
+     * @return the clock
+     */
+    public static Clock getInstance() {
+        return instance;
+    }
+
+    /**
+     * Replaces the clock in use.
+     *
+     * @param clock the new clock
+     */
+    public static void setInstance(Clock clock) {
+        instance = clock;
+    }
+
+    /**
+     * Gets the current time in milliseconds.  This is the one place the
+     * clock reads the system time.
+     *
+     * @return the current time
+     */
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Gets the current time.
+     *
+     * @return a new date for the current time
+     */
+    public Date now() {
+        return new Date(currentTimeMillis());
+    }
+
+    /**
+     * Gets a calendar in the default time zone set to the current time.
+     *
+     * @return a new calendar for the current time
+     */
+    public Calendar getCalendar() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(currentTimeMillis());
+
+        return calendar;
+    }
+
+    /**
+     * Gets the current day.
+     *
+     * @return today
+     */
+    public synchronized EpochDay today() {
+        refresh(currentTimeMillis());
+
+        return today;
+    }
+
+    /**
+     * Gets midnight at the start of the current day.
+     *
+     * @return a new date for the start of today
+     */
+    public synchronized Date getTodayStart() {
+        refresh(currentTimeMillis());
+
+        return new Date(todayStart);
+    }
+
+    /**
+     * Gets the time of day as hours since the start of the day, as read
+     * off the wall clock.  For example 1:30pm is 13.5.
+     *
+     * @return the hour of the day
+     */
+    public double getHourOfDay() {
+        long now = currentTimeMillis();
+        long localTime = now + DateUtil.getDefaultTimeZone().getOffset(now);
+        long millisOfDay = localTime % DateUtil.MILLIS_IN_DAY;
+
+        if (millisOfDay < 0) {
+            millisOfDay += DateUtil.MILLIS_IN_DAY;
+        }
+
+        // Only count whole minutes, the same as reading the hour and minute
+        // fields off a calendar.
+        millisOfDay -= millisOfDay % 60000;
+
+        return millisOfDay / MILLIS_IN_HOUR;
+    }
+
+    /**
+     * Forgets the cached day and time zone so the next call works them out
+     * again.  This is needed if the default time zone is changed.
+     */
+    public synchronized void reset() {
+        today = null;
+        DateUtil.resetDefaultTimeZone();
+    }
+
+    /**
+     * Works out the current day and its boundaries if the time given is
+     * outside of the cached day.
+     *
+     * @param now the current time
+     */
+    protected void refresh(long now) {
+        if ((today == null) || (now < todayStart) || (now >= tomorrowStart)) {
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTimeInMillis(now);
+            DateUtil.trunc(calendar);
+            todayStart = calendar.getTimeInMillis();
+
+            calendar.add(Calendar.DATE, 1);
+            tomorrowStart = calendar.getTimeInMillis();
+
+            today = new EpochDay(DateUtil.toEpochDay(new Date(todayStart)));
+        }
+    }
+}
@@ -24,6 +24,7 @@ import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Locale;
+import java.util.TimeZone;
 import java.util.prefs.Preferences;
 
 import net.chaosserver.timelord.swingui.Timelord;
@@ -49,6 +50,9 @@ public final class DateUtil {
     /** Number of minutes in one hour. */
     public static final double MINUTE_IN_HOUR = 60d;
 
+    /** Number of milliseconds in one day. */
+    public static final long MILLIS_IN_DAY = 86400000L;
+
     /** The smallest time a user can increment in hours. */
     public static final double DEFAULT_SMALL_TIME_INCREMENT_HOUR = 0.25d;
 
@@ -60,6 +64,12 @@ public final class DateUtil {
     public static final DateFormat BASIC_DATE_FORMAT =
         new SimpleDateFormat("MM-dd-yyyy");
 
+    /**
+     * The default time zone, looked up once since TimeZone.getDefault
+     * hands out a new clone on every call.
+     */
+    private static volatile TimeZone defaultTimeZone;
+
     /**
      * Gets the time that is incremented.
      *
@@ -84,6 +94,27 @@ public final class DateUtil {
     }
 
 
+    /**
+     * Converts hours into the whole number of minutes used to hold time
+     * internally, rounding to the nearest minute.
+     *
+     * @param hours the hours to convert
+     * @return the number of minutes
+     */
+    public static int hoursToMinutes(double hours) {
+        return (int) Math.round(hours * MINUTE_IN_HOUR);
+    }
+
+    /**
+     * Converts a whole number of minutes back into hours.
+     *
+     * @param minutes the minutes to convert
+     * @return the number of hours
+     */
+    public static double minutesToHours(int minutes) {
+        return minutes / MINUTE_IN_HOUR;
+    }
+
     /**
      * Truncates a date object by setting to midnight of the
      * current date.
@@ -111,6 +142,104 @@ public final class DateUtil {
         calendar.set(Calendar.MILLISECOND, 0);
     }
 
+    /**
+     * Gets the default time zone.  The zone is looked up the first time
+     * and kept, so it is cheap enough to call for every day converted.
+     *
+     * @return the default time zone
+     */
+    public static TimeZone getDefaultTimeZone() {
+        TimeZone timeZone = defaultTimeZone;
+
+        if (timeZone == null) {
+            timeZone = TimeZone.getDefault();
+            defaultTimeZone = timeZone;
+        }
+
+        return timeZone;
+    }
+
+    /**
+     * Forgets the kept default time zone so the next call looks it up
+     * again.  This is needed if the default time zone is changed.
+     */
+    public static void resetDefaultTimeZone() {
+        defaultTimeZone = null;
+    }
+
+    /**
+     * Converts a date into the number of whole days since the epoch in the
+     * default time zone.  Any two dates that fall on the same calendar day
+     * produce the same value, which makes this a cheap key for a day
+     * without having to build and truncate a Calendar.
+     *
+     * @param inputDate the date to convert
+     * @return the number of days since 01-01-1970 in the local time zone
+     */
+    public static int toEpochDay(Date inputDate) {
+        long time = inputDate.getTime();
+        long localTime = time + getDefaultTimeZone().getOffset(time);
+
+        // Integer division rounds towards zero, so days before the epoch
+        // need to be pushed down by one.
+        if (localTime < 0) {
+            return (int) (((localTime + 1) / MILLIS_IN_DAY) - 1);
+        } else {
+            return (int) (localTime / MILLIS_IN_DAY);
+        }
+    }
+
+    /**
+     * Checks if a date falls exactly on midnight in the default time zone.
+     *
+     * @param inputDate the date to check
+     * @return if the date is the very start of a day
+     */
+    public static boolean isMidnight(Date inputDate) {
+        long time = inputDate.getTime();
+        long localTime = time + getDefaultTimeZone().getOffset(time);
+
+        return (localTime % MILLIS_IN_DAY) == 0;
+    }
+
+    /**
+     * Converts a number of days since the epoch back into a date set to
+     * midnight of that day in the default time zone.  This is the reverse
+     * of toEpochDay.  The offset is worked out from the cached zone
+     * rather than by building a Calendar, but picks the same time a
+     * Calendar would when a daylight saving change falls on midnight:
+     * the later midnight when it happens twice, and the end of the gap
+     * when it is skipped.
+     *
+     * @param epochDay the number of days since 01-01-1970
+     * @return the date at the start of the day
+     */
+    public static Date fromEpochDay(int epochDay) {
+        TimeZone timeZone = getDefaultTimeZone();
+        long localTime = epochDay * MILLIS_IN_DAY;
+
+        long timeBefore =
+            localTime - timeZone.getOffset(localTime - MILLIS_IN_DAY);
+        long timeAfter =
+            localTime - timeZone.getOffset(localTime + MILLIS_IN_DAY);
+
+        boolean validBefore =
+            timeBefore + timeZone.getOffset(timeBefore) == localTime;
+        boolean validAfter =
+            timeAfter + timeZone.getOffset(timeAfter) == localTime;
+
+        long time;
+        if (validBefore && !validAfter) {
+            time = timeBefore;
+        } else if (validAfter && !validBefore) {
+            time = timeAfter;
+        } else {
+            time = Math.max(timeBefore, timeAfter);
+        }
+
+        return new Date(time);
+    }
+
     /**
      * Formats the hours display for the given locale.
      *
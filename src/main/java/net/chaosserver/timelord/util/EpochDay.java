@@ -0,0 +1,185 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.util;
+
+import java.io.Serializable;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+
+/**
+ * An immutable calendar day held as the number of days since 01-01-1970 in
+ * the default time zone.  This is used as the key for a day throughout the
+ * data package in place of a truncated Date, so comparing and stepping
+ * through days is simple integer math and never needs a Calendar.
+ */
+@SuppressWarnings("serial")
+public final class EpochDay implements Comparable<EpochDay>, Serializable {
+    /** Number of days in a week. */
+    public static final int DAYS_IN_WEEK = 7;
+
+    /**
+     * The ISO day of week of the epoch, where Monday is one.  01-01-1970
+     * was a Thursday.
+     */
+    private static final int EPOCH_DAY_OF_WEEK = 4;
+
+    /** The number of days since the epoch. */
+    private final int day;
+
+    /**
+     * Creates a day from the number of days since the epoch.
+     *
+     * @param day the number of days since 01-01-1970
+     */
+    public EpochDay(int day) {
+        this.day = day;
+    }
+
+    /**
+     * Gets the day that a date falls on.
+     *
+     * @param date the date
+     * @return the day of the date
+     */
+    public static EpochDay valueOf(Date date) {
+        return new EpochDay(DateUtil.toEpochDay(date));
+    }
+
+    /**
+     * Gets the current day from the clock.
+     *
+     * @return today
+     */
+    public static EpochDay today() {
+        return Clock.getInstance().today();
+    }
+
+    /**
+     * Gets the number of days since the epoch.
+     *
+     * @return the day as an int
+     */
+    public int intValue() {
+        return this.day;
+    }
+
+    /**
+     * Gets a day a number of days away from this one.
+     *
+     * @param days the number of days to add, which may be negative
+     * @return the new day
+     */
+    public EpochDay plusDays(int days) {
+        return new EpochDay(this.day + days);
+    }
+
+    /**
+     * Gets the day of the week with Monday as one and Sunday as seven.
+     *
+     * @return the day of the week
+     */
+    public int getDayOfWeek() {
+        int offset = (this.day + EPOCH_DAY_OF_WEEK - 1) % DAYS_IN_WEEK;
+
+        if (offset < 0) {
+            offset += DAYS_IN_WEEK;
+        }
+
+        return offset + 1;
+    }
+
+    /**
+     * Gets the Monday at the start of the week this day is in.
+     *
+     * @return the start of the week
+     */
+    public EpochDay getWeekStart() {
+        return plusDays(1 - getDayOfWeek());
+    }
+
+    /**
+     * Checks if this day comes after another.
+     *
+     * @param other the day to compare with
+     * @return if this day is later
+     */
+    public boolean isAfter(EpochDay other) {
+        return this.day > other.day;
+    }
+
+    /**
+     * Checks if this day comes before another.
+     *
+     * @param other the day to compare with
+     * @return if this day is earlier
+     */
+    public boolean isBefore(EpochDay other) {
+        return this.day < other.day;
+    }
+
+    /**
+     * Converts the day into a Date set to midnight at the start of the day.
+     * This is only meant for the places that need a Date such as the file
+     * formats and display.
+     *
+     * @return the date at the start of the day
+     */
+    public Date toDate() {
+        return DateUtil.fromEpochDay(this.day);
+    }
+
+    /**
+     * Compares two days.
+     *
+     * @param other the day to compare against
+     * @return negative, zero or positive as this day is before, the same
+     *         as or after the other
+     */
+    public int compareTo(EpochDay other) {
+        return (this.day < other.day) ? -1 : ((this.day == other.day) ? 0 : 1);
+    }
+
+    /**
+     * Checks if two days are the same.
+     *
+     * @param obj the object to check against
+     * @return if the object is the same day
+     */
+    public boolean equals(Object obj) {
+        return (obj instanceof EpochDay) && (((EpochDay) obj).day == this.day);
+    }
+
+    /**
+     * Hash code of the day.
+     *
+     * @return the hash code
+     */
+    public int hashCode() {
+        return this.day;
+    }
+
+    /**
+     * Returns a String representation for debugging.
+     *
+     * @return string representation
+     */
+    public String toString() {
+        return new SimpleDateFormat("MM-dd-yyyy").format(toDate());
+    }
+}
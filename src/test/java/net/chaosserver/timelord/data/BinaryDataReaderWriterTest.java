@@ -0,0 +1,106 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+
+
+/**
+ * Tests the binary reader/writer reads back what it writes and refuses a
+ * file that has been damaged.
+ */
+public class BinaryDataReaderWriterTest extends DataTestBase {
+    /**
+     * Checks a file read back matches what was written.
+     *
+     * @throws Exception indicates a failure
+     */
+    public void testRoundTrip() throws Exception {
+        TimelordData timelordData = generate(20);
+        timelordData.setDayStartTime(7.25d);
+        BinaryDataReaderWriter binaryDataReaderWriter =
+            new BinaryDataReaderWriter();
+        File datafile = binaryDataReaderWriter.getDefaultOutputFile();
+
+        binaryDataReaderWriter.writeTimelordData(
+            timelordData.snapshot(), datafile);
+
+        assertSameData(timelordData,
+            new BinaryDataReaderWriter().readTimelordData(datafile));
+    }
+
+    /**
+     * Checks a single changed bit in the payload or checksum of any block
+     * is caught.  The block types are left alone, since a block of an
+     * unknown type is skipped on purpose.
+     *
+     * @throws Exception indicates a failure
+     */
+    public void testChecksumRejected() throws Exception {
+        BinaryDataReaderWriter binaryDataReaderWriter =
+            new BinaryDataReaderWriter();
+        byte[] bytes = binaryDataReaderWriter.encode(generate(10));
+
+        // Each block after the header is its type, length, payload and
+        // checksum.
+        int position = 8;
+
+        while (position < bytes.length) {
+            int length = new DataInputStream(new ByteArrayInputStream(
+                bytes, position + 1, 4)).readInt();
+            int end = position + 5 + length + 4;
+            int step = Math.max(1, (length + 4) / 20);
+
+            for (int i = position + 5; i < end; i += step) {
+                byte[] damagedBytes = (byte[]) bytes.clone();
+                damagedBytes[i] ^= 0x10;
+
+                try {
+                    binaryDataReaderWriter.decode(damagedBytes);
+                    fail("Damage at [" + i + "] wasn't caught");
+                } catch (TimelordDataException e) {
+                    // Expected.
+                }
+            }
+
+            position = end;
+        }
+    }
+
+    /**
+     * Checks data cut short is refused.
+     *
+     * @throws Exception indicates a failure
+     */
+    public void testTruncationRejected() throws Exception {
+        BinaryDataReaderWriter binaryDataReaderWriter =
+            new BinaryDataReaderWriter();
+        byte[] bytes = binaryDataReaderWriter.encode(generate(10));
+        byte[] truncatedBytes = new byte[bytes.length - 1];
+        System.arraycopy(bytes, 0, truncatedBytes, 0, truncatedBytes.length);
+
+        try {
+            binaryDataReaderWriter.decode(truncatedBytes);
+            fail("Truncation wasn't caught");
+        } catch (TimelordDataException e) {
+            // Expected.
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.data;
+
+import net.chaosserver.timelord.util.EpochDay;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+
+/**
+ * Tests the change journal brings the changes made since the last full
+ * write back on top of the main file, and only then.
+ */
+public class ChangeJournalTest extends DataTestBase {
+    /** The reader/writer of the main file. */
+    protected BinaryDataReaderWriter binaryDataReaderWriter;
+
+    /** The data as the application holds it. */
+    protected TimelordData timelordData;
+
+    /** The journal file. */
+    protected File journalFile;
+
+    /**
+     * Writes some data to the main file and starts journaling it.
+     *
+     * @throws Exception indicates an error writing the data
+     */
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        binaryDataReaderWriter = new BinaryDataReaderWriter();
+        journalFile = ChangeJournal.getJournalFile(
+            binaryDataReaderWriter.getDefaultOutputFile());
+
+        timelordData = generate(10);
+        timelordData.setTimelordReaderWriter(binaryDataReaderWriter);
+        timelordData.setChangeJournal(new ChangeJournal(journalFile));
+        timelordData.write();
+    }
+
+    /**
+     * Checks the changes journaled since the last write are replayed on
+     * top of the main file.
+     *
+     * @throws Exception indicates a failure
+     */
+    public void testReplay() throws Exception {
+        makeChanges();
+        timelordData.journal();
+
+        assertSameData(timelordData, readAndReplay());
+    }
+
+    /**
+     * Checks a renamed task is journaled as a rename, rather than as a new
+     * task holding every one of its days, and is replayed with its days.
+     *
+     * @throws Exception indicates a failure
+     */
+    public void testRenameReplayed() throws Exception {
+        TimelordTask timelordTask =
+            (TimelordTask) timelordData.getTaskCollection().get(3);
+        timelordTask.setTaskName("Renamed Task");
+        timelordData.journal();
+
+        assertTrue(journalFile.length() < 100);
+
+        TimelordData replayedData = readAndReplay();
+        assertNull(replayedData.getTask("Task 3"));
+        assertSameData(timelordData, replayedData);
+    }
+
+    /**
+     * Checks a damaged record at the end is cut off the journal, the
+     * records before it are still replayed, and new records follow them.
+     *
+     * @throws Exception indicates a failure
+     */
+    public void testDamagedTailTruncated() throws Exception {
+        makeChanges();
+        timelordData.journal();
+        long goodLength = journalFile.length();
+
+        OutputStream outputStream = new FileOutputStream(journalFile, true);
+
+        try {
+            outputStream.write(new byte[] {0, 0, 0, 40, 4, 0, 0});
+        } finally {
+            outputStream.close();
+        }
+
+        TimelordData replayedData = binaryDataReaderWriter.readTimelordData();
+        ChangeJournal changeJournal = new ChangeJournal(journalFile);
+        changeJournal.replay(
+            replayedData, binaryDataReaderWriter.getOutputStamp());
+
+        assertSameData(timelordData, replayedData);
+        assertEquals(goodLength, journalFile.length());
+
+        replayedData.resetTaskListeners();
+        replayedData.setChangeJournal(changeJournal);
+        replayedData.addTask("After The Damage");
+        replayedData.journal();
+
+        assertSameData(replayedData, readAndReplay());
+    }
+
+    /**
+     * Checks a journal left over from before the main file was last
+     * written is dropped rather than replayed over the newer data.
+     *
+     * @throws Exception indicates a failure
+     */
+    public void testStaleJournalDropped() throws Exception {
+        makeChanges();
+        timelordData.journal();
+
+        // The main file is written again but the application stops
+        // before the journal is cleared.
+        TimelordData newerData = binaryDataReaderWriter.readTimelordData();
+        TimelordTask timelordTask =
+            (TimelordTask) newerData.getTaskCollection().get(0);
+        timelordTask.getTaskDay(EpochDay.today(), true).addMinutes(90);
+        Thread.sleep(10);
+        binaryDataReaderWriter.writeTimelordData(
+            newerData.snapshot(),
+            binaryDataReaderWriter.getDefaultOutputFile());
+
+        assertTrue(journalFile.length() > 0);
+        assertSameData(newerData, readAndReplay());
+        assertEquals(0, journalFile.length());
+    }
+
+    /**
+     * Checks the changes between two snapshots are applied to other data
+     * the same way a replay applies them.
+     *
+     * @throws Exception indicates a failure
+     */
+    public void testCopyChanges() throws Exception {
+        TimelordData fromData = timelordData.snapshot();
+        makeChanges();
+
+        TimelordData otherData = binaryDataReaderWriter.readTimelordData();
+        ChangeJournal.copyChanges(
+            fromData, timelordData.snapshot(), otherData);
+
+        assertSameData(timelordData, otherData);
+    }
+
+    /**
+     * Changes a day, a note, the flags of a task, the settings, and adds
+     * and removes a task.
+     */
+    protected void makeChanges() {
+        TimelordTask firstTask =
+            (TimelordTask) timelordData.getTaskCollection().get(0);
+        TimelordTask secondTask =
+            (TimelordTask) timelordData.getTaskCollection().get(1);
+        TimelordTask thirdTask =
+            (TimelordTask) timelordData.getTaskCollection().get(2);
+
+        firstTask.getTaskDay(EpochDay.today(), true).addMinutes(30);
+        firstTask.getTaskDay(EpochDay.today().plusDays(-3), true)
+            .setNote("Journaled note");
+        secondTask.setHidden(!secondTask.isHidden());
+        timelordData.removeTask(thirdTask);
+        timelordData.addTask("Journaled Task");
+        timelordData.setDayStartTime(6.5d);
+    }
+
+    /**
+     * Reads the main file and replays the journal on top of it.
+     *
+     * @return the data read
+     * @throws Exception indicates an error reading
+     */
+    protected TimelordData readAndReplay() throws Exception {
+        TimelordData replayedData = binaryDataReaderWriter.readTimelordData();
+        new ChangeJournal(journalFile).replay(
+            replayedData, binaryDataReaderWriter.getOutputStamp());
+
+        return replayedData;
+    }
+}
@@ -0,0 +1,246 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.data;
+
+import net.chaosserver.timelord.util.EpochDay;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+
+/**
+ * Base for the tests of the data package.  Each test runs with the home
+ * directory pointed at an empty temporary directory, which is where the
+ * reader/writers keep their default files, and removed afterwards.
+ */
+public abstract class DataTestBase extends TestCase {
+    /** The home directory before the test started. */
+    protected String originalHome;
+
+    /** The temporary home directory of the test. */
+    protected File homeDirectory;
+
+    /**
+     * Points the home directory at a new temporary directory.
+     *
+     * @throws Exception indicates an error creating the directory
+     */
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        homeDirectory = File.createTempFile("timelord", "");
+
+        if (!homeDirectory.delete() || !homeDirectory.mkdir()) {
+            throw new IOException(
+                    "Failed to create [" + homeDirectory + "]");
+        }
+
+        originalHome = System.getProperty("user.home");
+        System.setProperty("user.home", homeDirectory.getPath());
+    }
+
+    /**
+     * Puts the home directory back and removes the temporary one.
+     *
+     * @throws Exception indicates an error cleaning up
+     */
+    protected void tearDown() throws Exception {
+        System.setProperty("user.home", originalHome);
+        delete(homeDirectory);
+
+        super.tearDown();
+    }
+
+    /**
+     * Deletes a file, or a directory with everything in it.
+     *
+     * @param file the file to delete
+     */
+    protected static void delete(File file) {
+        File[] files = file.listFiles();
+
+        if (files != null) {
+            for (int i = 0; i < files.length; i++) {
+                delete(files[i]);
+            }
+        }
+
+        file.delete();
+    }
+
+    /**
+     * Gets noon of a day relative to today.
+     *
+     * @param dayOffset the days from today, negative for the past
+     * @return the date
+     */
+    protected static Date day(int dayOffset) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(Calendar.HOUR_OF_DAY, 12);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        calendar.add(Calendar.DAY_OF_MONTH, dayOffset);
+
+        return calendar.getTime();
+    }
+
+    /**
+     * Generates two years of data for a number of tasks.  The same task
+     * count always gives the same data.  About half the days of each task
+     * have time, a fifth of those have a note, and a few tasks are hidden
+     * or not exported.
+     *
+     * @param taskCount the number of tasks
+     * @return the data
+     */
+    protected static TimelordData generate(int taskCount) {
+        Random random = new Random(taskCount);
+        TimelordData timelordData = new TimelordData();
+        EpochDay today = EpochDay.today();
+
+        for (int i = 0; i < taskCount; i++) {
+            TimelordTask timelordTask = new TimelordTask("Task " + i);
+            timelordTask.setHidden((i % 7) == 3);
+            timelordTask.setExportable((i % 5) != 2);
+
+            for (int offset = -730; offset <= 0; offset++) {
+                if (random.nextBoolean()) {
+                    TimelordTaskDay timelordTaskDay = timelordTask.getTaskDay(
+                        today.plusDays(offset), true);
+                    timelordTaskDay.addMinutes(
+                        (1 + random.nextInt(32)) * 15);
+
+                    if (random.nextInt(5) == 0) {
+                        timelordTaskDay.setNote(
+                            "Note " + i + " " + offset);
+                    }
+                }
+            }
+
+            timelordData.addTask(timelordTask);
+        }
+
+        return timelordData;
+    }
+
+    /**
+     * Asserts two sets of data hold the same settings, tasks, flags and
+     * days, ignoring the order of the tasks.
+     *
+     * @param expected the data expected
+     * @param actual the data to check
+     */
+    protected static void assertSameData(TimelordData expected,
+            TimelordData actual) {
+
+        assertEquals(
+            expected.getDayStartTime(), actual.getDayStartTime(), 0d);
+        assertEquals(
+            expected.getTaskCollection().size(),
+            actual.getTaskCollection().size());
+
+        Iterator<TimelordTask> taskIterator =
+            expected.getTaskCollection().iterator();
+
+        while (taskIterator.hasNext()) {
+            TimelordTask expectedTask = (TimelordTask) taskIterator.next();
+            TimelordTask actualTask =
+                actual.getTask(expectedTask.getTaskName());
+
+            assertNotNull(expectedTask.getTaskName(), actualTask);
+            assertSameTask(expectedTask, actualTask);
+        }
+    }
+
+    /**
+     * Asserts two tasks hold the same flags and days.
+     *
+     * @param expected the task expected
+     * @param actual the task to check
+     */
+    protected static void assertSameTask(TimelordTask expected,
+            TimelordTask actual) {
+
+        String taskName = expected.getTaskName();
+
+        assertEquals(taskName, expected.isHidden(), actual.isHidden());
+        assertEquals(
+            taskName, expected.isExportable(), actual.isExportable());
+
+        Map<Integer, TimelordTaskDay> actualDays = toDayMap(actual);
+        Iterator<TimelordTaskDay> dayIterator =
+            toDayMap(expected).values().iterator();
+
+        while (dayIterator.hasNext()) {
+            TimelordTaskDay expectedDay = (TimelordTaskDay) dayIterator.next();
+            TimelordTaskDay actualDay = (TimelordTaskDay) actualDays.remove(
+                Integer.valueOf(expectedDay.getEpochDay()));
+            String dayName = taskName + " " + expectedDay.getDay();
+
+            assertNotNull(dayName, actualDay);
+            assertEquals(
+                dayName, expectedDay.getMinutes(), actualDay.getMinutes());
+            assertEquals(dayName, expectedDay.getNote(), actualDay.getNote());
+        }
+
+        assertTrue(
+            taskName + " has extra days " + actualDays.keySet(),
+            actualDays.isEmpty());
+    }
+
+    /**
+     * Gets the days of a task with time or a note, keyed by epoch day.
+     *
+     * @param timelordTask the task
+     * @return the days
+     */
+    protected static Map<Integer, TimelordTaskDay> toDayMap(
+            TimelordTask timelordTask) {
+
+        Map<Integer, TimelordTaskDay> dayMap =
+            new HashMap<Integer, TimelordTaskDay>();
+        List<TimelordTaskDay> taskDayList = timelordTask.getTaskDayList();
+        Iterator<TimelordTaskDay> dayIterator = taskDayList.iterator();
+
+        while (dayIterator.hasNext()) {
+            TimelordTaskDay timelordTaskDay =
+                (TimelordTaskDay) dayIterator.next();
+
+            if ((timelordTaskDay.getMinutes() != 0)
+                    || (timelordTaskDay.getNote() != null)) {
+
+                dayMap.put(
+                    Integer.valueOf(timelordTaskDay.getEpochDay()),
+                    timelordTaskDay);
+            }
+        }
+
+        return dayMap;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.data;
+
+import net.chaosserver.timelord.util.EpochDay;
+
+import java.io.File;
+
+
+/**
+ * Tests the segmented reader/writer reads back what it writes, both when
+ * everything is written and when only what changed is.
+ */
+public class SegmentedDataReaderWriterTest extends DataTestBase {
+    /**
+     * Checks data read back matches what was written.
+     *
+     * @throws Exception indicates a failure
+     */
+    public void testRoundTrip() throws Exception {
+        TimelordData timelordData = generate(20);
+        timelordData.setDayStartTime(9d);
+        SegmentedDataReaderWriter segmentedDataReaderWriter =
+            new SegmentedDataReaderWriter();
+
+        segmentedDataReaderWriter.writeTimelordData(
+            timelordData.snapshot(),
+            segmentedDataReaderWriter.getDefaultOutputFile());
+
+        assertSameData(timelordData,
+            new SegmentedDataReaderWriter().readTimelordData());
+    }
+
+    /**
+     * Checks changes written on top of earlier data, which only rewrite
+     * the segments they touch, are read back along with the rest.
+     *
+     * @throws Exception indicates a failure
+     */
+    public void testIncrementalWrite() throws Exception {
+        TimelordData timelordData = generate(20);
+        SegmentedDataReaderWriter segmentedDataReaderWriter =
+            new SegmentedDataReaderWriter();
+        File manifestFile = segmentedDataReaderWriter.getDefaultOutputFile();
+
+        segmentedDataReaderWriter.writeTimelordData(
+            timelordData.snapshot(), manifestFile);
+
+        TimelordTask timelordTask =
+            (TimelordTask) timelordData.getTaskCollection().get(0);
+        timelordTask.getTaskDay(EpochDay.today().plusDays(-400), true)
+            .setNote("Changed a year ago");
+        timelordData.addTask("Added Task").getTaskDay(EpochDay.today(), true)
+            .addMinutes(45);
+        timelordData.removeTask(
+            (TimelordTask) timelordData.getTaskCollection().get(1));
+
+        segmentedDataReaderWriter.writeTimelordData(
+            timelordData.snapshot(), manifestFile);
+
+        assertSameData(timelordData,
+            new SegmentedDataReaderWriter().readTimelordData());
+    }
+}
@@ -0,0 +1,200 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.data;
+
+import net.chaosserver.timelord.util.EpochDay;
+
+import java.io.File;
+
+import java.util.Iterator;
+
+
+/**
+ * Tests the startup summary holds the current week of the data, is only
+ * used while it matches the data file, and carries changes made to it
+ * over to the full data.
+ */
+public class StartupSummaryTest extends DataTestBase {
+    /** The reader/writer of the main file. */
+    protected BinaryDataReaderWriter binaryDataReaderWriter;
+
+    /** The main file. */
+    protected File dataFile;
+
+    /** The data as the application holds it. */
+    protected TimelordData timelordData;
+
+    /**
+     * Writes some data to the main file along with its summary.
+     *
+     * @throws Exception indicates an error writing the data
+     */
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        binaryDataReaderWriter = new BinaryDataReaderWriter();
+        dataFile = binaryDataReaderWriter.getDefaultOutputFile();
+
+        timelordData = generate(5);
+        timelordData.setTimelordReaderWriter(binaryDataReaderWriter);
+        timelordData.setStartupSummary(new StartupSummary(binaryDataReaderWriter));
+        timelordData.write();
+    }
+
+    /**
+     * Checks the summary holds every task with only the days of the
+     * current week, and totals the same as the data for those days.
+     */
+    public void testReadHoldsCurrentWeek() {
+        TimelordData summaryData = new StartupSummary(binaryDataReaderWriter).read();
+        EpochDay weekStart = EpochDay.today().getWeekStart();
+
+        assertNotNull(summaryData);
+        assertEquals(
+            timelordData.getTaskCollection().size(),
+            summaryData.getTaskCollection().size());
+
+        Iterator<TimelordTask> taskIterator =
+            timelordData.getTaskCollection().iterator();
+
+        while (taskIterator.hasNext()) {
+            TimelordTask timelordTask = (TimelordTask) taskIterator.next();
+            TimelordTask summaryTask =
+                summaryData.getTask(timelordTask.getTaskName());
+
+            assertNotNull(summaryTask);
+            assertEquals(timelordTask.isHidden(), summaryTask.isHidden());
+            assertNull(summaryTask.getTaskDay(weekStart.plusDays(-1)));
+
+            for (EpochDay epochDay = weekStart;
+                    !epochDay.isAfter(EpochDay.today());
+                    epochDay = epochDay.plusDays(1)) {
+
+                TimelordTaskDay timelordTaskDay =
+                    timelordTask.getTaskDay(epochDay);
+                TimelordTaskDay summaryTaskDay =
+                    summaryTask.getTaskDay(epochDay);
+
+                if ((timelordTaskDay == null)
+                        || (timelordTaskDay.getMinutes() == 0)) {
+                    assertTrue((summaryTaskDay == null)
+                        || (summaryTaskDay.getMinutes() == 0));
+                } else {
+                    assertEquals(
+                        timelordTaskDay.getMinutes(),
+                        summaryTaskDay.getMinutes());
+                }
+            }
+        }
+
+        assertEquals(
+            timelordData.getDayMinutes(EpochDay.today(), true),
+            summaryData.getDayMinutes(EpochDay.today(), true));
+    }
+
+    /**
+     * Checks a summary is ignored once the data file has changed since it
+     * was written.
+     */
+    public void testOutOfDateIgnored() {
+        assertTrue(dataFile.setLastModified(
+            dataFile.lastModified() - 60000));
+
+        assertNull(new StartupSummary(binaryDataReaderWriter).read());
+    }
+
+    /**
+     * Checks a summary of segmented data is ignored once a segment has
+     * been rewritten, even though the manifest is left alone.
+     *
+     * @throws Exception indicates a failure
+     */
+    public void testSegmentChangeIgnored() throws Exception {
+        SegmentedDataReaderWriter segmentedDataReaderWriter =
+            new SegmentedDataReaderWriter();
+        timelordData.setTimelordReaderWriter(segmentedDataReaderWriter);
+        timelordData.setStartupSummary(
+            new StartupSummary(segmentedDataReaderWriter));
+        timelordData.write();
+
+        assertNotNull(new StartupSummary(segmentedDataReaderWriter).read());
+
+        timelordData.getTask("Task 0")
+            .getTaskDay(EpochDay.today().plusDays(-400), true)
+            .setNote("Changed a year ago");
+        Thread.sleep(10);
+        segmentedDataReaderWriter.writeTimelordData(
+            timelordData.snapshot(),
+            segmentedDataReaderWriter.getDefaultOutputFile());
+
+        assertNull(new StartupSummary(segmentedDataReaderWriter).read());
+    }
+
+    /**
+     * Checks time added to the summary before the data has loaded ends up
+     * in the data once it has.
+     *
+     * @throws Exception indicates a failure
+     */
+    public void testReconcile() throws Exception {
+        StartupSummary startupSummary = new StartupSummary(binaryDataReaderWriter);
+        TimelordData summaryData = startupSummary.read();
+        TimelordTask timelordTask = timelordData.getTask("Task 0");
+        int minutes = timelordTask.getTaskDay(EpochDay.today(), true)
+            .getMinutes();
+
+        summaryData.getTask("Task 0").getTaskDay(EpochDay.today(), true)
+            .addMinutes(30);
+        timelordTask.getTaskDay(EpochDay.today()).addMinutes(30);
+
+        TimelordData loadedData = binaryDataReaderWriter.readTimelordData();
+        startupSummary.reconcile(summaryData, loadedData);
+
+        assertEquals(minutes + 30, loadedData.getTask("Task 0")
+            .getTaskDay(EpochDay.today()).getMinutes());
+        assertSameData(timelordData, loadedData);
+    }
+
+    /**
+     * Checks a task renamed in the summary keeps all of its days, not just
+     * the ones in the summary, once the data has loaded.
+     *
+     * @throws Exception indicates a failure
+     */
+    public void testReconcileRename() throws Exception {
+        StartupSummary startupSummary = new StartupSummary(binaryDataReaderWriter);
+        TimelordData summaryData = startupSummary.read();
+        summaryData.resetTaskListeners();
+
+        summaryData.getTask("Task 1").setTaskName("Renamed Task");
+        summaryData.getTask("Renamed Task")
+            .getTaskDay(EpochDay.today(), true).addMinutes(15);
+
+        TimelordTask timelordTask = timelordData.getTask("Task 1");
+        timelordTask.setTaskName("Renamed Task");
+        timelordTask.getTaskDay(EpochDay.today(), true).addMinutes(15);
+        assertTrue(timelordTask.getTaskDayList().size() > 300);
+
+        TimelordData loadedData = binaryDataReaderWriter.readTimelordData();
+        loadedData.resetTaskListeners();
+        startupSummary.reconcile(summaryData, loadedData);
+
+        assertNull(loadedData.getTask("Task 1"));
+        assertSameData(timelordData, loadedData);
+    }
+}
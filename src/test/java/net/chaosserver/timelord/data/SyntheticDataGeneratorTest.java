@@ -0,0 +1,97 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.data;
+
+import net.chaosserver.timelord.util.EpochDay;
+
+import java.io.File;
+
+
+/**
+ * Tests the synthetic data generator gives the same data for the same
+ * settings and writes it without keeping backups.
+ */
+public class SyntheticDataGeneratorTest extends DataTestBase {
+    /**
+     * Checks the same seed and end date give the same data, and another
+     * seed gives different data.
+     */
+    public void testDeterministic() {
+        TimelordData timelordData = newGenerator(7).generate();
+
+        assertEquals(12, timelordData.getTaskCollection().size());
+        assertSameData(timelordData, newGenerator(7).generate());
+
+        TimelordData otherData = newGenerator(8).generate();
+        TimelordTask timelordTask =
+            (TimelordTask) timelordData.getTaskCollection().get(0);
+        TimelordTask otherTask =
+            otherData.getTask(timelordTask.getTaskName());
+
+        assertFalse(toDayMap(timelordTask).keySet().equals(
+            toDayMap(otherTask).keySet()));
+    }
+
+    /**
+     * Checks the data written can be read back and no backup is kept.
+     *
+     * @throws Exception indicates a failure
+     */
+    public void testWrite() throws Exception {
+        File outputFile = new File(homeDirectory, "generated/data.tld");
+        TimelordData timelordData = newGenerator(7).write(
+            SyntheticDataGenerator.getReaderWriter("Binary"), outputFile);
+
+        assertSameData(timelordData,
+            new BinaryDataReaderWriter().readTimelordData(outputFile));
+        assertFalse(new File(homeDirectory,
+            TimelordDataReaderWriter.BACKUP_DIRECTORY).exists());
+    }
+
+    /**
+     * Checks a reader/writer that doesn't exist is refused.
+     */
+    public void testUnknownReaderWriter() {
+        try {
+            SyntheticDataGenerator.getReaderWriter("Unknown");
+            fail("An unknown reader/writer was created");
+        } catch (TimelordDataException e) {
+            // Expected.
+        }
+    }
+
+    /**
+     * Creates a generator for a year of a dozen tasks ending on a fixed
+     * day.
+     *
+     * @param seed the seed of the generator
+     * @return the generator
+     */
+    protected SyntheticDataGenerator newGenerator(long seed) {
+        SyntheticDataGenerator syntheticDataGenerator =
+            new SyntheticDataGenerator();
+        syntheticDataGenerator.setSeed(seed);
+        syntheticDataGenerator.setTaskCount(12);
+        syntheticDataGenerator.setYears(1);
+        syntheticDataGenerator.setNotePercent(20);
+        syntheticDataGenerator.setEndDate(
+            EpochDay.today().plusDays(-1).toDate());
+
+        return syntheticDataGenerator;
+    }
+}
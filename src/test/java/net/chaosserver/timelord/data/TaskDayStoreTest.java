@@ -0,0 +1,167 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.data;
+
+import net.chaosserver.timelord.util.DateUtil;
+import net.chaosserver.timelord.util.EpochDay;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Tests a task moved to the columnar store keeps its days and that the
+ * days it hands out write through to the store.
+ */
+public class TaskDayStoreTest extends DataTestBase {
+    /**
+     * Checks the days of a task are the same after it is moved to the
+     * columnar store.
+     */
+    public void testUseColumnarStoreKeepsDays() {
+        TimelordTask timelordTask = createTask();
+        timelordTask.useColumnarStore();
+
+        assertTrue(timelordTask.isColumnar());
+        assertEquals(3, timelordTask.getTaskDayList().size());
+        assertEquals(1.5d, timelordTask.getTaskDay(day(-1)).getHours(), 0d);
+        assertEquals(2d, timelordTask.getTaskDay(day(-4)).getHours(), 0d);
+        assertEquals("Note", timelordTask.getTaskDay(day(-4)).getNote());
+        assertNull(timelordTask.getTaskDay(day(-2)));
+    }
+
+    /**
+     * Checks changes made through the days of a columnar task are held by
+     * the task, and new days go in their place.
+     */
+    public void testChangesWriteThrough() {
+        TimelordTask timelordTask = createTask();
+        timelordTask.useColumnarStore();
+
+        timelordTask.getTaskDay(day(-1)).setHours(3d);
+        timelordTask.getTaskDay(day(-4)).setNote(null);
+        timelordTask.getTaskDay(day(-2), true).setHours(0.5d);
+
+        assertEquals(3d, timelordTask.getTaskDay(day(-1)).getHours(), 0d);
+        assertNull(timelordTask.getTaskDay(day(-4)).getNote());
+        assertEquals(0.5d, timelordTask.getTaskDay(day(-2)).getHours(), 0d);
+
+        List<TimelordTaskDay> taskDayList = timelordTask.getTaskDayList();
+        assertEquals(4, taskDayList.size());
+
+        for (int i = 1; i < taskDayList.size(); i++) {
+            assertTrue(((TimelordTaskDay) taskDayList.get(i - 1)).getEpochDay()
+                > ((TimelordTaskDay) taskDayList.get(i)).getEpochDay());
+        }
+    }
+
+    /**
+     * Checks changing the date of a day of a columnar task moves it in the
+     * store, and adds it to the day already there if there is one.
+     */
+    public void testSetDateMovesDay() {
+        TimelordData timelordData = new TimelordData();
+        TimelordTask timelordTask = createTask();
+        timelordData.addTask(timelordTask);
+        timelordData.useColumnarStore();
+
+        TimelordTaskDay timelordTaskDay = timelordTask.getTaskDay(day(-4));
+        timelordTaskDay.setDate(DateUtil.trunc(day(-2)));
+
+        assertNull(timelordTask.getTaskDay(day(-4)));
+        assertSame(timelordTaskDay, timelordTask.getTaskDay(day(-2)));
+        assertEquals(2d, timelordTaskDay.getHours(), 0d);
+        assertEquals("Note", timelordTaskDay.getNote());
+        assertEquals(DateUtil.trunc(day(-2)), timelordTaskDay.getDate());
+        assertEquals(
+            0, timelordData.getDayMinutes(EpochDay.valueOf(day(-4)), true));
+        assertEquals(
+            120, timelordData.getDayMinutes(EpochDay.valueOf(day(-2)), true));
+
+        timelordTaskDay.setDate(DateUtil.trunc(day(-1)));
+        assertNull(timelordTask.getTaskDay(day(-2)));
+        assertEquals(3.5d, timelordTask.getTaskDay(day(-1)).getHours(), 0d);
+        assertEquals("Note", timelordTask.getTaskDay(day(-1)).getNote());
+        assertEquals(2, timelordTask.getTaskDayList().size());
+    }
+
+    /**
+     * Checks days handed out by a columnar task keep working as plain days
+     * once the task is given a new list of days.
+     */
+    public void testSetTaskDayListDetachesDays() {
+        TimelordTask timelordTask = createTask();
+        timelordTask.useColumnarStore();
+        TimelordTaskDay timelordTaskDay = timelordTask.getTaskDay(day(-4));
+
+        timelordTask.setTaskDayList(new ArrayList<TimelordTaskDay>());
+        assertFalse(timelordTask.isColumnar());
+
+        assertEquals(2d, timelordTaskDay.getHours(), 0d);
+        assertEquals("Note", timelordTaskDay.getNote());
+
+        timelordTaskDay.addHours(1d);
+        timelordTaskDay.setNote("Changed");
+        timelordTaskDay.setDate(DateUtil.trunc(day(-3)));
+        assertEquals(3d, timelordTaskDay.getHours(), 0d);
+        assertEquals("Changed", timelordTaskDay.getNote());
+        assertEquals(DateUtil.trunc(day(-3)), timelordTaskDay.getDate());
+        assertTrue(timelordTask.getTaskDayList().isEmpty());
+    }
+
+    /**
+     * Checks two stores sharing their data each copy it before the first
+     * change, so neither sees the changes of the other.
+     */
+    public void testShareCopiesOnWrite() {
+        TaskDayStore taskDayStore = new TaskDayStore();
+        taskDayStore.insert(0, 100, 60, "Note");
+        taskDayStore.insert(1, 90, 30, null);
+
+        TaskDayStore sharedStore = taskDayStore.share();
+        assertSame(taskDayStore.minutes, sharedStore.minutes);
+
+        taskDayStore.setMinutes(0, 120);
+        taskDayStore.setNote(90, "Added");
+        assertEquals(60, sharedStore.getMinutes(0));
+        assertNull(sharedStore.getNote(90));
+        assertEquals(120, taskDayStore.getMinutes(0));
+
+        sharedStore.setNote(100, null);
+        sharedStore.insert(0, 110, 15, null);
+        assertEquals("Note", taskDayStore.getNote(100));
+        assertEquals(2, taskDayStore.size());
+        assertEquals(3, sharedStore.size());
+        assertEquals(110, sharedStore.getEpochDay(0));
+    }
+
+    /**
+     * Creates a task with three days.
+     *
+     * @return the task
+     */
+    protected TimelordTask createTask() {
+        TimelordTask timelordTask = new TimelordTask("Task");
+        timelordTask.getTaskDay(day(-1), true).setHours(1.5d);
+        timelordTask.getTaskDay(day(-4), true).setHours(2d);
+        timelordTask.getTaskDay(day(-4), true).setNote("Note");
+        timelordTask.getTaskDay(day(-9), true).setHours(0.25d);
+
+        return timelordTask;
+    }
+}
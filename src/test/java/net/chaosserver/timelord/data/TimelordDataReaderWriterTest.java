@@ -0,0 +1,235 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.security.MessageDigest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+
+/**
+ * Tests the steps shared by the reader/writers.
+ */
+public class TimelordDataReaderWriterTest extends DataTestBase {
+    /**
+     * Checks a file is replaced with only the given part of the buffer
+     * and no temporary file is left behind.
+     *
+     * @throws Exception indicates a failure
+     */
+    public void testReplaceFile() throws Exception {
+        File file = new File(homeDirectory, "data.bin");
+        FileOutputStream fileOutputStream = new FileOutputStream(file);
+
+        try {
+            fileOutputStream.write("old contents".getBytes("UTF-8"));
+        } finally {
+            fileOutputStream.close();
+        }
+
+        OutputBuffer outputBuffer = new OutputBuffer();
+        outputBuffer.write("new".getBytes("UTF-8"));
+        new BinaryDataReaderWriter().replaceFile(
+            file, outputBuffer.getBuffer(), outputBuffer.size(), false);
+
+        assertEquals("new", read(new FileInputStream(file)));
+        assertEquals(1, homeDirectory.listFiles().length);
+    }
+
+    /**
+     * Checks a compressed file can be read back through gzip.
+     *
+     * @throws Exception indicates a failure
+     */
+    public void testReplaceFileCompressed() throws Exception {
+        File file = new File(homeDirectory, "data.gz");
+        byte[] bytes = "compressed contents".getBytes("UTF-8");
+
+        new BinaryDataReaderWriter().replaceFile(
+            file, bytes, bytes.length, true);
+
+        assertEquals("compressed contents",
+            read(new GZIPInputStream(new FileInputStream(file))));
+        assertEquals(1, homeDirectory.listFiles().length);
+    }
+
+    /**
+     * Checks the same contents are only backed up once, and backing them
+     * up again marks the backup as the newest.
+     *
+     * @throws Exception indicates a failure
+     */
+    public void testBackupDeduplicated() throws Exception {
+        BinaryDataReaderWriter binaryDataReaderWriter =
+            new BinaryDataReaderWriter();
+        File backupDirectory = new File(homeDirectory, "backups");
+        byte[] bytes = "contents".getBytes("UTF-8");
+
+        File backupFile = binaryDataReaderWriter.writeBackup(
+            backupDirectory, "data.bin", bytes, bytes.length, false);
+        long oldTime = System.currentTimeMillis() - 3600000;
+        backupFile.setLastModified(oldTime);
+
+        assertEquals(backupFile, binaryDataReaderWriter.writeBackup(
+            backupDirectory, "data.bin", bytes, bytes.length, false));
+        assertEquals(1, backupDirectory.listFiles().length);
+        assertTrue(backupFile.lastModified() > oldTime);
+        assertEquals("contents", read(new FileInputStream(backupFile)));
+    }
+
+    /**
+     * Checks only the newest backups up to the retention are kept, and
+     * other files in the directory are left alone.
+     *
+     * @throws Exception indicates a failure
+     */
+    public void testBackupRetention() throws Exception {
+        BinaryDataReaderWriter binaryDataReaderWriter =
+            new BinaryDataReaderWriter();
+        binaryDataReaderWriter.setBackupRetention(3);
+        File backupDirectory = new File(homeDirectory, "backups");
+        backupDirectory.mkdirs();
+        File otherFile = new File(backupDirectory, "data.bin.notes");
+        otherFile.createNewFile();
+
+        long baseTime = day(-1).getTime();
+        File[] backupFiles = new File[5];
+
+        for (int i = 0; i < backupFiles.length; i++) {
+            byte[] bytes = ("contents " + i).getBytes("UTF-8");
+            backupFiles[i] = binaryDataReaderWriter.writeBackup(
+                backupDirectory, "data.bin", bytes, bytes.length, true);
+            backupFiles[i].setLastModified(baseTime + (i * 60000));
+        }
+
+        assertFalse(backupFiles[0].exists());
+        assertFalse(backupFiles[1].exists());
+        assertTrue(backupFiles[2].exists());
+        assertTrue(backupFiles[4].exists());
+        assertTrue(otherFile.exists());
+        assertEquals(4, backupDirectory.listFiles().length);
+    }
+
+    /**
+     * Checks the newest backup of each day beyond the retention is kept
+     * for the daily backup days, and for good if that is zero.
+     *
+     * @throws Exception indicates a failure
+     */
+    public void testDailyBackupsKept() throws Exception {
+        assertEquals(6, writeDailyBackups(0).size());
+        delete(new File(homeDirectory, "backups"));
+
+        List<File> keptFiles = writeDailyBackups(3);
+        assertEquals(3, keptFiles.size());
+        assertTrue(keptFiles.contains(
+            new File(new File(homeDirectory, "backups"),
+                "data.bin." + hash("contents -2 1"))));
+    }
+
+    /**
+     * Writes two backups for each of the five days before today and one
+     * for today, keeping the newest two.
+     *
+     * @param dailyBackupDays the days to keep a daily backup for
+     * @return the backups left
+     * @throws IOException indicates an error writing the backups
+     */
+    protected List<File> writeDailyBackups(int dailyBackupDays)
+            throws IOException {
+
+        BinaryDataReaderWriter binaryDataReaderWriter =
+            new BinaryDataReaderWriter();
+        binaryDataReaderWriter.setBackupRetention(2);
+        binaryDataReaderWriter.setDailyBackupDays(dailyBackupDays);
+        File backupDirectory = new File(homeDirectory, "backups");
+
+        for (int offset = -5; offset <= 0; offset++) {
+            for (int i = 0; i < ((offset < 0) ? 2 : 1); i++) {
+                byte[] bytes =
+                    ("contents " + offset + " " + i).getBytes("UTF-8");
+                File backupFile = binaryDataReaderWriter.writeBackup(
+                    backupDirectory, "data.bin", bytes, bytes.length, false);
+
+                if (offset < 0) {
+                    backupFile.setLastModified(
+                        day(offset).getTime() + (i * 60000));
+                }
+            }
+        }
+
+        return Arrays.asList(backupDirectory.listFiles());
+    }
+
+    /**
+     * Works out the SHA-1 of some text as hex, the way backups are named.
+     *
+     * @param text the text
+     * @return the hash as hex
+     * @throws Exception indicates the hash isn't available
+     */
+    protected static String hash(String text) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-1").digest(
+            text.getBytes("UTF-8"));
+        StringBuffer hex = new StringBuffer();
+
+        for (int i = 0; i < digest.length; i++) {
+            hex.append(Character.forDigit((digest[i] >> 4) & 0xf, 16));
+            hex.append(Character.forDigit(digest[i] & 0xf, 16));
+        }
+
+        return hex.toString();
+    }
+
+    /**
+     * Reads a stream to the end as UTF-8 text and closes it.
+     *
+     * @param inputStream the stream to read
+     * @return the text
+     * @throws IOException indicates an error reading
+     */
+    protected static String read(InputStream inputStream)
+            throws IOException {
+
+        ByteArrayOutputStream byteArrayOutputStream =
+            new ByteArrayOutputStream();
+
+        try {
+            byte[] buffer = new byte[1024];
+            int count = inputStream.read(buffer);
+
+            while (count >= 0) {
+                byteArrayOutputStream.write(buffer, 0, count);
+                count = inputStream.read(buffer);
+            }
+        } finally {
+            inputStream.close();
+        }
+
+        return byteArrayOutputStream.toString("UTF-8");
+    }
+}
@@ -0,0 +1,541 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.data;
+
+import net.chaosserver.timelord.util.EpochDay;
+
+import net.chaosserver.timelord.util.DateUtil;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Tests the tasks of the data are found by name and kept free of
+ * duplicates.
+ */
+public class TimelordDataTest extends DataTestBase {
+    /**
+     * Checks a task is found by its name in any case, and not once it has
+     * been removed.
+     */
+    public void testGetTaskIgnoresCase() {
+        TimelordData timelordData = new TimelordData();
+        TimelordTask timelordTask = timelordData.addTask("Mixed Case");
+
+        assertSame(timelordTask, timelordData.getTask("Mixed Case"));
+        assertSame(timelordTask, timelordData.getTask("MIXED case"));
+        assertNull(timelordData.getTask("Other"));
+        assertNull(timelordData.getTask(null));
+
+        timelordData.removeTask(timelordTask);
+        assertNull(timelordData.getTask("Mixed Case"));
+    }
+
+    /**
+     * Checks adding a task by a name already used returns the existing
+     * task instead of a second one.
+     */
+    public void testAddTaskByNameReusesTask() {
+        TimelordData timelordData = new TimelordData();
+        TimelordTask timelordTask = timelordData.addTask("Task");
+
+        assertSame(timelordTask, timelordData.addTask("TASK"));
+        assertEquals(1, timelordData.getTaskCollection().size());
+    }
+
+    /**
+     * Checks adding a task by the name of a hidden task unhides it and
+     * gives it a day for today.
+     */
+    public void testAddTaskByNameUnhides() {
+        TimelordData timelordData = new TimelordData();
+        TimelordTask timelordTask = new TimelordTask("Task");
+        timelordTask.getTaskDay(day(-3), true).setHours(1d);
+        timelordTask.setHidden(true);
+        timelordData.addTask(timelordTask);
+
+        assertSame(timelordTask, timelordData.addTask("task"));
+        assertFalse(timelordTask.isHidden());
+        assertNotNull(timelordTask.getTaskDay(day(0)));
+        assertTrue(timelordData.getHiddenTasks().isEmpty());
+    }
+
+    /**
+     * Checks adding a second task with a name already used merges its
+     * days into the first: hours add up and a note only fills a gap.
+     */
+    public void testAddDuplicateTaskMerges() {
+        TimelordData timelordData = new TimelordData();
+        TimelordTask timelordTask = new TimelordTask("Task");
+        timelordTask.getTaskDay(day(-1), true).setHours(1d);
+        timelordTask.getTaskDay(day(-1), true).setNote("Kept");
+        timelordData.addTask(timelordTask);
+
+        TimelordTask duplicateTask = new TimelordTask("task");
+        duplicateTask.getTaskDay(day(-1), true).setHours(0.5d);
+        duplicateTask.getTaskDay(day(-1), true).setNote("Dropped");
+        duplicateTask.getTaskDay(day(-2), true).setHours(2d);
+        duplicateTask.getTaskDay(day(-2), true).setNote("Copied");
+        timelordData.addTask(duplicateTask);
+
+        assertEquals(1, timelordData.getTaskCollection().size());
+        assertSame(timelordTask, timelordData.getTask("Task"));
+        assertEquals(1.5d, timelordTask.getTaskDay(day(-1)).getHours(), 0d);
+        assertEquals("Kept", timelordTask.getTaskDay(day(-1)).getNote());
+        assertEquals(2d, timelordTask.getTaskDay(day(-2)).getHours(), 0d);
+        assertEquals("Copied", timelordTask.getTaskDay(day(-2)).getNote());
+    }
+
+    /**
+     * Checks a renamed task is found by its new name only.
+     */
+    public void testRenameUpdatesIndex() {
+        TimelordData timelordData = new TimelordData();
+        TimelordTask timelordTask = timelordData.addTask("Old Name");
+        timelordData.addTask("Other");
+
+        timelordTask.setTaskName("New Name");
+
+        assertSame(timelordTask, timelordData.getTask("new name"));
+        assertNull(timelordData.getTask("Old Name"));
+    }
+
+    /**
+     * Checks tasks added in any order are kept in name order, ignoring
+     * case.
+     */
+    public void testAddTaskKeepsNameOrder() {
+        TimelordData timelordData = new TimelordData();
+        timelordData.addTask("delta");
+        timelordData.addTask("Bravo");
+        timelordData.addTask(new TimelordTask("alpha"));
+        timelordData.addTask("Charlie");
+
+        assertNames(new String[] {"alpha", "Bravo", "Charlie", "delta"},
+            timelordData);
+    }
+
+    /**
+     * Checks a renamed task moves to the place of its new name.
+     */
+    public void testRenameMovesTask() {
+        TimelordData timelordData = new TimelordData();
+        TimelordTask timelordTask = timelordData.addTask("Alpha");
+        timelordData.addTask("Bravo");
+        timelordData.addTask("Charlie");
+
+        timelordTask.setTaskName("Delta");
+
+        assertNames(new String[] {"Bravo", "Charlie", "Delta"},
+            timelordData);
+    }
+
+    /**
+     * Checks a collection read out of order is sorted by cleanse.
+     */
+    public void testCleanseSortsCollection() {
+        TimelordData timelordData = new TimelordData();
+        List<TimelordTask> taskList = new ArrayList<TimelordTask>();
+        taskList.add(new TimelordTask("Charlie"));
+        taskList.add(new TimelordTask("alpha"));
+        taskList.add(new TimelordTask("Bravo"));
+        timelordData.setTaskCollection(taskList);
+
+        timelordData.cleanse();
+
+        assertNames(new String[] {"alpha", "Bravo", "Charlie"},
+            timelordData);
+    }
+
+    /**
+     * Checks the running day totals follow changes to hours, to whether a
+     * task is exported and to the tasks held.
+     */
+    public void testDayTotalsFollowChanges() {
+        TimelordData timelordData = new TimelordData();
+        TimelordTask firstTask = timelordData.addTask("First");
+        TimelordTask secondTask = timelordData.addTask("Second");
+        firstTask.getTaskDay(day(-1), true).setHours(1d);
+        secondTask.getTaskDay(day(-1), true).setHours(0.5d);
+        assertDayTotals(timelordData);
+
+        firstTask.getTaskDay(day(-1)).addHours(0.25d);
+        firstTask.getTaskDay(day(-2), true).setHours(2d);
+        assertEquals(105,
+            timelordData.getDayMinutes(EpochDay.valueOf(day(-1)), false));
+        assertDayTotals(timelordData);
+
+        secondTask.setExportable(false);
+        assertEquals(75,
+            timelordData.getDayMinutes(EpochDay.valueOf(day(-1)), false));
+        assertEquals(105,
+            timelordData.getDayMinutes(EpochDay.valueOf(day(-1)), true));
+        assertDayTotals(timelordData);
+
+        TimelordTask thirdTask = new TimelordTask("Third");
+        thirdTask.getTaskDay(day(-2), true).setHours(1d);
+        timelordData.addTask(thirdTask);
+        timelordData.removeTask(firstTask);
+        assertDayTotals(timelordData);
+
+        timelordData.useColumnarStore();
+        thirdTask.getTaskDay(day(-2)).addHours(1d);
+        secondTask.getTaskDay(day(-3), true).setHours(3d);
+        assertDayTotals(timelordData);
+    }
+
+    /**
+     * Checks the range queries add up each day and each Monday based week
+     * of the range, counting only the days inside it and the tasks the
+     * filter accepts.
+     */
+    public void testSumByDayAndWeek() {
+        TimelordData timelordData = new TimelordData();
+        TimelordTask firstTask = timelordData.addTask("First");
+        TimelordTask secondTask = timelordData.addTask("Second");
+        secondTask.setExportable(false);
+
+        // Starts on a Wednesday, so the first week only has five days.
+        EpochDay startDay = new EpochDay(6);
+        EpochDay endDay = new EpochDay(17);
+        assertEquals(3, startDay.getDayOfWeek());
+
+        firstTask.getTaskDay(startDay.plusDays(-1), true).setHours(8d);
+        firstTask.getTaskDay(startDay, true).setHours(1d);
+        firstTask.getTaskDay(startDay.plusDays(4), true).setHours(2d);
+        firstTask.getTaskDay(startDay.plusDays(5), true).setHours(0.5d);
+        firstTask.getTaskDay(endDay, true).setHours(3d);
+        firstTask.getTaskDay(endDay.plusDays(1), true).setHours(8d);
+        secondTask.getTaskDay(startDay.plusDays(4), true).setHours(1.25d);
+
+        double[] dayHours =
+            timelordData.sumHoursByDay(startDay, endDay, null);
+        assertEquals(12, dayHours.length);
+        assertEquals(1d, dayHours[0], 0d);
+        assertEquals(3.25d, dayHours[4], 0d);
+        assertEquals(0.5d, dayHours[5], 0d);
+        assertEquals(3d, dayHours[11], 0d);
+        assertEquals(0d, dayHours[1], 0d);
+
+        double[] weekHours =
+            timelordData.sumHoursByWeek(startDay, endDay, null);
+        assertEquals(2, weekHours.length);
+        assertEquals(4.25d, weekHours[0], 0d);
+        assertEquals(3.5d, weekHours[1], 0d);
+
+        weekHours = timelordData.sumHoursByWeek(
+            startDay, endDay, new TimelordData.ExportableTaskFilter());
+        assertEquals(3d, weekHours[0], 0d);
+        assertEquals(3.5d, weekHours[1], 0d);
+
+        assertEquals(0,
+            timelordData.sumHoursByWeek(endDay, startDay, null).length);
+        assertNull(firstTask.getTaskDay(startDay.plusDays(1)));
+    }
+
+    /**
+     * Checks the day totals read without the lock while another thread
+     * keeps adding time never go backwards and end on the right total.
+     *
+     * @throws Exception indicates the writer failed
+     */
+    public void testDayTotalsReadWhileWriting() throws Exception {
+        final TimelordData timelordData = new TimelordData();
+        final TimelordTask firstTask = timelordData.addTask("First");
+        final TimelordTask secondTask = timelordData.addTask("Second");
+        final EpochDay epochDay = EpochDay.valueOf(day(-1));
+        final int additions = 2000;
+
+        Thread writerThread = new Thread() {
+            public void run() {
+                for (int i = 0; i < additions; i++) {
+                    TimelordTask timelordTask =
+                        ((i % 2) == 0) ? firstTask : secondTask;
+                    timelordTask.getTaskDay(epochDay, true).addMinutes(1);
+                }
+            }
+        };
+        writerThread.start();
+
+        int lastMinutes = 0;
+
+        while (writerThread.isAlive()) {
+            int minutes = timelordData.getDayMinutes(epochDay, true);
+            assertTrue(minutes >= lastMinutes);
+            lastMinutes = minutes;
+        }
+
+        writerThread.join();
+        assertEquals(additions, timelordData.getDayMinutes(epochDay, true));
+    }
+
+    /**
+     * Checks a snapshot keeps the values it was taken with, is handed back
+     * again while nothing changes and reuses the snapshots of the tasks
+     * that did not change.
+     */
+    public void testSnapshotReuse() {
+        TimelordData timelordData = new TimelordData();
+        TimelordTask changedTask = timelordData.addTask("Changed");
+        TimelordTask unchangedTask = timelordData.addTask("Unchanged");
+        changedTask.getTaskDay(day(-1), true).setHours(1d);
+        unchangedTask.getTaskDay(day(-1), true).setHours(2d);
+        unchangedTask.useColumnarStore();
+
+        TimelordData firstSnapshot = timelordData.snapshot();
+        assertSame(firstSnapshot, timelordData.snapshot());
+
+        changedTask.getTaskDay(day(-1)).setHours(4d);
+        unchangedTask.getTaskDay(day(-1)).getHours();
+        TimelordData secondSnapshot = timelordData.snapshot();
+
+        assertNotSame(firstSnapshot, secondSnapshot);
+        assertTrue(secondSnapshot.getSnapshotVersion()
+            > firstSnapshot.getSnapshotVersion());
+        assertSame(
+            firstSnapshot.getTask("Unchanged"),
+            secondSnapshot.getTask("Unchanged"));
+        assertEquals(1d,
+            firstSnapshot.getTask("Changed").getTaskDay(day(-1)).getHours(),
+            0d);
+        assertEquals(4d,
+            secondSnapshot.getTask("Changed").getTaskDay(day(-1)).getHours(),
+            0d);
+
+        unchangedTask.getTaskDay(day(-1)).setHours(3d);
+        assertEquals(2d,
+            secondSnapshot.getTask("Unchanged").getTaskDay(day(-1))
+                .getHours(),
+            0d);
+        assertEquals(3d,
+            timelordData.snapshot().getTask("Unchanged").getTaskDay(day(-1))
+                .getHours(),
+            0d);
+    }
+
+    /**
+     * Checks a snapshot of a range only holds the days inside it.
+     */
+    public void testSnapshotRange() {
+        TimelordData timelordData = new TimelordData();
+        TimelordTask timelordTask = timelordData.addTask("Task");
+        timelordTask.getTaskDay(day(-1), true).setHours(1d);
+        timelordTask.getTaskDay(day(-3), true).setHours(2d);
+        timelordTask.getTaskDay(day(-3), true).setNote("Note");
+        timelordTask.getTaskDay(day(-6), true).setHours(3d);
+
+        TimelordTask rangeTask =
+            timelordData.snapshot(day(-4), day(-2)).getTask("Task");
+
+        assertEquals(1, rangeTask.getTaskDayList().size());
+        assertEquals(2d, rangeTask.getTaskDay(day(-3)).getHours(), 0d);
+        assertEquals("Note", rangeTask.getTaskDay(day(-3)).getNote());
+        assertEquals(3d, timelordTask.getTaskDay(day(-6)).getHours(), 0d);
+    }
+
+    /**
+     * Checks unloaded days still count in the totals and snapshots, and
+     * are loaded back when asked for.
+     */
+    public void testUnloadedDays() {
+        TimelordData timelordData = new TimelordData();
+        TimelordTask timelordTask = timelordData.addTask("Task");
+        timelordTask.getTaskDay(day(-1), true).setHours(1d);
+        timelordTask.getTaskDay(day(-20), true).setHours(2d);
+        timelordTask.getTaskDay(day(-20), true).setNote("Note");
+        timelordTask.getTaskDay(day(-60), true).setHours(3d);
+
+        timelordData.unloadDaysBefore(EpochDay.valueOf(day(-14)));
+
+        assertTrue(timelordTask.hasUnloadedDays());
+        assertEquals(180, timelordData.getDayMinutes(
+            EpochDay.valueOf(day(-60)), true));
+        assertEquals(3d, timelordData.snapshot().getTask("Task")
+            .getTaskDay(day(-60)).getHours(), 0d);
+
+        assertEquals("Note", timelordTask.getTaskDay(day(-20)).getNote());
+        assertTrue(timelordTask.hasUnloadedDays());
+
+        assertEquals(4, timelordTask.getTaskDayList().size());
+        assertFalse(timelordTask.hasUnloadedDays());
+        assertEquals(3d, timelordTask.getTaskDay(day(-60)).getHours(), 0d);
+        TimelordTaskTest.assertNewestFirst(timelordTask);
+    }
+
+    /**
+     * Checks the single sweep cleanse leaves the same days as the four
+     * separate passes it replaced, on data with days out of order, in the
+     * future and with no time.
+     */
+    public void testCleanseMatchesSeparatePasses() {
+        TimelordData expectedData = generateUncleansed();
+        Iterator<TimelordTask> taskIterator =
+            expectedData.getTaskCollection().iterator();
+
+        while (taskIterator.hasNext()) {
+            TimelordTask timelordTask = (TimelordTask) taskIterator.next();
+            timelordTask.sort();
+            timelordTask.removeEmpty();
+            timelordTask.removeFuture();
+            timelordTask.correctTimeZone();
+        }
+
+        TimelordData cleansedData = generateUncleansed();
+        cleansedData.cleanse();
+
+        List<TimelordTask> expectedTasks = expectedData.getTaskCollection();
+        List<TimelordTask> cleansedTasks = cleansedData.getTaskCollection();
+        assertEquals(expectedTasks.size(), cleansedTasks.size());
+
+        for (int i = 0; i < expectedTasks.size(); i++) {
+            TimelordTask expectedTask = expectedTasks.get(i);
+            List<TimelordTaskDay> expectedDays =
+                expectedTask.getTaskDayList();
+            List<TimelordTaskDay> cleansedDays = cleansedData.getTask(
+                expectedTask.getTaskName()).getTaskDayList();
+            assertEquals(expectedDays.size(), cleansedDays.size());
+
+            for (int j = 0; j < expectedDays.size(); j++) {
+                assertEquals(expectedDays.get(j).getEpochDay(),
+                    cleansedDays.get(j).getEpochDay());
+                assertEquals(expectedDays.get(j).getMinutes(),
+                    cleansedDays.get(j).getMinutes());
+            }
+        }
+    }
+
+    /**
+     * Checks cleansing data that is already clean doesn't mark it changed.
+     */
+    public void testCleanseCleanDataUnchanged() {
+        TimelordData timelordData = generateUncleansed();
+        timelordData.cleanse();
+        long modificationCount = timelordData.getModificationCount();
+
+        timelordData.cleanse();
+        assertEquals(modificationCount, timelordData.getModificationCount());
+    }
+
+    /**
+     * Checks an interrupt while cleansing still leaves every task cleansed
+     * and is passed back to the caller.
+     */
+    public void testCleanseInterrupted() {
+        TimelordData expectedData = generateUncleansed();
+        expectedData.cleanse();
+
+        TimelordData cleansedData = generateUncleansed();
+        Thread.currentThread().interrupt();
+        cleansedData.cleanse();
+        assertTrue(Thread.interrupted());
+
+        assertSameData(expectedData, cleansedData);
+    }
+
+    /**
+     * Generates data the way an old or hand edited file might read in, with
+     * the days of each task out of order and some of them in the future or
+     * with no time.  The same data is generated every time.
+     *
+     * @return the data
+     */
+    protected TimelordData generateUncleansed() {
+        Random random = new Random(21);
+        List<TimelordTask> taskList = new ArrayList<TimelordTask>();
+
+        for (int i = 0; i < 40; i++) {
+            TimelordTask timelordTask = new TimelordTask("Task " + i);
+            List<TimelordTaskDay> taskDayList = timelordTask.getTaskDayList();
+            Set<Integer> offsets = new HashSet<Integer>();
+
+            for (int j = 0; j < 60; j++) {
+                int offset = random.nextInt(400) - 395;
+
+                if (offsets.add(Integer.valueOf(offset))) {
+                    TimelordTaskDay timelordTaskDay = new TimelordTaskDay();
+                    timelordTaskDay.setDate(DateUtil.trunc(day(offset)));
+                    timelordTaskDay.addMinutes(random.nextInt(4) * 15);
+                    taskDayList.add(timelordTaskDay);
+                }
+            }
+
+            taskList.add(timelordTask);
+        }
+
+        TimelordData timelordData = new TimelordData();
+        timelordData.setTaskCollection(taskList);
+
+        return timelordData;
+    }
+
+    /**
+     * Asserts the running day totals match totals worked out by walking
+     * every day of every task.
+     *
+     * @param timelordData the data to check
+     */
+    protected void assertDayTotals(TimelordData timelordData) {
+        for (int offset = -5; offset <= 0; offset++) {
+            EpochDay epochDay = EpochDay.valueOf(day(offset));
+            int exportableMinutes = 0;
+            int allMinutes = 0;
+            Iterator<TimelordTask> taskIterator =
+                timelordData.getTaskCollection().iterator();
+
+            while (taskIterator.hasNext()) {
+                TimelordTask timelordTask = taskIterator.next();
+                TimelordTaskDay timelordTaskDay =
+                    timelordTask.getTaskDay(day(offset));
+
+                if (timelordTaskDay != null) {
+                    allMinutes += timelordTaskDay.getMinutes();
+
+                    if (timelordTask.isExportable()) {
+                        exportableMinutes += timelordTaskDay.getMinutes();
+                    }
+                }
+            }
+
+            assertEquals(exportableMinutes,
+                timelordData.getDayMinutes(epochDay, false));
+            assertEquals(allMinutes,
+                timelordData.getDayMinutes(epochDay, true));
+        }
+    }
+
+    /**
+     * Asserts the tasks of the data have the given names in order.
+     *
+     * @param taskNames the expected names
+     * @param timelordData the data to check
+     */
+    protected void assertNames(String[] taskNames,
+            TimelordData timelordData) {
+
+        List<TimelordTask> taskCollection = timelordData.getTaskCollection();
+        assertEquals(taskNames.length, taskCollection.size());
+
+        for (int i = 0; i < taskNames.length; i++) {
+            assertEquals(taskNames[i], taskCollection.get(i).getTaskName());
+        }
+    }
+}
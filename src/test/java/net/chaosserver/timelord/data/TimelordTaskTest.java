@@ -0,0 +1,152 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.data;
+
+import net.chaosserver.timelord.util.DateUtil;
+
+import java.util.Date;
+import java.util.List;
+
+
+/**
+ * Tests a task keeps its days newest first and finds them by date.
+ */
+public class TimelordTaskTest extends DataTestBase {
+    /**
+     * Checks days added out of order end up newest first and can each be
+     * found again.
+     */
+    public void testAddTaskDayKeepsNewestFirst() {
+        TimelordTask timelordTask = new TimelordTask("Task");
+        int[] offsets = {-3, -10, 0, -1, -30, -2};
+
+        for (int i = 0; i < offsets.length; i++) {
+            TimelordTaskDay timelordTaskDay = new TimelordTaskDay();
+            timelordTaskDay.setDate(DateUtil.trunc(day(offsets[i])));
+            timelordTaskDay.setHours(i + 1);
+            timelordTask.addTaskDay(timelordTaskDay);
+        }
+
+        assertNewestFirst(timelordTask);
+        assertEquals(offsets.length, timelordTask.getTaskDayList().size());
+
+        for (int i = 0; i < offsets.length; i++) {
+            TimelordTaskDay timelordTaskDay =
+                timelordTask.getTaskDay(day(offsets[i]));
+
+            assertNotNull(timelordTaskDay);
+            assertEquals(i + 1, timelordTaskDay.getHours(), 0d);
+        }
+
+        assertNull(timelordTask.getTaskDay(day(-4)));
+    }
+
+    /**
+     * Checks asking for a missing day with create adds it in its place
+     * and asking again returns the same day.
+     */
+    public void testGetTaskDayCreates() {
+        TimelordTask timelordTask = new TimelordTask("Task");
+        timelordTask.getTaskDay(day(-5), true);
+        timelordTask.getTaskDay(day(-1), true);
+
+        TimelordTaskDay timelordTaskDay = timelordTask.getTaskDay(day(-3), true);
+
+        assertNotNull(timelordTaskDay);
+        assertSame(timelordTaskDay, timelordTask.getTaskDay(day(-3), true));
+        assertEquals(3, timelordTask.getTaskDayList().size());
+        assertNewestFirst(timelordTask);
+    }
+
+    /**
+     * Checks days appended straight onto the list, the way the XMLDecoder
+     * reads them, are put in order before they are searched.
+     */
+    public void testEnsureSortedAfterDirectAppend() {
+        TimelordTask timelordTask = new TimelordTask("Task");
+        List<TimelordTaskDay> taskDayList = timelordTask.getTaskDayList();
+        int[] offsets = {-7, -2, -9, -4};
+
+        for (int i = 0; i < offsets.length; i++) {
+            TimelordTaskDay timelordTaskDay = new TimelordTaskDay();
+            timelordTaskDay.setDate(DateUtil.trunc(day(offsets[i])));
+            timelordTaskDay.setHours(1);
+            taskDayList.add(timelordTaskDay);
+        }
+
+        assertNotNull(timelordTask.getTaskDay(day(-9)));
+        assertNotNull(timelordTask.getTaskDay(day(-2)));
+        assertNull(timelordTask.getTaskDay(day(-3)));
+        assertNewestFirst(timelordTask);
+    }
+
+    /**
+     * Checks future days and days outside a range are removed.
+     */
+    public void testRemoveOutsideRange() {
+        TimelordTask timelordTask = new TimelordTask("Task");
+        int[] offsets = {2, 1, 0, -1, -5, -10};
+
+        for (int i = 0; i < offsets.length; i++) {
+            timelordTask.getTaskDay(day(offsets[i]), true).setHours(1);
+        }
+
+        timelordTask.removeFuture();
+        assertEquals(4, timelordTask.getTaskDayList().size());
+        assertNotNull(timelordTask.getToday());
+
+        timelordTask.removeTrackingOutsideRange(
+            DateUtil.trunc(day(-6)), DateUtil.trunc(day(-1)));
+        assertEquals(2, timelordTask.getTaskDayList().size());
+        assertNotNull(timelordTask.getTaskDay(day(-1)));
+        assertNotNull(timelordTask.getTaskDay(day(-5)));
+    }
+
+    /**
+     * Checks time is held as whole minutes so repeated small additions
+     * do not drift.
+     */
+    public void testHoursHeldAsMinutes() {
+        TimelordTaskDay timelordTaskDay = new TimelordTaskDay();
+
+        for (int i = 0; i < 40; i++) {
+            timelordTaskDay.addHours(0.25d);
+        }
+        assertEquals(600, timelordTaskDay.getMinutes());
+        assertEquals(10d, timelordTaskDay.getHours(), 0d);
+
+        timelordTaskDay.setHours(1d / 3d);
+        assertEquals(20, timelordTaskDay.getMinutes());
+    }
+
+    /**
+     * Asserts the days of a task are newest first with no day twice.
+     *
+     * @param timelordTask the task
+     */
+    protected static void assertNewestFirst(TimelordTask timelordTask) {
+        List<TimelordTaskDay> taskDayList = timelordTask.getTaskDayList();
+
+        for (int i = 1; i < taskDayList.size(); i++) {
+            assertTrue(
+                "Days out of order at [" + i + "]",
+                ((TimelordTaskDay) taskDayList.get(i - 1)).getEpochDay()
+                    > ((TimelordTaskDay) taskDayList.get(i)).getEpochDay());
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+
+/**
+ * Tests reading back what the XML reader/writer writes, through the
+ * streaming reader, the parallel reader and the XMLDecoder it falls back
+ * on.
+ */
+public class XmlDataReaderWriterTest extends DataTestBase {
+    /**
+     * Checks a file read by the streaming reader matches what was written.
+     *
+     * @throws Exception indicates a failure
+     */
+    public void testStreamRoundTrip() throws Exception {
+        TimelordData timelordData = generate(20);
+        timelordData.setDayStartTime(8.5d);
+        write(timelordData);
+
+        assertSameData(timelordData,
+            new XmlDataReaderWriter().readTimelordData());
+    }
+
+    /**
+     * Checks a file large enough to be read in parallel matches what was
+     * written.
+     *
+     * @throws Exception indicates a failure
+     */
+    public void testParallelRoundTrip() throws Exception {
+        TimelordData timelordData = generate(50);
+        File datafile = write(timelordData);
+
+        assertTrue(
+            "The file is too small to be read in parallel",
+            datafile.length() >= XmlDataReaderWriter.PARALLEL_THRESHOLD);
+
+        XmlDataReaderWriter xmlDataReaderWriter = new XmlDataReaderWriter();
+        xmlDataReaderWriter.setLoaderThreads(4);
+
+        assertSameData(timelordData, xmlDataReaderWriter.readTimelordData());
+    }
+
+    /**
+     * Checks a file holding an element the streaming reader doesn't know
+     * is still read, by the XMLDecoder.
+     *
+     * @throws Exception indicates a failure
+     */
+    public void testDecoderFallback() throws Exception {
+        TimelordData timelordData = generate(5);
+        TimelordTask timelordTask =
+            (TimelordTask) timelordData.getTaskCollection().get(0);
+        TimelordTaskDay timelordTaskDay =
+            (TimelordTaskDay) timelordTask.getTaskDayList().get(0);
+        timelordTaskDay.setNote("Replaced");
+        File datafile = write(timelordData);
+
+        replace(
+            datafile,
+            "<string>Replaced</string>",
+            "<null/>");
+        timelordTaskDay.setNote(null);
+
+        InputStream inputStream = new FileInputStream(datafile);
+
+        try {
+            assertNull(new XmlDataStreamReader(0).read(inputStream));
+        } finally {
+            inputStream.close();
+        }
+
+        assertSameData(timelordData,
+            new XmlDataReaderWriter().readTimelordData());
+    }
+
+    /**
+     * Checks the streaming reader gives up on an element it doesn't know
+     * rather than skipping it.
+     *
+     * @throws Exception indicates a failure
+     */
+    public void testStreamReaderRejectsUnknownElement() throws Exception {
+        String xml =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<java version=\"1.5.0\" class=\"java.beans.XMLDecoder\">\n"
+            + " <object class=\"net.chaosserver.timelord.data.TimelordData\">\n"
+            + "  <void property=\"unknownProperty\">\n"
+            + "   <int>1</int>\n"
+            + "  </void>\n"
+            + " </object>\n"
+            + "</java>\n";
+
+        assertNull(new XmlDataStreamReader(0).read(
+            new ByteArrayInputStream(xml.getBytes("UTF-8"))));
+    }
+
+    /**
+     * Writes the data to the default file.
+     *
+     * @param timelordData the data to write
+     * @return the file written
+     * @throws TimelordDataException indicates an error writing
+     */
+    protected File write(TimelordData timelordData)
+            throws TimelordDataException {
+
+        XmlDataReaderWriter xmlDataReaderWriter = new XmlDataReaderWriter();
+        File datafile = xmlDataReaderWriter.getDefaultOutputFile();
+        xmlDataReaderWriter.writeTimelordData(
+            timelordData.snapshot(), datafile);
+
+        return datafile;
+    }
+
+    /**
+     * Replaces the first occurrence of some text in a file.
+     *
+     * @param file the file
+     * @param target the text to replace
+     * @param replacement the text to put in its place
+     * @throws IOException indicates an error with the file
+     */
+    protected static void replace(File file, String target,
+            String replacement) throws IOException {
+
+        byte[] bytes = new byte[(int) file.length()];
+        InputStream inputStream = new FileInputStream(file);
+
+        try {
+            new DataInputStream(inputStream).readFully(bytes);
+        } finally {
+            inputStream.close();
+        }
+
+        String content = new String(bytes, "UTF-8");
+        int index = content.indexOf(target);
+        assertTrue("No [" + target + "] in [" + file + "]", index >= 0);
+
+        content = content.substring(0, index) + replacement
+            + content.substring(index + target.length());
+
+        OutputStream outputStream = new FileOutputStream(file);
+
+        try {
+            outputStream.write(content.getBytes("UTF-8"));
+        } finally {
+            outputStream.close();
+        }
+    }
+}
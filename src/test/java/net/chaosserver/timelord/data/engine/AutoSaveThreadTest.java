@@ -0,0 +1,191 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.data.engine;
+
+import net.chaosserver.timelord.data.BinaryDataReaderWriter;
+import net.chaosserver.timelord.data.DataTestBase;
+import net.chaosserver.timelord.data.TimelordData;
+import net.chaosserver.timelord.data.TimelordDataException;
+import net.chaosserver.timelord.data.TimelordTaskDay;
+
+import java.io.File;
+
+
+/**
+ * Tests the auto-save thread only writes changed data, once it has gone
+ * quiet or has waited too long.
+ */
+public class AutoSaveThreadTest extends DataTestBase {
+    /** The reader/writer counting the writes. */
+    protected CountingReaderWriter countingReaderWriter;
+
+    /** The data being saved. */
+    protected TimelordData timelordData;
+
+    /** A day of the data to change. */
+    protected TimelordTaskDay timelordTaskDay;
+
+    /** The thread under test, which is never started. */
+    protected AutoSaveThread autoSaveThread;
+
+    /**
+     * Creates data that has just been written and a thread to save it.
+     *
+     * @throws Exception indicates an error writing the data
+     */
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        countingReaderWriter = new CountingReaderWriter();
+        timelordData = new TimelordData();
+        timelordData.setTimelordReaderWriter(countingReaderWriter);
+        timelordTaskDay =
+            timelordData.addTask("Task").getTaskDay(day(-1), true);
+        timelordData.write();
+        countingReaderWriter.writeCount = 0;
+
+        autoSaveThread = new AutoSaveThread(timelordData);
+        autoSaveThread.lastModificationCount =
+            timelordData.getModificationCount();
+    }
+
+    /**
+     * Checks the data is only marked modified by a change and is clean
+     * again once written.
+     *
+     * @throws Exception indicates a failure
+     */
+    public void testModifiedTracking() throws Exception {
+        assertFalse(timelordData.isModified());
+        assertFalse(timelordData.writeIfModified());
+
+        timelordTaskDay.addMinutes(15);
+        assertTrue(timelordData.isModified());
+        assertTrue(timelordData.writeIfModified());
+        assertFalse(timelordData.isModified());
+
+        timelordData.setDayStartTime(7d);
+        assertTrue(timelordData.isModified());
+        assertEquals(1, countingReaderWriter.writeCount);
+    }
+
+    /**
+     * Checks data that has just been read and cleansed is not written
+     * again until it changes.
+     *
+     * @throws Exception indicates a failure
+     */
+    public void testReadDataUnmodified() throws Exception {
+        timelordTaskDay.addMinutes(15);
+        timelordData.write();
+        countingReaderWriter.writeCount = 0;
+
+        TimelordData readTimelordData =
+            countingReaderWriter.readTimelordData();
+        readTimelordData.setTimelordReaderWriter(countingReaderWriter);
+        assertTrue(readTimelordData.isModified());
+
+        readTimelordData.markUnmodified();
+        readTimelordData.cleanse();
+        readTimelordData.resetTaskListeners();
+        assertFalse(readTimelordData.isModified());
+
+        autoSaveThread = new AutoSaveThread(readTimelordData);
+        autoSaveThread.lastModificationCount =
+            readTimelordData.getModificationCount();
+        autoSaveThread.check(AutoSaveThread.SLEEP_TIME * 2);
+        assertEquals(0, countingReaderWriter.writeCount);
+
+        readTimelordData.getTask("Task").getTaskDay(day(-1), true)
+            .addMinutes(15);
+        assertTrue(readTimelordData.isModified());
+        assertEquals(
+            30, readTimelordData.getTask("Task").getTaskDay(day(-1))
+                .getMinutes());
+    }
+
+    /**
+     * Checks a burst of changes is written once, after it has been quiet
+     * for the debounce time, and nothing is written while it is clean.
+     */
+    public void testWriteOnceQuiet() {
+        autoSaveThread.check(0);
+        assertEquals(0, countingReaderWriter.writeCount);
+
+        for (int i = 1; i <= 4; i++) {
+            timelordTaskDay.addMinutes(15);
+            autoSaveThread.check(i * AutoSaveThread.CHECK_TIME);
+        }
+
+        long lastChangeTime = 4 * AutoSaveThread.CHECK_TIME;
+        autoSaveThread.check(
+            lastChangeTime + AutoSaveThread.DEBOUNCE_TIME - 1);
+        assertEquals(0, countingReaderWriter.writeCount);
+
+        autoSaveThread.check(lastChangeTime + AutoSaveThread.DEBOUNCE_TIME);
+        assertEquals(1, countingReaderWriter.writeCount);
+        assertFalse(timelordData.isModified());
+
+        autoSaveThread.check(
+            lastChangeTime + (2 * AutoSaveThread.DEBOUNCE_TIME));
+        assertEquals(1, countingReaderWriter.writeCount);
+    }
+
+    /**
+     * Checks changes that never stop are still written once they have
+     * waited the full save time.
+     */
+    public void testWriteWhenOverdue() {
+        long time = 0;
+
+        while (countingReaderWriter.writeCount == 0) {
+            assertTrue(time < (2 * AutoSaveThread.SLEEP_TIME));
+
+            time += AutoSaveThread.CHECK_TIME;
+            timelordTaskDay.addMinutes(1);
+            autoSaveThread.check(time);
+        }
+
+        assertEquals(
+            AutoSaveThread.CHECK_TIME + AutoSaveThread.SLEEP_TIME, time);
+    }
+
+    /**
+     * A reader/writer that counts the writes it is asked to do.
+     */
+    protected static class CountingReaderWriter
+            extends BinaryDataReaderWriter {
+
+        /** The number of writes. */
+        protected int writeCount;
+
+        /**
+         * Counts the write and then writes the data.
+         *
+         * @param timelordData the data to write
+         * @param outputFile the file to write to
+         * @throws TimelordDataException indicates an error writing
+         */
+        public void writeTimelordData(TimelordData timelordData,
+                File outputFile) throws TimelordDataException {
+
+            writeCount++;
+            super.writeTimelordData(timelordData, outputFile);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.swingui;
+
+import net.chaosserver.timelord.data.DataTestBase;
+import net.chaosserver.timelord.data.TimelordData;
+
+import javax.swing.JLabel;
+
+
+/**
+ * Tests the tabs other than today are only built once they are selected.
+ */
+public class TimelordTabbedPaneTest extends DataTestBase {
+    /**
+     * Checks the previous day and chart tabs start as placeholders and
+     * are built the first time they are selected.
+     */
+    public void testTabsBuiltOnFirstUse() {
+        TimelordData timelordData = new TimelordData();
+        timelordData.addTask("Task").getTaskDay(day(-1), true).setHours(1d);
+        TimelordTabbedPane timelordTabbedPane =
+            new TimelordTabbedPane(timelordData);
+
+        assertNotNull(timelordTabbedPane.getCommonTaskPanel());
+        assertNull(timelordTabbedPane.previousDayPanel);
+        assertNull(timelordTabbedPane.chartingPanel);
+        assertTrue(timelordTabbedPane.getComponentAt(
+            TimelordTabbedPane.PREVIOUS_DAY_TAB) instanceof JLabel);
+
+        timelordTabbedPane.setSelectedIndex(
+            TimelordTabbedPane.PREVIOUS_DAY_TAB);
+        PreviousDayPanel previousDayPanel =
+            timelordTabbedPane.previousDayPanel;
+
+        assertNotNull(previousDayPanel);
+        assertSame(previousDayPanel, timelordTabbedPane.getComponentAt(
+            TimelordTabbedPane.PREVIOUS_DAY_TAB));
+        assertNull(timelordTabbedPane.chartingPanel);
+
+        timelordTabbedPane.setSelectedIndex(0);
+        timelordTabbedPane.setSelectedIndex(
+            TimelordTabbedPane.PREVIOUS_DAY_TAB);
+        assertSame(previousDayPanel, timelordTabbedPane.previousDayPanel);
+    }
+}
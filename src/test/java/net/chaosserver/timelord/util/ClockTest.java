@@ -0,0 +1,129 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.util;
+
+import junit.framework.TestCase;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+
+/**
+ * Tests the clock keeps track of the current day as time moves on.
+ */
+public class ClockTest extends TestCase {
+    /** The default time zone before the test started. */
+    protected TimeZone originalTimeZone;
+
+    /**
+     * Remembers the default time zone and sets a fixed one.
+     *
+     * @throws Exception indicates an error setting up
+     */
+    protected void setUp() throws Exception {
+        super.setUp();
+        originalTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("America/Los_Angeles"));
+        DateUtil.resetDefaultTimeZone();
+    }
+
+    /**
+     * Puts the default time zone back.
+     *
+     * @throws Exception indicates an error cleaning up
+     */
+    protected void tearDown() throws Exception {
+        TimeZone.setDefault(originalTimeZone);
+        DateUtil.resetDefaultTimeZone();
+        super.tearDown();
+    }
+
+    /**
+     * Checks the current day and hour follow the clock across midnight.
+     */
+    public void testRollsOverAtMidnight() {
+        ManualClock clock = new ManualClock();
+        clock.time = time(2008, Calendar.MAY, 1, 23, 30);
+
+        assertEquals(14000, clock.today().intValue());
+        assertEquals(23.5d, clock.getHourOfDay(), 0d);
+        assertEquals(
+            time(2008, Calendar.MAY, 1, 0, 0),
+            clock.getTodayStart().getTime());
+
+        clock.time = time(2008, Calendar.MAY, 2, 0, 15);
+
+        assertEquals(14001, clock.today().intValue());
+        assertEquals(0.25d, clock.getHourOfDay(), 0d);
+        assertEquals(
+            time(2008, Calendar.MAY, 2, 0, 0),
+            clock.getTodayStart().getTime());
+    }
+
+    /**
+     * Checks the hour of the day keeps to the cached time zone until the
+     * clock is reset.
+     */
+    public void testResetPicksUpTimeZone() {
+        ManualClock clock = new ManualClock();
+        clock.time = time(2008, Calendar.MAY, 1, 23, 30);
+        assertEquals(23.5d, clock.getHourOfDay(), 0d);
+
+        TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+        assertEquals(23.5d, clock.getHourOfDay(), 0d);
+
+        clock.reset();
+        assertEquals(2.5d, clock.getHourOfDay(), 0d);
+        assertEquals(14001, clock.today().intValue());
+    }
+
+    /**
+     * Gets the time of a date and time in the default time zone.
+     *
+     * @param year the year
+     * @param month the month, starting at zero
+     * @param day the day of the month
+     * @param hour the hour of the day
+     * @param minute the minute of the hour
+     * @return the time in milliseconds
+     */
+    protected long time(int year, int month, int day, int hour, int minute) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month, day, hour, minute);
+
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * A clock whose time is set by the test.
+     */
+    protected static class ManualClock extends Clock {
+        /** The current time. */
+        protected long time;
+
+        /**
+         * Gets the time set by the test.
+         *
+         * @return the current time
+         */
+        public long currentTimeMillis() {
+            return time;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.util;
+
+import junit.framework.TestCase;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+
+/**
+ * Tests the conversion of dates to days since the epoch.
+ */
+public class DateUtilTest extends TestCase {
+    /** The default time zone before the test started. */
+    protected TimeZone originalTimeZone;
+
+    /**
+     * Remembers the default time zone.
+     *
+     * @throws Exception indicates an error setting up
+     */
+    protected void setUp() throws Exception {
+        super.setUp();
+        originalTimeZone = TimeZone.getDefault();
+    }
+
+    /**
+     * Puts the default time zone back.
+     *
+     * @throws Exception indicates an error cleaning up
+     */
+    protected void tearDown() throws Exception {
+        TimeZone.setDefault(originalTimeZone);
+        DateUtil.resetDefaultTimeZone();
+        super.tearDown();
+    }
+
+    /**
+     * Checks every time of a day gives the same epoch day, and the next
+     * day gives the next one, on both sides of the epoch.
+     */
+    public void testToEpochDay() {
+        TimeZone.setDefault(TimeZone.getTimeZone("America/Los_Angeles"));
+        DateUtil.resetDefaultTimeZone();
+
+        assertEquals(0, DateUtil.toEpochDay(date(1970, 1, 1, 0, 0)));
+        assertEquals(0, DateUtil.toEpochDay(date(1970, 1, 1, 23, 59)));
+        assertEquals(-1, DateUtil.toEpochDay(date(1969, 12, 31, 0, 0)));
+        assertEquals(-1, DateUtil.toEpochDay(date(1969, 12, 31, 23, 59)));
+        assertEquals(14000, DateUtil.toEpochDay(date(2008, 5, 1, 0, 0)));
+        assertEquals(14000, DateUtil.toEpochDay(date(2008, 5, 1, 23, 59)));
+        assertEquals(14001, DateUtil.toEpochDay(date(2008, 5, 2, 0, 0)));
+    }
+
+    /**
+     * Checks the days either side of a daylight saving change are one
+     * apart.
+     */
+    public void testToEpochDayAcrossDaylightSaving() {
+        TimeZone.setDefault(TimeZone.getTimeZone("America/Los_Angeles"));
+        DateUtil.resetDefaultTimeZone();
+
+        assertEquals(
+            1,
+            DateUtil.toEpochDay(date(2008, 3, 10, 0, 30))
+                - DateUtil.toEpochDay(date(2008, 3, 9, 23, 30)));
+        assertEquals(
+            1,
+            DateUtil.toEpochDay(date(2008, 11, 3, 0, 30))
+                - DateUtil.toEpochDay(date(2008, 11, 2, 23, 30)));
+    }
+
+    /**
+     * Checks converting a day back to a date gives the same midnight a
+     * Calendar does, including zones where daylight saving changes at
+     * midnight, and that the date converts back to the same day.
+     */
+    public void testFromEpochDay() {
+        String[] timeZoneIds = {
+            "America/Los_Angeles", "America/Sao_Paulo", "Asia/Tokyo",
+            "Australia/Lord_Howe", "Africa/Tunis"
+        };
+
+        for (int i = 0; i < timeZoneIds.length; i++) {
+            TimeZone.setDefault(TimeZone.getTimeZone(timeZoneIds[i]));
+            DateUtil.resetDefaultTimeZone();
+
+            for (int epochDay = -1000; epochDay < 20000; epochDay++) {
+                Calendar calendar = Calendar.getInstance();
+                calendar.clear();
+                calendar.set(1970, Calendar.JANUARY, 1 + epochDay);
+
+                Date date = DateUtil.fromEpochDay(epochDay);
+                assertEquals(
+                    timeZoneIds[i] + " " + epochDay,
+                    calendar.getTime(), date);
+                assertEquals(
+                    timeZoneIds[i] + " " + epochDay,
+                    epochDay, DateUtil.toEpochDay(date));
+            }
+        }
+    }
+
+    /**
+     * Checks the default time zone is looked up once and kept until it
+     * is reset.
+     */
+    public void testDefaultTimeZoneCached() {
+        TimeZone.setDefault(TimeZone.getTimeZone("America/Los_Angeles"));
+        DateUtil.resetDefaultTimeZone();
+
+        TimeZone timeZone = DateUtil.getDefaultTimeZone();
+        assertSame(timeZone, DateUtil.getDefaultTimeZone());
+        assertEquals("America/Los_Angeles", timeZone.getID());
+
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Tokyo"));
+        assertSame(timeZone, DateUtil.getDefaultTimeZone());
+
+        DateUtil.resetDefaultTimeZone();
+        assertEquals("Asia/Tokyo", DateUtil.getDefaultTimeZone().getID());
+    }
+
+    /**
+     * Builds a date in the default time zone.
+     *
+     * @param year the year
+     * @param month the month, starting from 1
+     * @param dayOfMonth the day of the month
+     * @param hour the hour of the day
+     * @param minute the minute of the hour
+     * @return the date
+     */
+    protected static Date date(int year, int month, int dayOfMonth,
+            int hour, int minute) {
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month - 1, dayOfMonth, hour, minute);
+
+        return calendar.getTime();
+    }
+}
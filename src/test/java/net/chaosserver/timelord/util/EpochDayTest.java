@@ -0,0 +1,89 @@
+/*
+This file is part of Timelord.
+Copyright 2005-2009 Jordan Reed
+
+Timelord is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Timelord is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Timelord.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.chaosserver.timelord.util;
+
+import junit.framework.TestCase;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+
+/**
+ * Tests the day of the week and the week arithmetic of an epoch day.
+ */
+public class EpochDayTest extends TestCase {
+    /** The default time zone before the test started. */
+    protected TimeZone originalTimeZone;
+
+    /**
+     * Remembers the default time zone.
+     *
+     * @throws Exception indicates an error setting up
+     */
+    protected void setUp() throws Exception {
+        super.setUp();
+        originalTimeZone = TimeZone.getDefault();
+    }
+
+    /**
+     * Puts the default time zone back.
+     *
+     * @throws Exception indicates an error cleaning up
+     */
+    protected void tearDown() throws Exception {
+        TimeZone.setDefault(originalTimeZone);
+        DateUtil.resetDefaultTimeZone();
+        super.tearDown();
+    }
+
+    /**
+     * Checks the day of the week and the start of the week on both sides
+     * of the epoch, which was a Thursday.
+     */
+    public void testWeek() {
+        assertEquals(4, new EpochDay(0).getDayOfWeek());
+        assertEquals(new EpochDay(-3), new EpochDay(0).getWeekStart());
+        assertEquals(3, new EpochDay(-1).getDayOfWeek());
+        assertEquals(new EpochDay(-10), new EpochDay(-4).getWeekStart());
+        assertEquals(1, new EpochDay(4).getDayOfWeek());
+        assertEquals(new EpochDay(4), new EpochDay(10).getWeekStart());
+    }
+
+    /**
+     * Checks a day turns into a Date at midnight of the same day and back.
+     */
+    public void testToDate() {
+        TimeZone.setDefault(TimeZone.getTimeZone("America/Los_Angeles"));
+        DateUtil.resetDefaultTimeZone();
+        EpochDay epochDay = new EpochDay(14000);
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(epochDay.toDate());
+        assertEquals(2008, calendar.get(Calendar.YEAR));
+        assertEquals(Calendar.MAY, calendar.get(Calendar.MONTH));
+        assertEquals(1, calendar.get(Calendar.DAY_OF_MONTH));
+        assertEquals(0, calendar.get(Calendar.HOUR_OF_DAY));
+        assertEquals(0, calendar.get(Calendar.MINUTE));
+        assertEquals(Calendar.THURSDAY, calendar.get(Calendar.DAY_OF_WEEK));
+        assertEquals(
+            epochDay.intValue() - 4 + 1,
+            epochDay.getWeekStart().intValue());
+
+        assertEquals(epochDay, EpochDay.valueOf(epochDay.toDate()));
+    }
+}